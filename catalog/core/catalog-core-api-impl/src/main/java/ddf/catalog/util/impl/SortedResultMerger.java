@@ -0,0 +1,138 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package ddf.catalog.util.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import ddf.catalog.data.Result;
+
+/**
+ * Merges {@link Result}s from several sources into a single page of at most {@code maxResults}
+ * results, ordered by the provided {@link Comparator}.
+ * <p/>
+ * Results are kept in a bounded heap whose head is the worst result retained so far, so each
+ * source's results can be merged as soon as that source responds without holding on to (or
+ * sorting) results that can never make it onto the page. Results that compare equal keep the
+ * order in which they were added.
+ * <p/>
+ * This class is not thread-safe.
+ */
+public class SortedResultMerger {
+
+    private final Comparator<? super Result> comparator;
+
+    private final int maxResults;
+
+    private final PriorityQueue<Entry> heap;
+
+    private long sequence = 0;
+
+    /**
+     * Constructs a merger that retains the best {@code maxResults} results.
+     *
+     * @param comparator
+     *            the {@link Comparator} defining the order of the merged results
+     * @param maxResults
+     *            the maximum number of results to retain; values less than 1 are treated as
+     *            unbounded
+     */
+    public SortedResultMerger(Comparator<? super Result> comparator, int maxResults) {
+        this.comparator = comparator;
+        this.maxResults = maxResults > 0 ? maxResults : Integer.MAX_VALUE;
+        this.heap = new PriorityQueue<>(11, Collections.reverseOrder(new EntryComparator()));
+    }
+
+    /**
+     * Merges a source's results into the retained results.
+     *
+     * @param results
+     *            the results returned by a single source, may be {@code null}
+     */
+    public void add(List<Result> results) {
+        if (results == null) {
+            return;
+        }
+
+        for (Result result : results) {
+            add(result);
+        }
+    }
+
+    /**
+     * Merges a single result into the retained results.
+     *
+     * @param result
+     *            the result to merge
+     */
+    public void add(Result result) {
+        Entry entry = new Entry(result, sequence++);
+
+        if (heap.size() < maxResults) {
+            heap.offer(entry);
+        } else if (heap.comparator().compare(entry, heap.peek()) > 0) {
+            heap.poll();
+            heap.offer(entry);
+        }
+    }
+
+    /**
+     * @return the number of results currently retained
+     */
+    public int size() {
+        return heap.size();
+    }
+
+    /**
+     * Removes the retained results from this merger.
+     *
+     * @return the retained results in sorted order
+     */
+    public List<Result> drain() {
+        List<Result> results = new ArrayList<>(heap.size());
+        Entry entry;
+        while ((entry = heap.poll()) != null) {
+            results.add(entry.result);
+        }
+        Collections.reverse(results);
+        return results;
+    }
+
+    private static class Entry {
+
+        private final Result result;
+
+        private final long sequence;
+
+        Entry(Result result, long sequence) {
+            this.result = result;
+            this.sequence = sequence;
+        }
+    }
+
+    private class EntryComparator implements Comparator<Entry> {
+
+        @Override
+        public int compare(Entry entryA, Entry entryB) {
+            int compare = comparator.compare(entryA.result, entryB.result);
+            if (compare == 0) {
+                compare = Long.compare(entryA.sequence, entryB.sequence);
+            }
+            return compare;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package ddf.catalog.util.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.opengis.filter.sort.SortOrder;
+
+import ddf.catalog.data.Result;
+import ddf.catalog.data.impl.ResultImpl;
+
+public class SortedResultMergerTest {
+
+    @Test
+    public void testMergeKeepsBestResults() {
+        SortedResultMerger merger = new SortedResultMerger(
+                new RelevanceResultComparator(SortOrder.DESCENDING), 3);
+
+        merger.add(results(0.1, 0.9, 0.5));
+        merger.add(results(0.7, 0.2));
+        merger.add(results(0.8));
+
+        List<Result> merged = merger.drain();
+
+        assertEquals(3, merged.size());
+        assertEquals(0.9, merged.get(0).getRelevanceScore(), 0.0);
+        assertEquals(0.8, merged.get(1).getRelevanceScore(), 0.0);
+        assertEquals(0.7, merged.get(2).getRelevanceScore(), 0.0);
+        assertEquals(0, merger.size());
+    }
+
+    @Test
+    public void testMergeUnbounded() {
+        SortedResultMerger merger = new SortedResultMerger(
+                new RelevanceResultComparator(SortOrder.ASCENDING), 0);
+
+        merger.add(results(0.3, 0.1));
+        merger.add(results(0.2));
+
+        List<Result> merged = merger.drain();
+
+        assertEquals(3, merged.size());
+        assertEquals(0.1, merged.get(0).getRelevanceScore(), 0.0);
+        assertEquals(0.2, merged.get(1).getRelevanceScore(), 0.0);
+        assertEquals(0.3, merged.get(2).getRelevanceScore(), 0.0);
+    }
+
+    @Test
+    public void testMergeEqualResultsKeepAddedOrder() {
+        SortedResultMerger merger = new SortedResultMerger(
+                new RelevanceResultComparator(SortOrder.DESCENDING), 2);
+
+        List<Result> first = results(0.5);
+        List<Result> second = results(0.5);
+        List<Result> third = results(0.5);
+        merger.add(first);
+        merger.add(second);
+        merger.add(third);
+
+        List<Result> merged = merger.drain();
+
+        assertEquals(2, merged.size());
+        assertSame(first.get(0), merged.get(0));
+        assertSame(second.get(0), merged.get(1));
+    }
+
+    @Test
+    public void testMergeNullResults() {
+        SortedResultMerger merger = new SortedResultMerger(
+                new RelevanceResultComparator(SortOrder.DESCENDING), 10);
+
+        merger.add((List<Result>) null);
+
+        assertTrue(merger.drain().isEmpty());
+    }
+
+    private List<Result> results(Double... relevanceScores) {
+        List<Result> results = new ArrayList<>();
+        for (Double relevanceScore : Arrays.asList(relevanceScores)) {
+            ResultImpl result = new ResultImpl();
+            result.setRelevanceScore(relevanceScore);
+            results.add(result);
+        }
+        return results;
+    }
+}
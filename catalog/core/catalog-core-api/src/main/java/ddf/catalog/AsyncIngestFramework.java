@@ -0,0 +1,77 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package ddf.catalog;
+
+import java.util.concurrent.CompletableFuture;
+
+import ddf.catalog.operation.CreateRequest;
+import ddf.catalog.operation.CreateResponse;
+import ddf.catalog.operation.DeleteRequest;
+import ddf.catalog.operation.DeleteResponse;
+import ddf.catalog.operation.UpdateRequest;
+import ddf.catalog.operation.UpdateResponse;
+
+/**
+ * Asynchronous counterpart of the ingest operations of the {@link CatalogFramework}, for clients
+ * such as bulk ingest streams that do not need to wait for each request to be processed.
+ * <p>
+ * Requests go through the same {@link ddf.catalog.plugin.PreIngestPlugin}s,
+ * {@link ddf.catalog.source.CatalogProvider} and {@link ddf.catalog.plugin.PostIngestPlugin}s as
+ * the synchronous operations, with the following differences:
+ * <ul>
+ * <li/>Create requests submitted concurrently may be combined into a single call to the
+ * {@link ddf.catalog.source.CatalogProvider}.
+ * <li/>The returned future completes once the {@link ddf.catalog.source.CatalogProvider} has
+ * processed the request. The {@link ddf.catalog.plugin.PostIngestPlugin}s are invoked afterwards
+ * and their changes to the response are not reflected in the completed future.
+ * <li/>Requests in flight at the same time may reach the
+ * {@link ddf.catalog.source.CatalogProvider} in any order. Wait for the future of a request to
+ * complete before submitting a request that depends on it.
+ * </ul>
+ * Failures are reported by completing the future exceptionally with an
+ * {@link ddf.catalog.source.IngestException} or
+ * {@link ddf.catalog.source.SourceUnavailableException}.
+ */
+public interface AsyncIngestFramework {
+
+    /**
+     * Queues the creation of {@link ddf.catalog.data.Metacard}s in the
+     * {@link ddf.catalog.source.CatalogProvider}.
+     *
+     * @param createRequest
+     *            the {@link CreateRequest}
+     * @return a future completed with the {@link CreateResponse} for the request
+     */
+    public CompletableFuture<CreateResponse> createAsync(CreateRequest createRequest);
+
+    /**
+     * Queues the update of {@link ddf.catalog.data.Metacard}s in the
+     * {@link ddf.catalog.source.CatalogProvider}.
+     *
+     * @param updateRequest
+     *            the {@link UpdateRequest}
+     * @return a future completed with the {@link UpdateResponse} for the request
+     */
+    public CompletableFuture<UpdateResponse> updateAsync(UpdateRequest updateRequest);
+
+    /**
+     * Queues the deletion of {@link ddf.catalog.data.Metacard}s from the
+     * {@link ddf.catalog.source.CatalogProvider}.
+     *
+     * @param deleteRequest
+     *            the {@link DeleteRequest}
+     * @return a future completed with the {@link DeleteResponse} for the request
+     */
+    public CompletableFuture<DeleteResponse> deleteAsync(DeleteRequest deleteRequest);
+}
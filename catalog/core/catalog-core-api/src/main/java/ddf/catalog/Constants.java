@@ -128,6 +128,19 @@ public final class Constants {
 
     public static final String SUBSCRIPTION_KEY = "subscription";
 
+    /**
+     * Query request and response property holding the cursor mark of a catalog provider that can
+     * page through results with a cursor. A request with the mark {@code *} starts a cursor, and
+     * its response holds the mark of the next page. The start index of a cursor query is ignored.
+     */
+    public static final String QUERY_CURSOR_MARK = "cursorMark";
+
+    /**
+     * Create request property that, when {@code true}, lets the catalog provider leave the
+     * commit of the created metacards to a later request, e.g. while bulk loading.
+     */
+    public static final String DEFER_COMMIT = "deferCommit";
+
     /**
      * Constant for the String representation of the MIME type for a JPEG image
      */
@@ -0,0 +1,60 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package ddf.catalog.backup;
+
+import ddf.catalog.data.Metacard;
+
+/**
+ * A change to back up: either the latest version of a metacard, or the deletion of a metacard.
+ */
+public class BackupOperation {
+
+    private final String id;
+
+    private final Metacard metacard;
+
+    private BackupOperation(String id, Metacard metacard) {
+        this.id = id;
+        this.metacard = metacard;
+    }
+
+    /**
+     * @param metacard the created or updated metacard to back up
+     */
+    public static BackupOperation put(Metacard metacard) {
+        return new BackupOperation(metacard.getId(), metacard);
+    }
+
+    /**
+     * @param id the ID of the deleted metacard to remove from the backup
+     */
+    public static BackupOperation delete(String id) {
+        return new BackupOperation(id, null);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return the metacard to back up, or null if the metacard was deleted
+     */
+    public Metacard getMetacard() {
+        return metacard;
+    }
+
+    public boolean isDelete() {
+        return metacard == null;
+    }
+}
@@ -0,0 +1,580 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package ddf.catalog.backup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ddf.catalog.data.Metacard;
+import ddf.catalog.data.impl.MetacardImpl;
+
+/**
+ * Backs up metacards in rolling segment files.
+ * <p>
+ * Each write appends a batch to the current segment: a header with the IDs of the metacards put
+ * or deleted, followed by the put metacards, serialized and compressed together with gzip. The
+ * location of the latest version of each metacard is kept in memory, and is rebuilt from the batch
+ * headers when the store is opened. Once at least half the metacards of the oldest segment were
+ * replaced or deleted, the metacards still backed up in it are copied to the current segment and
+ * the oldest segment is deleted.
+ */
+public class BackupStore implements Closeable {
+
+    static final String SEGMENT_PREFIX = "segment-";
+
+    static final String SEGMENT_SUFFIX = ".backup";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BackupStore.class);
+
+    // The length and checksum of the header, then of the data, of a batch
+    private static final int BATCH_PREFIX_LENGTH = 16;
+
+    private static final int COPY_BATCH_SIZE = 500;
+
+    private final File directory;
+
+    private final long maxSegmentBytes;
+
+    private final Map<String, Location> index = new HashMap<>();
+
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+
+    private long writeSegment;
+
+    private FileChannel writeChannel;
+
+    private int openCursors;
+
+    /**
+     * Opens the backup in a directory, creating it if needed.
+     *
+     * @param directory       the directory of the segment files
+     * @param maxSegmentBytes the size after which a new segment is started
+     * @throws IOException if the backup cannot be read or created
+     */
+    public BackupStore(File directory, long maxSegmentBytes) throws IOException {
+        this.directory = directory;
+        this.maxSegmentBytes = maxSegmentBytes;
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create backup directory " + directory);
+        }
+
+        for (Long segment : listSegments()) {
+            scan(segment);
+        }
+        if (!segments.isEmpty()) {
+            writeSegment = segments.lastKey();
+            writeChannel = FileChannel
+                    .open(getSegmentFile(writeSegment).toPath(), StandardOpenOption.WRITE);
+        }
+
+        LOGGER.debug("Opened backup {} with {} metacards in {} segments", directory, index.size(),
+                segments.size());
+    }
+
+    /**
+     * Appends a batch of operations to the backup. The operations are applied in order, so the
+     * last operation on a metacard wins.
+     *
+     * @param operations the operations to back up
+     * @throws IOException if the batch could not be written, in which case none of its operations
+     *                     are backed up
+     */
+    public synchronized void write(List<BackupOperation> operations) throws IOException {
+        if (operations.isEmpty()) {
+            return;
+        }
+        append(operations);
+        compact();
+    }
+
+    /**
+     * @param id the ID of the metacard
+     * @return the latest backed up version of the metacard, or null if it is not backed up
+     * @throws IOException if the backup cannot be read
+     */
+    public synchronized Metacard read(String id) throws IOException {
+        Location location = index.get(id);
+        if (location == null) {
+            return null;
+        }
+
+        try (RandomAccessFile in = new RandomAccessFile(getSegmentFile(location.segment), "r")) {
+            in.seek(location.offset);
+            Batch batch = readHeader(in, location.segment);
+            if (batch == null) {
+                throw new IOException("Unable to read the backup of metacard " + id);
+            }
+            return getLiveMetacards(in, batch).get(id);
+        }
+    }
+
+    /**
+     * Opens a cursor over the metacards backed up so far. Segments are not compacted while a
+     * cursor is open, and metacards backed up after the cursor was opened are not returned.
+     *
+     * @return the cursor, which must be closed
+     * @throws IOException if the backup cannot be read
+     */
+    public synchronized Cursor openCursor() throws IOException {
+        openCursors++;
+        return new Cursor(segments.isEmpty() ? 0 : segments.firstKey(), writeSegment,
+                writeChannel == null ? 0 : writeChannel.size());
+    }
+
+    /**
+     * @return the number of metacards backed up
+     */
+    public synchronized int size() {
+        return index.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (writeChannel != null) {
+            writeChannel.close();
+            writeChannel = null;
+        }
+    }
+
+    File getSegmentFile(long segment) {
+        return new File(directory, String.format("%s%019d%s", SEGMENT_PREFIX, segment,
+                SEGMENT_SUFFIX));
+    }
+
+    private void append(List<BackupOperation> operations) throws IOException {
+        if (writeChannel == null || writeChannel.size() >= maxSegmentBytes) {
+            roll();
+        }
+
+        byte[] header = encodeHeader(operations);
+        byte[] data = encodeData(operations);
+        ByteBuffer buffer = ByteBuffer.allocate(BATCH_PREFIX_LENGTH + header.length + data.length);
+        buffer.putInt(header.length).putInt(checksum(header)).putInt(data.length)
+                .putInt(checksum(data)).put(header).put(data);
+        buffer.flip();
+
+        long offset = writeChannel.size();
+        try {
+            writeChannel.position(offset);
+            while (buffer.hasRemaining()) {
+                writeChannel.write(buffer);
+            }
+            writeChannel.force(false);
+        } catch (IOException e) {
+            // A partial batch would hide the batches appended after it
+            writeChannel.truncate(offset);
+            throw e;
+        }
+
+        Location location = new Location(writeSegment, offset);
+        for (BackupOperation operation : operations) {
+            apply(operation.getId(), writeSegment, operation.isDelete() ? null : location);
+        }
+    }
+
+    private void roll() throws IOException {
+        close();
+        writeSegment = segments.isEmpty() ? 1 : segments.lastKey() + 1;
+        writeChannel = FileChannel.open(getSegmentFile(writeSegment).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        segments.put(writeSegment, new Segment());
+        LOGGER.debug("Started backup segment {}", writeSegment);
+    }
+
+    /**
+     * Records an operation in the index.
+     *
+     * @param location the batch holding the metacard, or null if it was deleted
+     */
+    private void apply(String id, long segment, Location location) {
+        Location previous = location == null ? index.remove(id) : index.put(id, location);
+        if (previous != null) {
+            segments.get(previous.segment).live--;
+        }
+        Segment current = segments.get(segment);
+        current.records++;
+        if (location != null) {
+            current.live++;
+        }
+    }
+
+    /**
+     * Deletes the oldest segments once at least half their metacards were replaced or deleted,
+     * after copying the metacards still backed up in them to the current segment. Only the oldest
+     * segment is deleted, since its deletes no longer hide anything.
+     */
+    private void compact() throws IOException {
+        while (openCursors == 0 && segments.size() > 1) {
+            Map.Entry<Long, Segment> oldest = segments.firstEntry();
+            Segment segment = oldest.getValue();
+            if (segment.live > 0 && segment.live * 2 > segment.records) {
+                return;
+            }
+            if (segment.live > 0) {
+                copyLiveMetacards(oldest.getKey());
+                if (segment.live > 0) {
+                    LOGGER.warn("Unable to compact backup segment {}", oldest.getKey());
+                    return;
+                }
+            }
+
+            if (!getSegmentFile(oldest.getKey()).delete()) {
+                LOGGER.warn("Unable to delete backup segment {}", oldest.getKey());
+                return;
+            }
+            segments.remove(oldest.getKey());
+            LOGGER.debug("Deleted backup segment {}", oldest.getKey());
+        }
+    }
+
+    private void copyLiveMetacards(long segment) throws IOException {
+        LOGGER.debug("Copying the metacards of backup segment {}", segment);
+        try (RandomAccessFile in = new RandomAccessFile(getSegmentFile(segment), "r")) {
+            List<BackupOperation> copies = new ArrayList<>(COPY_BATCH_SIZE);
+            Batch batch;
+            while ((batch = readHeader(in, segment)) != null) {
+                for (Metacard metacard : getLiveMetacards(in, batch).values()) {
+                    copies.add(BackupOperation.put(metacard));
+                    if (copies.size() == COPY_BATCH_SIZE) {
+                        append(copies);
+                        copies.clear();
+                    }
+                }
+                in.seek(batch.end);
+            }
+            if (!copies.isEmpty()) {
+                append(copies);
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the index from the batch headers of a segment, and drops the incomplete batch a
+     * crash could have left at its end.
+     */
+    private void scan(long segment) throws IOException {
+        segments.put(segment, new Segment());
+        try (RandomAccessFile in = new RandomAccessFile(getSegmentFile(segment), "rw")) {
+            long end = 0;
+            Batch batch;
+            while ((batch = readHeader(in, segment)) != null) {
+                for (Record record : batch.records) {
+                    apply(record.id, segment, record.delete ? null : batch.location);
+                }
+                end = batch.end;
+                in.seek(end);
+            }
+            if (end < in.length()) {
+                LOGGER.warn("Dropping {} bytes of incomplete batches from backup segment {}",
+                        in.length() - end, getSegmentFile(segment));
+                in.setLength(end);
+            }
+        }
+    }
+
+    /**
+     * Reads the header of the batch at the current position of the file, leaving the file at the
+     * start of the data of the batch.
+     *
+     * @return the batch, or null at the end of the file or of its complete batches
+     */
+    private Batch readHeader(RandomAccessFile in, long segment) throws IOException {
+        long offset = in.getFilePointer();
+        if (in.length() - offset < BATCH_PREFIX_LENGTH) {
+            return null;
+        }
+        int headerLength = in.readInt();
+        int headerChecksum = in.readInt();
+        int dataLength = in.readInt();
+        int dataChecksum = in.readInt();
+        long end = offset + BATCH_PREFIX_LENGTH + (long) headerLength + dataLength;
+        if (headerLength < 0 || dataLength < 0 || end > in.length()) {
+            return null;
+        }
+
+        byte[] header = new byte[headerLength];
+        in.readFully(header);
+        if (checksum(header) != headerChecksum) {
+            return null;
+        }
+        return new Batch(new Location(segment, offset), end, dataLength, dataChecksum,
+                decodeHeader(header));
+    }
+
+    /**
+     * Reads the data of a batch, the file being at the start of the data.
+     *
+     * @return the metacards of the batch that are the latest backed up version, by ID
+     */
+    private Map<String, Metacard> getLiveMetacards(RandomAccessFile in, Batch batch)
+            throws IOException {
+        boolean live = false;
+        for (Record record : batch.records) {
+            live |= !record.delete && batch.location.equals(index.get(record.id));
+        }
+        if (!live) {
+            return Collections.emptyMap();
+        }
+
+        byte[] data = new byte[batch.dataLength];
+        in.readFully(data);
+        if (checksum(data) != batch.dataChecksum) {
+            throw new IOException("Backup batch " + batch.location.offset + " of segment "
+                    + batch.location.segment + " is corrupted");
+        }
+
+        Map<String, Metacard> metacards = new LinkedHashMap<>();
+        try (ObjectInputStream objects = new ObjectInputStream(
+                new GZIPInputStream(new ByteArrayInputStream(data)))) {
+            for (Record record : batch.records) {
+                if (!record.delete) {
+                    Metacard metacard = (Metacard) objects.readObject();
+                    if (batch.location.equals(index.get(record.id))) {
+                        metacards.put(record.id, metacard);
+                    }
+                }
+            }
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Unable to deserialize backed up metacards", e);
+        }
+        return metacards;
+    }
+
+    private byte[] encodeHeader(List<BackupOperation> operations) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(operations.size());
+            for (BackupOperation operation : operations) {
+                out.writeBoolean(operation.isDelete());
+                out.writeUTF(operation.getId());
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private List<Record> decodeHeader(byte[] header) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(header));
+        int count = in.readInt();
+        List<Record> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            boolean delete = in.readBoolean();
+            records.add(new Record(in.readUTF(), delete));
+        }
+        return records;
+    }
+
+    /**
+     * Serializes the put metacards in one stream, so their classes are only described once.
+     */
+    private byte[] encodeData(List<BackupOperation> operations) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(new GZIPOutputStream(bytes))) {
+            for (BackupOperation operation : operations) {
+                if (!operation.isDelete()) {
+                    out.writeObject(new MetacardImpl(operation.getMetacard()));
+                }
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private int checksum(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return (int) crc.getValue();
+    }
+
+    private List<Long> listSegments() {
+        List<Long> list = new ArrayList<>();
+        String[] names = directory.list(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+            }
+        });
+        if (names != null) {
+            for (String name : names) {
+                try {
+                    list.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                            name.length() - SEGMENT_SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    LOGGER.debug("Ignoring {} in backup directory", name, e);
+                }
+            }
+        }
+        Collections.sort(list);
+        return list;
+    }
+
+    /**
+     * Reads the metacards backed up when it was opened, batch by batch and in the order they were
+     * backed up, skipping the metacards that were replaced or deleted since.
+     */
+    public final class Cursor implements Closeable {
+
+        private final long endSegment;
+
+        private final long endOffset;
+
+        private long segment;
+
+        private long offset;
+
+        private boolean closed;
+
+        private Cursor(long segment, long endSegment, long endOffset) {
+            this.segment = segment;
+            this.endSegment = endSegment;
+            this.endOffset = endOffset;
+        }
+
+        /**
+         * @return the next metacards, or null once all the metacards were read
+         * @throws IOException if the backup cannot be read
+         */
+        public List<Metacard> next() throws IOException {
+            synchronized (BackupStore.this) {
+                while (!closed && (segment < endSegment
+                        || segment == endSegment && offset < endOffset)) {
+                    File segmentFile = getSegmentFile(segment);
+                    Batch batch = null;
+                    if (segments.containsKey(segment)) {
+                        try (RandomAccessFile in = new RandomAccessFile(segmentFile, "r")) {
+                            in.seek(offset);
+                            batch = readHeader(in, segment);
+                            if (batch != null) {
+                                offset = batch.end;
+                                Map<String, Metacard> metacards = getLiveMetacards(in, batch);
+                                if (!metacards.isEmpty()) {
+                                    return new ArrayList<>(metacards.values());
+                                }
+                            }
+                        }
+                    }
+
+                    if (batch == null) {
+                        Long next = segments.higherKey(segment);
+                        segment = next == null ? endSegment + 1 : next;
+                        offset = 0;
+                    }
+                }
+                return null;
+            }
+        }
+
+        @Override
+        public void close() {
+            synchronized (BackupStore.this) {
+                if (!closed) {
+                    closed = true;
+                    openCursors--;
+                }
+            }
+        }
+    }
+
+    private static final class Location {
+
+        private final long segment;
+
+        private final long offset;
+
+        Location(long segment, long offset) {
+            this.segment = segment;
+            this.offset = offset;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Location)) {
+                return false;
+            }
+            Location other = (Location) obj;
+            return segment == other.segment && offset == other.offset;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (segment * 31 + offset);
+        }
+    }
+
+    private static final class Batch {
+
+        private final Location location;
+
+        private final long end;
+
+        private final int dataLength;
+
+        private final int dataChecksum;
+
+        private final List<Record> records;
+
+        Batch(Location location, long end, int dataLength, int dataChecksum,
+                List<Record> records) {
+            this.location = location;
+            this.end = end;
+            this.dataLength = dataLength;
+            this.dataChecksum = dataChecksum;
+            this.records = records;
+        }
+    }
+
+    private static final class Record {
+
+        private final String id;
+
+        private final boolean delete;
+
+        Record(String id, boolean delete) {
+            this.id = id;
+            this.delete = delete;
+        }
+    }
+
+    private static final class Segment {
+
+        private int records;
+
+        private int live;
+    }
+}
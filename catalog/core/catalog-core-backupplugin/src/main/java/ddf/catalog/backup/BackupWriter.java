@@ -0,0 +1,197 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package ddf.catalog.backup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes the operations to back up to a {@link BackupStore} in batches, on a background thread,
+ * so that ingest does not wait on the file system. Operations are written in the order they were
+ * added; when the writer falls behind by a full queue, adding operations waits for room.
+ */
+public class BackupWriter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BackupWriter.class);
+
+    private static final long POLL_INTERVAL = 500;
+
+    private static final long SHUTDOWN_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
+
+    private final BackupStore store;
+
+    private final int batchSize;
+
+    private final BlockingQueue<BackupOperation> queue;
+
+    private final Thread thread;
+
+    // Operations are added under the read lock and the writer is closed under the write lock, so
+    // no operation is queued after the writer thread saw it was closed
+    private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+
+    private volatile boolean running = true;
+
+    private final AtomicLong addedOperations = new AtomicLong();
+
+    // Guarded by this writer, which is notified as operations are written
+    private long writtenOperations;
+
+    private long failedOperations;
+
+    /**
+     * @param store     the store to write to
+     * @param batchSize the maximum number of operations written at a time
+     * @param capacity  the number of operations that can wait to be written
+     */
+    public BackupWriter(BackupStore store, int batchSize, int capacity) {
+        this.store = store;
+        this.batchSize = batchSize;
+        this.queue = new LinkedBlockingQueue<>(capacity);
+        this.thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeBatches();
+            }
+        }, "catalog-backup-writer");
+        thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    /**
+     * Queues operations to back up.
+     *
+     * @param operations the operations, in order
+     * @throws InterruptedException if interrupted while waiting for room in the queue
+     */
+    public void add(List<BackupOperation> operations) throws InterruptedException {
+        closeLock.readLock().lock();
+        try {
+            if (!running) {
+                throw new IllegalStateException("Backup writer is closed");
+            }
+            for (BackupOperation operation : operations) {
+                queue.put(operation);
+                addedOperations.incrementAndGet();
+            }
+        } finally {
+            closeLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Waits for the operations added so far to be written, or to fail to be written.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void flush() throws InterruptedException {
+        long added = addedOperations.get();
+        synchronized (this) {
+            while (writtenOperations + failedOperations < added) {
+                wait(POLL_INTERVAL);
+            }
+        }
+    }
+
+    /**
+     * @return the number of operations that could not be written to the store
+     */
+    public synchronized long getFailedOperations() {
+        return failedOperations;
+    }
+
+    /**
+     * Writes the queued operations and stops the writer. The store is not closed.
+     *
+     * @return true if the writer stopped, false if it is still writing to the store
+     */
+    public boolean close() {
+        closeLock.writeLock().lock();
+        try {
+            running = false;
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+
+        try {
+            thread.join(SHUTDOWN_TIMEOUT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (thread.isAlive()) {
+            LOGGER.warn("Backup writer did not stop, {} operations were not backed up yet",
+                    queue.size());
+            return false;
+        }
+        // Operations left behind if the writer thread was interrupted
+        while (!queue.isEmpty()) {
+            write(nextBatch(queue.poll()));
+        }
+        return true;
+    }
+
+    private void writeBatches() {
+        try {
+            while (running || !queue.isEmpty()) {
+                BackupOperation first = queue.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    write(nextBatch(first));
+                }
+            }
+        } catch (InterruptedException e) {
+            LOGGER.debug("Backup writer interrupted", e);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private List<BackupOperation> nextBatch(BackupOperation first) {
+        List<BackupOperation> batch = new ArrayList<>(batchSize);
+        batch.add(first);
+        queue.drainTo(batch, batchSize - 1);
+        return batch;
+    }
+
+    private void write(List<BackupOperation> batch) {
+        boolean written = false;
+        try {
+            store.write(batch);
+            written = true;
+            LOGGER.debug("Backed up {} metacard operations", batch.size());
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("Unable to back up {} metacard operations", batch.size(), e);
+        } finally {
+            synchronized (this) {
+                if (written) {
+                    writtenOperations += batch.size();
+                } else {
+                    failedOperations += batch.size();
+                }
+                notifyAll();
+            }
+        }
+    }
+}
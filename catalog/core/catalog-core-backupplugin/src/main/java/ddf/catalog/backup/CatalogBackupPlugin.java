@@ -14,21 +14,24 @@
 package ddf.catalog.backup;
 
 import java.io.File;
-import java.io.FileOutputStream;
+import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.ObjectOutputStream;
+import java.io.ObjectInputStream;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import ddf.catalog.data.Metacard;
-import ddf.catalog.data.impl.MetacardImpl;
 import ddf.catalog.operation.CreateResponse;
 import ddf.catalog.operation.DeleteResponse;
+import ddf.catalog.operation.Request;
 import ddf.catalog.operation.Update;
 import ddf.catalog.operation.UpdateResponse;
 import ddf.catalog.plugin.PluginExecutionException;
@@ -39,7 +42,14 @@
  * PostIngestPlugin, so it processes CreateResponses, DeleteResponses, and
  * UpdateResponses.
  * <p/>
- * The root backup directory and subdirectory levels can be configured in the
+ * The metacards are queued and written by a {@link BackupWriter}, in batches, to the rolling
+ * segment files of a {@link BackupStore} in the root backup directory. The backed up metacards can
+ * be restored with the backup:restore command.
+ * <p/>
+ * Metacards backed up by earlier versions, each serialized to its own file, are imported into the
+ * segment files in the background the first time the backup is opened.
+ * <p/>
+ * The root backup directory, batch size and segment size can be configured in the
  * Backup Post-Ingest Plugin section in the admin console.
  * <p/>
  * This feature can be installed/uninstalled with the following commands:
@@ -50,20 +60,69 @@
 
 public class CatalogBackupPlugin implements PostIngestPlugin {
 
+    /**
+     * Request property that, when {@code true}, skips the backup of the metacards of the request,
+     * e.g. because they are being restored from the backup.
+     */
+    public static final String SKIP_BACKUP = "ddf.catalog.backup.skip";
+
     private static final Logger LOGGER = LoggerFactory.getLogger(CatalogBackupPlugin.class);
 
-    private static final String TEMP_FILE_EXTENSION = ".tmp";
+    private static final long BYTES_PER_MEGABYTE = 1024 * 1024;
 
-    private File rootBackupDir;
+    private static final int QUEUE_CAPACITY = 10000;
+
+    private static final String LEGACY_TEMP_FILE_EXTENSION = ".tmp";
 
-    private int subDirLevels;
+    // Earlier versions spread the metacard files over subdirectories named after two characters
+    // of their IDs
+    private static final int LEGACY_SUBDIR_NAME_LENGTH = 2;
+
+    /**
+     * File created in the root backup directory once the metacards backed up by earlier versions
+     * have been imported, so that they are only imported once.
+     */
+    static final String LEGACY_IMPORTED_MARKER = ".legacy-imported";
+
+    private static final long LEGACY_IMPORT_SHUTDOWN_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
+
+    private File rootBackupDir;
 
     private boolean enableBackupPlugin = true;
 
-    public CatalogBackupPlugin() {
-        subDirLevels = 0;
+    private int batchSize = 500;
+
+    private int maxSegmentSize = 64;
+
+    private boolean initialized;
+
+    private volatile BackupStore store;
+
+    private volatile BackupWriter writer;
+
+    private Thread legacyImport;
+
+    private final Object legacyImportLock = new Object();
+
+    // IDs of the metacards backed up while the legacy import is running, which it must not
+    // overwrite with their earlier versions. Guarded by legacyImportLock, null when no import runs.
+    private volatile Set<String> backedUpIds;
+
+    /**
+     * Opens the backup and starts writing to it.
+     */
+    public synchronized void init() {
+        initialized = true;
+        open();
     }
 
+    /**
+     * Writes the queued metacards and closes the backup.
+     */
+    public synchronized void destroy() {
+        initialized = false;
+        close();
+    }
 
     /**
      * Backs up created metacards to the file system backup.
@@ -74,30 +133,14 @@ public CatalogBackupPlugin() {
      */
     @Override
     public CreateResponse process(CreateResponse input) throws PluginExecutionException {
-        if (enableBackupPlugin) {
+        if (enableBackupPlugin && !isSkipped(input.getRequest())) {
             LOGGER.debug("Performing backup of metacards in CreateResponse.");
 
-            if (rootBackupDir == null) {
-                throw new PluginExecutionException("No root backup directory configured.");
-            }
-
-            List<String> errors = new ArrayList<String>();
-
-            List<Metacard> metacards = input.getCreatedMetacards();
-
-            for (Metacard metacard : metacards) {
-                try {
-                    backupMetacard(metacard);
-                } catch (IOException e) {
-                    errors.add(metacard.getId());
-                }
-            }
-
-            if (errors.size() > 0) {
-                throw new PluginExecutionException(
-                        getExceptionMessage(CreateResponse.class.getSimpleName(), null, errors,
-                                OPERATION.CREATE));
+            List<BackupOperation> operations = new ArrayList<>();
+            for (Metacard metacard : input.getCreatedMetacards()) {
+                operations.add(BackupOperation.put(metacard));
             }
+            backup(operations);
         }
         return input;
     }
@@ -111,47 +154,19 @@ public CreateResponse process(CreateResponse input) throws PluginExecutionExcept
      */
     @Override
     public UpdateResponse process(UpdateResponse input) throws PluginExecutionException {
-        if (enableBackupPlugin) {
+        if (enableBackupPlugin && !isSkipped(input.getRequest())) {
             LOGGER.debug("Updating metacards contained in UpdateResponse in backup.");
 
-            if (rootBackupDir == null) {
-                throw new PluginExecutionException("No root backup directory configured.");
-            }
-
-            List<String> deleteErrors = new ArrayList<String>();
-            List<String> backupErrors = new ArrayList<String>();
-
-            List<Update> updates = input.getUpdatedMetacards();
-
-            for (Update update : updates) {
-                try {
-                    deleteMetacard(update.getOldMetacard());
-                } catch (IOException e) {
-                    deleteErrors.add(update.getOldMetacard().getId());
-                }
-
-                try {
-                    backupMetacard(update.getNewMetacard());
-                } catch (IOException e) {
-                    backupErrors.add(update.getNewMetacard().getId());
+            List<BackupOperation> operations = new ArrayList<>();
+            for (Update update : input.getUpdatedMetacards()) {
+                Metacard oldMetacard = update.getOldMetacard();
+                if (oldMetacard != null && !oldMetacard.getId()
+                        .equals(update.getNewMetacard().getId())) {
+                    operations.add(BackupOperation.delete(oldMetacard.getId()));
                 }
+                operations.add(BackupOperation.put(update.getNewMetacard()));
             }
-
-            String exceptionMessage = null;
-
-            if (deleteErrors.size() > 0) {
-                exceptionMessage = getExceptionMessage(UpdateResponse.class.getSimpleName(),
-                        exceptionMessage, deleteErrors, OPERATION.DELETE);
-            }
-
-            if (backupErrors.size() > 0) {
-                exceptionMessage = getExceptionMessage(UpdateResponse.class.getSimpleName(),
-                        exceptionMessage, backupErrors, OPERATION.CREATE);
-            }
-
-            if (deleteErrors.size() > 0 || backupErrors.size() > 0) {
-                throw new PluginExecutionException(exceptionMessage);
-            }
+            backup(operations);
         }
         return input;
     }
@@ -165,30 +180,14 @@ public UpdateResponse process(UpdateResponse input) throws PluginExecutionExcept
      */
     @Override
     public DeleteResponse process(DeleteResponse input) throws PluginExecutionException {
-        if (enableBackupPlugin) {
+        if (enableBackupPlugin && !isSkipped(input.getRequest())) {
             LOGGER.debug("Deleting metacards contained in DeleteResponse from backup.");
 
-            if (rootBackupDir == null) {
-                throw new PluginExecutionException("No root backup directory configured.");
-            }
-
-            List<String> errors = new ArrayList<String>();
-
-            List<Metacard> metacards = input.getDeletedMetacards();
-
-            for (Metacard metacard : metacards) {
-                try {
-                    deleteMetacard(metacard);
-                } catch (IOException e) {
-                    errors.add(metacard.getId());
-                }
-            }
-
-            if (errors.size() > 0) {
-                throw new PluginExecutionException(
-                        getExceptionMessage(DeleteResponse.class.getSimpleName(), null, errors,
-                                OPERATION.DELETE));
+            List<BackupOperation> operations = new ArrayList<>();
+            for (Metacard metacard : input.getDeletedMetacards()) {
+                operations.add(BackupOperation.delete(metacard.getId()));
             }
+            backup(operations);
         }
         return input;
     }
@@ -202,7 +201,7 @@ public void setEnableBackupPlugin(boolean enablePlugin) {
      *
      * @param dir absolute path for the root file system backup directory.
      */
-    public void setRootBackupDir(String dir) {
+    public synchronized void setRootBackupDir(String dir) {
         if (StringUtils.isBlank(dir)) {
             LOGGER.error("The root backup directory is blank.");
             return;
@@ -210,136 +209,298 @@ public void setRootBackupDir(String dir) {
 
         this.rootBackupDir = new File(dir);
         LOGGER.debug("Set root backup directory to: {}", this.rootBackupDir.toString());
+        reopen();
     }
 
     /**
-     * Sets the number of subdirectory levels to create. Two characters from
-     * each metacard ID will be used to name each subdirectory level.
+     * Sets the maximum number of metacards written to the backup at a time.
      *
-     * @param levels number of subdirectory levels to create
+     * @param batchSize the batch size, at least 1
      */
-    public void setSubDirLevels(int levels) {
-        this.subDirLevels = levels;
-        LOGGER.debug("Set subdirectory levels to: {}", this.subDirLevels);
-    }
-
-    private void backupMetacard(Metacard metacard) throws IOException {
-
-        // Write metacard to a temp file. When write is complete, rename (remove
-        // temp extension).
-        File tempFile = getTempFile(metacard);
-
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(tempFile))) {
-            LOGGER.debug("Writing temp metacard [{}] to [{}].", tempFile.getName(),
-                    tempFile.getParent());
-            oos.writeObject(new MetacardImpl(metacard));
+    public synchronized void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            LOGGER.error("The backup batch size must be at least 1, not {}.", batchSize);
+            return;
         }
 
-        removeTempExtension(tempFile);
+        this.batchSize = batchSize;
+        LOGGER.debug("Set backup batch size to: {}", this.batchSize);
+        reopen();
     }
 
     /**
-     * Deletes metacard from file system backup.
+     * Sets the size after which a new backup segment file is started.
      *
-     * @param metacard the metacard to be deleted.
-     * @throws IOException
+     * @param maxSegmentSize the size of a segment file, in megabytes, at least 1
      */
-    private void deleteMetacard(Metacard metacard) throws IOException {
-        File metacardToDelete = getBackupFile(metacard);
-        FileUtils.forceDelete(metacardToDelete);
+    public synchronized void setMaxSegmentSize(int maxSegmentSize) {
+        if (maxSegmentSize < 1) {
+            LOGGER.error("The backup segment size must be at least 1 MB, not {}.",
+                    maxSegmentSize);
+            return;
+        }
+
+        this.maxSegmentSize = maxSegmentSize;
+        LOGGER.debug("Set backup segment size to: {} MB", this.maxSegmentSize);
+        reopen();
     }
 
     /**
-     * While metacards are being written to the file system for backup, they are
-     * written to temp files. Each temp file is renamed when the write is
-     * complete. This makes it easy to find and remove failed files.
-     *
-     * @param metacard the metacard to create a temp file for.
-     * @return
-     * @throws IOException
+     * @return the backup, or null if it is not open
      */
-    private File getTempFile(Metacard metacard) throws IOException {
-        return new File(getBackupFile(metacard).getAbsolutePath() + TEMP_FILE_EXTENSION);
+    public BackupStore getStore() {
+        return store;
     }
 
-    private File getBackupFile(Metacard metacard) throws IOException {
+    private void backup(List<BackupOperation> operations) throws PluginExecutionException {
+        BackupWriter currentWriter = writer;
+        if (currentWriter == null) {
+            throw new PluginExecutionException(
+                    "No root backup directory configured, or the backup could not be opened.");
+        }
+
+        try {
+            if (backedUpIds == null) {
+                currentWriter.add(operations);
+            } else {
+                synchronized (legacyImportLock) {
+                    if (backedUpIds != null) {
+                        for (BackupOperation operation : operations) {
+                            backedUpIds.add(operation.getId());
+                        }
+                    }
+                    currentWriter.add(operations);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PluginExecutionException("Interrupted while queuing metacards for backup.",
+                    e);
+        } catch (IllegalStateException e) {
+            throw new PluginExecutionException("The backup is being reconfigured.", e);
+        }
+    }
 
-        String metacardId = metacard.getId();
-        File parent = rootBackupDir;
-        int levels = this.subDirLevels;
+    private boolean isSkipped(Request request) {
+        return request != null && Boolean.TRUE.equals(request.getPropertyValue(SKIP_BACKUP));
+    }
 
-        if (this.subDirLevels < 0) {
-            levels = 0;
-        } else if (metacardId.length() == 1 || metacardId.length() < this.subDirLevels * 2) {
-            levels = (int) Math.floor(metacardId.length() / 2);
+    private void reopen() {
+        if (initialized) {
+            close();
+            open();
         }
+    }
 
-        for (int i = 0; i < levels; i++) {
-            parent = new File(parent, metacardId.substring(i * 2, i * 2 + 2));
-            FileUtils.forceMkdir(parent);
+    private void open() {
+        if (rootBackupDir == null) {
+            LOGGER.error("No root backup directory configured.");
+            return;
         }
 
-        LOGGER.debug("Backup directory for metacard  [{}] is [{}].", metacard.getId(),
-                parent.getAbsolutePath());
-        return new File(parent, metacardId);
+        try {
+            BackupStore newStore = new BackupStore(rootBackupDir,
+                    maxSegmentSize * BYTES_PER_MEGABYTE);
+            BackupWriter newWriter = new BackupWriter(newStore, batchSize, QUEUE_CAPACITY);
+            newWriter.start();
+            Set<String> importBackedUpIds = null;
+            if (!new File(rootBackupDir, LEGACY_IMPORTED_MARKER).exists()) {
+                importBackedUpIds = new HashSet<>();
+                backedUpIds = importBackedUpIds;
+            }
+            store = newStore;
+            writer = newWriter;
+            if (importBackedUpIds != null) {
+                startLegacyImport(newWriter, importBackedUpIds);
+            }
+        } catch (IOException e) {
+            LOGGER.error("Unable to open the backup in {}.", rootBackupDir, e);
+        }
     }
 
-    /**
-     * Removed the temp file extension off of the backed up metacard.
-     *
-     * @param source the backed up metacard file in which the temp file extension
-     *               is to be removed.
-     * @throws IOException
-     */
-    private void removeTempExtension(File source) throws IOException {
-        LOGGER.debug("Removing {} file extension.", TEMP_FILE_EXTENSION);
-        File destination = new File(
-                StringUtils.removeEnd(source.getAbsolutePath(), TEMP_FILE_EXTENSION));
-        FileUtils.moveFile(source, destination);
-        LOGGER.debug("Moved {} to {}.", source.getAbsolutePath(), destination.getAbsolutePath());
+    private void startLegacyImport(final BackupWriter importWriter,
+            final Set<String> importBackedUpIds) {
+        final File dir = rootBackupDir;
+        final int importBatchSize = batchSize;
+        legacyImport = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    importLegacyBackup(importWriter, importBackedUpIds, dir, importBatchSize);
+                } finally {
+                    synchronized (legacyImportLock) {
+                        if (backedUpIds == importBackedUpIds) {
+                            backedUpIds = null;
+                        }
+                    }
+                }
+            }
+        }, "catalog-backup-legacy-import");
+        legacyImport.setDaemon(true);
+        legacyImport.start();
     }
 
     /**
-     * Gets an exception message
-     *
-     * @param previousExceptionMessage the previous exception message that we wish to append to
-     * @param metacardsIdsInError      the metacard IDs that processed in error
-     * @param operation                the operation being performed
-     * @return the updated exception message
+     * Imports the metacards backed up to their own files by earlier versions through the writer,
+     * skipping the ones backed up since the backup was opened, and deletes the files once their
+     * metacards are in the store. Files that cannot be read are left as they are. The import is
+     * recorded as done unless it was interrupted or failed, in which case it is retried the next
+     * time the backup is opened.
      */
-    private String getExceptionMessage(String responseType, String previousExceptionMessage,
-            List<String> metacardsIdsInError, OPERATION operation) {
-        StringBuilder builder = new StringBuilder();
+    private void importLegacyBackup(BackupWriter importWriter, Set<String> importBackedUpIds,
+            File dir, int importBatchSize) {
+        List<File> files = new ArrayList<>();
+        findLegacyFiles(dir, files);
+        if (!files.isEmpty()) {
+            LOGGER.info("Importing {} metacards backed up by an earlier version into {}.",
+                    files.size(), dir);
+        }
+
+        long failedBefore = importWriter.getFailedOperations();
+        List<File> importedFiles = new ArrayList<>(files.size());
+        List<BackupOperation> batch = new ArrayList<>(importBatchSize);
+        try {
+            for (File file : files) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedException();
+                }
+                Metacard metacard = readLegacyFile(file);
+                if (metacard != null) {
+                    importedFiles.add(file);
+                    batch.add(BackupOperation.put(metacard));
+                }
+                if (batch.size() == importBatchSize) {
+                    addLegacyBatch(importWriter, importBackedUpIds, batch);
+                }
+            }
+            addLegacyBatch(importWriter, importBackedUpIds, batch);
+            importWriter.flush();
+        } catch (InterruptedException e) {
+            LOGGER.info("Stopped importing the backup of an earlier version in {}, it will be "
+                    + "resumed the next time the backup is opened.", dir);
+            return;
+        } catch (IllegalStateException e) {
+            LOGGER.info("Stopped importing the backup of an earlier version in {}, since the "
+                    + "backup was closed.", dir, e);
+            return;
+        }
+
+        if (importWriter.getFailedOperations() != failedBefore) {
+            LOGGER.error("Unable to import the backup of an earlier version in {}, it will be "
+                    + "retried the next time the backup is opened.", dir);
+            return;
+        }
+
+        for (File file : importedFiles) {
+            if (!file.delete()) {
+                LOGGER.warn("Unable to delete imported backup file {}.", file);
+            }
+        }
+        deleteEmptyLegacyDirectories(dir);
+        try {
+            if (!new File(dir, LEGACY_IMPORTED_MARKER).createNewFile()) {
+                LOGGER.debug("Backup of an earlier version in {} was already imported.", dir);
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Unable to record the import of the backup of an earlier version in {}.",
+                    dir, e);
+        }
+        if (!files.isEmpty()) {
+            LOGGER.info("Imported {} of {} metacards backed up by an earlier version.",
+                    importedFiles.size(), files.size());
+        }
+    }
 
-        if (StringUtils.isNotBlank(previousExceptionMessage)) {
-            builder.append(previousExceptionMessage);
-            builder.append(" ");
+    private void addLegacyBatch(BackupWriter importWriter, Set<String> importBackedUpIds,
+            List<BackupOperation> batch) throws InterruptedException {
+        synchronized (legacyImportLock) {
+            // Metacards backed up since the backup was opened are newer than their legacy files
+            for (Iterator<BackupOperation> iterator = batch.iterator(); iterator.hasNext(); ) {
+                if (importBackedUpIds.contains(iterator.next().getId())) {
+                    iterator.remove();
+                }
+            }
+            importWriter.add(batch);
+        }
+        batch.clear();
+    }
+
+    private void findLegacyFiles(File dir, List<File> files) {
+        File[] children = dir.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File child : children) {
+            String name = child.getName();
+            if (child.isDirectory()) {
+                if (name.length() == LEGACY_SUBDIR_NAME_LENGTH) {
+                    findLegacyFiles(child, files);
+                }
+            } else if (name.endsWith(LEGACY_TEMP_FILE_EXTENSION)) {
+                LOGGER.debug("Ignoring incomplete backup file {}.", child);
+            } else if (!name.startsWith(BackupStore.SEGMENT_PREFIX) || !name
+                    .endsWith(BackupStore.SEGMENT_SUFFIX)) {
+                files.add(child);
+            }
         }
+    }
 
-        builder.append("Error processing ");
-        builder.append(responseType);
-        builder.append(". ");
-
-        switch (operation) {
-        case CREATE:
-            builder.append("Unable to backup metacard(s) [");
-            builder.append(StringUtils.join(metacardsIdsInError, ","));
-            builder.append("]. ");
-            break;
-        case DELETE:
-            builder.append("Unable to delete metacard(s) [");
-            builder.append(StringUtils.join(metacardsIdsInError, ","));
-            builder.append("] from backup. ");
-            break;
-        default:
-            LOGGER.debug("No specific error message details for operation {}", operation);
+    private Metacard readLegacyFile(File file) {
+        try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(file))) {
+            Object metacard = in.readObject();
+            if (metacard instanceof Metacard) {
+                return (Metacard) metacard;
+            }
+            LOGGER.warn("Ignoring {} in the backup directory, it is not a metacard.", file);
+        } catch (IOException | ClassNotFoundException e) {
+            LOGGER.warn("Unable to import backup file {}, leaving it in place.", file, e);
         }
-        return builder.toString();
+        return null;
     }
 
-    private enum OPERATION {
-        CREATE,
-        DELETE
+    private void deleteEmptyLegacyDirectories(File dir) {
+        File[] children = dir.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File child : children) {
+            if (child.isDirectory() && child.getName().length() == LEGACY_SUBDIR_NAME_LENGTH) {
+                deleteEmptyLegacyDirectories(child);
+                // Only succeeds for empty directories
+                child.delete();
+            }
+        }
     }
 
+    private void close() {
+        Thread currentImport = legacyImport;
+        legacyImport = null;
+        if (currentImport != null) {
+            currentImport.interrupt();
+            try {
+                currentImport.join(LEGACY_IMPORT_SHUTDOWN_TIMEOUT);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        BackupWriter currentWriter = writer;
+        BackupStore currentStore = store;
+        writer = null;
+        store = null;
+
+        if (currentWriter != null && !currentWriter.close()) {
+            // Closing the store would fail the writes that are still in progress
+            LOGGER.warn("Leaving the backup in {} open, since it is still being written to.",
+                    rootBackupDir);
+            return;
+        }
+        if (currentStore != null) {
+            try {
+                currentStore.close();
+            } catch (IOException e) {
+                LOGGER.warn("Unable to close the backup in {}.", rootBackupDir, e);
+            }
+        }
+    }
 }
@@ -0,0 +1,162 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package ddf.catalog.backup;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import org.apache.felix.gogo.commands.Argument;
+import org.apache.felix.gogo.commands.Command;
+import org.apache.felix.gogo.commands.Option;
+import org.apache.karaf.shell.console.OsgiCommandSupport;
+import org.fusesource.jansi.Ansi;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ddf.catalog.CatalogFramework;
+import ddf.catalog.Constants;
+import ddf.catalog.data.Metacard;
+import ddf.catalog.operation.impl.CreateRequestImpl;
+import ddf.catalog.source.IngestException;
+import ddf.catalog.source.SourceUnavailableException;
+import ddf.security.Subject;
+import ddf.security.common.util.Security;
+
+@Command(scope = RestoreCommand.NAMESPACE, name = "restore", description = "Restores metacards from the backup of the Backup Post-Ingest Plugin into the Catalog.\n\tWithout IDs, all the backed up metacards are created in batches that are committed once, at the end of the restore.")
+public class RestoreCommand extends OsgiCommandSupport {
+
+    public static final String NAMESPACE = "backup";
+
+    static final String RED_CONSOLE_COLOR = Ansi.ansi().fg(Ansi.Color.RED).toString();
+
+    static final String DEFAULT_CONSOLE_COLOR = Ansi.ansi().reset().toString();
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RestoreCommand.class);
+
+    @Argument(name = "IDs", description = "IDs of the metacards to restore. All the backed up metacards are restored when no ID is given.", index = 0, multiValued = true, required = false)
+    List<String> ids = null;
+
+    @Option(name = "--batchsize", required = false, aliases = {"-b"}, multiValued = false,
+            description = "Number of Metacards to create at a time.")
+    int batchSize = 1000;
+
+    PrintStream console = System.out;
+
+    private CatalogBackupPlugin backupPlugin;
+
+    private CatalogFramework catalogFramework;
+
+    public void setBackupPlugin(CatalogBackupPlugin backupPlugin) {
+        this.backupPlugin = backupPlugin;
+    }
+
+    public void setCatalogFramework(CatalogFramework catalogFramework) {
+        this.catalogFramework = catalogFramework;
+    }
+
+    @Override
+    protected Object doExecute() throws Exception {
+        final BackupStore store = backupPlugin.getStore();
+        if (store == null) {
+            printErrorMessage("The backup is not available. Check the root backup directory of "
+                    + "the Backup Post-Ingest Plugin.");
+            return null;
+        }
+        if (batchSize < 1) {
+            printErrorMessage("The batch size must be greater than 0.");
+            return null;
+        }
+        if (!Security.javaSubjectHasAdminRole()) {
+            printErrorMessage(
+                    "Current user doesn't have sufficient privileges to run this command");
+            return null;
+        }
+
+        Subject subject = Security.getSystemSubject();
+        long start = System.currentTimeMillis();
+        long count = subject.execute(new Callable<Long>() {
+            @Override
+            public Long call() throws Exception {
+                return restore(store);
+            }
+        });
+
+        console.printf(" %d Metacard(s) restored in %.3f seconds\t%n", count,
+                (System.currentTimeMillis() - start) / 1000.0);
+        LOGGER.info("{} Metacard(s) restored from the backup", count);
+        return null;
+    }
+
+    /**
+     * @return the number of Metacards restored
+     */
+    long restore(BackupStore store)
+            throws IOException, IngestException, SourceUnavailableException {
+        if (ids != null && !ids.isEmpty()) {
+            List<Metacard> metacards = new ArrayList<>();
+            for (String id : ids) {
+                Metacard metacard = store.read(id);
+                if (metacard == null) {
+                    printErrorMessage("Metacard [" + id + "] is not backed up.");
+                } else {
+                    metacards.add(metacard);
+                }
+            }
+            return create(metacards, false);
+        }
+
+        long count = 0;
+        try (BackupStore.Cursor cursor = store.openCursor()) {
+            List<Metacard> batch = new ArrayList<>(batchSize);
+            List<Metacard> metacards;
+            while ((metacards = cursor.next()) != null) {
+                for (Metacard metacard : metacards) {
+                    if (batch.size() == batchSize) {
+                        count += create(batch, true);
+                        console.print(String.format(" %d Metacard(s) restored\t\r", count));
+                        console.flush();
+                        batch = new ArrayList<>(batchSize);
+                    }
+                    batch.add(metacard);
+                }
+            }
+            // The last batch is committed right away, which also commits the deferred ones
+            count += create(batch, false);
+        }
+        return count;
+    }
+
+    private int create(List<Metacard> batch, boolean deferCommit)
+            throws IngestException, SourceUnavailableException {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        Map<String, Serializable> props = new HashMap<>();
+        props.put(Constants.DEFER_COMMIT, deferCommit);
+        // The restored metacards are already backed up
+        props.put(CatalogBackupPlugin.SKIP_BACKUP, true);
+        return catalogFramework.create(new CreateRequestImpl(batch, props))
+                .getCreatedMetacards().size();
+    }
+
+    private void printErrorMessage(String message) {
+        console.println(RED_CONSOLE_COLOR + message + DEFAULT_CONSOLE_COLOR);
+    }
+}
@@ -0,0 +1,195 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package ddf.catalog.backup;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.core.IsNull.nullValue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ddf.catalog.data.Metacard;
+import ddf.catalog.data.impl.MetacardImpl;
+
+public class BackupStoreTest {
+
+    private static final long MAX_SEGMENT_BYTES = 1024 * 1024;
+
+    @Rule
+    public TemporaryFolder backupDir = new TemporaryFolder();
+
+    @Test
+    public void testReadsLatestVersion() throws IOException {
+        try (BackupStore store = openStore(MAX_SEGMENT_BYTES)) {
+            store.write(Arrays.asList(put("1", "first"), put("2", "first")));
+            store.write(Arrays.asList(put("1", "second"), delete("2"), put("1", "third")));
+
+            assertThat(store.read("1").getTitle(), is("third"));
+            assertThat(store.read("2"), is(nullValue()));
+            assertThat(store.read("3"), is(nullValue()));
+            assertThat(store.size(), is(1));
+        }
+    }
+
+    @Test
+    public void testReopenRebuildsIndex() throws IOException {
+        try (BackupStore store = openStore(MAX_SEGMENT_BYTES)) {
+            store.write(Arrays.asList(put("1", "first"), put("2", "first")));
+            store.write(Arrays.asList(put("1", "second"), delete("2")));
+        }
+
+        try (BackupStore store = openStore(MAX_SEGMENT_BYTES)) {
+            assertThat(store.read("1").getTitle(), is("second"));
+            assertThat(store.read("2"), is(nullValue()));
+            assertThat(store.size(), is(1));
+        }
+    }
+
+    @Test
+    public void testReopenDropsIncompleteBatch() throws IOException {
+        File segmentFile;
+        try (BackupStore store = openStore(MAX_SEGMENT_BYTES)) {
+            store.write(Arrays.asList(put("1", "first")));
+            segmentFile = store.getSegmentFile(1);
+        }
+        long length = segmentFile.length();
+        try (FileOutputStream out = new FileOutputStream(segmentFile, true)) {
+            out.write(new byte[] {0, 0, 0, 100, 1, 2, 3});
+        }
+
+        try (BackupStore store = openStore(MAX_SEGMENT_BYTES)) {
+            assertThat(segmentFile.length(), is(length));
+            store.write(Arrays.asList(put("2", "first")));
+            assertThat(store.read("1").getTitle(), is("first"));
+            assertThat(store.read("2").getTitle(), is("first"));
+        }
+    }
+
+    @Test
+    public void testCompactsOldestSegment() throws IOException {
+        // Every batch starts a new segment
+        try (BackupStore store = openStore(1)) {
+            store.write(Arrays.asList(put("1", "first"), put("2", "first"), put("3", "first")));
+            store.write(Arrays.asList(delete("1")));
+            assertThat(countSegments(), is(2));
+
+            store.write(Arrays.asList(delete("2")));
+
+            // The live metacard of the oldest segment was copied before deleting it
+            assertThat(store.getSegmentFile(1).exists(), is(false));
+            assertThat(store.read("3").getTitle(), is("first"));
+        }
+
+        try (BackupStore store = openStore(1)) {
+            assertThat(store.size(), is(1));
+            assertThat(store.read("1"), is(nullValue()));
+            assertThat(store.read("2"), is(nullValue()));
+            assertThat(store.read("3").getTitle(), is("first"));
+        }
+    }
+
+    @Test
+    public void testCursorReadsLiveMetacardsInOrder() throws IOException {
+        try (BackupStore store = openStore(1)) {
+            store.write(Arrays.asList(put("1", "first"), put("2", "first")));
+            store.write(Arrays.asList(put("3", "first"), delete("2")));
+            store.write(Arrays.asList(put("1", "second")));
+
+            List<Metacard> metacards = new ArrayList<>();
+            try (BackupStore.Cursor cursor = store.openCursor()) {
+                store.write(Arrays.asList(put("4", "first")));
+
+                List<Metacard> batch;
+                while ((batch = cursor.next()) != null) {
+                    metacards.addAll(batch);
+                }
+            }
+
+            assertThat(metacards.size(), is(2));
+            assertThat(metacards.get(0).getId(), is("3"));
+            assertThat(metacards.get(1).getId(), is("1"));
+            assertThat(metacards.get(1).getTitle(), is("second"));
+        }
+    }
+
+    @Test
+    public void testCursorOnEmptyBackup() throws IOException {
+        try (BackupStore store = openStore(MAX_SEGMENT_BYTES);
+                BackupStore.Cursor cursor = store.openCursor()) {
+            assertThat(cursor.next(), is(nullValue()));
+        }
+    }
+
+    @Test
+    public void testWriterWritesQueuedOperations() throws Exception {
+        try (BackupStore store = openStore(MAX_SEGMENT_BYTES)) {
+            BackupWriter writer = new BackupWriter(store, 10, 100);
+            writer.start();
+            for (int i = 0; i < 250; i++) {
+                writer.add(Collections.singletonList(put(Integer.toString(i), "first")));
+            }
+            writer.add(Collections.singletonList(delete("0")));
+            assertThat(writer.close(), is(true));
+
+            assertThat(store.size(), is(249));
+            assertThat(store.read("0"), is(nullValue()));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testWriterRejectsOperationsAfterClose() throws Exception {
+        try (BackupStore store = openStore(MAX_SEGMENT_BYTES)) {
+            BackupWriter writer = new BackupWriter(store, 10, 100);
+            writer.start();
+            writer.close();
+
+            writer.add(Collections.singletonList(put("1", "first")));
+        }
+    }
+
+    private BackupStore openStore(long maxSegmentBytes) throws IOException {
+        return new BackupStore(backupDir.getRoot(), maxSegmentBytes);
+    }
+
+    private int countSegments() {
+        int count = 0;
+        for (File file : backupDir.getRoot().listFiles()) {
+            if (file.getName().endsWith(BackupStore.SEGMENT_SUFFIX)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private BackupOperation put(String id, String title) {
+        MetacardImpl metacard = new MetacardImpl();
+        metacard.setId(id);
+        metacard.setTitle(title);
+        return BackupOperation.put(metacard);
+    }
+
+    private BackupOperation delete(String id) {
+        return BackupOperation.delete(id);
+    }
+}
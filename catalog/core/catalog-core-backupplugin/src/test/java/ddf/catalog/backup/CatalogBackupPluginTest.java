@@ -14,21 +14,25 @@
 package ddf.catalog.backup;
 
 import static org.hamcrest.MatcherAssert.assertThat;
-import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.core.IsNull.notNullValue;
+import static org.hamcrest.core.IsNull.nullValue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
-import static junit.framework.Assert.fail;
 
 import java.io.File;
-import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+import org.junit.After;
+import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
@@ -37,10 +41,12 @@
 import ddf.catalog.data.MetacardType;
 import ddf.catalog.data.impl.AttributeImpl;
 import ddf.catalog.data.impl.MetacardImpl;
+import ddf.catalog.operation.CreateRequest;
 import ddf.catalog.operation.CreateResponse;
 import ddf.catalog.operation.DeleteResponse;
 import ddf.catalog.operation.Update;
 import ddf.catalog.operation.UpdateResponse;
+import ddf.catalog.operation.impl.CreateRequestImpl;
 import ddf.catalog.plugin.PluginExecutionException;
 
 public class CatalogBackupPluginTest {
@@ -55,6 +61,21 @@ public class CatalogBackupPluginTest {
     @Rule
     public TemporaryFolder rootBackupDir = new TemporaryFolder();
 
+    private CatalogBackupPlugin catalogBackupPlugin;
+
+    @Before
+    public void setup() {
+        catalogBackupPlugin = new CatalogBackupPlugin();
+        catalogBackupPlugin.setEnableBackupPlugin(true);
+        catalogBackupPlugin.setRootBackupDir(rootBackupDir.getRoot().getAbsolutePath());
+        catalogBackupPlugin.init();
+    }
+
+    @After
+    public void tearDown() {
+        catalogBackupPlugin.destroy();
+    }
+
     /**
      * Verify no NullPointerException
      */
@@ -67,316 +88,237 @@ public void testNullBackupDir() {
     @Test(expected = PluginExecutionException.class)
     public void testProcessCreateResponseRootBackupDirBlank() throws Exception {
         // Setup
-        int subDirLevels = 3;
         CreateResponse mockCreateResponse = getMockCreateResponse(Arrays.asList(METACARD_IDS));
 
         CatalogBackupPlugin catalogBackupPlugin = new CatalogBackupPlugin();
         catalogBackupPlugin.setEnableBackupPlugin(true);
         catalogBackupPlugin.setRootBackupDir(null);
-        catalogBackupPlugin.setSubDirLevels(subDirLevels);
+        catalogBackupPlugin.init();
 
         // Perform Test
         catalogBackupPlugin.process(mockCreateResponse);
     }
 
     @Test
-    public void testProcessCreateResponseSubdirectoryLevelsIsZero() throws Exception {
+    public void testProcessCreateResponseCreateSuccessful() throws Exception {
         // Setup
         CreateResponse mockCreateResponse = getMockCreateResponse(Arrays.asList(METACARD_IDS));
 
-        int subDirLevels = 0;
-
-        CatalogBackupPlugin catalogBackupPlugin = new CatalogBackupPlugin();
-        catalogBackupPlugin.setEnableBackupPlugin(true);
-        catalogBackupPlugin.setRootBackupDir(rootBackupDir.getRoot().getAbsolutePath());
-        catalogBackupPlugin.setSubDirLevels(subDirLevels);
-
         // Perform Test
         CreateResponse postPluginCreateResponse = catalogBackupPlugin.process(mockCreateResponse);
+        catalogBackupPlugin.destroy();
 
         // Verify
         assertThat(postPluginCreateResponse, is(notNullValue()));
 
-        for (String metacardId : METACARD_IDS) {
-            File backedupMetacard = new File(
-                    rootBackupDir.getRoot().getAbsolutePath() + getMetacardPath(metacardId, 0)
-                            + metacardId);
-            assertThat(backedupMetacard.exists(), is(Boolean.TRUE));
+        try (BackupStore store = openStore()) {
+            for (String metacardId : METACARD_IDS) {
+                assertThat(store.read(metacardId).getId(), is(metacardId));
+            }
         }
     }
 
     @Test
-    public void testProcessCreateResponseSubdirectoryLevelsIsNegative() throws Exception {
+    public void testProcessCreateResponseBackupSkipped() throws Exception {
         // Setup
+        Map<String, Serializable> properties = new HashMap<>();
+        properties.put(CatalogBackupPlugin.SKIP_BACKUP, true);
         CreateResponse mockCreateResponse = getMockCreateResponse(Arrays.asList(METACARD_IDS));
-
-        int subDirLevels = -5;
-
-        CatalogBackupPlugin catalogBackupPlugin = new CatalogBackupPlugin();
-        catalogBackupPlugin.setEnableBackupPlugin(true);
-        catalogBackupPlugin.setRootBackupDir(rootBackupDir.getRoot().getAbsolutePath());
-        catalogBackupPlugin.setSubDirLevels(subDirLevels);
+        CreateRequest createRequest = new CreateRequestImpl(
+                mockCreateResponse.getCreatedMetacards(), properties);
+        when(mockCreateResponse.getRequest()).thenReturn(createRequest);
 
         // Perform Test
-        CreateResponse postPluginCreateResponse = catalogBackupPlugin.process(mockCreateResponse);
+        catalogBackupPlugin.process(mockCreateResponse);
+        catalogBackupPlugin.destroy();
 
         // Verify
-        assertThat(postPluginCreateResponse, is(notNullValue()));
-
-        for (String metacardId : METACARD_IDS) {
-            File backedupMetacard = new File(
-                    rootBackupDir.getRoot().getAbsolutePath() + getMetacardPath(metacardId, 0)
-                            + metacardId);
-            assertThat(backedupMetacard.exists(), is(Boolean.TRUE));
+        try (BackupStore store = openStore()) {
+            assertThat(store.size(), is(0));
         }
     }
 
-    /**
-     * If too many subdirectories are specified (two characters from metacardId
-     * are used to name each subdirectory), then the CatalogBackupPlugin makes
-     * as many subdirectories as it can for each metacardId.
-     */
     @Test
-    public void testProcessCreateResponseSubdirectoryLevelsTooBigForMetacardId() throws Exception {
+    public void testProcessCreateResponsePluginDisabled() throws Exception {
         // Setup
-        String[] metacardIds = {"6c38", "0283"};
-
-        CreateResponse mockCreateResponse = getMockCreateResponse(Arrays.asList(metacardIds));
-
-        int subDirLevels = 1000;
-
-        CatalogBackupPlugin catalogBackupPlugin = new CatalogBackupPlugin();
-        catalogBackupPlugin.setEnableBackupPlugin(true);
-        catalogBackupPlugin.setRootBackupDir(rootBackupDir.getRoot().getAbsolutePath());
-        catalogBackupPlugin.setSubDirLevels(subDirLevels);
+        catalogBackupPlugin.setEnableBackupPlugin(false);
+        CreateResponse mockCreateResponse = getMockCreateResponse(Arrays.asList(METACARD_IDS));
 
         // Perform Test
-        CreateResponse postPluginCreateResponse = catalogBackupPlugin.process(mockCreateResponse);
+        catalogBackupPlugin.process(mockCreateResponse);
+        catalogBackupPlugin.destroy();
 
         // Verify
-        assertThat(postPluginCreateResponse, is(notNullValue()));
-
-        for (String metacardId : metacardIds) {
-            File backedupMetacard = new File(
-                    rootBackupDir.getRoot().getAbsolutePath() + getMetacardPath(metacardId, 2)
-                            + metacardId);
-            assertThat(backedupMetacard.exists(), is(Boolean.TRUE));
+        try (BackupStore store = openStore()) {
+            assertThat(store.size(), is(0));
         }
     }
 
     @Test
-    public void testProcessCreateResponseCreateSuccessful() throws Exception {
+    public void testProcessDeleteResponseDeleteSuccessful() throws Exception {
         // Setup
         CreateResponse mockCreateResponse = getMockCreateResponse(Arrays.asList(METACARD_IDS));
 
-        int subDirLevels = 3;
+        DeleteResponse mockDeleteResponse = getDeleteResponse(
+                Arrays.asList(METACARD_IDS[0]));
 
-        CatalogBackupPlugin catalogBackupPlugin = new CatalogBackupPlugin();
-        catalogBackupPlugin.setEnableBackupPlugin(true);
-        catalogBackupPlugin.setRootBackupDir(rootBackupDir.getRoot().getAbsolutePath());
-        catalogBackupPlugin.setSubDirLevels(subDirLevels);
+        catalogBackupPlugin.process(mockCreateResponse);
 
         // Perform Test
-        CreateResponse postPluginCreateResponse = catalogBackupPlugin.process(mockCreateResponse);
+        DeleteResponse postPluginDeleteResponse = catalogBackupPlugin.process(mockDeleteResponse);
+        catalogBackupPlugin.destroy();
 
         // Verify
-        assertThat(postPluginCreateResponse, is(notNullValue()));
+        assertThat(postPluginDeleteResponse, is(notNullValue()));
 
-        for (String metacardId : METACARD_IDS) {
-            File backedupMetacard = new File(
-                    rootBackupDir.getRoot().getAbsolutePath() + getMetacardPath(metacardId, 3)
-                            + metacardId);
-            assertThat(backedupMetacard.exists(), is(Boolean.TRUE));
+        try (BackupStore store = openStore()) {
+            assertThat(store.read(METACARD_IDS[0]), is(nullValue()));
+            assertThat(store.read(METACARD_IDS[1]), is(notNullValue()));
         }
     }
 
     @Test
-    public void testProcessDeleteResponseDeleteSuccessful() throws Exception {
+    public void testProcessUpdateResponseUpdateSuccessful() throws Exception {
         // Setup
         CreateResponse mockCreateResponse = getMockCreateResponse(Arrays.asList(METACARD_IDS));
 
-        DeleteResponse mockDeleteResponse = getDeleteResponse(Arrays.asList(METACARD_IDS));
-
-        int subDirLevels = 3;
-
-        CatalogBackupPlugin catalogBackupPlugin = new CatalogBackupPlugin();
-        catalogBackupPlugin.setEnableBackupPlugin(true);
-        catalogBackupPlugin.setRootBackupDir(rootBackupDir.getRoot().getAbsolutePath());
-        catalogBackupPlugin.setSubDirLevels(subDirLevels);
-
         catalogBackupPlugin.process(mockCreateResponse);
 
+        UpdateResponse mockUpdateResponse = getUpdateResponse(Arrays.asList(METACARD_IDS));
+
         // Perform Test
-        DeleteResponse postPluginDeleteResponse = catalogBackupPlugin.process(mockDeleteResponse);
+        UpdateResponse postPluginUpdateResponse = catalogBackupPlugin.process(mockUpdateResponse);
+        catalogBackupPlugin.destroy();
 
         // Verify
-        assertThat(postPluginDeleteResponse, is(notNullValue()));
+        assertThat(postPluginUpdateResponse, is(notNullValue()));
 
-        for (String metacardId : METACARD_IDS) {
-            File deletedMetacards = new File(
-                    rootBackupDir.getRoot().getAbsolutePath() + getMetacardPath(metacardId, 3)
-                            + metacardId);
-            assertThat(deletedMetacards.exists(), is(Boolean.FALSE));
+        try (BackupStore store = openStore()) {
+            int j = 0;
+            for (Metacard oldMetacard : mockCreateResponse.getCreatedMetacards()) {
+                Metacard updatedMetacard = store.read(oldMetacard.getId());
+                // Verify that the metacard id has not changed (from newMetacard to
+                // oldMetacard)
+                assertThat(updatedMetacard.getId(), is(oldMetacard.getId()));
+                // Verify that the metacard title has been updated to "newTitle" + j
+                assertThat((String) updatedMetacard.getAttribute(Metacard.TITLE).getValue(),
+                        is(BASE_NEW_TITLE + j));
+
+                j++;
+            }
+            assertThat(store.size(), is(METACARD_IDS.length));
         }
     }
 
     @Test
-    public void testProcessDeleteResponseFailToDeleteAllMetacards() {
+    public void testReconfigureRootBackupDir() throws Exception {
         // Setup
-        DeleteResponse mockDeleteResponse = getDeleteResponse(Arrays.asList(METACARD_IDS));
-
-        int subDirLevels = 3;
-
-        CatalogBackupPlugin catalogBackupPlugin = new CatalogBackupPlugin();
-        catalogBackupPlugin.setEnableBackupPlugin(true);
-        catalogBackupPlugin.setRootBackupDir(rootBackupDir.getRoot().getAbsolutePath());
-        catalogBackupPlugin.setSubDirLevels(subDirLevels);
+        File newBackupDir = rootBackupDir.newFolder("new");
 
         // Perform Test
-        try {
-            catalogBackupPlugin.process(mockDeleteResponse);
-        } catch (PluginExecutionException e) {
-            // Verify
-            for (int i = 0; i < METACARD_IDS.length; i++) {
-                assertThat(e.getMessage(), containsString(METACARD_IDS[i]));
-            }
+        catalogBackupPlugin.setRootBackupDir(newBackupDir.getAbsolutePath());
+        catalogBackupPlugin.process(getMockCreateResponse(Arrays.asList(METACARD_IDS)));
+        catalogBackupPlugin.destroy();
+
+        // Verify
+        try (BackupStore store = new BackupStore(newBackupDir, 1024)) {
+            assertThat(store.size(), is(METACARD_IDS.length));
         }
     }
 
     @Test
-    public void testProcessDeleteResponseFailToDeleteOneMetacard() {
+    public void testImportsLegacyBackup() throws Exception {
         // Setup
-        String[] createdMetacardIds = {METACARD_IDS[0]};
-
-        CreateResponse mockCreateResponse = getMockCreateResponse(
-                Arrays.asList(createdMetacardIds));
-
-        int subDirLevels = 3;
-
-        CatalogBackupPlugin catalogBackupPlugin = new CatalogBackupPlugin();
-        catalogBackupPlugin.setEnableBackupPlugin(true);
-        catalogBackupPlugin.setRootBackupDir(rootBackupDir.getRoot().getAbsolutePath());
-        catalogBackupPlugin.setSubDirLevels(subDirLevels);
-
-        try {
-            catalogBackupPlugin.process(mockCreateResponse);
-        } catch (PluginExecutionException e) {
-            fail();
-        }
+        File root = rootBackupDir.getRoot();
+        File subDir = rootBackupDir.newFolder(METACARD_IDS[0].substring(0, 2));
+        writeLegacyFile(new File(subDir, METACARD_IDS[0]), METACARD_IDS[0]);
+        writeLegacyFile(new File(root, METACARD_IDS[1]), METACARD_IDS[1]);
+        File incomplete = rootBackupDir.newFile("incomplete.tmp");
+        File unreadable = rootBackupDir.newFile("unreadable");
 
-        DeleteResponse mockDeleteResponse = getDeleteResponse(Arrays.asList(METACARD_IDS));
+        // Perform Test
+        catalogBackupPlugin.destroy();
+        new File(root, CatalogBackupPlugin.LEGACY_IMPORTED_MARKER).delete();
+        catalogBackupPlugin.init();
+        waitForLegacyImport();
+        catalogBackupPlugin.destroy();
 
-        try {
-            // Perform Test
-            catalogBackupPlugin.process(mockDeleteResponse);
-        } catch (PluginExecutionException e) {
-            // Verify
-            for (int i = 1; i < METACARD_IDS.length; i++) {
-                assertThat(e.getMessage(), containsString(METACARD_IDS[i]));
+        // Verify
+        try (BackupStore store = openStore()) {
+            assertThat(store.size(), is(METACARD_IDS.length));
+            for (String metacardId : METACARD_IDS) {
+                assertThat(store.read(metacardId).getTitle(), is(BASE_OLD_TITLE));
             }
         }
+        assertThat(subDir.exists(), is(false));
+        assertThat(new File(root, METACARD_IDS[1]).exists(), is(false));
+        assertThat(incomplete.exists(), is(true));
+        assertThat(unreadable.exists(), is(true));
     }
 
     @Test
-    public void testProcessUpdateResponseUpdateSuccessful() throws Exception {
+    public void testLegacyBackupDoesNotOverwriteNewerBackup() throws Exception {
         // Setup
-        CreateResponse mockCreateResponse = getMockCreateResponse(Arrays.asList(METACARD_IDS));
-
-        int subDirLevels = 3;
-
-        CatalogBackupPlugin catalogBackupPlugin = new CatalogBackupPlugin();
-        catalogBackupPlugin.setEnableBackupPlugin(true);
-        catalogBackupPlugin.setRootBackupDir(rootBackupDir.getRoot().getAbsolutePath());
-        catalogBackupPlugin.setSubDirLevels(subDirLevels);
-
-        catalogBackupPlugin.process(mockCreateResponse);
-
-        UpdateResponse mockUpdateResponse = getUpdateResponse(Arrays.asList(METACARD_IDS));
+        File root = rootBackupDir.getRoot();
+        catalogBackupPlugin.destroy();
+        new File(root, CatalogBackupPlugin.LEGACY_IMPORTED_MARKER).delete();
+        writeLegacyFile(new File(root, METACARD_IDS[0]), METACARD_IDS[0]);
 
         // Perform Test
-        UpdateResponse postPluginUpdateResponse = catalogBackupPlugin.process(mockUpdateResponse);
+        catalogBackupPlugin.init();
+        catalogBackupPlugin.process(getUpdateResponse(Arrays.asList(METACARD_IDS[0])));
+        waitForLegacyImport();
+        catalogBackupPlugin.destroy();
 
         // Verify
-        assertThat(postPluginUpdateResponse, is(notNullValue()));
-
-        int j = 0;
-        for (Metacard oldMetacard : mockCreateResponse.getCreatedMetacards()) {
-            File updatedMetacardFile = new File(
-                    rootBackupDir.getRoot().getAbsolutePath() + getMetacardPath(oldMetacard.getId(),
-                            subDirLevels) + oldMetacard.getId());
-            Metacard updatedMetacard = readMetacard(updatedMetacardFile);
-            assertThat(updatedMetacardFile.exists(), is(Boolean.TRUE));
-            // Verify that the metacard id has not changed (from newMetacard to
-            // oldMetacard)
-            assertThat(updatedMetacard.getId(), is(oldMetacard.getId()));
-            // Verify that the metacard title has been updated to "newTitle" + j
-            assertThat((String) updatedMetacard.getAttribute(Metacard.TITLE).getValue(),
-                    is(BASE_NEW_TITLE + j));
-
-            j++;
+        try (BackupStore store = openStore()) {
+            assertThat(store.read(METACARD_IDS[0]).getTitle(), is(BASE_NEW_TITLE + 0));
         }
+        assertThat(new File(root, METACARD_IDS[0]).exists(), is(false));
     }
 
     @Test
-    public void testProcessUpdateUpdateFailsForAllMetacards() {
+    public void testLegacyBackupImportedOnce() throws Exception {
         // Setup
-        int subDirLevels = 3;
-
-        CatalogBackupPlugin catalogBackupPlugin = new CatalogBackupPlugin();
-        catalogBackupPlugin.setEnableBackupPlugin(true);
-        catalogBackupPlugin.setRootBackupDir(rootBackupDir.getRoot().getAbsolutePath());
-        catalogBackupPlugin.setSubDirLevels(subDirLevels);
-
-        UpdateResponse mockUpdateResponse = getUpdateResponse(Arrays.asList(METACARD_IDS));
+        File root = rootBackupDir.getRoot();
+        waitForLegacyImport();
+        catalogBackupPlugin.destroy();
+        File legacyFile = new File(root, METACARD_IDS[0]);
+        writeLegacyFile(legacyFile, METACARD_IDS[0]);
 
         // Perform Test
-        try {
-            catalogBackupPlugin.process(mockUpdateResponse);
-        } catch (PluginExecutionException e) {
-            // Verify
-            for (int i = 0; i < METACARD_IDS.length; i++) {
-                assertThat(e.getMessage(), containsString(METACARD_IDS[i]));
-            }
+        catalogBackupPlugin.init();
+        catalogBackupPlugin.destroy();
+
+        // Verify
+        try (BackupStore store = openStore()) {
+            assertThat(store.read(METACARD_IDS[0]), is(nullValue()));
         }
+        assertThat(legacyFile.exists(), is(true));
     }
 
-    @Test
-    public void testProcessUpdateUpdateFailsForOneMetacard() {
-        // Setup
-        String[] createdMetacardIds = {METACARD_IDS[0]};
-
-        CreateResponse mockCreateResponse = getMockCreateResponse(
-                Arrays.asList(createdMetacardIds));
-
-        int subDirLevels = 3;
-
-        CatalogBackupPlugin catalogBackupPlugin = new CatalogBackupPlugin();
-        catalogBackupPlugin.setEnableBackupPlugin(true);
-        catalogBackupPlugin.setRootBackupDir(rootBackupDir.getRoot().getAbsolutePath());
-        catalogBackupPlugin.setSubDirLevels(subDirLevels);
+    /**
+     * Helper Methods
+     */
 
-        try {
-            catalogBackupPlugin.process(mockCreateResponse);
-        } catch (PluginExecutionException e) {
-            fail();
+    private void writeLegacyFile(File file, String metacardId) throws IOException {
+        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(file))) {
+            out.writeObject(getMetacard(metacardId, BASE_OLD_TITLE));
         }
+    }
 
-        UpdateResponse mockUpdateResponse = getUpdateResponse(Arrays.asList(METACARD_IDS));
-
-        // Perform Test
-        try {
-            catalogBackupPlugin.process(mockUpdateResponse);
-        } catch (PluginExecutionException e) {
-            // Verify
-            for (int i = 1; i < METACARD_IDS.length; i++) {
-                assertThat(e.getMessage(), containsString(METACARD_IDS[i]));
-            }
+    private void waitForLegacyImport() throws InterruptedException {
+        File marker = new File(rootBackupDir.getRoot(), CatalogBackupPlugin.LEGACY_IMPORTED_MARKER);
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!marker.exists() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
         }
+        assertThat(marker.exists(), is(true));
     }
 
-    /**
-     * Helper Methods
-     */
+    private BackupStore openStore() throws IOException {
+        return new BackupStore(rootBackupDir.getRoot(), 1024);
+    }
 
     private CreateResponse getMockCreateResponse(List<String> metacardIds) {
         List<Metacard> createdMetacards = new ArrayList<Metacard>(metacardIds.size());
@@ -440,34 +382,4 @@ private Metacard getMetacard(String metacardId, String title) {
 
         return metacard;
     }
-
-    private String getMetacardPath(String metacardId, int subDirLevels) {
-        StringBuilder builder = new StringBuilder();
-
-        if (subDirLevels < 0) {
-            subDirLevels = 0;
-        } else if (metacardId.length() == 1 || metacardId.length() < subDirLevels * 2) {
-            subDirLevels = (int) Math.floor(metacardId.length() / 2);
-        }
-
-        for (int i = 0; i < subDirLevels; i++) {
-            builder.append(File.separator);
-            builder.append(metacardId.substring(i * 2, i * 2 + 2));
-        }
-
-        builder.append(File.separator);
-
-        return builder.toString();
-    }
-
-    private Metacard readMetacard(File file) throws ClassNotFoundException, IOException {
-        Metacard metacard = null;
-
-        try (FileInputStream fis = new FileInputStream(file);
-                ObjectInputStream ois = new ObjectInputStream(fis)) {
-            metacard = (Metacard) ois.readObject();
-        }
-
-        return metacard;
-    }
 }
@@ -0,0 +1,132 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package ddf.catalog.backup;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import ddf.catalog.CatalogFramework;
+import ddf.catalog.Constants;
+import ddf.catalog.data.impl.MetacardImpl;
+import ddf.catalog.operation.CreateRequest;
+import ddf.catalog.operation.CreateResponse;
+import ddf.catalog.operation.impl.CreateResponseImpl;
+
+public class RestoreCommandTest {
+
+    @Rule
+    public TemporaryFolder backupDir = new TemporaryFolder();
+
+    private BackupStore store;
+
+    private CatalogFramework catalogFramework;
+
+    private RestoreCommand restoreCommand;
+
+    private ByteArrayOutputStream output;
+
+    @Before
+    public void setup() throws Exception {
+        store = new BackupStore(backupDir.getRoot(), 1024 * 1024);
+        List<BackupOperation> operations = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            MetacardImpl metacard = new MetacardImpl();
+            metacard.setId("id" + i);
+            operations.add(BackupOperation.put(metacard));
+        }
+        store.write(operations);
+
+        catalogFramework = mock(CatalogFramework.class);
+        when(catalogFramework.create(any(CreateRequest.class)))
+                .thenAnswer(new Answer<CreateResponse>() {
+                    @Override
+                    public CreateResponse answer(InvocationOnMock invocation) {
+                        CreateRequest request = (CreateRequest) invocation.getArguments()[0];
+                        return new CreateResponseImpl(request, null, request.getMetacards());
+                    }
+                });
+
+        output = new ByteArrayOutputStream();
+        restoreCommand = new RestoreCommand();
+        restoreCommand.setCatalogFramework(catalogFramework);
+        restoreCommand.console = new PrintStream(output);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        store.close();
+    }
+
+    @Test
+    public void testRestoreAllInBatches() throws Exception {
+        restoreCommand.batchSize = 2;
+
+        assertThat(restoreCommand.restore(store), is(5L));
+
+        ArgumentCaptor<CreateRequest> requests = ArgumentCaptor.forClass(CreateRequest.class);
+        verify(catalogFramework, times(3)).create(requests.capture());
+        for (int i = 0; i < 3; i++) {
+            CreateRequest request = requests.getAllValues().get(i);
+            assertThat(request.getMetacards().get(0).getId(), is("id" + i * 2));
+            assertThat(request.getPropertyValue(CatalogBackupPlugin.SKIP_BACKUP),
+                    is((Object) true));
+            // Only the last batch is committed right away
+            assertThat(request.getPropertyValue(Constants.DEFER_COMMIT), is((Object) (i < 2)));
+        }
+    }
+
+    @Test
+    public void testRestoreIds() throws Exception {
+        restoreCommand.ids = Arrays.asList("id3", "missing");
+
+        assertThat(restoreCommand.restore(store), is(1L));
+
+        ArgumentCaptor<CreateRequest> request = ArgumentCaptor.forClass(CreateRequest.class);
+        verify(catalogFramework).create(request.capture());
+        assertThat(request.getValue().getMetacards().size(), is(1));
+        assertThat(request.getValue().getMetacards().get(0).getId(), is("id3"));
+        assertThat(output.toString(), containsString("Metacard [missing] is not backed up."));
+    }
+
+    @Test
+    public void testBackupNotAvailable() throws Exception {
+        restoreCommand.setBackupPlugin(new CatalogBackupPlugin());
+
+        restoreCommand.doExecute();
+
+        assertThat(output.toString(), containsString("The backup is not available."));
+        verify(catalogFramework, times(0)).create(any(CreateRequest.class));
+    }
+}
@@ -0,0 +1,296 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.commands.catalog;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.felix.gogo.commands.Argument;
+import org.apache.felix.gogo.commands.Command;
+import org.apache.felix.gogo.commands.Option;
+import org.codice.ddf.commands.catalog.facade.CatalogFacade;
+import org.geotools.filter.text.cql2.CQL;
+import org.joda.time.Period;
+import org.joda.time.format.PeriodFormatter;
+import org.joda.time.format.PeriodFormatterBuilder;
+import org.opengis.filter.Filter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ddf.catalog.Constants;
+import ddf.catalog.data.Metacard;
+import ddf.catalog.data.Result;
+import ddf.catalog.operation.SourceResponse;
+import ddf.catalog.operation.impl.QueryImpl;
+import ddf.catalog.operation.impl.QueryRequestImpl;
+
+@Command(scope = CatalogCommands.NAMESPACE, name = "export", description = "Exports the Metacards of the current Catalog into a compressed archive that catalog:import can load. Does not remove them.\n\tThe Catalog is paged through with a cursor when the Catalog Provider supports it, and an interrupted export can be continued with --resume.")
+public class ExportCommand extends CatalogCommands {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ExportCommand.class);
+
+    private static final String CQL_FILTER = "cql";
+
+    private static final String START_CURSOR_MARK = "*";
+
+    private final PeriodFormatter timeFormatter = new PeriodFormatterBuilder().printZeroRarelyLast()
+            .appendDays().appendSuffix(" day", " days").appendSeparator(" ").appendHours()
+            .appendSuffix(" hour", " hours").appendSeparator(" ").appendMinutes()
+            .appendSuffix(" minute", " minutes").appendSeparator(" ").appendSeconds()
+            .appendSuffix(" second", " seconds").toFormatter();
+
+    @Argument(name = "Archive directory path", description = "Directory to export the Metacards into. It is created if it does not exist. Paths are absolute and must be in quotes.", index = 0, multiValued = false, required = true)
+    String dirPath = null;
+
+    @Argument(name = "Batch size", description = "Number of Metacards to retrieve at a time and to write into each archive chunk.", index = 1, multiValued = false, required = false)
+    int pageSize = 1000;
+
+    @Option(name = "--cql", required = false, aliases = {}, multiValued = false, description =
+            "Export only the Metacards matching this CQL Filter expression, e.g.\n"
+                    + "\texport --cql \"modified before 2012-09-01T12:30:00Z\" \"/exports/catalog\"")
+    String cqlFilter = null;
+
+    @Option(name = "--threads", required = false, aliases = {"-t"}, multiValued = false,
+            description = "Number of threads serializing and compressing the archive chunks.")
+    int threads = Runtime.getRuntime().availableProcessors();
+
+    @Option(name = "--resume", required = false, aliases = {"-r"}, multiValued = false,
+            description = "Continue an interrupted export into the same directory from its last checkpoint.")
+    boolean resume = false;
+
+    @Override
+    protected Object executeWithSubject() throws Exception {
+        final File archiveDir = new File(dirPath);
+
+        if (archiveDir.exists() && !archiveDir.isDirectory()) {
+            printErrorMessage("Path [" + dirPath + "] must be a directory.");
+            return null;
+        }
+
+        if (!archiveDir.exists() && !archiveDir.mkdirs()) {
+            printErrorMessage("Directory [" + dirPath + "] could not be created.");
+            return null;
+        }
+
+        if (pageSize < 1 || threads < 1) {
+            printErrorMessage("The batch size and the number of threads must be greater than 0.");
+            return null;
+        }
+
+        Properties checkpoint = MetacardArchive.readCheckpoint(archiveDir);
+        if (!resume && (checkpoint != null
+                || MetacardArchive.listChunkFiles(archiveDir).length > 0)) {
+            printErrorMessage("Directory [" + dirPath
+                    + "] already contains an export. Use --resume to continue it.");
+            return null;
+        }
+
+        if (checkpoint == null) {
+            checkpoint = new Properties();
+            checkpoint.setProperty(MetacardArchive.CURSOR_MARK, START_CURSOR_MARK);
+            if (cqlFilter != null) {
+                checkpoint.setProperty(CQL_FILTER, cqlFilter);
+            }
+        } else if (Boolean.parseBoolean(checkpoint.getProperty(MetacardArchive.COMPLETE))) {
+            console.println("The export into [" + dirPath + "] is already complete.");
+            return null;
+        } else {
+            // The filter of the export being continued wins over the one given now
+            cqlFilter = checkpoint.getProperty(CQL_FILTER);
+            console.println("Resuming the export after " + checkpoint
+                    .getProperty(MetacardArchive.METACARDS, "0") + " Metacard(s).");
+        }
+
+        long start = System.currentTimeMillis();
+        long count = export(archiveDir, checkpoint);
+        if (count < 0) {
+            return null;
+        }
+
+        long end = System.currentTimeMillis();
+        String elapsedTime = timeFormatter.print(new Period(start, end).withMillis(0));
+        console.printf(" %d Metacard(s) exported in %s\t%n", count, elapsedTime);
+        LOGGER.info("{} Metacard(s) exported in {}", count, elapsedTime);
+        console.println();
+
+        return null;
+    }
+
+    /**
+     * @return the number of Metacards in the archive, or -1 if the export failed
+     */
+    private long export(File archiveDir, Properties checkpoint) throws Exception {
+        String cursorMark = checkpoint.getProperty(MetacardArchive.CURSOR_MARK);
+        int startIndex = Integer.parseInt(checkpoint.getProperty(MetacardArchive.START_INDEX, "1"));
+        long chunk = Long.parseLong(checkpoint.getProperty(MetacardArchive.CHUNKS, "0"));
+        long count = Long.parseLong(checkpoint.getProperty(MetacardArchive.METACARDS, "0"));
+        deleteUncheckpointedChunks(archiveDir, chunk);
+
+        CatalogFacade catalog = getCatalog();
+        Filter filter = cqlFilter != null ?
+                CQL.toFilter(cqlFilter) :
+                getFilterBuilder().attribute(Metacard.ID).is().like().text(WILDCARD);
+
+        QueryImpl query = new QueryImpl(filter);
+        query.setRequestsTotalResultsCount(false);
+        query.setPageSize(pageSize);
+
+        // Serialization and compression run in the background while the next page is retrieved
+        ExecutorService executorService = new ThreadPoolExecutor(threads, threads, 0L,
+                TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(threads),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        Deque<PendingChunk> pendingChunks = new ArrayDeque<>();
+        try {
+            while (true) {
+                Map<String, Serializable> props = new HashMap<>();
+                // Avoid caching all results while exporting with native query mode
+                props.put("mode", "native");
+                if (cursorMark != null) {
+                    props.put(Constants.QUERY_CURSOR_MARK, cursorMark);
+                } else {
+                    query.setStartIndex(startIndex);
+                }
+
+                SourceResponse response = catalog.query(new QueryRequestImpl(query, props));
+                List<Result> results = response.getResults();
+                if (results.isEmpty()) {
+                    break;
+                }
+
+                Serializable nextCursorMark = response
+                        .getPropertyValue(Constants.QUERY_CURSOR_MARK);
+                if (cursorMark != null && nextCursorMark == null) {
+                    if (!START_CURSOR_MARK.equals(cursorMark)) {
+                        printErrorMessage("The Catalog no longer supports cursors. "
+                                + "Remove the directory and export again.");
+                        return -1;
+                    }
+                    LOGGER.debug("The Catalog does not support cursors, paging by start index");
+                    cursorMark = null;
+                }
+
+                final List<Metacard> metacards = new ArrayList<>(results.size());
+                for (Result result : results) {
+                    metacards.add(result.getMetacard());
+                }
+                final File chunkFile = MetacardArchive.getChunkFile(archiveDir, chunk++);
+                count += metacards.size();
+                startIndex += metacards.size();
+
+                Properties chunkCheckpoint = new Properties();
+                chunkCheckpoint.putAll(checkpoint);
+                chunkCheckpoint.setProperty(MetacardArchive.CHUNKS, String.valueOf(chunk));
+                chunkCheckpoint.setProperty(MetacardArchive.METACARDS, String.valueOf(count));
+                if (cursorMark != null) {
+                    chunkCheckpoint
+                            .setProperty(MetacardArchive.CURSOR_MARK, nextCursorMark.toString());
+                } else {
+                    chunkCheckpoint.remove(MetacardArchive.CURSOR_MARK);
+                    chunkCheckpoint
+                            .setProperty(MetacardArchive.START_INDEX, String.valueOf(startIndex));
+                }
+
+                pendingChunks.add(new PendingChunk(executorService.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws IOException {
+                        MetacardArchive.writeChunk(chunkFile, metacards);
+                        return null;
+                    }
+                }), chunkCheckpoint));
+                checkpointWrittenChunks(archiveDir, pendingChunks, false);
+                printStatus(count);
+
+                if (results.size() < pageSize || (cursorMark != null && cursorMark
+                        .equals(nextCursorMark))) {
+                    break;
+                }
+                if (cursorMark != null) {
+                    cursorMark = nextCursorMark.toString();
+                }
+            }
+
+            checkpointWrittenChunks(archiveDir, pendingChunks, true);
+        } catch (ExecutionException e) {
+            printErrorMessage("Failed to write the archive: " + e.getCause().getMessage());
+            LOGGER.warn("Failed to write the archive", e);
+            return -1;
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        checkpoint.setProperty(MetacardArchive.CHUNKS, String.valueOf(chunk));
+        checkpoint.setProperty(MetacardArchive.METACARDS, String.valueOf(count));
+        checkpoint.setProperty(MetacardArchive.COMPLETE, Boolean.TRUE.toString());
+        MetacardArchive.writeCheckpoint(archiveDir, checkpoint);
+        return count;
+    }
+
+    /**
+     * Records the checkpoint of the written chunks, in order, so that a resumed export never skips
+     * a chunk that was still being written.
+     */
+    private void checkpointWrittenChunks(File archiveDir, Deque<PendingChunk> pendingChunks,
+            boolean wait) throws IOException, ExecutionException, InterruptedException {
+        Properties checkpoint = null;
+        while (!pendingChunks.isEmpty() && (wait || pendingChunks.peek().future.isDone())) {
+            PendingChunk pendingChunk = pendingChunks.poll();
+            pendingChunk.future.get();
+            checkpoint = pendingChunk.checkpoint;
+        }
+        if (checkpoint != null) {
+            MetacardArchive.writeCheckpoint(archiveDir, checkpoint);
+        }
+    }
+
+    private void deleteUncheckpointedChunks(File archiveDir, long chunks) {
+        String firstUncheckpointed = MetacardArchive.getChunkFile(archiveDir, chunks).getName();
+        for (File chunkFile : MetacardArchive.listChunkFiles(archiveDir)) {
+            if (chunkFile.getName().compareTo(firstUncheckpointed) >= 0 && !chunkFile.delete()) {
+                LOGGER.warn("Unable to delete {}", chunkFile);
+            }
+        }
+    }
+
+    protected void printStatus(long count) {
+        console.print(String.format(" %d Metacard(s) exported\t\r", count));
+        console.flush();
+    }
+
+    private static class PendingChunk {
+
+        private final Future<Void> future;
+
+        private final Properties checkpoint;
+
+        PendingChunk(Future<Void> future, Properties checkpoint) {
+            this.future = future;
+            this.checkpoint = checkpoint;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.commands.catalog;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.felix.gogo.commands.Argument;
+import org.apache.felix.gogo.commands.Command;
+import org.apache.felix.gogo.commands.Option;
+import org.codice.ddf.commands.catalog.facade.CatalogFacade;
+import org.fusesource.jansi.Ansi;
+import org.joda.time.Period;
+import org.joda.time.format.PeriodFormatter;
+import org.joda.time.format.PeriodFormatterBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ddf.catalog.Constants;
+import ddf.catalog.data.Metacard;
+import ddf.catalog.operation.impl.CreateRequestImpl;
+
+@Command(scope = CatalogCommands.NAMESPACE, name = "import", description = "Imports the Metacards of an archive written by catalog:export into the Catalog.\n\tThe archive chunks are decompressed in parallel and the Metacards are created in batches that are committed once, at the end of the import.")
+public class ImportCommand extends CatalogCommands {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ImportCommand.class);
+
+    private final PeriodFormatter timeFormatter = new PeriodFormatterBuilder().printZeroRarelyLast()
+            .appendDays().appendSuffix(" day", " days").appendSeparator(" ").appendHours()
+            .appendSuffix(" hour", " hours").appendSeparator(" ").appendMinutes()
+            .appendSuffix(" minute", " minutes").appendSeparator(" ").appendSeconds()
+            .appendSuffix(" second", " seconds").toFormatter();
+
+    @Argument(name = "Archive directory path", description = "Directory of the archive written by catalog:export. Paths are absolute and must be in quotes.", index = 0, multiValued = false, required = true)
+    String dirPath = null;
+
+    @Option(name = "--batchsize", required = false, aliases = {"-b"}, multiValued = false,
+            description = "Number of Metacards to create at a time.")
+    int batchSize = 1000;
+
+    @Option(name = "--threads", required = false, aliases = {"-t"}, multiValued = false,
+            description = "Number of threads decompressing and deserializing the archive chunks.")
+    int threads = Runtime.getRuntime().availableProcessors();
+
+    @Override
+    protected Object executeWithSubject() throws Exception {
+        final File archiveDir = new File(dirPath);
+
+        if (!archiveDir.isDirectory()) {
+            printErrorMessage("Directory [" + dirPath + "] must exist.");
+            console.println("If the directory does indeed exist, try putting the path in quotes.");
+            return null;
+        }
+
+        if (batchSize < 1 || threads < 1) {
+            printErrorMessage("The batch size and the number of threads must be greater than 0.");
+            return null;
+        }
+
+        File[] chunkFiles = MetacardArchive.listChunkFiles(archiveDir);
+        if (chunkFiles.length == 0) {
+            printErrorMessage("Directory [" + dirPath + "] does not contain an export.");
+            return null;
+        }
+
+        Properties checkpoint = MetacardArchive.readCheckpoint(archiveDir);
+        if (checkpoint == null || !Boolean
+                .parseBoolean(checkpoint.getProperty(MetacardArchive.COMPLETE))) {
+            printColor(Ansi.Color.YELLOW, "The export into [" + dirPath + "] is incomplete, "
+                    + "only the Metacards exported so far will be imported.");
+        }
+
+        long start = System.currentTimeMillis();
+        long count = importChunks(chunkFiles);
+        if (count < 0) {
+            return null;
+        }
+
+        long end = System.currentTimeMillis();
+        String elapsedTime = timeFormatter.print(new Period(start, end).withMillis(0));
+        console.printf(" %d Metacard(s) imported in %s\t%n", count, elapsedTime);
+        LOGGER.info("{} Metacard(s) imported in {}", count, elapsedTime);
+        console.println();
+
+        return null;
+    }
+
+    /**
+     * @return the number of Metacards imported, or -1 if the import failed
+     */
+    private long importChunks(File[] chunkFiles) throws Exception {
+        CatalogFacade catalog = getCatalog();
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        // Keeps a bounded number of chunks read ahead, in archive order
+        Deque<Future<List<Metacard>>> chunks = new ArrayDeque<>();
+        int nextChunk = 0;
+        long count = 0;
+        List<Metacard> batch = new ArrayList<>(batchSize);
+        try {
+            while (nextChunk < chunkFiles.length || !chunks.isEmpty()) {
+                while (nextChunk < chunkFiles.length && chunks.size() < threads * 2) {
+                    final File chunkFile = chunkFiles[nextChunk++];
+                    chunks.add(executorService.submit(new Callable<List<Metacard>>() {
+                        @Override
+                        public List<Metacard> call() throws IOException {
+                            return MetacardArchive.readChunk(chunkFile);
+                        }
+                    }));
+                }
+
+                for (Metacard metacard : chunks.poll().get()) {
+                    if (batch.size() == batchSize) {
+                        count += create(catalog, batch, true);
+                        printStatus(count);
+                        batch = new ArrayList<>(batchSize);
+                    }
+                    batch.add(metacard);
+                }
+            }
+            // The last batch is committed right away, which also commits the deferred ones
+            count += create(catalog, batch, false);
+        } catch (ExecutionException e) {
+            printErrorMessage("Failed to read the archive: " + e.getCause().getMessage());
+            LOGGER.warn("Failed to read the archive", e);
+            return -1;
+        } finally {
+            executorService.shutdownNow();
+        }
+        return count;
+    }
+
+    private int create(CatalogFacade catalog, List<Metacard> batch, boolean deferCommit)
+            throws Exception {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        Map<String, Serializable> props = new HashMap<>();
+        props.put(Constants.DEFER_COMMIT, deferCommit);
+        return catalog.create(new CreateRequestImpl(batch, props)).getCreatedMetacards().size();
+    }
+
+    protected void printStatus(long count) {
+        console.print(String.format(" %d Metacard(s) imported\t\r", count));
+        console.flush();
+    }
+}
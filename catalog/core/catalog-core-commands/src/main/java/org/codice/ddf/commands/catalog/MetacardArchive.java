@@ -0,0 +1,246 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.commands.catalog;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import ddf.catalog.data.Attribute;
+import ddf.catalog.data.AttributeDescriptor;
+import ddf.catalog.data.Metacard;
+import ddf.catalog.data.MetacardType;
+import ddf.catalog.data.impl.AttributeImpl;
+import ddf.catalog.data.impl.MetacardImpl;
+
+/**
+ * Reads and writes the archives of the {@link ExportCommand} and {@link ImportCommand}.
+ * <p>
+ * An archive is a directory of numbered, gzipped chunk files and a checkpoint file. Each chunk
+ * holds the metacard types its metacards use, once, followed by the attributes of the metacards.
+ * Attribute names are written once per chunk and then referred to by index. A chunk is written to
+ * a temporary file that is renamed once complete, so an interrupted export never leaves a partial
+ * chunk behind. The checkpoint records how far the export got, so that it can be resumed.
+ */
+final class MetacardArchive {
+
+    static final String CHECKPOINT_FILE = "export.checkpoint";
+
+    static final String CURSOR_MARK = "cursorMark";
+
+    static final String START_INDEX = "startIndex";
+
+    static final String CHUNKS = "chunks";
+
+    static final String METACARDS = "metacards";
+
+    static final String COMPLETE = "complete";
+
+    private static final String CHUNK_PREFIX = "metacards-";
+
+    private static final String CHUNK_SUFFIX = ".bin.gz";
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private static final int MAGIC = 0x4444434d;
+
+    private static final int VERSION = 1;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private MetacardArchive() {
+    }
+
+    static File getChunkFile(File archiveDir, long chunk) {
+        return new File(archiveDir, String.format("%s%08d%s", CHUNK_PREFIX, chunk, CHUNK_SUFFIX));
+    }
+
+    /**
+     * @return the chunk files of the archive, in the order they were written
+     */
+    static File[] listChunkFiles(File archiveDir) {
+        File[] chunks = archiveDir.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith(CHUNK_PREFIX) && name.endsWith(CHUNK_SUFFIX);
+            }
+        });
+        if (chunks == null) {
+            return new File[0];
+        }
+        Arrays.sort(chunks);
+        return chunks;
+    }
+
+    static void writeChunk(File chunkFile, List<Metacard> metacards) throws IOException {
+        File tempFile = new File(chunkFile.getPath() + TEMP_SUFFIX);
+        try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(new FileOutputStream(tempFile), BUFFER_SIZE),
+                BUFFER_SIZE))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+
+            Map<String, Integer> typeIndexes = new HashMap<>();
+            List<MetacardType> types = new ArrayList<>();
+            int[] metacardTypes = new int[metacards.size()];
+            for (int i = 0; i < metacards.size(); i++) {
+                MetacardType type = metacards.get(i).getMetacardType();
+                Integer index = typeIndexes.get(type.getName());
+                if (index == null) {
+                    index = types.size();
+                    typeIndexes.put(type.getName(), index);
+                    types.add(type);
+                }
+                metacardTypes[i] = index;
+            }
+            out.writeInt(types.size());
+            for (MetacardType type : types) {
+                out.writeObject(type);
+            }
+
+            Map<String, Integer> names = new HashMap<>();
+            out.writeInt(metacards.size());
+            for (int i = 0; i < metacards.size(); i++) {
+                writeMetacard(out, metacards.get(i), metacardTypes[i], names);
+            }
+        }
+
+        Files.move(tempFile.toPath(), chunkFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    static List<Metacard> readChunk(File chunkFile) throws IOException {
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(
+                new GZIPInputStream(new FileInputStream(chunkFile), BUFFER_SIZE), BUFFER_SIZE))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException(chunkFile + " is not a metacard archive chunk");
+            }
+
+            MetacardType[] types = new MetacardType[in.readInt()];
+            for (int i = 0; i < types.length; i++) {
+                types[i] = (MetacardType) in.readObject();
+            }
+
+            List<String> names = new ArrayList<>();
+            int count = in.readInt();
+            List<Metacard> metacards = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                metacards.add(readMetacard(in, types, names));
+            }
+            return metacards;
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Unable to read " + chunkFile, e);
+        }
+    }
+
+    private static void writeMetacard(ObjectOutputStream out, Metacard metacard, int type,
+            Map<String, Integer> names) throws IOException {
+        List<Attribute> attributes = new ArrayList<>();
+        for (AttributeDescriptor descriptor : metacard.getMetacardType()
+                .getAttributeDescriptors()) {
+            Attribute attribute = metacard.getAttribute(descriptor.getName());
+            if (attribute != null && attribute.getValues() != null) {
+                attributes.add(attribute);
+            }
+        }
+
+        out.writeInt(type);
+        out.writeInt(attributes.size());
+        for (Attribute attribute : attributes) {
+            Integer name = names.get(attribute.getName());
+            if (name == null) {
+                // A new name is written out in full, the following ones by index
+                out.writeInt(names.size());
+                out.writeUTF(attribute.getName());
+                names.put(attribute.getName(), names.size());
+            } else {
+                out.writeInt(name);
+            }
+
+            List<Serializable> values = attribute.getValues();
+            out.writeInt(values.size());
+            for (Serializable value : values) {
+                out.writeObject(value);
+            }
+        }
+    }
+
+    private static Metacard readMetacard(ObjectInputStream in, MetacardType[] types,
+            List<String> names) throws IOException, ClassNotFoundException {
+        MetacardImpl metacard = new MetacardImpl(types[in.readInt()]);
+        int attributeCount = in.readInt();
+        for (int i = 0; i < attributeCount; i++) {
+            int nameIndex = in.readInt();
+            if (nameIndex == names.size()) {
+                names.add(in.readUTF());
+            }
+            String name = names.get(nameIndex);
+
+            int valueCount = in.readInt();
+            AttributeImpl attribute = null;
+            for (int j = 0; j < valueCount; j++) {
+                Serializable value = (Serializable) in.readObject();
+                if (attribute == null) {
+                    attribute = new AttributeImpl(name, value);
+                } else {
+                    attribute.addValue(value);
+                }
+            }
+            if (attribute != null) {
+                metacard.setAttribute(attribute);
+            }
+        }
+        return metacard;
+    }
+
+    static Properties readCheckpoint(File archiveDir) throws IOException {
+        File checkpointFile = new File(archiveDir, CHECKPOINT_FILE);
+        if (!checkpointFile.exists()) {
+            return null;
+        }
+        Properties checkpoint = new Properties();
+        try (InputStream in = new FileInputStream(checkpointFile)) {
+            checkpoint.load(in);
+        }
+        return checkpoint;
+    }
+
+    static void writeCheckpoint(File archiveDir, Properties checkpoint) throws IOException {
+        File checkpointFile = new File(archiveDir, CHECKPOINT_FILE);
+        File tempFile = new File(archiveDir, CHECKPOINT_FILE + TEMP_SUFFIX);
+        try (OutputStream out = new FileOutputStream(tempFile)) {
+            checkpoint.store(out, null);
+        }
+        Files.move(tempFile.toPath(), checkpointFile.toPath(),
+                StandardCopyOption.REPLACE_EXISTING);
+    }
+}
@@ -0,0 +1,130 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.commands.catalog;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.felix.gogo.commands.Command;
+import org.codice.ddf.commands.catalog.facade.CatalogFacade;
+import org.codice.ddf.commands.catalog.facade.Provider;
+import org.geotools.filter.text.cql2.CQL;
+import org.opengis.filter.Filter;
+import org.opengis.filter.sort.SortOrder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ddf.catalog.data.Metacard;
+import ddf.catalog.data.Result;
+import ddf.catalog.federation.FederationException;
+import ddf.catalog.filter.impl.SortByImpl;
+import ddf.catalog.operation.QueryRequest;
+import ddf.catalog.operation.SourceProcessingDetails;
+import ddf.catalog.operation.SourceResponse;
+import ddf.catalog.operation.impl.QueryImpl;
+import ddf.catalog.operation.impl.QueryRequestImpl;
+import ddf.catalog.source.CatalogProvider;
+import ddf.catalog.source.SourceUnavailableException;
+import ddf.catalog.source.UnsupportedQueryException;
+
+/**
+ * Custom Karaf command to rewrite the records of the Catalog Provider in place, e.g., to move the
+ * Metacard Types of records indexed by an older version into the Metacard Type registry.
+ * <p>
+ * Records are read and written back directly through the {@link CatalogProvider}, bypassing the
+ * ingest plugins, so their IDs and dates are left unchanged.
+ */
+@Command(scope = CatalogCommands.NAMESPACE, name = "reindex", description = "Rewrites the Metacards of the Catalog Provider in the current index format.")
+public class ReindexCommand extends DuplicateCommands {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReindexCommand.class);
+
+    @Override
+    protected Object executeWithSubject() throws Exception {
+        CatalogFacade provider = new Provider(getService(CatalogProvider.class));
+
+        long start = System.currentTimeMillis();
+
+        Filter filter = (cqlFilter != null) ?
+                CQL.toFilter(cqlFilter) :
+                getFilter(getFilterStartTime(start), start, Metacard.MODIFIED);
+
+        QueryImpl query = new QueryImpl(filter);
+        query.setRequestsTotalResultsCount(true);
+        query.setPageSize(1);
+        SourceResponse response;
+        try {
+            response = provider.query(new QueryRequestImpl(query));
+        } catch (UnsupportedQueryException | SourceUnavailableException | FederationException e) {
+            printErrorMessage("Error occurred while querying the Catalog Provider." + e.getMessage());
+            return null;
+        }
+
+        long totalPossible = response.getHits();
+        if (totalPossible == 0) {
+            console.println("No records were found to reindex.");
+            return null;
+        }
+
+        console.println("Starting reindex for " + totalPossible + " Records");
+
+        int reindexed = 0;
+        int queryIndex = 1;
+        do {
+            reindexed += queryAndIngest(provider, provider, queryIndex, filter);
+            printProgressAndFlush(start, totalPossible, reindexed);
+            queryIndex += batchSize;
+        } while (queryIndex <= totalPossible);
+
+        console.println();
+        long end = System.currentTimeMillis();
+        String completed = String
+                .format(" %d record(s) reindexed; %d record(s) failed; completed in %3.3f seconds.",
+                        reindexed, failedCount.get(), (end - start) / MS_PER_SECOND);
+        LOGGER.info("Reindex Complete: {}", completed);
+        console.println(completed);
+
+        return null;
+    }
+
+    @Override
+    protected List<Metacard> query(CatalogFacade provider, int startIndex, Filter filter) {
+        QueryImpl query = new QueryImpl(filter);
+        query.setRequestsTotalResultsCount(false);
+        query.setPageSize(batchSize);
+        query.setStartIndex(startIndex);
+        query.setSortBy(new SortByImpl(Metacard.ID, SortOrder.ASCENDING));
+        QueryRequest queryRequest = new QueryRequestImpl(query);
+        SourceResponse response;
+        try {
+            LOGGER.debug("Querying with startIndex: {}", startIndex);
+            response = provider.query(queryRequest);
+        } catch (UnsupportedQueryException | SourceUnavailableException | FederationException e) {
+            printErrorMessage(
+                    String.format("Received error from Catalog Provider: %s%n", e.getMessage()));
+            return null;
+        }
+        if (response.getProcessingDetails() != null && !response.getProcessingDetails().isEmpty()) {
+            for (SourceProcessingDetails details : response.getProcessingDetails()) {
+                LOGGER.debug("Got Issues: {}", details.getWarnings());
+            }
+            return null;
+        }
+        List<Metacard> metacards = new ArrayList<>();
+        for (Result result : response.getResults()) {
+            metacards.add(result.getMetacard());
+        }
+        return metacards;
+    }
+}
@@ -0,0 +1,94 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.commands.catalog;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ddf.catalog.data.Metacard;
+import ddf.catalog.data.impl.MetacardImpl;
+
+/**
+ * Tests the chunk and checkpoint files of the {@link ExportCommand} archives.
+ */
+public class MetacardArchiveTest {
+
+    @Rule
+    public TemporaryFolder testFolder = new TemporaryFolder();
+
+    @Test
+    public void testChunkRoundTrip() throws Exception {
+        List<Metacard> metacards = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            MetacardImpl metacard = new MetacardImpl();
+            metacard.setId("id" + i);
+            metacard.setTitle("title" + i);
+            metacard.setModifiedDate(new Date(i));
+            metacard.setMetadata("<xml>" + i + "</xml>");
+            metacards.add(metacard);
+        }
+        File chunkFile = MetacardArchive.getChunkFile(testFolder.getRoot(), 0);
+
+        MetacardArchive.writeChunk(chunkFile, metacards);
+        List<Metacard> read = MetacardArchive.readChunk(chunkFile);
+
+        assertEquals(metacards.size(), read.size());
+        for (int i = 0; i < metacards.size(); i++) {
+            assertEquals("id" + i, read.get(i).getId());
+            assertEquals("title" + i, read.get(i).getTitle());
+            assertEquals(new Date(i), read.get(i).getModifiedDate());
+            assertEquals("<xml>" + i + "</xml>", read.get(i).getMetadata());
+            assertEquals(metacards.get(i).getMetacardType().getName(),
+                    read.get(i).getMetacardType().getName());
+        }
+        assertArrayEquals(new File[] {chunkFile},
+                MetacardArchive.listChunkFiles(testFolder.getRoot()));
+    }
+
+    @Test
+    public void testListsChunksInOrder() throws Exception {
+        File root = testFolder.getRoot();
+        List<Metacard> metacards = Arrays.<Metacard>asList(new MetacardImpl());
+        MetacardArchive.writeChunk(MetacardArchive.getChunkFile(root, 10), metacards);
+        MetacardArchive.writeChunk(MetacardArchive.getChunkFile(root, 2), metacards);
+        testFolder.newFile("other.txt");
+
+        assertArrayEquals(new File[] {MetacardArchive.getChunkFile(root, 2),
+                MetacardArchive.getChunkFile(root, 10)}, MetacardArchive.listChunkFiles(root));
+    }
+
+    @Test
+    public void testCheckpointRoundTrip() throws Exception {
+        assertNull(MetacardArchive.readCheckpoint(testFolder.getRoot()));
+
+        Properties checkpoint = new Properties();
+        checkpoint.setProperty(MetacardArchive.CURSOR_MARK, "AoE/abc");
+        checkpoint.setProperty(MetacardArchive.CHUNKS, "4");
+        MetacardArchive.writeCheckpoint(testFolder.getRoot(), checkpoint);
+
+        assertEquals(checkpoint, MetacardArchive.readCheckpoint(testFolder.getRoot()));
+    }
+}
@@ -15,7 +15,6 @@
 
 import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
@@ -49,6 +48,7 @@
 import ddf.catalog.source.Source;
 import ddf.catalog.util.impl.DistanceResultComparator;
 import ddf.catalog.util.impl.RelevanceResultComparator;
+import ddf.catalog.util.impl.SortedResultMerger;
 import ddf.catalog.util.impl.TemporalResultComparator;
 
 /**
@@ -146,7 +146,9 @@ public void run() {
                 }
             }
 
-            List<Result> resultList = new ArrayList<Result>();
+            // Only retain a page worth of results while merging each source's results
+            SortedResultMerger resultMerger = new SortedResultMerger(coreComparator,
+                    query.getPageSize());
             long totalHits = 0;
             Set<ProcessingDetails> processingDetails = returnResults.getProcessingDetails();
 
@@ -177,7 +179,7 @@ public void run() {
                 }
                 if (sourceResponse != null) {
                     List<Result> sourceResults = sourceResponse.getResults();
-                    resultList.addAll(sourceResults);
+                    resultMerger.add(sourceResults);
                     long sourceHits = sourceResponse.getHits();
 
                     totalHits += sourceHits;
@@ -221,16 +223,10 @@ public void run() {
 
                 }
             }
-            logger.debug("all sites finished returning results: " + resultList.size());
-
-            Collections.sort(resultList, coreComparator);
+            logger.debug("all sites finished returning results: " + resultMerger.size());
 
             returnResults.setHits(totalHits);
-            int maxResults = query.getPageSize() > 0 ? query.getPageSize() : Integer.MAX_VALUE;
-
-            returnResults.addResults(
-                    resultList.size() > maxResults ? resultList.subList(0, maxResults) : resultList,
-                    true);
+            returnResults.addResults(resultMerger.drain(), true);
         }
 
         private long getTimeRemaining(long deadline) {
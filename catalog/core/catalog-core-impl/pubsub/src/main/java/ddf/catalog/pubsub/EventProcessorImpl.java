@@ -22,12 +22,9 @@
 import java.util.Map;
 import java.util.UUID;
 
-import org.apache.lucene.store.Directory;
 import org.osgi.framework.BundleContext;
-import org.osgi.framework.ServiceRegistration;
 import org.osgi.service.event.Event;
 import org.osgi.service.event.EventAdmin;
-import org.osgi.service.event.EventConstants;
 import org.osgi.service.event.EventHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -47,10 +44,12 @@
 import ddf.catalog.plugin.PostIngestPlugin;
 import ddf.catalog.plugin.PreDeliveryPlugin;
 import ddf.catalog.plugin.PreSubscriptionPlugin;
-import ddf.catalog.pubsub.criteria.contextual.ContextualEvaluator;
+import ddf.catalog.pubsub.criteria.contextual.ContextualIndexCache;
 import ddf.catalog.pubsub.internal.PubSubConstants;
-import ddf.catalog.pubsub.internal.PubSubThread;
+import ddf.catalog.pubsub.internal.PubSubExecutor;
+import ddf.catalog.pubsub.internal.PubSubTask;
 import ddf.catalog.pubsub.internal.SubscriptionFilterVisitor;
+import ddf.catalog.pubsub.internal.SubscriptionIndex;
 import ddf.catalog.pubsub.predicate.Predicate;
 
 public class EventProcessorImpl implements EventProcessor, EventHandler, PostIngestPlugin {
@@ -69,7 +68,17 @@ public class EventProcessorImpl implements EventProcessor, EventHandler, PostIng
 
     protected CatalogFramework catalog;
 
-    private Map<String, ServiceRegistration> existingSubscriptions;
+    private final SubscriptionIndex subscriptionIndex = new SubscriptionIndex();
+
+    private PubSubExecutor pubSubExecutor;
+
+    private int threadPoolSize = PubSubExecutor.DEFAULT_THREAD_POOL_SIZE;
+
+    private int queueSize = PubSubExecutor.DEFAULT_QUEUE_SIZE;
+
+    private PubSubExecutor.OverflowPolicy overflowPolicy = PubSubExecutor.OverflowPolicy.BLOCK;
+
+    private long blockTimeoutMillis = PubSubExecutor.DEFAULT_BLOCK_TIMEOUT_MILLIS;
 
     public EventProcessorImpl() {
         LOGGER.debug("INSIDE: EventProcessorImpl default constructor");
@@ -85,7 +94,6 @@ public EventProcessorImpl(BundleContext bundleContext, EventAdmin eventAdmin,
         this.preSubscription = preSubscription;
         this.preDelivery = preDelivery;
         this.catalog = catalog;
-        this.existingSubscriptions = new HashMap<String, ServiceRegistration>();
 
         if (this.preSubscription == null) {
             LOGGER.debug("preSubscription plugins list is NULL");
@@ -116,6 +124,29 @@ public static void processEntry(Metacard metacard, String operation, EventAdmin
         String methodName = "processEntry";
         LOGGER.debug("ENTERING: " + methodName);
 
+        Event event = createEvent(metacard, operation);
+        if (event != null) {
+            if (eventAdmin != null) {
+                eventAdmin.postEvent(event);
+            } else {
+                LOGGER.warn("Unable to post event since eventAdmin is null.");
+            }
+        }
+
+        LOGGER.debug("EXITING: {}", methodName);
+    }
+
+    /**
+     * Creates the event evaluated against the subscriptions for an entry, adding properties from
+     * the metacard to the event.
+     *
+     * @param metacard
+     *            the metacard to process
+     * @param operation
+     *            the operation performed on the metacard
+     * @return the event, or {@code null} if the metacard is {@code null}
+     */
+    public static Event createEvent(Metacard metacard, String operation) {
         if (metacard != null) {
             LOGGER.debug("Input Metacard:{}\n", metacard.toString());
             LOGGER.debug("catalog ID = {}", metacard.getId());
@@ -167,23 +198,17 @@ public static void processEntry(Metacard metacard, String operation, EventAdmin
             // CONTEXTUAL INFORMATION
             if (metacard.getMetadata() != null) {
                 try {
-                    // Build Lucene search index on entry's entire metadata using
-                    // default XPaths (specified
-                    // in ContextualEvaluator) - this index will be used by all
-                    // contextual predicates that do
-                    // *NOT* specify any textPaths. (Building index here optimizes
-                    // code so that this index is
-                    // not built for every contextual subscription that has no
-                    // textPaths.)
-                    Directory index = ContextualEvaluator.buildIndex(metacard.getMetadata());
-
                     // Build contextual info to be sent in event for this entry.
-                    // Include the default Lucene search
-                    // index and the entry's metadata (in case subscription has
-                    // textPaths, then it can create Lucene
-                    // search indices on the metadata using its textPaths)
+                    // Include the index cache shared by all contextual predicates
+                    // evaluated against this entry - it builds the Lucene search
+                    // index for the default XPaths (specified in ContextualEvaluator)
+                    // and for each distinct set of textPaths the first time a
+                    // subscription needs it, so entries that no contextual
+                    // subscription looks at are never indexed - and the entry's
+                    // metadata
                     Map<String, Object> contextualMap = new HashMap<String, Object>();
-                    contextualMap.put("DEFAULT_INDEX", index);
+                    contextualMap.put("INDEX_CACHE",
+                            new ContextualIndexCache(metacard.getMetadata()));
                     contextualMap.put("METADATA", metacard.getMetadata());
                     properties.put(PubSubConstants.HEADER_CONTEXTUAL_KEY, contextualMap);
                 } catch (Exception e) {
@@ -191,23 +216,19 @@ public static void processEntry(Metacard metacard, String operation, EventAdmin
                 }
             }
 
-            if (eventAdmin != null) {
-                eventAdmin.postEvent(
-                        new Event(PubSubConstants.PUBLISHED_EVENT_TOPIC_NAME, properties));
-            } else {
-                LOGGER.warn("Unable to post event since eventAdmin is null.");
-            }
+            return new Event(PubSubConstants.PUBLISHED_EVENT_TOPIC_NAME, properties);
         } else {
             LOGGER.warn("Unable to post null metacard.");
+            return null;
         }
-
-        LOGGER.debug("EXITING: {}", methodName);
     }
 
     public void init() {
         String methodName = "init";
         LOGGER.debug("ENTERING: {}", methodName);
 
+        getPubSubExecutor().registerMBean(getProcessorType());
+
         LOGGER.debug("EXITING: {}", methodName);
 
     }
@@ -216,14 +237,22 @@ public void destroy() {
         String methodName = "destroy";
         LOGGER.debug("ENTERING: {}", methodName);
 
+        synchronized (this) {
+            if (pubSubExecutor != null) {
+                pubSubExecutor.shutdown();
+                pubSubExecutor = null;
+            }
+        }
+
         LOGGER.debug("EXITING: {}", methodName);
     }
 
     /**
      * By default the Felix EventAdmin implementation has a timeout of 5000 ms. Your event handler
      * has to return from the handle event method in this time frame. If it does not, it gets
-     * Blacklisted. Therefore, this method processes its events in a separate thread than the
-     * EventAdmin who called it.
+     * Blacklisted. Therefore, this method queues its events to be processed by a bounded pool of
+     * threads separate from the EventAdmin who called it. The thread processing an event also
+     * evaluates it against the subscriptions and delivers it to the ones that match.
      */
     public void handleEvent(Event event) {
         String methodName = "handleEvent";
@@ -231,12 +260,12 @@ public void handleEvent(Event event) {
 
         LOGGER.debug("Received event: {}", event.getTopic());
 
-        if (!existingSubscriptions.isEmpty()) {
+        if (!subscriptionIndex.isEmpty()) {
             String topic = event.getTopic();
             Metacard entry = (Metacard) event.getProperty(EventProcessor.EVENT_METACARD);
             LOGGER.debug("metacard ID = {}", entry.getId());
 
-            new PubSubThread(entry, topic, eventAdmin).start();
+            getPubSubExecutor().execute(new PubSubTask(entry, topic, subscriptionIndex));
         } else {
             LOGGER.debug(
                     "No existing subscriptions, so no need to handle event since there is no one listening ...");
@@ -279,16 +308,8 @@ public void createSubscription(Subscription subscription, String subscriptionId)
             Predicate finalPredicate = (Predicate) subscription.accept(visitor, null);
             LOGGER.debug("predicate from filter visitor: {}", finalPredicate);
 
-            String[] topics = new String[] {PubSubConstants.PUBLISHED_EVENT_TOPIC_NAME};
-
-            Dictionary<String, String[]> props = new Hashtable<String, String[]>();
-            props.put(EventConstants.EVENT_TOPIC, topics);
-            ServiceRegistration serviceRegistration = bundleContext
-                    .registerService(EventHandler.class.getName(),
-                            new PublishedEventHandler(finalPredicate, subscription, preDelivery,
-                                    catalog), props);
-
-            existingSubscriptions.put(subscriptionId, serviceRegistration);
+            subscriptionIndex.add(subscriptionId, finalPredicate,
+                    new PublishedEventHandler(finalPredicate, subscription, preDelivery, catalog));
 
             LOGGER.debug("Subscription {} created.", subscriptionId);
         } catch (Exception e) {
@@ -326,12 +347,8 @@ public void deleteSubscription(String subscriptionId) throws SubscriptionNotFoun
 
         try {
             LOGGER.info("Removing subscription: {}", subscriptionId);
-            ServiceRegistration sr = (ServiceRegistration) existingSubscriptions
-                    .get(subscriptionId);
-            if (sr != null) {
-                sr.unregister();
+            if (subscriptionIndex.remove(subscriptionId)) {
                 LOGGER.debug("Removal complete");
-                existingSubscriptions.remove(subscriptionId);
             } else {
                 LOGGER.info("Unable to find existing subscription: {}.  May already be deleted.",
                         subscriptionId);
@@ -345,6 +362,58 @@ public void deleteSubscription(String subscriptionId) throws SubscriptionNotFoun
         LOGGER.debug("EXITING: " + methodName);
     }
 
+    /**
+     * @return the type of this event processor, identifying its metrics
+     */
+    protected String getProcessorType() {
+        return "standard";
+    }
+
+    private synchronized PubSubExecutor getPubSubExecutor() {
+        if (pubSubExecutor == null) {
+            pubSubExecutor = new PubSubExecutor(threadPoolSize, queueSize, overflowPolicy,
+                    blockTimeoutMillis);
+        }
+        return pubSubExecutor;
+    }
+
+    /**
+     * Sets the number of threads processing events. Takes effect when the processor is
+     * initialized.
+     */
+    public void setThreadPoolSize(int threadPoolSize) {
+        this.threadPoolSize = threadPoolSize;
+    }
+
+    /**
+     * Sets the maximum number of events waiting to be processed. Takes effect when the processor
+     * is initialized.
+     */
+    public void setQueueSize(int queueSize) {
+        this.queueSize = queueSize;
+    }
+
+    /**
+     * Sets what to do with events when the queue is full, one of the
+     * {@link PubSubExecutor.OverflowPolicy} names. Takes effect when the processor is initialized.
+     */
+    public void setOverflowPolicy(String overflowPolicy) {
+        try {
+            this.overflowPolicy = PubSubExecutor.OverflowPolicy.valueOf(overflowPolicy);
+        } catch (IllegalArgumentException | NullPointerException e) {
+            LOGGER.warn("Invalid overflow policy {}, using {}", overflowPolicy,
+                    this.overflowPolicy);
+        }
+    }
+
+    /**
+     * Sets how long to wait for space in a full queue before dropping an event when using the
+     * {@link PubSubExecutor.OverflowPolicy#BLOCK} policy.
+     */
+    public void setBlockTimeoutMillis(long blockTimeoutMillis) {
+        this.blockTimeoutMillis = blockTimeoutMillis;
+    }
+
     public Predicate createFinalPredicate(Subscription subscription) {
         String methodName = "createFinalPredicate";
         LOGGER.debug("ENTERING: {}", methodName);
@@ -40,6 +40,8 @@ public void init() {
         String methodName = "init";
         LOGGER.debug("ENTERING: {}", methodName);
 
+        super.init();
+
         LOGGER.debug("EXITING: {}", methodName);
     }
 
@@ -47,9 +49,16 @@ public void destroy() {
         String methodName = "destroy";
         LOGGER.debug("ENTERING: {}", methodName);
 
+        super.destroy();
+
         LOGGER.debug("EXITING: {}", methodName);
     }
 
+    @Override
+    protected String getProcessorType() {
+        return "fanout";
+    }
+
     @Override
     public void notifyCreated(Metacard newMetacard) {
         String methodName = "notifyCreated";
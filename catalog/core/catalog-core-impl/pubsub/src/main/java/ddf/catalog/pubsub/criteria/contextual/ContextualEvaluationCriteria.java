@@ -14,6 +14,8 @@
 
 package ddf.catalog.pubsub.criteria.contextual;
 
+import java.io.IOException;
+
 import org.apache.lucene.store.Directory;
 
 public interface ContextualEvaluationCriteria {
@@ -22,8 +24,9 @@ public interface ContextualEvaluationCriteria {
      * The document that is to be stored and searched over.
      *
      * @return
+     * @throws IOException
      */
-    public Directory getIndex();
+    public Directory getIndex() throws IOException;
 
     /**
      * The search phrase which forms the criteria to search over the document
@@ -39,4 +42,12 @@ public interface ContextualEvaluationCriteria {
     public String getMetadata();
 
     public String[] getTextPaths();
+
+    /**
+     * The indexes of the document shared with other criteria evaluated against the same document,
+     * or null if the index was built for these criteria only.
+     *
+     * @return
+     */
+    public ContextualIndexCache getIndexCache();
 }
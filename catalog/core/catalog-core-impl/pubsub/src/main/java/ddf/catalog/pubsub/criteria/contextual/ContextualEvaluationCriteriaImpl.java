@@ -36,6 +36,8 @@ public class ContextualEvaluationCriteriaImpl implements ContextualEvaluationCri
 
     private Directory index;
 
+    private ContextualIndexCache indexCache;
+
     public ContextualEvaluationCriteriaImpl(String criteria, boolean fuzzy,
             boolean caseSensitiveSearch, Directory index) {
         super();
@@ -69,11 +71,34 @@ public ContextualEvaluationCriteriaImpl(String criteria, boolean fuzzy,
         this.index = ContextualEvaluator.buildIndex(metadata, textPaths);
     }
 
+    /**
+     * Criteria evaluated against the shared indexes of a document. The index for the text paths,
+     * or the default index if there are no text paths, is only built when it is first needed.
+     */
+    public ContextualEvaluationCriteriaImpl(String criteria, boolean fuzzy,
+            boolean caseSensitiveSearch, String[] textPaths, ContextualIndexCache indexCache) {
+        super();
+        this.criteria = criteria;
+        this.fuzzy = fuzzy;
+        this.caseSensitiveSearch = caseSensitiveSearch;
+        if (textPaths != null && textPaths.length > 0) {
+            this.textPaths = new String[textPaths.length];
+            System.arraycopy(textPaths, 0, this.textPaths, 0, textPaths.length);
+        }
+        this.metadata = indexCache.getMetadata();
+        this.indexCache = indexCache;
+    }
+
     public String getCriteria() {
         return criteria;
     }
 
-    public Directory getIndex() {
+    public Directory getIndex() throws IOException {
+        if (index == null && indexCache != null) {
+            index = textPaths != null ?
+                    indexCache.getIndex(textPaths) :
+                    indexCache.getDefaultIndex();
+        }
         return index;
     }
 
@@ -93,4 +118,8 @@ public String getMetadata() {
         return metadata;
     }
 
+    public ContextualIndexCache getIndexCache() {
+        return indexCache;
+    }
+
 }
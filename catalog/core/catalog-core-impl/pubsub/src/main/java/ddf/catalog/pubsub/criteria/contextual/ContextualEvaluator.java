@@ -23,6 +23,7 @@
 import javax.xml.xpath.XPathExpressionException;
 
 import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.PerFieldAnalyzerWrapper;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
 import org.apache.lucene.analysis.tokenattributes.TermAttribute;
@@ -69,6 +70,20 @@ public final class ContextualEvaluator {
     private static final String[] DEFAULT_XPATH_SELECTORS = new String[] {DEFAULT_XPATH_1,
             DEFAULT_XPATH_2};
 
+    // Analyzers keep their per-thread token streams in thread locals, so one instance can be shared
+    private static final ContextualAnalyzer CONTEXTUAL_ANALYZER = new ContextualAnalyzer(
+            Version.LUCENE_30);
+
+    private static final CaseSensitiveContextualAnalyzer CASE_SENSITIVE_CONTEXTUAL_ANALYZER = new CaseSensitiveContextualAnalyzer(
+            Version.LUCENE_30);
+
+    private static final PerFieldAnalyzerWrapper INDEX_ANALYZER = new PerFieldAnalyzerWrapper(
+            CONTEXTUAL_ANALYZER);
+
+    static {
+        INDEX_ANALYZER.addAnalyzer(CASE_SENSITIVE_FIELD_NAME, CASE_SENSITIVE_CONTEXTUAL_ANALYZER);
+    }
+
     private ContextualEvaluator() {
         throw new UnsupportedOperationException(
                 "This is a utility class - it should never be instantiated");
@@ -86,7 +101,6 @@ public static boolean evaluate(ContextualEvaluationCriteria cec)
         String methodName = "evaluate";
         LOGGER.entry(methodName);
 
-        Directory index = cec.getIndex();
         String searchPhrase = cec.getCriteria();
 
         // Handle case where no search phrase is specified. Contextual criteria should then specify
@@ -95,9 +109,13 @@ public static boolean evaluate(ContextualEvaluationCriteria cec)
         if (searchPhrase == null || searchPhrase.isEmpty()) {
             String[] textPaths = cec.getTextPaths();
             String fullDocument = cec.getMetadata();
+            ContextualIndexCache indexCache = cec.getIndexCache();
 
-            if (textPaths != null && textPaths.length > 0 && fullDocument != null) {
-                String indexableText = getIndexableText(fullDocument, textPaths);
+            if (textPaths != null && textPaths.length > 0 && (fullDocument != null
+                    || indexCache != null)) {
+                String indexableText = indexCache != null ?
+                        indexCache.getIndexableText(textPaths) :
+                        getIndexableText(fullDocument, textPaths);
                 if (indexableText != null && !indexableText.isEmpty()) {
                     LOGGER.trace("Found element/attribute for textPaths");
                     LOGGER.exit(methodName + " - returning true");
@@ -116,15 +134,14 @@ public static boolean evaluate(ContextualEvaluationCriteria cec)
         if (cec.isCaseSensitiveSearch()) {
             LOGGER.debug("Doing case-sensitive search ...");
             queryParser = new QueryParser(Version.LUCENE_30, CASE_SENSITIVE_FIELD_NAME,
-                    new CaseSensitiveContextualAnalyzer(Version.LUCENE_30));
+                    CASE_SENSITIVE_CONTEXTUAL_ANALYZER);
 
             // Make Wildcard, Prefix, Fuzzy, and Range queries *not* be automatically lower-cased,
             // i.e., make them be case-sensitive
             queryParser.setLowercaseExpandedTerms(false);
         } else {
             LOGGER.debug("Doing case-insensitive search ...");
-            queryParser = new QueryParser(Version.LUCENE_30, FIELD_NAME,
-                    new ContextualAnalyzer(Version.LUCENE_30));
+            queryParser = new QueryParser(Version.LUCENE_30, FIELD_NAME, CONTEXTUAL_ANALYZER);
         }
 
         // Configures Lucene query parser to allow a wildcard as first character in the
@@ -134,6 +151,7 @@ public static boolean evaluate(ContextualEvaluationCriteria cec)
         Query q = queryParser.parse(searchPhrase);
 
         // b. search
+        Directory index = cec.getIndex();
         int hitsPerPage = 1;
         IndexSearcher searcher = new IndexSearcher(index, true);
         TopDocs topDocs = searcher.search(q, hitsPerPage);
@@ -151,20 +169,20 @@ public static boolean evaluate(ContextualEvaluationCriteria cec)
     }
 
     /**
-     * Create a field with the specified field name and value, and add it to a Lucene Document to be
-     * added to the specified IndexWriter.
+     * Create a Lucene Document with a case-insensitive and a case-sensitive field for the specified
+     * value, and add it to the specified IndexWriter. Only the indexed terms are searched, so the
+     * value is neither stored nor kept as term vectors.
      *
      * @param indexWriter
-     * @param fieldName
      * @param value
      *
      * @throws IOException
      */
-    private static void addDoc(IndexWriter indexWriter, String fieldName, String value)
-            throws IOException {
+    private static void addDoc(IndexWriter indexWriter, String value) throws IOException {
         Document doc = new Document();
-        doc.add(new Field(fieldName, value, Field.Store.YES, Field.Index.ANALYZED,
-                Field.TermVector.WITH_POSITIONS_OFFSETS));
+        doc.add(new Field(FIELD_NAME, value, Field.Store.NO, Field.Index.ANALYZED));
+        doc.add(new Field(CASE_SENSITIVE_FIELD_NAME, value, Field.Store.NO,
+                Field.Index.ANALYZED));
         indexWriter.addDocument(doc);
     }
 
@@ -206,50 +224,48 @@ public static Directory buildIndex(String fullDocument, String[] xpathSelectors)
         String methodName = "buildIndex";
         LOGGER.entry(methodName);
 
-        // LOGGER.debug( XPathHelper.xmlToString( fullDocument ) );
+        // Retrieve the text from the document that can be indexed using the specified XPath
+        // selectors
+        Directory index = buildIndexFromText(getIndexableText(fullDocument, xpathSelectors));
 
-        // 0. Specify the analyzer for tokenizing text.
-        // The same analyzer should be used for indexing and searching
-        ContextualAnalyzer contextualAnalyzer = new ContextualAnalyzer(Version.LUCENE_30);
+        LOGGER.exit(methodName);
 
-        // 1. create the index
-        Directory index = new RAMDirectory();
+        return index;
+    }
 
-        // Retrieve the text from the document that can be indexed using the specified XPath
-        // selectors
-        String indexableText = getIndexableText(fullDocument, xpathSelectors);
+    /**
+     * Build one Lucene index for the specified text that contains both case-insensitive and
+     * case-sensitive indexed text.
+     *
+     * @param indexableText
+     *            the text to be indexed
+     *
+     * @return the Lucene index for the text
+     *
+     * @throws IOException
+     */
+    static Directory buildIndexFromText(String indexableText) throws IOException {
+        Directory index = new RAMDirectory();
 
-        // Create an IndexWriter using the case-insensitive StandardAnalyzer
+        // The same analyzers are used for indexing and searching: the case-insensitive
+        // ContextualAnalyzer for the "case-insensitive" field name and the
+        // CaseSensitiveContextualAnalyzer for the "case-sensitive" field name
         // NOTE: the boolean arg in the IndexWriter constructor means to create a new index,
         // overwriting any existing index
-        IndexWriter indexWriter = new IndexWriter(index, contextualAnalyzer, true,
+        IndexWriter indexWriter = new IndexWriter(index, INDEX_ANALYZER, true,
                 IndexWriter.MaxFieldLength.UNLIMITED);
-        logTokens(indexWriter.getAnalyzer(), FIELD_NAME, fullDocument, "ContextualAnalyzer");
+        logTokens(CONTEXTUAL_ANALYZER, FIELD_NAME, indexableText, "ContextualAnalyzer");
 
-        // Add the indexable text to the case-insensitive index writer, assigning it the
-        // "case-insensitive" field name
-        addDoc(indexWriter, FIELD_NAME, indexableText);
+        addDoc(indexWriter, indexableText);
         indexWriter.close();
 
-        CaseSensitiveContextualAnalyzer caseSensitiveStandardAnalyzer = new CaseSensitiveContextualAnalyzer(
-                Version.LUCENE_30);
-
-        // Create a second IndexWriter using the custom case-sensitive StandardAnalyzer
-        // NOTE: set boolean to false to append the case-sensitive indexed text to the existing
-        // index (populated by first IndexWriter)
-        IndexWriter csIndexWriter = new IndexWriter(index, caseSensitiveStandardAnalyzer, false,
-                IndexWriter.MaxFieldLength.UNLIMITED);
-
-        // Add the indexable text to the case-sensitive index writer, assigning it the
-        // "case-sensitive" field name
-        addDoc(csIndexWriter, CASE_SENSITIVE_FIELD_NAME, indexableText);
-        csIndexWriter.close();
-
-        LOGGER.exit(methodName);
-
         return index;
     }
 
+    static String[] getDefaultXPathSelectors() {
+        return DEFAULT_XPATH_SELECTORS;
+    }
+
     private static void logTokens(Analyzer analyzer, String fieldName, String fullDocument,
             String analyzerName) throws IOException {
         if (!LOGGER.isDebugEnabled()) {
@@ -278,6 +294,41 @@ private static void logTokens(Analyzer analyzer, String fieldName, String fullDo
      * @return
      */
     private static String getIndexableText(String document, String[] xpathSelectors) {
+        return getIndexableText(createXPathHelper(document), xpathSelectors);
+    }
+
+    /**
+     * Parse the specified XML Document for extracting indexable text.
+     *
+     * @param document
+     * @return
+     */
+    static XPathHelper createXPathHelper(String document) {
+        // TODO Is this safe for all cases? Can there be multiple default namespaces such that
+        // this would screw up the metadata?
+
+        // Treat the "default namespace" (i.e., xmlns="http://some.namespace") the same as the
+        // "no namespace" (i.e., xmlns="")
+        // so that user-specified XPath Selectors do not need to specify a namespace for
+        // expressions in the default namespace
+        // (For example, user can specify //fileTitle vs. //namespace:fileTitle, where a
+        // NamespaceContext/NamespaceResolver
+        // would try to resolve the namespace they specified)
+        // The regex below, "xmlns=['\"].*?['\"]", looks for:
+        // xmlns="any chars between single or double quotes"
+
+        return new XPathHelper(document.replaceAll("xmlns=['\"].*?['\"]", ""));
+    }
+
+    /**
+     * Extract the text from the parsed XML Document that is to be indexed using the specified
+     * XPath selectors.
+     *
+     * @param xHelper
+     * @param xpathSelectors
+     * @return
+     */
+    static String getIndexableText(XPathHelper xHelper, String[] xpathSelectors) {
         String methodName = "getIndexableText";
         LOGGER.entry(methodName);
 
@@ -288,23 +339,6 @@ private static String getIndexableText(String document, String[] xpathSelectors)
         StringBuilder sbuilder = new StringBuilder();
 
         try {
-            // TODO Is this safe for all cases? Can there be multiple default namespaces such that
-            // this would screw up the metadata?
-
-            // Treat the "default namespace" (i.e., xmlns="http://some.namespace") the same as the
-            // "no namespace" (i.e., xmlns="")
-            // so that user-specified XPath Selectors do not need to specify a namespace for
-            // expressions in the default namespace
-            // (For example, user can specify //fileTitle vs. //namespace:fileTitle, where a
-            // NamespaceContext/NamespaceResolver
-            // would try to resolve the namespace they specified)
-            // The regex below, "xmlns=['\"].*?['\"]", looks for:
-            // xmlns="any chars between single or double quotes"
-
-            document = document.replaceAll("xmlns=['\"].*?['\"]", "");
-
-            XPathHelper xHelper = new XPathHelper(document);
-
             for (String xpath : xpathSelectors) {
                 LOGGER.debug("Processing xpath selector:\n" + xpath);
                 NodeList nodeList = (NodeList) xHelper.evaluate(xpath, XPathConstants.NODESET);
@@ -0,0 +1,94 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+
+package ddf.catalog.pubsub.criteria.contextual;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.lucene.store.Directory;
+
+import ddf.util.XPathHelper;
+
+/**
+ * Contextual indexes of a single catalog entry's metadata, shared by all of the contextual
+ * predicates evaluated against one event.
+ * <p>
+ * The metadata is parsed at most once, and the indexable text and Lucene index for each distinct
+ * set of text paths are built at most once, the first time a predicate asks for them. Events that
+ * no contextual subscription looks at never pay for parsing or indexing.
+ */
+public class ContextualIndexCache {
+
+    private final String metadata;
+
+    private XPathHelper xpathHelper;
+
+    private final Map<List<String>, String> indexableText = new HashMap<>();
+
+    private final Map<List<String>, Directory> indexes = new HashMap<>();
+
+    public ContextualIndexCache(String metadata) {
+        this.metadata = metadata;
+    }
+
+    public String getMetadata() {
+        return metadata;
+    }
+
+    /**
+     * @return the index of the text selected by the default XPath selectors
+     * @throws IOException
+     */
+    public Directory getDefaultIndex() throws IOException {
+        return getIndex(ContextualEvaluator.getDefaultXPathSelectors());
+    }
+
+    /**
+     * @param textPaths
+     *            the XPath selectors of the text to index
+     * @return the index of the text selected by the XPath selectors
+     * @throws IOException
+     */
+    public synchronized Directory getIndex(String[] textPaths) throws IOException {
+        List<String> key = Arrays.asList(textPaths);
+        Directory index = indexes.get(key);
+        if (index == null) {
+            index = ContextualEvaluator.buildIndexFromText(getIndexableText(textPaths));
+            indexes.put(key, index);
+        }
+        return index;
+    }
+
+    /**
+     * @param textPaths
+     *            the XPath selectors of the text to extract
+     * @return the text selected by the XPath selectors, separated by spaces
+     */
+    public synchronized String getIndexableText(String[] textPaths) {
+        List<String> key = Arrays.asList(textPaths);
+        String text = indexableText.get(key);
+        if (text == null) {
+            if (xpathHelper == null) {
+                xpathHelper = ContextualEvaluator.createXPathHelper(metadata);
+            }
+            text = ContextualEvaluator.getIndexableText(xpathHelper, textPaths);
+            indexableText.put(key, text);
+        }
+        return text;
+    }
+}
@@ -0,0 +1,267 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package ddf.catalog.pubsub.internal;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded thread pool that processes catalog entry events for the subscriptions. Events are queued
+ * up to a fixed capacity; what happens when the queue is full is decided by the
+ * {@link OverflowPolicy}. Queue depth, throughput and latency are exposed through JMX.
+ */
+public class PubSubExecutor implements PubSubExecutorMBean {
+
+    public static final int DEFAULT_THREAD_POOL_SIZE = 8;
+
+    public static final int DEFAULT_QUEUE_SIZE = 10000;
+
+    public static final long DEFAULT_BLOCK_TIMEOUT_MILLIS = 2000;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PubSubExecutor.class);
+
+    private final ThreadPoolExecutor executor;
+
+    private final OverflowPolicy overflowPolicy;
+
+    private final long blockTimeoutMillis;
+
+    private final AtomicLong processedEvents = new AtomicLong();
+
+    private final AtomicLong droppedEvents = new AtomicLong();
+
+    private final AtomicLong totalLatencyNanos = new AtomicLong();
+
+    private ObjectName objectName;
+
+    /**
+     * What to do with an event when the queue is full.
+     */
+    public enum OverflowPolicy {
+        /**
+         * Wait for space in the queue, up to the block timeout, then drop the event. The wait is
+         * bounded since events are queued from the EventAdmin delivery thread, which blacklists
+         * handlers that do not return in time.
+         */
+        BLOCK,
+
+        /**
+         * Drop the oldest queued event to make room for the new one.
+         */
+        DROP_OLDEST,
+
+        /**
+         * Drop the new event.
+         */
+        DROP_NEWEST
+    }
+
+    public PubSubExecutor(int threadPoolSize, int queueSize, OverflowPolicy overflowPolicy,
+            long blockTimeoutMillis) {
+        this.overflowPolicy = overflowPolicy == null ? OverflowPolicy.BLOCK : overflowPolicy;
+        this.blockTimeoutMillis = blockTimeoutMillis;
+
+        int threads = threadPoolSize > 0 ? threadPoolSize : DEFAULT_THREAD_POOL_SIZE;
+        BlockingQueue<Runnable> queue = new ArrayBlockingQueue<>(
+                queueSize > 0 ? queueSize : DEFAULT_QUEUE_SIZE);
+
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, queue,
+                new PubSubThreadFactory(), new OverflowHandler()) {
+            @Override
+            protected void afterExecute(Runnable runnable, Throwable throwable) {
+                super.afterExecute(runnable, throwable);
+                if (runnable instanceof PubSubTask) {
+                    processedEvents.incrementAndGet();
+                    totalLatencyNanos.addAndGet(
+                            System.nanoTime() - ((PubSubTask) runnable).getCreatedNanos());
+                }
+                if (throwable != null) {
+                    LOGGER.warn("Unable to process event", throwable);
+                }
+            }
+        };
+
+        LOGGER.debug("Created event executor with {} threads, queue size {} and {} policy",
+                threads, queue.remainingCapacity(), this.overflowPolicy);
+    }
+
+    public PubSubExecutor() {
+        this(DEFAULT_THREAD_POOL_SIZE, DEFAULT_QUEUE_SIZE, OverflowPolicy.BLOCK,
+                DEFAULT_BLOCK_TIMEOUT_MILLIS);
+    }
+
+    public void execute(PubSubTask task) {
+        executor.execute(task);
+    }
+
+    /**
+     * Registers the metrics of the executor.
+     *
+     * @param processorType
+     *            type of the event processor using the executor, added to the object name so
+     *            that the executors of different event processors do not replace each other
+     */
+    public void registerMBean(String processorType) {
+        MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+        try {
+            objectName = new ObjectName(
+                    PubSubExecutorMBean.OBJECTNAME + ",type=" + processorType);
+            try {
+                mbeanServer.registerMBean(new StandardMBean(this, PubSubExecutorMBean.class),
+                        objectName);
+            } catch (InstanceAlreadyExistsException e) {
+                LOGGER.info("Re-registering event processor MBean");
+                mbeanServer.unregisterMBean(objectName);
+                mbeanServer.registerMBean(new StandardMBean(this, PubSubExecutorMBean.class),
+                        objectName);
+            }
+        } catch (MalformedObjectNameException e) {
+            LOGGER.info("Could not create object name", e);
+        } catch (Exception e) {
+            LOGGER.warn("Could not register MBean.", e);
+        }
+    }
+
+    /**
+     * Stops accepting events, unregisters the MBean and waits for queued events to be processed.
+     */
+    public void shutdown() {
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (Exception e) {
+                LOGGER.debug("Could not unregister MBean.", e);
+            }
+        }
+
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                LOGGER.warn("Dropping {} events that were not processed before shutdown",
+                        executor.shutdownNow().size());
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    @Override
+    public int getQueueCapacity() {
+        return executor.getQueue().size() + executor.getQueue().remainingCapacity();
+    }
+
+    @Override
+    public int getActiveThreads() {
+        return executor.getActiveCount();
+    }
+
+    @Override
+    public long getProcessedEvents() {
+        return processedEvents.get();
+    }
+
+    @Override
+    public long getDroppedEvents() {
+        return droppedEvents.get();
+    }
+
+    @Override
+    public double getAverageLatencyMillis() {
+        long processed = processedEvents.get();
+        return processed == 0 ?
+                0 :
+                TimeUnit.NANOSECONDS.toMicros(totalLatencyNanos.get()) / 1000.0 / processed;
+    }
+
+    @Override
+    public String getOverflowPolicy() {
+        return overflowPolicy.name();
+    }
+
+    private class OverflowHandler implements RejectedExecutionHandler {
+
+        @Override
+        public void rejectedExecution(Runnable runnable, ThreadPoolExecutor threadPoolExecutor) {
+            if (threadPoolExecutor.isShutdown()) {
+                drop("Event processor is shut down");
+                return;
+            }
+
+            switch (overflowPolicy) {
+            case BLOCK:
+                try {
+                    if (!threadPoolExecutor.getQueue()
+                            .offer(runnable, blockTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                        drop("Timed out waiting for space in event queue");
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    drop("Interrupted waiting for space in event queue");
+                }
+                break;
+            case DROP_OLDEST:
+                if (threadPoolExecutor.getQueue().poll() != null) {
+                    drop("Event queue is full, dropping oldest event");
+                }
+                if (!threadPoolExecutor.getQueue().offer(runnable)) {
+                    drop("Event queue is full, dropping newest event");
+                }
+                break;
+            default:
+                drop("Event queue is full, dropping newest event");
+                break;
+            }
+        }
+
+        private void drop(String reason) {
+            droppedEvents.incrementAndGet();
+            LOGGER.warn("{}. {} events dropped so far.", reason, droppedEvents.get());
+        }
+    }
+
+    private static class PubSubThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable,
+                    "pubsub-event-processor-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
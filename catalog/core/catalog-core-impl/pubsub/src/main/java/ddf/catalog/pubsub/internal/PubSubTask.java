@@ -14,7 +14,8 @@
 
 package ddf.catalog.pubsub.internal;
 
-import org.osgi.service.event.EventAdmin;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -22,33 +23,61 @@
 import ddf.catalog.event.EventProcessor;
 import ddf.catalog.pubsub.EventProcessorImpl;
 
-public class PubSubThread extends Thread {
-    private static final Logger LOGGER = LoggerFactory.getLogger(PubSubThread.class);
+/**
+ * Publishes a catalog entry event to the subscriptions. Executed by the {@link PubSubExecutor},
+ * whose thread evaluates the event against the subscriptions and delivers it to the ones that
+ * match.
+ */
+public class PubSubTask implements Runnable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PubSubTask.class);
 
     private Metacard entry;
 
     private String topic;
 
-    private EventAdmin eventAdmin;
+    private EventHandler subscriptions;
 
-    public PubSubThread(Metacard entry, String topic, EventAdmin eventAdmin) {
+    private final long createdNanos = System.nanoTime();
+
+    /**
+     * @param entry
+     *            the entry the event is about
+     * @param topic
+     *            topic of the catalog event
+     * @param subscriptions
+     *            handler evaluating the event against the subscriptions, usually the
+     *            {@link SubscriptionIndex}
+     */
+    public PubSubTask(Metacard entry, String topic, EventHandler subscriptions) {
         this.entry = entry;
         this.topic = topic;
-        this.eventAdmin = eventAdmin;
+        this.subscriptions = subscriptions;
+    }
+
+    /**
+     * @return {@link System#nanoTime()} when this task was created
+     */
+    public long getCreatedNanos() {
+        return createdNanos;
     }
 
     public void run() {
         LOGGER.debug("Processing entry event in separate thread - topic = {}", topic);
 
+        String operation;
         if (topic.equals(EventProcessor.EVENTS_TOPIC_CREATED)) {
-            EventProcessorImpl.processEntry(entry, PubSubConstants.CREATE, eventAdmin);
-            // new EventProcessorImpl().processEntry( entry, PubSubConstants.CREATE, eventAdmin );
+            operation = PubSubConstants.CREATE;
         } else if (topic.equals(EventProcessor.EVENTS_TOPIC_UPDATED)) {
-            EventProcessorImpl.processEntry(entry, PubSubConstants.UPDATE, eventAdmin);
-            // new EventProcessorImpl().processEntry( entry, PubSubConstants.UPDATE, eventAdmin );
+            operation = PubSubConstants.UPDATE;
         } else if (topic.equals(EventProcessor.EVENTS_TOPIC_DELETED)) {
-            EventProcessorImpl.processEntry(entry, PubSubConstants.DELETE, eventAdmin);
-            // new EventProcessorImpl().processEntry( entry, PubSubConstants.DELETE, eventAdmin );
+            operation = PubSubConstants.DELETE;
+        } else {
+            return;
+        }
+
+        Event event = EventProcessorImpl.createEvent(entry, operation);
+        if (event != null) {
+            subscriptions.handleEvent(event);
         }
     }
 
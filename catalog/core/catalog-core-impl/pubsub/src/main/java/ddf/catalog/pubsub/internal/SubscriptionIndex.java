@@ -0,0 +1,413 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package ddf.catalog.pubsub.internal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+import org.geotools.geometry.jts.WKTReader2;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.io.ParseException;
+
+import ddf.catalog.data.Metacard;
+import ddf.catalog.pubsub.predicate.AndPredicate;
+import ddf.catalog.pubsub.predicate.ContentTypePredicate;
+import ddf.catalog.pubsub.predicate.GeospatialPredicate;
+import ddf.catalog.pubsub.predicate.OrPredicate;
+import ddf.catalog.pubsub.predicate.Predicate;
+
+/**
+ * Single {@link EventHandler} for all subscriptions of an event processor. Instead of every
+ * subscription evaluating every published event, subscriptions are indexed by the criteria an
+ * event must satisfy for their predicate to match:
+ * <ul>
+ * <li>subscriptions that can only match specific content types are indexed by content type</li>
+ * <li>otherwise, subscriptions that can only match locations in a bounded area are indexed in a
+ * coarse latitude/longitude grid</li>
+ * <li>all other subscriptions are evaluated against every event</li>
+ * </ul>
+ * Only the subscriptions returned by the index for an event are handed the event, where their full
+ * predicate is evaluated before delivery.
+ * <p>
+ * Events are matched and delivered on the thread calling {@link #handleEvent(Event)}, which is a
+ * {@link PubSubExecutor} thread, so the executor's queue size, overflow policy and metrics cover
+ * delivery to the subscriptions as well.
+ */
+public class SubscriptionIndex implements EventHandler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SubscriptionIndex.class);
+
+    private static final double CELL_SIZE_DEGREES = 10.0;
+
+    private static final int LONGITUDE_CELLS = (int) (360 / CELL_SIZE_DEGREES);
+
+    private static final int LATITUDE_CELLS = (int) (180 / CELL_SIZE_DEGREES);
+
+    /**
+     * Content types are matched as regular expressions, so only types without any regular
+     * expression characters can be looked up by equality.
+     */
+    private static final Pattern LITERAL_CONTENT_TYPE = Pattern.compile("[\\w \\-:/]+");
+
+    private static final String UNKNOWN_CONTENT_TYPE = "null";
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, IndexedSubscription> subscriptions = new HashMap<>();
+
+    private final Map<String, Set<IndexedSubscription>> contentTypeIndex = new HashMap<>();
+
+    private final Map<Integer, Set<IndexedSubscription>> locationIndex = new HashMap<>();
+
+    private final Set<IndexedSubscription> unindexed = new LinkedHashSet<>();
+
+    /**
+     * Adds a subscription to the index, replacing any subscription with the same id.
+     *
+     * @param subscriptionId
+     *            id of the subscription
+     * @param predicate
+     *            predicate of the subscription, {@code null} for a filterless subscription
+     * @param handler
+     *            handler evaluating and delivering events for the subscription
+     */
+    public void add(String subscriptionId, Predicate predicate, EventHandler handler) {
+        IndexedSubscription subscription = new IndexedSubscription(subscriptionId, handler);
+
+        Set<String> contentTypes = predicate == null ? null : getContentTypes(predicate);
+        Envelope envelope = predicate == null ? null : getEnvelope(predicate);
+
+        lock.writeLock().lock();
+        try {
+            remove(subscriptionId);
+            subscriptions.put(subscriptionId, subscription);
+
+            if (contentTypes != null) {
+                LOGGER.debug("Indexing subscription {} by content types {}", subscriptionId,
+                        contentTypes);
+                for (String contentType : contentTypes) {
+                    subscription.contentTypes.add(contentType);
+                    getOrCreate(contentTypeIndex, contentType).add(subscription);
+                }
+            } else if (envelope != null) {
+                LOGGER.debug("Indexing subscription {} by location {}", subscriptionId, envelope);
+                for (Integer cell : getCells(envelope)) {
+                    subscription.cells.add(cell);
+                    getOrCreate(locationIndex, cell).add(subscription);
+                }
+            } else {
+                LOGGER.debug("Subscription {} cannot be indexed", subscriptionId);
+                unindexed.add(subscription);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a subscription from the index.
+     *
+     * @param subscriptionId
+     *            id of the subscription
+     * @return {@code true} if the subscription was in the index
+     */
+    public boolean remove(String subscriptionId) {
+        lock.writeLock().lock();
+        try {
+            IndexedSubscription subscription = subscriptions.remove(subscriptionId);
+            if (subscription == null) {
+                return false;
+            }
+
+            for (String contentType : subscription.contentTypes) {
+                removeFrom(contentTypeIndex, contentType, subscription);
+            }
+            for (Integer cell : subscription.cells) {
+                removeFrom(locationIndex, cell, subscription);
+            }
+            unindexed.remove(subscription);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean isEmpty() {
+        lock.readLock().lock();
+        try {
+            return subscriptions.isEmpty();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return subscriptions.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Hands the event to every subscription that may match it. A subscription failing to process
+     * the event does not keep it from the other subscriptions.
+     */
+    public void handleEvent(Event event) {
+        Collection<IndexedSubscription> candidates = getCandidateSubscriptions(event);
+        LOGGER.debug("Evaluating event against {} of {} subscriptions", candidates.size(),
+                size());
+
+        for (IndexedSubscription candidate : candidates) {
+            try {
+                candidate.handler.handleEvent(event);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Unable to process event for subscription {}", candidate.id, e);
+            }
+        }
+    }
+
+    /**
+     * Returns the handlers of the subscriptions whose predicate may match the event. Every
+     * subscription whose predicate matches the event is included.
+     *
+     * @param event
+     *            published event
+     * @return the candidate subscription handlers
+     */
+    public Collection<EventHandler> getCandidates(Event event) {
+        Collection<IndexedSubscription> candidates = getCandidateSubscriptions(event);
+        Collection<EventHandler> handlers = new ArrayList<>(candidates.size());
+        for (IndexedSubscription candidate : candidates) {
+            handlers.add(candidate.handler);
+        }
+        return handlers;
+    }
+
+    private Collection<IndexedSubscription> getCandidateSubscriptions(Event event) {
+        Set<IndexedSubscription> candidates = new LinkedHashSet<>();
+
+        lock.readLock().lock();
+        try {
+            if (isDeletedEntry(event)) {
+                // Criteria always match deleted entries without metadata
+                candidates.addAll(subscriptions.values());
+            } else {
+                candidates.addAll(unindexed);
+                addAll(candidates, contentTypeIndex.get(getInputContentType(event)));
+
+                Envelope envelope = getInputEnvelope(event);
+                if (envelope == null) {
+                    for (Set<IndexedSubscription> cell : locationIndex.values()) {
+                        candidates.addAll(cell);
+                    }
+                } else {
+                    for (Integer cell : getCells(envelope)) {
+                        addAll(candidates, locationIndex.get(cell));
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return candidates;
+    }
+
+    /**
+     * @return the content types an event must have for the predicate to match, or {@code null}
+     * if the predicate can match any content type
+     */
+    static Set<String> getContentTypes(Predicate predicate) {
+        if (predicate instanceof ContentTypePredicate) {
+            String type = ((ContentTypePredicate) predicate).getType();
+            if (type != null && LITERAL_CONTENT_TYPE.matcher(type).matches()) {
+                return Collections.singleton(type);
+            }
+        } else if (predicate instanceof AndPredicate) {
+            AndPredicate and = (AndPredicate) predicate;
+            Set<String> left = getContentTypes(and.getLeft());
+            Set<String> right = getContentTypes(and.getRight());
+            if (left == null) {
+                return right;
+            } else if (right == null) {
+                return left;
+            }
+            Set<String> both = new HashSet<>(left);
+            both.retainAll(right);
+            return both;
+        } else if (predicate instanceof OrPredicate) {
+            OrPredicate or = (OrPredicate) predicate;
+            Set<String> left = getContentTypes(or.getLeft());
+            Set<String> right = getContentTypes(or.getRight());
+            if (left != null && right != null) {
+                Set<String> either = new HashSet<>(left);
+                either.addAll(right);
+                return either;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return an envelope an event location must intersect for the predicate to match, or
+     * {@code null} if the predicate can match any location
+     */
+    static Envelope getEnvelope(Predicate predicate) {
+        if (predicate instanceof GeospatialPredicate) {
+            GeospatialPredicate geospatial = (GeospatialPredicate) predicate;
+            if (geospatial.getGeoCriteria() != null) {
+                Envelope envelope = new Envelope(
+                        geospatial.getGeoCriteria().getEnvelopeInternal());
+                envelope.expandBy(geospatial.getDistance());
+                return envelope;
+            }
+        } else if (predicate instanceof AndPredicate) {
+            AndPredicate and = (AndPredicate) predicate;
+            Envelope left = getEnvelope(and.getLeft());
+            return left != null ? left : getEnvelope(and.getRight());
+        } else if (predicate instanceof OrPredicate) {
+            OrPredicate or = (OrPredicate) predicate;
+            Envelope left = getEnvelope(or.getLeft());
+            Envelope right = getEnvelope(or.getRight());
+            if (left != null && right != null) {
+                Envelope either = new Envelope(left);
+                either.expandToInclude(right);
+                return either;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isDeletedEntry(Event event) {
+        Object contextualMap = event.getProperty(PubSubConstants.HEADER_CONTEXTUAL_KEY);
+        return PubSubConstants.DELETE
+                .equals(event.getProperty(PubSubConstants.HEADER_OPERATION_KEY))
+                && contextualMap instanceof Map && PubSubConstants.METADATA_DELETED
+                .equals(((Map) contextualMap).get("METADATA"));
+    }
+
+    /**
+     * Extracts the content type the same way the {@code ContentTypeEvaluator} does.
+     */
+    private static String getInputContentType(Event event) {
+        Object input = event.getProperty(PubSubConstants.HEADER_CONTENT_TYPE_KEY);
+        if (input == null) {
+            return UNKNOWN_CONTENT_TYPE;
+        }
+        String type = input.toString().split(",")[0];
+        return type.isEmpty() ? UNKNOWN_CONTENT_TYPE : type;
+    }
+
+    private static Envelope getInputEnvelope(Event event) {
+        Object entry = event.getProperty(PubSubConstants.HEADER_ENTRY_KEY);
+        if (!(entry instanceof Metacard) || ((Metacard) entry).getLocation() == null) {
+            return null;
+        }
+
+        try {
+            Geometry geometry = new WKTReader2().read(((Metacard) entry).getLocation());
+            return geometry.getEnvelopeInternal();
+        } catch (ParseException e) {
+            LOGGER.debug("Unable to parse location of entry, not using location index", e);
+            return null;
+        }
+    }
+
+    private static Set<Integer> getCells(Envelope envelope) {
+        Set<Integer> cells = new HashSet<>();
+        if (envelope.isNull()) {
+            return cells;
+        }
+
+        int minX = toCell(envelope.getMinX() + 180, LONGITUDE_CELLS);
+        int maxX = toCell(envelope.getMaxX() + 180, LONGITUDE_CELLS);
+        int minY = toCell(envelope.getMinY() + 90, LATITUDE_CELLS);
+        int maxY = toCell(envelope.getMaxY() + 90, LATITUDE_CELLS);
+
+        for (int x = minX; x <= maxX; x++) {
+            for (int y = minY; y <= maxY; y++) {
+                cells.add(x * LATITUDE_CELLS + y);
+            }
+        }
+        return cells;
+    }
+
+    private static int toCell(double degrees, int cellCount) {
+        int cell = (int) Math.floor(degrees / CELL_SIZE_DEGREES);
+        return Math.max(0, Math.min(cellCount - 1, cell));
+    }
+
+    private static <K> Set<IndexedSubscription> getOrCreate(
+            Map<K, Set<IndexedSubscription>> index, K key) {
+        Set<IndexedSubscription> subscriptionSet = index.get(key);
+        if (subscriptionSet == null) {
+            subscriptionSet = new LinkedHashSet<>();
+            index.put(key, subscriptionSet);
+        }
+        return subscriptionSet;
+    }
+
+    private static <K> void removeFrom(Map<K, Set<IndexedSubscription>> index, K key,
+            IndexedSubscription subscription) {
+        Set<IndexedSubscription> subscriptionSet = index.get(key);
+        if (subscriptionSet != null) {
+            subscriptionSet.remove(subscription);
+            if (subscriptionSet.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+
+    private static void addAll(Set<IndexedSubscription> candidates,
+            Set<IndexedSubscription> subscriptionSet) {
+        if (subscriptionSet != null) {
+            candidates.addAll(subscriptionSet);
+        }
+    }
+
+    /**
+     * A subscription in the index, along with the index entries it was added to.
+     */
+    private static class IndexedSubscription {
+
+        private final String id;
+
+        private final EventHandler handler;
+
+        private final Set<String> contentTypes = new HashSet<>();
+
+        private final Set<Integer> cells = new HashSet<>();
+
+        IndexedSubscription(String id, EventHandler handler) {
+            this.id = id;
+            this.handler = handler;
+        }
+    }
+}
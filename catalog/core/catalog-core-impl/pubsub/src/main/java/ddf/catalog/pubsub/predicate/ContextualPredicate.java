@@ -31,6 +31,7 @@
 import ddf.catalog.pubsub.criteria.contextual.ContextualEvaluationCriteria;
 import ddf.catalog.pubsub.criteria.contextual.ContextualEvaluationCriteriaImpl;
 import ddf.catalog.pubsub.criteria.contextual.ContextualEvaluator;
+import ddf.catalog.pubsub.criteria.contextual.ContextualIndexCache;
 import ddf.catalog.pubsub.criteria.contextual.ContextualTokenizer;
 import ddf.catalog.pubsub.internal.PubSubConstants;
 
@@ -232,12 +233,24 @@ public boolean matches(Event properties) {
             return true;
         }
 
+        // If the event carries the shared index cache of the entry's metadata, use it so the
+        // metadata is parsed and indexed only once for each distinct set of text paths, no matter
+        // how many contextual predicates are evaluated against this event
+        ContextualIndexCache indexCache = (ContextualIndexCache) contextualMap.get("INDEX_CACHE");
+        if (indexCache != null) {
+            LOGGER.debug("using shared Lucene search indexes for metadata");
+            String[] paths = hasTextPaths() ?
+                    this.textPaths.toArray(new String[this.textPaths.size()]) :
+                    null;
+            cec = new ContextualEvaluationCriteriaImpl(searchPhrase, fuzzy, caseSensitiveSearch,
+                    paths, indexCache);
+
         // If predicate specified one or more text paths, then extract the entry's metadata from the
         // Event properties and
         // pass it and the text path(s) to the evaluation criteria (which will build a Lucene index
         // on the metadata using the
         // text paths)
-        if (this.textPaths != null && !this.textPaths.isEmpty()) {
+        } else if (this.textPaths != null && !this.textPaths.isEmpty()) {
             LOGGER.debug("creating criteria with textPaths and metadata document");
             try {
                 cec = new ContextualEvaluationCriteriaImpl(searchPhrase, fuzzy, caseSensitiveSearch,
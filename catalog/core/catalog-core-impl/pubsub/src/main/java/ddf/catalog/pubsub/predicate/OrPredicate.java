@@ -0,0 +1,48 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package ddf.catalog.pubsub.predicate;
+
+import org.osgi.service.event.Event;
+
+/**
+ * A Predicate that combines two predicates by a logical OR.
+ */
+public class OrPredicate implements Predicate {
+
+    private final Predicate left;
+
+    private final Predicate right;
+
+    public OrPredicate(Predicate left, Predicate right) {
+        this.left = left;
+        this.right = right;
+    }
+
+    public boolean matches(Event properties) {
+        return left.matches(properties) || right.matches(properties);
+    }
+
+    public Predicate getLeft() {
+        return left;
+    }
+
+    public Predicate getRight() {
+        return right;
+    }
+
+    @Override
+    public String toString() {
+        return "(" + left + ") OR (" + right + ")";
+    }
+}
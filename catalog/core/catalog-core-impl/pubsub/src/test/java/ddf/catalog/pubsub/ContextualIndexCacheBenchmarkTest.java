@@ -0,0 +1,161 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package ddf.catalog.pubsub;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.lucene.store.Directory;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ddf.catalog.pubsub.criteria.contextual.ContextualEvaluationCriteriaImpl;
+import ddf.catalog.pubsub.criteria.contextual.ContextualEvaluator;
+import ddf.catalog.pubsub.criteria.contextual.ContextualIndexCache;
+
+/**
+ * Compares the time taken to evaluate the contextual subscriptions against entries with
+ * DDMS-sized metadata when all subscriptions share a {@link ContextualIndexCache} per entry, and
+ * when an index is built per entry and per subscription with text paths, as before. Only runs
+ * when the {@code benchmark} system property is set, e.g. {@code mvn test -Dbenchmark=true}.
+ */
+public class ContextualIndexCacheBenchmarkTest {
+
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(ContextualIndexCacheBenchmarkTest.class);
+
+    private static final int ENTRIES = 200;
+
+    private static final int SUBSCRIPTIONS = 50;
+
+    private static final int DESCRIPTION_WORDS = 1500;
+
+    private static final String[][] TEXT_PATHS = {null, {"/Resource/title"},
+            {"/Resource/description"}, {"//keyword/@value", "/Resource/title"}};
+
+    private static final String[] WORDS = {"alpha", "bravo", "charlie", "delta", "echo",
+            "foxtrot", "golf", "hotel", "india", "juliet", "kilo", "lima", "mike", "november",
+            "oscar", "papa", "quebec", "romeo", "sierra", "tango", "uniform", "victor"};
+
+    private final List<String> entries = new ArrayList<>();
+
+    private final List<String> searchPhrases = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        assumeTrue(Boolean.getBoolean("benchmark"));
+
+        Random random = new Random(0);
+        for (int i = 0; i < ENTRIES; i++) {
+            entries.add(getEntry(random));
+        }
+        for (int i = 0; i < SUBSCRIPTIONS; i++) {
+            searchPhrases.add(WORDS[random.nextInt(WORDS.length)] + " AND " + WORDS[random
+                    .nextInt(WORDS.length)]);
+        }
+    }
+
+    @Test
+    public void compareWithIndexPerSubscription() throws Exception {
+        // Warm up both before measuring
+        evaluateWithIndexCache();
+        evaluateWithIndexPerSubscription();
+
+        long start = System.currentTimeMillis();
+        int indexCacheHits = evaluateWithIndexCache();
+        long indexCacheMillis = System.currentTimeMillis() - start;
+
+        start = System.currentTimeMillis();
+        int indexPerSubscriptionHits = evaluateWithIndexPerSubscription();
+        long indexPerSubscriptionMillis = System.currentTimeMillis() - start;
+
+        assertEquals(indexPerSubscriptionHits, indexCacheHits);
+        LOGGER.info("Evaluated {} contextual subscriptions against {} entries: shared index cache"
+                        + " {} ms, index per subscription {} ms", SUBSCRIPTIONS, ENTRIES,
+                indexCacheMillis, indexPerSubscriptionMillis);
+    }
+
+    private int evaluateWithIndexCache() throws Exception {
+        int hits = 0;
+        for (String entry : entries) {
+            ContextualIndexCache indexCache = new ContextualIndexCache(entry);
+            for (int i = 0; i < SUBSCRIPTIONS; i++) {
+                if (ContextualEvaluator.evaluate(
+                        new ContextualEvaluationCriteriaImpl(searchPhrases.get(i), false, false,
+                                getTextPaths(i), indexCache))) {
+                    hits++;
+                }
+            }
+        }
+        return hits;
+    }
+
+    private int evaluateWithIndexPerSubscription() throws Exception {
+        int hits = 0;
+        for (String entry : entries) {
+            Directory defaultIndex = ContextualEvaluator.buildIndex(entry);
+            for (int i = 0; i < SUBSCRIPTIONS; i++) {
+                String[] textPaths = getTextPaths(i);
+                ContextualEvaluationCriteriaImpl criteria = textPaths == null ?
+                        new ContextualEvaluationCriteriaImpl(searchPhrases.get(i), false, false,
+                                defaultIndex) :
+                        new ContextualEvaluationCriteriaImpl(searchPhrases.get(i), false, false,
+                                textPaths, entry);
+                if (ContextualEvaluator.evaluate(criteria)) {
+                    hits++;
+                }
+            }
+        }
+        return hits;
+    }
+
+    private String[] getTextPaths(int subscription) {
+        return TEXT_PATHS[subscription % TEXT_PATHS.length];
+    }
+
+    private String getEntry(Random random) {
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\r\n"
+                + "<Resource>\r\n"
+                + "  <title classification=\"U\">" + getText(random, 8) + "</title>\r\n"
+                + "  <creator classification=\"U\">\r\n"
+                + "    <Person>\r\n"
+                + "      <name>" + getText(random, 2) + "</name>\r\n"
+                + "      <surname>" + getText(random, 1) + "</surname>\r\n"
+                + "    </Person>\r\n"
+                + "  </creator>\r\n"
+                + "  <subjectCoverage>\r\n"
+                + "    <Subject>\r\n"
+                + "      <keyword value=\"" + getText(random, 1).trim() + "\"/>\r\n"
+                + "      <keyword value=\"" + getText(random, 1).trim() + "\"/>\r\n"
+                + "    </Subject>\r\n"
+                + "  </subjectCoverage>\r\n"
+                + "  <description>" + getText(random, DESCRIPTION_WORDS) + "</description>\r\n"
+                + "  <security classification=\"U\" ownerProducer=\"USA\"/>\r\n"
+                + "</Resource>";
+    }
+
+    private String getText(Random random, int words) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            text.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package ddf.catalog.pubsub;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import ddf.catalog.pubsub.criteria.contextual.ContextualEvaluationCriteriaImpl;
+import ddf.catalog.pubsub.criteria.contextual.ContextualEvaluator;
+import ddf.catalog.pubsub.criteria.contextual.ContextualIndexCache;
+
+public class ContextualIndexCacheTest {
+
+    private static final String[] TITLE_PATH = new String[] {"/Resource/title"};
+
+    private static final String[] SURNAME_PATH = new String[] {"//surname"};
+
+    private ContextualIndexCache indexCache;
+
+    @Before
+    public void setUp() {
+        indexCache = new ContextualIndexCache(TestDataLibrary.getCatAndDogEntry());
+    }
+
+    @Test
+    public void testIndexesAreReused() throws Exception {
+        assertSame(indexCache.getDefaultIndex(), indexCache.getDefaultIndex());
+        assertSame(indexCache.getIndex(TITLE_PATH),
+                indexCache.getIndex(new String[] {"/Resource/title"}));
+        assertNotSame(indexCache.getIndex(TITLE_PATH), indexCache.getIndex(SURNAME_PATH));
+    }
+
+    @Test
+    public void testEvaluateDefaultIndex() throws Exception {
+        assertTrue(evaluate("serengeti", null, false));
+        assertTrue(evaluate("Serengeti", null, true));
+        assertFalse(evaluate("serengeti", null, true));
+        assertFalse(evaluate("exercise", null, false));
+    }
+
+    @Test
+    public void testEvaluateTextPaths() throws Exception {
+        assertTrue(evaluate("dog", TITLE_PATH, false));
+        assertFalse(evaluate("cat", TITLE_PATH, false));
+        assertTrue(evaluate("cat", SURNAME_PATH, false));
+    }
+
+    @Test
+    public void testEvaluateTextPathsWithoutSearchPhrase() throws Exception {
+        assertTrue(evaluate(null, SURNAME_PATH, false));
+        assertFalse(evaluate(null, new String[] {"//nonexistent"}, false));
+    }
+
+    private boolean evaluate(String searchPhrase, String[] textPaths, boolean caseSensitive)
+            throws Exception {
+        return ContextualEvaluator.evaluate(
+                new ContextualEvaluationCriteriaImpl(searchPhrase, false, caseSensitive, textPaths,
+                        indexCache));
+    }
+}
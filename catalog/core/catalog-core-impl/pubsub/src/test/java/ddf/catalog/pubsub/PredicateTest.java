@@ -50,6 +50,7 @@
 import ddf.catalog.pubsub.criteria.contenttype.ContentTypeEvaluationCriteriaImpl;
 import ddf.catalog.pubsub.criteria.contenttype.ContentTypeEvaluator;
 import ddf.catalog.pubsub.criteria.contextual.ContextualEvaluator;
+import ddf.catalog.pubsub.criteria.contextual.ContextualIndexCache;
 import ddf.catalog.pubsub.criteria.contextual.ContextualTokenizer;
 import ddf.catalog.pubsub.criteria.geospatial.GeospatialEvaluationCriteria;
 import ddf.catalog.pubsub.criteria.geospatial.GeospatialEvaluationCriteriaImpl;
@@ -294,9 +295,8 @@ public void testContentTypeFilter() throws Exception {
     }
 
     private Map<String, Object> constructContextualMap(MetacardImpl metacard) throws IOException {
-        Directory index = ContextualEvaluator.buildIndex(metacard.getMetadata());
         Map<String, Object> contextualMap = new HashMap<>();
-        contextualMap.put("DEFAULT_INDEX", index);
+        contextualMap.put("INDEX_CACHE", new ContextualIndexCache(metacard.getMetadata()));
         contextualMap.put("METADATA", metacard.getMetadata());
         return contextualMap;
     }
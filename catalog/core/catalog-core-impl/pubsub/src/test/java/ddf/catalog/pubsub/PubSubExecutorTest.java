@@ -0,0 +1,152 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package ddf.catalog.pubsub;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventHandler;
+
+import ddf.catalog.data.impl.MetacardImpl;
+import ddf.catalog.event.EventProcessor;
+import ddf.catalog.pubsub.internal.PubSubExecutor;
+import ddf.catalog.pubsub.internal.PubSubExecutorMBean;
+import ddf.catalog.pubsub.internal.PubSubTask;
+
+public class PubSubExecutorTest {
+
+    private CountDownLatch started;
+
+    private CountDownLatch release;
+
+    private EventHandler subscriptions;
+
+    private PubSubExecutor executor;
+
+    @Before
+    public void setUp() {
+        started = new CountDownLatch(1);
+        release = new CountDownLatch(1);
+        subscriptions = mock(EventHandler.class);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                started.countDown();
+                release.await(10, TimeUnit.SECONDS);
+                return null;
+            }
+        }).when(subscriptions).handleEvent(any(Event.class));
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testDropNewestWhenQueueIsFull() throws Exception {
+        executor = new PubSubExecutor(1, 1, PubSubExecutor.OverflowPolicy.DROP_NEWEST, 0);
+
+        executor.execute(task());
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        executor.execute(task());
+        executor.execute(task());
+
+        assertEquals(1, executor.getQueueDepth());
+        assertEquals(1, executor.getDroppedEvents());
+    }
+
+    @Test
+    public void testDropOldestWhenQueueIsFull() throws Exception {
+        executor = new PubSubExecutor(1, 1, PubSubExecutor.OverflowPolicy.DROP_OLDEST, 0);
+
+        executor.execute(task());
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        executor.execute(task());
+        executor.execute(task());
+
+        assertEquals(1, executor.getQueueDepth());
+        assertEquals(1, executor.getDroppedEvents());
+    }
+
+    @Test
+    public void testBlockTimesOutWhenQueueIsFull() throws Exception {
+        executor = new PubSubExecutor(1, 1, PubSubExecutor.OverflowPolicy.BLOCK, 10);
+
+        executor.execute(task());
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        executor.execute(task());
+        executor.execute(task());
+
+        assertEquals(1, executor.getQueueDepth());
+        assertEquals(1, executor.getDroppedEvents());
+    }
+
+    @Test
+    public void testProcessedEventsAreCounted() throws Exception {
+        executor = new PubSubExecutor(2, 10, PubSubExecutor.OverflowPolicy.BLOCK, 10);
+        release.countDown();
+
+        executor.execute(task());
+        executor.execute(task());
+        executor.shutdown();
+
+        assertEquals(2, executor.getProcessedEvents());
+        assertEquals(0, executor.getDroppedEvents());
+        executor = null;
+    }
+
+    @Test
+    public void testExecutorsOfEachProcessorTypeAreRegistered() throws Exception {
+        executor = new PubSubExecutor();
+        PubSubExecutor fanoutExecutor = new PubSubExecutor();
+        try {
+            executor.registerMBean("standard");
+            fanoutExecutor.registerMBean("fanout");
+
+            MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+            assertTrue(mbeanServer.isRegistered(
+                    new ObjectName(PubSubExecutorMBean.OBJECTNAME + ",type=standard")));
+            assertTrue(mbeanServer.isRegistered(
+                    new ObjectName(PubSubExecutorMBean.OBJECTNAME + ",type=fanout")));
+        } finally {
+            fanoutExecutor.shutdown();
+        }
+    }
+
+    private PubSubTask task() {
+        MetacardImpl metacard = new MetacardImpl();
+        metacard.setId("id");
+        return new PubSubTask(metacard, EventProcessor.EVENTS_TOPIC_CREATED, subscriptions);
+    }
+}
@@ -0,0 +1,170 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package ddf.catalog.pubsub;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventHandler;
+
+import ddf.catalog.data.impl.MetacardImpl;
+import ddf.catalog.pubsub.internal.PubSubConstants;
+import ddf.catalog.pubsub.internal.SubscriptionFilterVisitor;
+import ddf.catalog.pubsub.internal.SubscriptionIndex;
+import ddf.catalog.pubsub.predicate.ContentTypePredicate;
+import ddf.catalog.pubsub.predicate.GeospatialPredicate;
+import ddf.catalog.pubsub.predicate.Predicate;
+
+public class SubscriptionIndexTest {
+
+    private static final String AREA_WKT = "POLYGON ((10 10, 10 20, 20 20, 20 10, 10 10))";
+
+    private SubscriptionIndex index;
+
+    private EventHandler contentTypeHandler;
+
+    private EventHandler locationHandler;
+
+    private EventHandler unindexedHandler;
+
+    @Before
+    public void setUp() {
+        index = new SubscriptionIndex();
+        contentTypeHandler = mock(EventHandler.class);
+        locationHandler = mock(EventHandler.class);
+        unindexedHandler = mock(EventHandler.class);
+
+        Predicate contentType = SubscriptionFilterVisitor
+                .and(new ContentTypePredicate("nitf", null),
+                        new GeospatialPredicate(AREA_WKT, "OVERLAPS", 0.0));
+        index.add("contentType", contentType, contentTypeHandler);
+        index.add("location", new GeospatialPredicate(AREA_WKT, "OVERLAPS", 0.0),
+                locationHandler);
+        index.add("unindexed", SubscriptionFilterVisitor
+                .not(new ContentTypePredicate("nitf", null)), unindexedHandler);
+    }
+
+    @Test
+    public void testCandidatesByContentType() {
+        Collection<EventHandler> candidates = index
+                .getCandidates(event("nitf,2.1", "POINT (-100 40)", PubSubConstants.CREATE));
+
+        assertEquals(2, candidates.size());
+        assertTrue(candidates.contains(contentTypeHandler));
+        assertTrue(candidates.contains(unindexedHandler));
+    }
+
+    @Test
+    public void testCandidatesByLocation() {
+        Collection<EventHandler> candidates = index
+                .getCandidates(event("image,1.0", "POINT (15 15)", PubSubConstants.CREATE));
+
+        assertEquals(2, candidates.size());
+        assertTrue(candidates.contains(locationHandler));
+        assertTrue(candidates.contains(unindexedHandler));
+    }
+
+    @Test
+    public void testCandidatesWithoutLocation() {
+        Collection<EventHandler> candidates = index
+                .getCandidates(event("image,1.0", null, PubSubConstants.CREATE));
+
+        assertEquals(2, candidates.size());
+        assertTrue(candidates.contains(locationHandler));
+        assertTrue(candidates.contains(unindexedHandler));
+    }
+
+    @Test
+    public void testCandidatesForDeletedEntry() {
+        Event event = event("image,1.0", "POINT (-100 40)", PubSubConstants.DELETE);
+        ((Map<String, Object>) event.getProperty(PubSubConstants.HEADER_CONTEXTUAL_KEY))
+                .put("METADATA", PubSubConstants.METADATA_DELETED);
+
+        assertEquals(3, index.getCandidates(event).size());
+    }
+
+    @Test
+    public void testWildcardContentTypeNotIndexed() {
+        EventHandler wildcardHandler = mock(EventHandler.class);
+        index.add("wildcard", new ContentTypePredicate("ni*", null), wildcardHandler);
+
+        Collection<EventHandler> candidates = index
+                .getCandidates(event("image,1.0", "POINT (-100 40)", PubSubConstants.CREATE));
+
+        assertTrue(candidates.contains(wildcardHandler));
+    }
+
+    @Test
+    public void testRemove() {
+        assertTrue(index.remove("location"));
+        assertFalse(index.remove("location"));
+        assertEquals(2, index.size());
+
+        Event event = event("image,1.0", "POINT (15 15)", PubSubConstants.CREATE);
+        index.handleEvent(event);
+
+        verify(unindexedHandler).handleEvent(event);
+        verify(locationHandler, never()).handleEvent(any(Event.class));
+    }
+
+    @Test
+    public void testFailingSubscriptionDoesNotBlockOthers() {
+        EventHandler failingHandler = mock(EventHandler.class);
+        doThrow(new RuntimeException("delivery failed")).when(failingHandler)
+                .handleEvent(any(Event.class));
+        index.add("failing", null, failingHandler);
+
+        Event first = event("image,1.0", "POINT (15 15)", PubSubConstants.CREATE);
+        Event second = event("image,1.0", "POINT (15 15)", PubSubConstants.UPDATE);
+        index.handleEvent(first);
+        index.handleEvent(second);
+
+        InOrder inOrder = inOrder(unindexedHandler);
+        inOrder.verify(unindexedHandler).handleEvent(first);
+        inOrder.verify(unindexedHandler).handleEvent(second);
+        verify(locationHandler, times(2)).handleEvent(any(Event.class));
+        verify(failingHandler, times(2)).handleEvent(any(Event.class));
+    }
+
+    private Event event(String contentType, String location, String operation) {
+        MetacardImpl metacard = new MetacardImpl();
+        metacard.setLocation(location);
+
+        Map<String, Object> contextualMap = new HashMap<>();
+        contextualMap.put("METADATA", "<metadata/>");
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put(PubSubConstants.HEADER_OPERATION_KEY, operation);
+        properties.put(PubSubConstants.HEADER_ENTRY_KEY, metacard);
+        properties.put(PubSubConstants.HEADER_CONTENT_TYPE_KEY, contentType);
+        properties.put(PubSubConstants.HEADER_CONTEXTUAL_KEY, contextualMap);
+        return new Event("topic", properties);
+    }
+}
@@ -13,7 +13,11 @@
  */
 package ddf.catalog.plugin.resourcesize.metacard;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -30,6 +34,7 @@
 import ddf.catalog.plugin.PluginExecutionException;
 import ddf.catalog.plugin.PostQueryPlugin;
 import ddf.catalog.plugin.StopProcessingException;
+import ddf.catalog.resource.Resource;
 import ddf.catalog.resource.data.ReliableResource;
 
 public class MetacardResourceSizePlugin implements PostQueryPlugin {
@@ -47,46 +52,71 @@ public QueryResponse process(QueryResponse input)
             throws PluginExecutionException, StopProcessingException {
 
         List<Result> results = input.getResults();
+        List<String> resultKeys = new ArrayList<>(results.size());
+        Map<String, Metacard> latestMetacards = new HashMap<>();
         for (Result result : results) {
             Metacard metacard = result.getMetacard();
+            String key = null;
             if (metacard != null) {
                 // Can only search cache based on Metacard - no way to generate ResourceRequest with
                 // any properties for use in generating the CacheKey
                 final ResourceRequest resourceRequest = new ResourceRequestById(metacard.getId());
-                CacheKey cacheKey = new CacheKey(metacard, resourceRequest);
-                String key = null;
-                ReliableResource cachedResource = null;
                 try {
-                    key = cacheKey.generateKey();
-                    ClassLoader tccl = Thread.currentThread().getContextClassLoader();
-                    try {
-                        Thread.currentThread().setContextClassLoader(getClass().getClassLoader());
-                        cachedResource = (ReliableResource) cache.getValid(key, metacard);
-                    } finally {
-                        Thread.currentThread().setContextClassLoader(tccl);
-                    }
+                    key = new CacheKey(metacard, resourceRequest).generateKey();
+                    latestMetacards.put(key, metacard);
                 } catch (Exception e) {
-                    LOGGER.debug("Unable to retrieve cached resource for metacard id = {}",
+                    LOGGER.debug("Unable to generate cache key for metacard id = {}",
                             metacard.getId());
                 }
-                if (cachedResource != null) {
-                    long resourceSize = cachedResource.getSize();
-                    if (resourceSize > 0 && cachedResource.hasProduct()) {
-                        LOGGER.debug("Setting resourceSize = {} for metacard ID = {}", resourceSize,
-                                metacard.getId());
-                        Attribute resourceSizeAttribute = new AttributeImpl(Metacard.RESOURCE_SIZE,
-                                String.valueOf(resourceSize));
-                        metacard.setAttribute(resourceSizeAttribute);
-                    } else {
-                        LOGGER.debug("resourceSize <= 0 for metacard ID = {}", metacard.getId());
-                    }
+            }
+            resultKeys.add(key);
+        }
+
+        Map<String, Resource> cachedResources = getCachedResources(latestMetacards);
+        for (int i = 0; i < results.size(); i++) {
+            Metacard metacard = results.get(i).getMetacard();
+            String key = resultKeys.get(i);
+            if (key == null) {
+                continue;
+            }
+            ReliableResource cachedResource = (ReliableResource) cachedResources.get(key);
+            if (cachedResource != null) {
+                long resourceSize = cachedResource.getSize();
+                if (resourceSize > 0 && cachedResource.hasProduct()) {
+                    LOGGER.debug("Setting resourceSize = {} for metacard ID = {}", resourceSize,
+                            metacard.getId());
+                    Attribute resourceSizeAttribute = new AttributeImpl(Metacard.RESOURCE_SIZE,
+                            String.valueOf(resourceSize));
+                    metacard.setAttribute(resourceSizeAttribute);
                 } else {
-                    LOGGER.debug("No cached resource for cache key = {}", key);
+                    LOGGER.debug("resourceSize <= 0 for metacard ID = {}", metacard.getId());
                 }
+            } else {
+                LOGGER.debug("No cached resource for cache key = {}", key);
             }
         }
 
         return input;
     }
 
+    /**
+     * Looks up the cached resources of all the results at once, rather than one result at a time.
+     */
+    private Map<String, Resource> getCachedResources(Map<String, Metacard> latestMetacards) {
+        if (latestMetacards.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        ClassLoader tccl = Thread.currentThread().getContextClassLoader();
+        try {
+            Thread.currentThread().setContextClassLoader(getClass().getClassLoader());
+            return cache.getAllValid(latestMetacards);
+        } catch (Exception e) {
+            LOGGER.debug("Unable to retrieve cached resources for {} metacards",
+                    latestMetacards.size(), e);
+            return Collections.emptyMap();
+        } finally {
+            Thread.currentThread().setContextClassLoader(tccl);
+        }
+    }
+
 }
@@ -17,15 +17,21 @@
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.notNullValue;
-import static org.mockito.Matchers.anyObject;
-import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.anyMap;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import ddf.catalog.cache.ResourceCacheInterface;
 import ddf.catalog.data.Attribute;
@@ -34,17 +40,17 @@
 import ddf.catalog.data.impl.MetacardImpl;
 import ddf.catalog.data.impl.ResultImpl;
 import ddf.catalog.operation.QueryResponse;
+import ddf.catalog.resource.Resource;
 import ddf.catalog.resource.data.ReliableResource;
 
 public class TestMetacardResourceSizePlugin {
 
     @Test
     public void testMetacardResourceSizePopulatedAndHasProduct() throws Exception {
-        ResourceCacheInterface cache = mock(ResourceCacheInterface.class);
         ReliableResource cachedResource = mock(ReliableResource.class);
         when(cachedResource.getSize()).thenReturn(999L);
         when(cachedResource.hasProduct()).thenReturn(true);
-        when(cache.getValid(anyString(), (Metacard) anyObject())).thenReturn(cachedResource);
+        ResourceCacheInterface cache = mockCache(cachedResource);
 
         MetacardImpl metacard = new MetacardImpl();
         metacard.setId("abc123");
@@ -78,11 +84,10 @@ public void testMetacardResourceSizePopulatedAndHasProduct() throws Exception {
      */
     @Test
     public void testMetacardResourceSizePopulatedButNoProduct() throws Exception {
-        ResourceCacheInterface cache = mock(ResourceCacheInterface.class);
         ReliableResource cachedResource = mock(ReliableResource.class);
         when(cachedResource.getSize()).thenReturn(999L);
         when(cachedResource.hasProduct()).thenReturn(false);
-        when(cache.getValid(anyString(), (Metacard) anyObject())).thenReturn(cachedResource);
+        ResourceCacheInterface cache = mockCache(cachedResource);
 
         MetacardImpl metacard = new MetacardImpl();
         metacard.setId("abc123");
@@ -124,10 +129,38 @@ public void testNullMetacard() throws Exception {
         assertThat(queryResponse, equalTo(input));
     }
 
+    @Test
+    public void testCachedResourcesRetrievedInOneLookup() throws Exception {
+        ReliableResource cachedResource = mock(ReliableResource.class);
+        when(cachedResource.getSize()).thenReturn(999L);
+        when(cachedResource.hasProduct()).thenReturn(true);
+        ResourceCacheInterface cache = mockCache(cachedResource);
+
+        List<Result> results = new ArrayList<Result>();
+        for (int i = 0; i < 3; i++) {
+            MetacardImpl metacard = new MetacardImpl();
+            metacard.setId("abc" + i);
+            metacard.setSourceId("ddf-1");
+            metacard.setResourceSize("N/A");
+            results.add(new ResultImpl(metacard));
+        }
+
+        QueryResponse input = mock(QueryResponse.class);
+        when(input.getResults()).thenReturn(results);
+
+        MetacardResourceSizePlugin plugin = new MetacardResourceSizePlugin(cache);
+        QueryResponse queryResponse = plugin.process(input);
+        verify(cache, times(1)).getAllValid(anyMap());
+        for (Result result : queryResponse.getResults()) {
+            Attribute resourceSizeAttr = result.getMetacard().getAttribute(Metacard.RESOURCE_SIZE);
+            assertThat((String) resourceSizeAttr.getValue(), is("999"));
+        }
+    }
+
     @Test
     public void testWhenNoCachedResourceFound() throws Exception {
         ResourceCacheInterface cache = mock(ResourceCacheInterface.class);
-        when(cache.getValid(anyString(), (Metacard) anyObject())).thenReturn(null);
+        when(cache.getAllValid(anyMap())).thenReturn(Collections.<String, Resource>emptyMap());
 
         MetacardImpl metacard = new MetacardImpl();
         metacard.setId("abc123");
@@ -154,10 +187,9 @@ public void testWhenNoCachedResourceFound() throws Exception {
 
     @Test
     public void testWhenCachedResourceSizeIsZero() throws Exception {
-        ResourceCacheInterface cache = mock(ResourceCacheInterface.class);
         ReliableResource cachedResource = mock(ReliableResource.class);
         when(cachedResource.getSize()).thenReturn(0L);
-        when(cache.getValid(anyString(), (Metacard) anyObject())).thenReturn(cachedResource);
+        ResourceCacheInterface cache = mockCache(cachedResource);
 
         MetacardImpl metacard = new MetacardImpl();
         metacard.setId("abc123");
@@ -182,4 +214,24 @@ public void testWhenCachedResourceSizeIsZero() throws Exception {
         assertThat((String) resourceSizeAttr.getValue(), equalTo("N/A"));
     }
 
+    /**
+     * Mocks a cache that has the given resource cached for every key it is asked for.
+     */
+    private ResourceCacheInterface mockCache(final Resource cachedResource) {
+        ResourceCacheInterface cache = mock(ResourceCacheInterface.class);
+        when(cache.getAllValid(anyMap()))
+                .thenAnswer(new Answer<Map<String, Resource>>() {
+                    @Override
+                    public Map<String, Resource> answer(InvocationOnMock invocation) {
+                        Map<String, Metacard> latestMetacards = (Map<String, Metacard>) invocation
+                                .getArguments()[0];
+                        Map<String, Resource> cachedResources = new HashMap<>();
+                        for (String key : latestMetacards.keySet()) {
+                            cachedResources.put(key, cachedResource);
+                        }
+                        return cachedResources;
+                    }
+                });
+        return cache;
+    }
 }
@@ -22,12 +22,14 @@
 import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamConstants;
@@ -43,6 +45,7 @@
 import org.apache.solr.common.SolrDocument;
 import org.apache.solr.common.SolrException;
 import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.util.NamedList;
 import org.apache.solr.common.util.SimpleOrderedMap;
 import org.codehaus.stax2.XMLInputFactory2;
 import org.codice.solr.factory.ConfigurationStore;
@@ -83,8 +86,22 @@ public class DynamicSchemaResolver {
 
     private static final String SOLR_CLOUD_VERSION_FIELD = "_version_";
 
+    private static final String LUKE_REQUEST_HANDLER = "/admin/luke";
+
+    private static final int INITIAL_TEXT_BUFFER_SIZE = 1024;
+
+    // Holds the text extracted from XML by each thread, so that its buffer is not reallocated for
+    // every attribute
+    private static final ThreadLocal<StringBuilder> TEXT_BUFFER = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(INITIAL_TEXT_BUFFER_SIZE);
+        }
+    };
+
     private static final List<String> PRIVATE_SOLR_FIELDS = Arrays
             .asList(SOLR_CLOUD_VERSION_FIELD, SchemaFields.METACARD_TYPE_FIELD_NAME,
+                    SchemaFields.METACARD_TYPE_KEY_FIELD_NAME,
                     SchemaFields.METACARD_TYPE_OBJECT_FIELD_NAME);
 
     private static final Logger LOGGER = LoggerFactory.getLogger(DynamicSchemaResolver.class);
@@ -113,16 +130,39 @@ public class DynamicSchemaResolver {
         }
     }
 
-    protected Set<String> fieldsCache = new HashSet<>();
+    protected Set<String> fieldsCache = Collections
+            .newSetFromMap(new ConcurrentHashMap<String, Boolean>());
 
     protected SchemaFields schemaFields;
 
-    protected Map<String, MetacardType> metacardTypesCache = new HashMap<>();
+    protected SolrMetacardTypeStore metacardTypeStore;
+
+    // Types of documents written before the metacard type store, keyed by type name
+    protected Map<String, MetacardType> legacyMetacardTypesCache = new ConcurrentHashMap<>();
+
+    // Serialized types written to the documents when the store does not persist them
+    protected Map<String, byte[]> serializedMetacardTypesCache = new ConcurrentHashMap<>();
 
-    protected Map<String, byte[]> metacardTypeNameToSerialCache = new HashMap<>();
+    // Whether the schema copies the text extracted from XML attributes to the other text fields
+    protected volatile boolean extractedTextCopiedBySchema = false;
 
+    /**
+     * Creates a resolver with an in-memory {@link SolrMetacardTypeStore}. Since the store does
+     * not survive restarts, each document also carries its serialized {@link MetacardType}.
+     */
     public DynamicSchemaResolver() {
+        this(new SolrMetacardTypeStore());
+    }
+
+    /**
+     * @param metacardTypeStore
+     *            the store the {@link MetacardType}s of the documents are stored in. If it is not
+     *            {@link SolrMetacardTypeStore#isPersistent() persistent}, each document also
+     *            carries its serialized type.
+     */
+    public DynamicSchemaResolver(SolrMetacardTypeStore metacardTypeStore) {
         this.schemaFields = new SchemaFields();
+        this.metacardTypeStore = metacardTypeStore;
 
         fieldsCache.add(Metacard.ID + SchemaFields.TEXT_SUFFIX);
         fieldsCache.add(Metacard.ID + SchemaFields.TEXT_SUFFIX + SchemaFields.TOKENIZED);
@@ -153,7 +193,7 @@ public void addFieldsFromServer(SolrServer server) {
          * request handler is provided by the schema.xml. If the name is changed in the schema.xml,
          * then this value must be changed as well.
          */
-        query.setRequestHandler("/admin/luke");
+        query.setRequestHandler(LUKE_REQUEST_HANDLER);
 
         try {
             QueryResponse response = server.query(query);
@@ -164,6 +204,50 @@ public void addFieldsFromServer(SolrServer server) {
         } catch (SolrServerException | SolrException e) {
             LOGGER.warn("Could not update cache for field names.", e);
         }
+
+        extractedTextCopiedBySchema = isExtractedTextCopiedBySchema(server);
+        LOGGER.debug("Text extracted from XML copied by the schema: {}",
+                extractedTextCopiedBySchema);
+    }
+
+    /**
+     * Checks that the schema of the server copies the whitespace tokenized text field to the other
+     * text fields. Schemas written out by earlier versions do not, in which case the extracted
+     * text is still sent in each field.
+     */
+    private boolean isExtractedTextCopiedBySchema(SolrServer server) {
+        SolrQuery query = new SolrQuery();
+        query.add("show", "schema");
+        query.setRequestHandler(LUKE_REQUEST_HANDLER);
+
+        try {
+            Object schema = server.query(query).getResponse().get("schema");
+            if (!(schema instanceof NamedList)) {
+                return false;
+            }
+            Object dynamicFields = ((NamedList<?>) schema).get("dynamicFields");
+            if (!(dynamicFields instanceof NamedList)) {
+                return false;
+            }
+            Object field = ((NamedList<?>) dynamicFields)
+                    .get("*" + SchemaFields.TEXT_SUFFIX + SchemaFields.WHITESPACE_TEXT_SUFFIX);
+            if (!(field instanceof NamedList)) {
+                return false;
+            }
+            Object copyDests = ((NamedList<?>) field).get("copyDests");
+            if (!(copyDests instanceof Collection)) {
+                return false;
+            }
+
+            String textField = "*" + SchemaFields.TEXT_SUFFIX;
+            return ((Collection<?>) copyDests).containsAll(Arrays.asList(
+                    textField + SchemaFields.WHITESPACE_TEXT_SUFFIX + SchemaFields.HAS_CASE,
+                    textField + SchemaFields.TOKENIZED,
+                    textField + SchemaFields.TOKENIZED + SchemaFields.HAS_CASE));
+        } catch (SolrServerException | SolrException e) {
+            LOGGER.info("Could not read the copy fields of the schema.", e);
+            return false;
+        }
     }
 
     /**
@@ -173,8 +257,6 @@ public void addFields(Metacard metacard, SolrInputDocument solrInputDocument)
             throws MetacardCreationException {
         MetacardType schema = metacard.getMetacardType();
 
-        // TODO: register these metacard types when a new one is seen
-
         for (AttributeDescriptor ad : schema.getAttributeDescriptors()) {
             if (metacard.getAttribute(ad.getName()) != null) {
                 Serializable attributeValue = metacard.getAttribute(ad.getName()).getValue();
@@ -193,21 +275,25 @@ public void addFields(Metacard metacard, SolrInputDocument solrInputDocument)
                                 ad.getName() + getFieldSuffix(AttributeFormat.STRING) + SchemaFields.WHITESPACE_TEXT_SUFFIX;
                         solrInputDocument.addField(whitespaceTokenizedIndexName, parsedText);
 
-                        // text => metadata_txt_ws_has_case
-                        String whiteSpaceTokenizedHasCaseIndexName =
-                                ad.getName() + getFieldSuffix(AttributeFormat.STRING) + SchemaFields.WHITESPACE_TEXT_SUFFIX
-                                + SchemaFields.HAS_CASE;
-                        solrInputDocument.addField(whiteSpaceTokenizedHasCaseIndexName, parsedText);
-
-                        // text => metadata_txt_tokenized
-                        String specialStringIndexName =
-                                ad.getName() + getFieldSuffix(AttributeFormat.STRING)
-                                        + getSpecialIndexSuffix(AttributeFormat.STRING);
-                        solrInputDocument.addField(specialStringIndexName, parsedText);
-
-                        // text case sensitive
-                        solrInputDocument.addField(specialStringIndexName + SchemaFields.HAS_CASE,
-                                parsedText);
+                        // Otherwise the schema copies the text to the other text fields
+                        if (!extractedTextCopiedBySchema) {
+                            // text => metadata_txt_ws_has_case
+                            String whiteSpaceTokenizedHasCaseIndexName =
+                                    ad.getName() + getFieldSuffix(AttributeFormat.STRING) + SchemaFields.WHITESPACE_TEXT_SUFFIX
+                                    + SchemaFields.HAS_CASE;
+                            solrInputDocument.addField(whiteSpaceTokenizedHasCaseIndexName,
+                                    parsedText);
+
+                            // text => metadata_txt_tokenized
+                            String specialStringIndexName =
+                                    ad.getName() + getFieldSuffix(AttributeFormat.STRING)
+                                            + getSpecialIndexSuffix(AttributeFormat.STRING);
+                            solrInputDocument.addField(specialStringIndexName, parsedText);
+
+                            // text case sensitive
+                            solrInputDocument.addField(
+                                    specialStringIndexName + SchemaFields.HAS_CASE, parsedText);
+                        }
                     } else if (AttributeFormat.GEOMETRY.equals(format)) {
                         solrInputDocument.addField(formatIndexName, attributeValue);
                     } else if (AttributeFormat.OBJECT.equals(format)) {
@@ -237,24 +323,38 @@ public void addFields(Metacard metacard, SolrInputDocument solrInputDocument)
         }
 
         /*
-         * Lastly the metacardType must be added to the solr document. These are internal fields
+         * Lastly the metacardType must be referenced from the solr document. These are internal
+         * fields. The type itself is stored once in the store.
          */
-        solrInputDocument.addField(SchemaFields.METACARD_TYPE_FIELD_NAME, schema.getName());
-        byte[] metacardTypeBytes = metacardTypeNameToSerialCache.get(schema.getName());
+        String metacardTypeKey = SolrMetacardTypeStore.getKey(schema);
 
-        if (metacardTypeBytes == null) {
+        if (!metacardTypeStore.contains(metacardTypeKey)) {
             MetacardType coreMetacardType = new MetacardTypeImpl(schema.getName(),
                     convertAttributeDescriptors(schema.getAttributeDescriptors()));
 
-            metacardTypesCache.put(schema.getName(), coreMetacardType);
-
-            metacardTypeBytes = serialize(coreMetacardType);
-            metacardTypeNameToSerialCache.put(schema.getName(), metacardTypeBytes);
+            metacardTypeStore.put(metacardTypeKey, coreMetacardType);
 
             addToFieldsCache(coreMetacardType.getAttributeDescriptors());
         }
 
-        solrInputDocument.addField(SchemaFields.METACARD_TYPE_OBJECT_FIELD_NAME, metacardTypeBytes);
+        solrInputDocument.addField(SchemaFields.METACARD_TYPE_FIELD_NAME, schema.getName());
+        solrInputDocument.addField(SchemaFields.METACARD_TYPE_KEY_FIELD_NAME, metacardTypeKey);
+
+        if (!metacardTypeStore.isPersistent()) {
+            solrInputDocument.addField(SchemaFields.METACARD_TYPE_OBJECT_FIELD_NAME,
+                    getSerializedMetacardType(metacardTypeKey));
+        }
+    }
+
+    private byte[] getSerializedMetacardType(String metacardTypeKey)
+            throws MetacardCreationException {
+        byte[] serializedMetacardType = serializedMetacardTypesCache.get(metacardTypeKey);
+        if (serializedMetacardType == null) {
+            serializedMetacardType = SolrMetacardTypeStore
+                    .serialize(metacardTypeStore.get(metacardTypeKey));
+            serializedMetacardTypesCache.put(metacardTypeKey, serializedMetacardType);
+        }
+        return serializedMetacardType;
     }
 
     /**
@@ -406,42 +506,50 @@ public String getFieldSuffix(AttributeFormat format) {
     }
 
     public MetacardType getMetacardType(SolrDocument doc) throws MetacardCreationException {
-        String mTypeFieldName = doc.getFieldValue(SchemaFields.METACARD_TYPE_FIELD_NAME).toString();
+        Object metacardTypeKey = doc.getFieldValue(SchemaFields.METACARD_TYPE_KEY_FIELD_NAME);
 
-        MetacardType cachedMetacardType = metacardTypesCache.get(mTypeFieldName);
+        if (metacardTypeKey != null) {
+            boolean known = metacardTypeStore.contains(metacardTypeKey.toString());
+            MetacardType metacardType = metacardTypeStore.get(metacardTypeKey.toString());
 
-        if (cachedMetacardType != null) {
-            return cachedMetacardType;
-        }
-
-        byte[] bytes = (byte[]) doc.getFieldValue(SchemaFields.METACARD_TYPE_OBJECT_FIELD_NAME);
-
-        ByteArrayInputStream bais = null;
-        ObjectInputStream in = null;
-        try {
-
-            bais = new ByteArrayInputStream(bytes);
-
-            in = new ObjectInputStream(bais);
+            /*
+             * Documents written through a store that does not persist types also carry the
+             * serialized type, so they can still be read after a restart.
+             */
+            Object serializedMetacardType = doc
+                    .getFieldValue(SchemaFields.METACARD_TYPE_OBJECT_FIELD_NAME);
+            if (metacardType == null && serializedMetacardType != null) {
+                metacardType = SolrMetacardTypeStore.deserialize((byte[]) serializedMetacardType);
+                metacardTypeStore.put(metacardTypeKey.toString(), metacardType);
+            }
 
-            cachedMetacardType = (MetacardType) in.readObject();
+            if (metacardType == null) {
+                LOGGER.warn("Metacard type {} is not registered", metacardTypeKey);
+                throw new MetacardCreationException(COULD_NOT_READ_METACARD_TYPE_MESSAGE);
+            }
 
-        } catch (IOException e) {
+            if (!known) {
+                addToFieldsCache(metacardType.getAttributeDescriptors());
+            }
+            return metacardType;
+        }
 
-            LOGGER.warn("IO exception loading cached metacard type", e);
+        /*
+         * Documents written before the type store carry their own serialized type. They are
+         * rewritten in the current format by re-indexing them.
+         */
+        String mTypeFieldName = doc.getFieldValue(SchemaFields.METACARD_TYPE_FIELD_NAME).toString();
 
-            throw new MetacardCreationException(COULD_NOT_READ_METACARD_TYPE_MESSAGE);
-        } catch (ClassNotFoundException e) {
-            LOGGER.warn("Class exception loading cached metacard type", e);
+        MetacardType cachedMetacardType = legacyMetacardTypesCache.get(mTypeFieldName);
 
-            throw new MetacardCreationException(COULD_NOT_READ_METACARD_TYPE_MESSAGE);
-        } finally {
-            IOUtils.closeQuietly(bais);
-            IOUtils.closeQuietly(in);
+        if (cachedMetacardType != null) {
+            return cachedMetacardType;
         }
 
-        metacardTypeNameToSerialCache.put(mTypeFieldName, bytes);
-        metacardTypesCache.put(mTypeFieldName, cachedMetacardType);
+        cachedMetacardType = SolrMetacardTypeStore.deserialize(
+                (byte[]) doc.getFieldValue(SchemaFields.METACARD_TYPE_OBJECT_FIELD_NAME));
+
+        legacyMetacardTypesCache.put(mTypeFieldName, cachedMetacardType);
         addToFieldsCache(cachedMetacardType.getAttributeDescriptors());
         return cachedMetacardType;
     }
@@ -498,26 +606,6 @@ private void addToFieldsCache(Set<AttributeDescriptor> descriptors) {
         }
     }
 
-    private byte[] serialize(MetacardType anywhereMType) throws MetacardCreationException {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-
-        try {
-            ObjectOutputStream out = new ObjectOutputStream(baos);
-            out.writeObject(anywhereMType);
-
-            byte[] bytes = baos.toByteArray();
-
-            baos.close();
-            out.close();
-
-            return bytes;
-        } catch (IOException e) {
-            LOGGER.warn("IO exception reading metacard type message", e);
-            throw new MetacardCreationException(COULD_NOT_READ_METACARD_TYPE_MESSAGE);
-        }
-
-    }
-
     private String findAnyMatchingNumericalField(String propertyName) {
 
         if (fieldsCache.contains(propertyName + SchemaFields.DOUBLE_SUFFIX)) {
@@ -552,7 +640,8 @@ private String findAnyMatchingNumericalField(String propertyName) {
      */
     protected String parseTextFrom(String xmlData) {
 
-        StringBuilder builder = new StringBuilder();
+        StringBuilder builder = TEXT_BUFFER.get();
+        builder.setLength(0);
 
         XMLStreamReader xmlStreamReader = null;
         StringReader sr = null;
@@ -567,11 +656,9 @@ protected String parseTextFrom(String xmlData) {
 
                 if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) {
 
-                    String text = xmlStreamReader.getText();
-
-                    if (StringUtils.isNotBlank(text)) {
-                        builder.append(" ").append(text.trim());
-                    }
+                    // Appended straight from the parser's buffer, without creating a String
+                    appendTrimmed(builder, xmlStreamReader.getTextCharacters(),
+                            xmlStreamReader.getTextStart(), xmlStreamReader.getTextLength());
 
                 }
                 if (event == XMLStreamConstants.START_ELEMENT) {
@@ -603,7 +690,33 @@ protected String parseTextFrom(String xmlData) {
 
         LOGGER.debug("Parsing took {} ms", endTime - starttime);
 
-        return builder.toString();
+        String text = builder.toString();
+        if (builder.capacity() > INITIAL_TEXT_BUFFER_SIZE * INITIAL_TEXT_BUFFER_SIZE) {
+            // Do not hold on to the buffer of an unusually large document
+            TEXT_BUFFER.remove();
+        }
+        return text;
+    }
+
+    /**
+     * Appends a space and the text, trimmed as {@link String#trim()} does, unless the text is
+     * blank.
+     */
+    private void appendTrimmed(StringBuilder builder, char[] text, int start, int length) {
+        int end = start + length;
+        while (start < end && text[start] <= ' ') {
+            start++;
+        }
+        while (end > start && text[end - 1] <= ' ') {
+            end--;
+        }
+
+        for (int i = start; i < end; i++) {
+            if (!Character.isWhitespace(text[i])) {
+                builder.append(' ').append(text, start, end - start);
+                return;
+            }
+        }
     }
 
     private Set<AttributeDescriptor> convertAttributeDescriptors(
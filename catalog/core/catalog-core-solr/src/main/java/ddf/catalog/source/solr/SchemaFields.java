@@ -61,6 +61,8 @@ public class SchemaFields {
 
     public static final String METACARD_TYPE_FIELD_NAME = "metacard_type_name" + TEXT_SUFFIX;
 
+    public static final String METACARD_TYPE_KEY_FIELD_NAME = "metacard_type_key" + TEXT_SUFFIX;
+
     public static final String METACARD_TYPE_OBJECT_FIELD_NAME = "metacard_type" + OBJECT_SUFFIX;
 
     private static final Map<String, AttributeFormat> SUFFIX_TO_FORMAT_MAP = new HashMap<>();
@@ -43,6 +43,7 @@
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import ddf.catalog.Constants;
 import ddf.catalog.data.AttributeType.AttributeFormat;
 import ddf.catalog.data.ContentType;
 import ddf.catalog.data.Metacard;
@@ -81,14 +82,14 @@ public class SolrCatalogProvider extends MaskableImpl implements CatalogProvider
 
     private static final String DESCRIBABLE_PROPERTIES_FILE = "/describable.properties";
 
-    private static final String QUOTE = "\"";
-
     private static final String REQUEST_MUST_NOT_BE_NULL_MESSAGE = "Request must not be null";
 
     private static final double HASHMAP_DEFAULT_LOAD_FACTOR = 0.75;
 
     public static final int MAX_BOOLEAN_CLAUSES = 1024;
 
+    private static final int DELETE_BATCH_SIZE = 5000;
+
     private static Properties describableProperties = new Properties();
 
     static {
@@ -131,7 +132,8 @@ public SolrCatalogProvider(SolrServer server, FilterAdapter adapter,
     }
 
     /**
-     * Convenience constructor that creates a new ddf.catalog.source.solr.DynamicSchemaResolver
+     * Convenience constructor that creates a new ddf.catalog.source.solr.DynamicSchemaResolver.
+     * Its metacard types are only kept in memory, so they are also written to each document.
      *
      * @param server  Solr server
      * @param adapter injected implementation of FilterAdapter
@@ -314,8 +316,10 @@ public CreateResponse create(CreateRequest request) throws IngestException {
             output.add(metacard);
         }
 
+        // Bulk loads leave the commit to their last request or to the Solr auto commit
+        boolean deferCommit = Boolean.TRUE.equals(request.getPropertyValue(Constants.DEFER_COMMIT));
         try {
-            client.add(output, isForcedAutoCommit());
+            client.add(output, isForcedAutoCommit() && !deferCommit);
         } catch (SolrServerException | SolrException | IOException | MetacardCreationException e) {
             throw new IngestException("Server could not ingest metacard(s).");
         }
@@ -359,28 +363,25 @@ public UpdateResponse update(UpdateRequest updateRequest) throws IngestException
             identifiers.add(updateEntry.getKey().toString());
         }
 
-        /* 1a. Create the old Metacard Query */
-        String attributeQuery = getQuery(attributeName, identifiers);
-
-        SolrQuery query = new SolrQuery(attributeQuery);
+        /* 1a. Resolve the field holding the attribute */
+        String fieldName = getFieldName(attributeName);
 
-        QueryResponse idResults = null;
+        SolrDocumentList idResults = null;
 
-        /* 1b. Execute Query */
+        /* 1b. Look up the old Metacards by their attribute values */
         try {
-            idResults = server.query(query, METHOD.POST);
-        } catch (SolrServerException e) {
+            idResults = client.getByIds(fieldName, identifiers);
+        } catch (SolrServerException | SolrException e) {
             LOGGER.warn("SOLR server exception during query", e);
         }
 
         // CHECK if we got any results back
-        if (idResults != null && idResults.getResults() != null
-                && idResults.getResults().size() != 0) {
+        if (idResults != null && idResults.size() != 0) {
 
-            LOGGER.info("Found {} current metacard(s).", idResults.getResults().size());
+            LOGGER.info("Found {} current metacard(s).", idResults.size());
 
             // CHECK updates size assertion
-            if (idResults.getResults().size() > updates.size()) {
+            if (idResults.size() > updates.size()) {
                 throw new IngestException(
                         "Found more metacards than updated metacards provided. Please ensure your attribute values match unique records.");
             }
@@ -404,13 +405,13 @@ public UpdateResponse update(UpdateRequest updateRequest) throws IngestException
          * metacards properly with the old metacards.
          */
         int initialHashMapCapacity =
-                (int) (idResults.getResults().size() / HASHMAP_DEFAULT_LOAD_FACTOR) + 1;
+                (int) (idResults.size() / HASHMAP_DEFAULT_LOAD_FACTOR) + 1;
 
         // map of old metacards to be populated
         Map<Serializable, Metacard> idToMetacardMap = new HashMap<>(initialHashMapCapacity);
 
         /* 1c. Populate list of old metacards */
-        for (SolrDocument doc : idResults.getResults()) {
+        for (SolrDocument doc : idResults) {
             Metacard old;
             try {
                 old = client.createMetacard(doc);
@@ -481,27 +482,20 @@ public DeleteResponse delete(DeleteRequest deleteRequest) throws IngestException
             return new DeleteResponseImpl(deleteRequest, null, deletedMetacards);
         }
 
-        if (identifiers.size() <=  MAX_BOOLEAN_CLAUSES) {
-            deleteListOfMetacards(deletedMetacards, identifiers, attributeName);
-        } else {
-            List<? extends Serializable> identifierPaged = null;
-            int currPagingSize = 0;
-
-            for (currPagingSize = MAX_BOOLEAN_CLAUSES; currPagingSize < identifiers.size(); currPagingSize += MAX_BOOLEAN_CLAUSES) {
-                identifierPaged = identifiers
-                        .subList(currPagingSize - MAX_BOOLEAN_CLAUSES, currPagingSize);
-                deleteListOfMetacards(deletedMetacards, identifierPaged, attributeName);
-            }
-            identifierPaged = identifiers
-                    .subList(currPagingSize - MAX_BOOLEAN_CLAUSES, identifiers.size());
-            deleteListOfMetacards(deletedMetacards, identifierPaged, attributeName);
+        // The metacards are deleted in batches, to bound the size of the lookups, and committed
+        // once after the last batch
+        for (int start = 0; start < identifiers.size(); start += DELETE_BATCH_SIZE) {
+            int end = Math.min(start + DELETE_BATCH_SIZE, identifiers.size());
+            deleteListOfMetacards(deletedMetacards, identifiers.subList(start, end),
+                    attributeName, end == identifiers.size());
         }
         return new DeleteResponseImpl(deleteRequest, null, deletedMetacards);
 
     }
 
     private void deleteListOfMetacards(List<Metacard> deletedMetacards,
-            List<? extends Serializable> identifiers, String attributeName) throws IngestException {
+            List<? extends Serializable> identifiers, String attributeName, boolean forceCommit)
+            throws IngestException {
         String fieldName = attributeName + SchemaFields.TEXT_SUFFIX;
         SolrDocumentList docs = getSolrDocumentList(identifiers, fieldName);
         createListOfDeletedMetacards(deletedMetacards, docs);
@@ -510,7 +504,7 @@ private void deleteListOfMetacards(List<Metacard> deletedMetacards,
             // the assumption is if something was deleted, it should be gone
             // right away, such as expired data, etc.
             // so we force the commit
-            client.deleteByIds(fieldName, identifiers, true);
+            client.deleteByIds(fieldName, identifiers, forceCommit);
         } catch (SolrServerException | IOException e) {
             throw new IngestException(COULD_NOT_COMPLETE_DELETE_REQUEST_MESSAGE);
         }
@@ -537,17 +531,12 @@ private void createListOfDeletedMetacards(List<Metacard> deletedMetacards,
 
     private SolrDocumentList getSolrDocumentList(List<? extends Serializable> identifierPaged,
             String fieldName) throws IngestException {
-        SolrQuery query = new SolrQuery(client.getIdentifierQuery(fieldName, identifierPaged));
-        query.setRows(identifierPaged.size());
-
-        QueryResponse solrResponse;
         try {
-            solrResponse = server.query(query, METHOD.POST);
-        } catch (SolrServerException e) {
+            return client.getByIds(fieldName, identifierPaged);
+        } catch (SolrServerException | SolrException e) {
             LOGGER.info("SOLR server exception deleting request message", e);
             throw new IngestException(COULD_NOT_COMPLETE_DELETE_REQUEST_MESSAGE);
         }
-        return solrResponse.getResults();
     }
 
     private void prepareForUpdate(Date now, String keyId, MetacardImpl newMetacard,
@@ -568,33 +557,14 @@ private void prepareForUpdate(Date now, String keyId, MetacardImpl newMetacard,
 
     }
 
-    private String getQuery(String attributeName, List<String> ids) throws IngestException {
-
-        StringBuilder queryBuilder = new StringBuilder();
-
+    private String getFieldName(String attributeName) throws IngestException {
         List<String> mappedNames = resolver.getAnonymousField(attributeName);
 
         if (mappedNames.isEmpty()) {
             throw new IngestException("Could not resolve attribute name [" + attributeName + "]");
         }
 
-        for (int i = 0; i < ids.size(); i++) {
-
-            String id = ids.get(i);
-
-            if (i > 0) {
-                queryBuilder.append(" OR ");
-            }
-
-            queryBuilder.append(mappedNames.get(0)).append(":").append(QUOTE).append(id)
-                    .append(QUOTE);
-        }
-
-        String query = queryBuilder.toString();
-
-        LOGGER.debug("query = [{}]", query);
-
-        return query;
+        return mappedNames.get(0);
     }
 
     private String generatePrimaryKey() {
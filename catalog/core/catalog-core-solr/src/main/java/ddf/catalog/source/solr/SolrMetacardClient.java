@@ -18,9 +18,11 @@
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
-import org.apache.commons.collections.CollectionUtils;
-import org.apache.commons.collections.Transformer;
 import org.apache.solr.client.solrj.SolrQuery;
 import org.apache.solr.client.solrj.SolrRequest;
 import org.apache.solr.client.solrj.SolrServer;
@@ -31,6 +33,7 @@
 import org.apache.solr.common.SolrDocumentList;
 import org.apache.solr.common.SolrException;
 import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.params.CursorMarkParams;
 import org.opengis.filter.sort.SortBy;
 import org.opengis.filter.sort.SortOrder;
 import org.slf4j.Logger;
@@ -38,6 +41,7 @@
 
 import com.spatial4j.core.distance.DistanceUtils;
 
+import ddf.catalog.Constants;
 import ddf.catalog.data.AttributeType;
 import ddf.catalog.data.Metacard;
 import ddf.catalog.data.MetacardCreationException;
@@ -61,6 +65,17 @@ public class SolrMetacardClient {
 
     private static final String QUOTE = "\"";
 
+    private static final String REAL_TIME_GET_HANDLER = "/get";
+
+    private static final String TERMS_SEPARATOR = ",";
+
+    private static final String ID_FIELD = Metacard.ID + SchemaFields.TEXT_SUFFIX;
+
+    private static final String COULD_NOT_BUILD_DOCUMENTS_MESSAGE = "Could not build Solr documents";
+
+    // Smallest number of metacards whose documents are built on several threads
+    private static final int PARALLEL_BUILD_THRESHOLD = 100;
+
     private final SolrServer server;
 
     private final SolrFilterDelegateFactory filterDelegateFactory;
@@ -86,11 +101,18 @@ public SourceResponse query(QueryRequest request) throws UnsupportedQueryExcepti
         SolrQuery query = getSolrQuery(request, filterDelegateFactory.newInstance(resolver));
         String sortProperty = getSortProperty(request, query);
 
+        Serializable cursorMark = request.getPropertyValue(Constants.QUERY_CURSOR_MARK);
+        if (cursorMark != null) {
+            setCursorMark(query, cursorMark.toString());
+        }
+
         long totalHits;
+        String nextCursorMark = null;
         List<Result> results = new ArrayList<>();
         try {
             QueryResponse solrResponse = server.query(query, SolrRequest.METHOD.POST);
             totalHits = solrResponse.getResults().getNumFound();
+            nextCursorMark = solrResponse.getNextCursorMark();
             SolrDocumentList docs = solrResponse.getResults();
 
             for (SolrDocument doc : docs) {
@@ -123,9 +145,29 @@ public SourceResponse query(QueryRequest request) throws UnsupportedQueryExcepti
         /* Total Count */
         sourceResponseImpl.setHits(totalHits);
 
+        if (nextCursorMark != null) {
+            sourceResponseImpl.getProperties().put(Constants.QUERY_CURSOR_MARK, nextCursorMark);
+        }
+
         return sourceResponseImpl;
     }
 
+    /**
+     * Pages with a Solr cursor instead of the start index, which makes Solr collect and skip all
+     * the previous results of deep pages. The cursor needs the unique key to break sort ties.
+     */
+    private void setCursorMark(SolrQuery query, String cursorMark) {
+        query.setStart(0);
+        boolean sortedById = false;
+        for (SolrQuery.SortClause sort : query.getSorts()) {
+            sortedById |= ID_FIELD.equals(sort.getItem());
+        }
+        if (!sortedById) {
+            query.addSort(ID_FIELD, SolrQuery.ORDER.asc);
+        }
+        query.set(CursorMarkParams.CURSOR_MARK_PARAM, cursorMark);
+    }
+
     public List<Metacard> query(String queryString) throws UnsupportedQueryException {
         SolrQuery query = new SolrQuery();
         query.setQuery(queryString);
@@ -280,10 +322,7 @@ public List<SolrInputDocument> add(List<Metacard> metacards, boolean forceAutoCo
             return null;
         }
 
-        List<SolrInputDocument> docs = new ArrayList<>();
-        for (Metacard metacard : metacards) {
-            docs.add(getSolrInputDocument(metacard));
-        }
+        List<SolrInputDocument> docs = getSolrInputDocuments(metacards);
 
         if (!forceAutoCommit) {
             server.add(docs);
@@ -294,6 +333,58 @@ public List<SolrInputDocument> add(List<Metacard> metacards, boolean forceAutoCo
         return docs;
     }
 
+    /**
+     * Builds the documents of the metacards, splitting large batches across the threads of the
+     * common {@link ForkJoinPool}, since parsing the XML of each metacard is CPU bound.
+     */
+    private List<SolrInputDocument> getSolrInputDocuments(List<Metacard> metacards)
+            throws MetacardCreationException {
+        int parallelism = ForkJoinPool.getCommonPoolParallelism();
+        if (metacards.size() < PARALLEL_BUILD_THRESHOLD || parallelism < 2) {
+            return buildSolrInputDocuments(metacards);
+        }
+
+        int batchSize = (metacards.size() + parallelism - 1) / parallelism;
+        List<Future<List<SolrInputDocument>>> batches = new ArrayList<>(parallelism);
+        for (int start = 0; start < metacards.size(); start += batchSize) {
+            final List<Metacard> batch = metacards
+                    .subList(start, Math.min(start + batchSize, metacards.size()));
+            batches.add(ForkJoinPool.commonPool()
+                    .submit(new Callable<List<SolrInputDocument>>() {
+                        @Override
+                        public List<SolrInputDocument> call() throws MetacardCreationException {
+                            return buildSolrInputDocuments(batch);
+                        }
+                    }));
+        }
+
+        List<SolrInputDocument> docs = new ArrayList<>(metacards.size());
+        try {
+            for (Future<List<SolrInputDocument>> batch : batches) {
+                docs.addAll(batch.get());
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof MetacardCreationException) {
+                throw (MetacardCreationException) e.getCause();
+            }
+            LOGGER.warn(COULD_NOT_BUILD_DOCUMENTS_MESSAGE, e);
+            throw new MetacardCreationException(COULD_NOT_BUILD_DOCUMENTS_MESSAGE);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MetacardCreationException(COULD_NOT_BUILD_DOCUMENTS_MESSAGE);
+        }
+        return docs;
+    }
+
+    private List<SolrInputDocument> buildSolrInputDocuments(List<Metacard> metacards)
+            throws MetacardCreationException {
+        List<SolrInputDocument> docs = new ArrayList<>(metacards.size());
+        for (Metacard metacard : metacards) {
+            docs.add(getSolrInputDocument(metacard));
+        }
+        return docs;
+    }
+
     protected SolrInputDocument getSolrInputDocument(Metacard metacard)
             throws MetacardCreationException {
         SolrInputDocument solrInputDocument = new SolrInputDocument();
@@ -303,20 +394,52 @@ protected SolrInputDocument getSolrInputDocument(Metacard metacard)
         return solrInputDocument;
     }
 
+    /**
+     * Retrieves the documents whose field has one of the given values. Documents are looked up by
+     * their unique key with a real-time get, which also returns the documents that have not been
+     * committed yet, and by any other field with a terms query, which, unlike a query made of
+     * boolean clauses, takes any number of values. At most one more document than the number of
+     * values is returned, so that callers can tell when a value matched several documents.
+     *
+     * @param fieldName   the name of the Solr field holding the values
+     * @param identifiers the values of the documents to retrieve
+     * @return the matching documents
+     */
+    public SolrDocumentList getByIds(String fieldName, List<? extends Serializable> identifiers)
+            throws SolrServerException {
+        if (identifiers == null || identifiers.isEmpty()) {
+            return new SolrDocumentList();
+        }
+
+        SolrQuery query;
+        if (ID_FIELD.equals(fieldName)) {
+            query = new SolrQuery();
+            query.setRequestHandler(REAL_TIME_GET_HANDLER);
+            query.set("ids", getEscapedIdentifiers(identifiers));
+        } else {
+            query = new SolrQuery(getTermsQuery(fieldName, identifiers));
+            query.setRows(identifiers.size() + 1);
+        }
+
+        SolrDocumentList results = server.query(query, SolrRequest.METHOD.POST).getResults();
+        return results == null ? new SolrDocumentList() : results;
+    }
+
     public void deleteByIds(String fieldName, List<? extends Serializable> identifiers,
             boolean forceCommit) throws IOException, SolrServerException {
         if (identifiers == null || identifiers.size() == 0) {
             return;
         }
 
-        if (Metacard.ID.equals(fieldName)) {
-            CollectionUtils.transform(identifiers, new Transformer() {
-                @Override
-                public Object transform(Object o) {
-                    return o.toString();
-                }
-            });
-            server.deleteById((List<String>) identifiers);
+        if (Metacard.ID.equals(fieldName) || ID_FIELD.equals(fieldName)) {
+            // Copied rather than transformed in place, since the list belongs to the caller
+            List<String> ids = new ArrayList<>(identifiers.size());
+            for (Serializable identifier : identifiers) {
+                ids.add(identifier.toString());
+            }
+            server.deleteById(ids);
+        } else if (canUseTermsQuery(identifiers)) {
+            server.deleteByQuery(getTermsQuery(fieldName, identifiers));
         } else {
             if (identifiers.size() < SolrCatalogProvider.MAX_BOOLEAN_CLAUSES) {
                 server.deleteByQuery(getIdentifierQuery(fieldName, identifiers));
@@ -352,6 +475,50 @@ public String getIdentifierQuery(String fieldName, List<? extends Serializable>
         return queryBuilder.toString();
     }
 
+    /**
+     * Builds a terms query for the values, or a query made of boolean clauses if one of the values
+     * contains the separator of the terms query.
+     */
+    private String getTermsQuery(String fieldName, List<? extends Serializable> identifiers) {
+        if (!canUseTermsQuery(identifiers)) {
+            return getIdentifierQuery(fieldName, identifiers);
+        }
+
+        StringBuilder queryBuilder = new StringBuilder("{!terms f=").append(fieldName)
+                .append("}");
+        for (int i = 0; i < identifiers.size(); i++) {
+            if (i > 0) {
+                queryBuilder.append(TERMS_SEPARATOR);
+            }
+            queryBuilder.append(identifiers.get(i));
+        }
+        return queryBuilder.toString();
+    }
+
+    private boolean canUseTermsQuery(List<? extends Serializable> identifiers) {
+        for (Serializable id : identifiers) {
+            if (id.toString().contains(TERMS_SEPARATOR)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the identifiers separated by commas, with the commas and backslashes they contain
+     * escaped as the real-time get handler expects
+     */
+    private String getEscapedIdentifiers(List<? extends Serializable> identifiers) {
+        StringBuilder ids = new StringBuilder();
+        for (Serializable id : identifiers) {
+            if (ids.length() > 0) {
+                ids.append(',');
+            }
+            ids.append(id.toString().replace("\\", "\\\\").replace(",", "\\,"));
+        }
+        return ids.toString();
+    }
+
     private org.apache.solr.client.solrj.response.UpdateResponse softCommit(
             List<SolrInputDocument> docs) throws SolrServerException, IOException {
         return new org.apache.solr.client.solrj.request.UpdateRequest().add(docs)
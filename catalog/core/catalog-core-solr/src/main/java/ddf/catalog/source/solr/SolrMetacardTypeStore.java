@@ -0,0 +1,322 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package ddf.catalog.source.solr;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.SolrServer;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.util.ClientUtils;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.SolrInputDocument;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ddf.catalog.data.AttributeDescriptor;
+import ddf.catalog.data.Metacard;
+import ddf.catalog.data.MetacardCreationException;
+import ddf.catalog.data.MetacardType;
+
+/**
+ * Stores the {@link MetacardType}s of the metacards in a Solr index. Unlike the
+ * {@link ddf.catalog.data.MetacardTypeRegistry} service, it is internal to the index. Each distinct
+ * type is stored once, under a key made of the type name and a hash of its attribute descriptors,
+ * and documents only reference that key.
+ * <p>
+ * Types are cached in memory. If the store is given a {@link SolrServer}, usually for the
+ * {@link #METACARD_TYPES_CORE_NAME} core, or a directory, types are also persisted there so that
+ * they survive restarts and can be shared by several indexes. Without either, the store is not
+ * {@link #isPersistent() persistent} and the documents must carry their own serialized type.
+ */
+public class SolrMetacardTypeStore {
+
+    public static final String METACARD_TYPES_CORE_NAME = "metacard_types";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SolrMetacardTypeStore.class);
+
+    private static final String ID_FIELD_NAME = Metacard.ID + SchemaFields.TEXT_SUFFIX;
+
+    private static final char KEY_SEPARATOR = ':';
+
+    private static final int HASH_BYTES = 8;
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private static final String FILE_EXTENSION = ".ser";
+
+    private static final Comparator<AttributeDescriptor> DESCRIPTOR_NAME_COMPARATOR = new Comparator<AttributeDescriptor>() {
+        @Override
+        public int compare(AttributeDescriptor descriptor1, AttributeDescriptor descriptor2) {
+            return descriptor1.getName().compareTo(descriptor2.getName());
+        }
+    };
+
+    private final SolrServer server;
+
+    private final File directory;
+
+    private final ConcurrentMap<String, MetacardType> metacardTypes = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a store that only keeps types in memory.
+     */
+    public SolrMetacardTypeStore() {
+        this.server = null;
+        this.directory = null;
+    }
+
+    /**
+     * @param server the {@link SolrServer} to persist the types to. If it is {@code null}, for
+     *               instance because the core could not be created, the store only keeps
+     *               the types in memory.
+     */
+    public SolrMetacardTypeStore(SolrServer server) {
+        if (server == null) {
+            LOGGER.error("No Solr server to store metacard types in. "
+                    + "Types will be stored in each document instead.");
+        }
+        this.server = server;
+        this.directory = null;
+    }
+
+    /**
+     * @param directory the directory to persist the types to, one file per type
+     */
+    public SolrMetacardTypeStore(File directory) {
+        this.server = null;
+        this.directory = directory;
+    }
+
+    /**
+     * Computes the store key of a {@link MetacardType}. Types with the same name and the same
+     * attribute descriptors have the same key, whatever their implementation class.
+     *
+     * @param metacardType the {@link MetacardType}
+     * @return the type name followed by a hash of its attribute descriptors
+     */
+    public static String getKey(MetacardType metacardType) {
+        List<AttributeDescriptor> descriptors = new ArrayList<>(
+                metacardType.getAttributeDescriptors());
+        Collections.sort(descriptors, DESCRIPTOR_NAME_COMPARATOR);
+
+        StringBuilder signature = new StringBuilder();
+        for (AttributeDescriptor descriptor : descriptors) {
+            signature.append(descriptor.getName()).append(',')
+                    .append(descriptor.getType().getAttributeFormat()).append(',')
+                    .append(descriptor.getType().getBinding().getName()).append(',')
+                    .append(descriptor.isIndexed()).append(',')
+                    .append(descriptor.isStored()).append(',')
+                    .append(descriptor.isTokenized()).append(',')
+                    .append(descriptor.isMultiValued()).append(';');
+        }
+
+        byte[] hash;
+        try {
+            hash = MessageDigest.getInstance("SHA-1")
+                    .digest(signature.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not supported", e);
+        }
+
+        StringBuilder key = new StringBuilder(metacardType.getName()).append(KEY_SEPARATOR);
+        for (int i = 0; i < HASH_BYTES; i++) {
+            key.append(HEX_DIGITS[(hash[i] >> 4) & 0xF]).append(HEX_DIGITS[hash[i] & 0xF]);
+        }
+        return key.toString();
+    }
+
+    /**
+     * @return true if the store stores the types in a {@link SolrServer} or a directory, false
+     * if it only keeps them in memory
+     */
+    public boolean isPersistent() {
+        return server != null || directory != null;
+    }
+
+    /**
+     * @param key the store key of the type
+     * @return true if the type is already registered in memory
+     */
+    public boolean contains(String key) {
+        return metacardTypes.containsKey(key);
+    }
+
+    /**
+     * Adds a {@link MetacardType}, persisting it first if the store is persistent and does
+     * not know the type yet.
+     *
+     * @param key          the store key of the type, see {@link #getKey(MetacardType)}
+     * @param metacardType the {@link MetacardType}, must be {@link java.io.Serializable}
+     * @throws MetacardCreationException if the type could not be persisted
+     */
+    public void put(String key, MetacardType metacardType) throws MetacardCreationException {
+        if (metacardTypes.containsKey(key)) {
+            return;
+        }
+
+        if (directory != null) {
+            try {
+                FileUtils.writeByteArrayToFile(getFile(key), serialize(metacardType));
+            } catch (IOException e) {
+                LOGGER.warn("Could not store metacard type {}", key, e);
+                throw new MetacardCreationException(
+                        "Could not store metacard type " + metacardType.getName());
+            }
+            LOGGER.debug("Stored metacard type {}", key);
+        } else if (server != null) {
+            SolrInputDocument typeDocument = new SolrInputDocument();
+            typeDocument.addField(ID_FIELD_NAME, key);
+            typeDocument.addField(SchemaFields.METACARD_TYPE_FIELD_NAME, metacardType.getName());
+            typeDocument.addField(SchemaFields.METACARD_TYPE_OBJECT_FIELD_NAME,
+                    serialize(metacardType));
+            try {
+                server.add(typeDocument);
+                server.commit();
+            } catch (SolrServerException | SolrException | IOException e) {
+                LOGGER.warn("Could not store metacard type {}", key, e);
+                throw new MetacardCreationException(
+                        "Could not store metacard type " + metacardType.getName());
+            }
+            LOGGER.debug("Stored metacard type {}", key);
+        }
+
+        metacardTypes.putIfAbsent(key, metacardType);
+    }
+
+    /**
+     * @param key the store key of the type
+     * @return the registered {@link MetacardType}, or {@code null} if there is none with that key
+     * @throws MetacardCreationException if the type could not be read from the server
+     */
+    public MetacardType get(String key) throws MetacardCreationException {
+        MetacardType metacardType = metacardTypes.get(key);
+        if (metacardType != null || (server == null && directory == null)) {
+            return metacardType;
+        }
+
+        byte[] bytes = directory != null ? readFromDirectory(key) : readFromServer(key);
+        if (bytes == null) {
+            return null;
+        }
+
+        metacardType = deserialize(bytes);
+        MetacardType existing = metacardTypes.putIfAbsent(key, metacardType);
+        return existing == null ? metacardType : existing;
+    }
+
+    private byte[] readFromDirectory(String key) throws MetacardCreationException {
+        File file = getFile(key);
+        if (!file.exists()) {
+            return null;
+        }
+
+        try {
+            return FileUtils.readFileToByteArray(file);
+        } catch (IOException e) {
+            LOGGER.warn("Could not read metacard type {}", key, e);
+            throw new MetacardCreationException(
+                    DynamicSchemaResolver.COULD_NOT_READ_METACARD_TYPE_MESSAGE);
+        }
+    }
+
+    private byte[] readFromServer(String key) throws MetacardCreationException {
+        SolrQuery query = new SolrQuery(ID_FIELD_NAME + ":" + ClientUtils.escapeQueryChars(key));
+        query.setRows(1);
+
+        SolrDocumentList documents;
+        try {
+            documents = server.query(query).getResults();
+        } catch (SolrServerException | SolrException e) {
+            LOGGER.warn("Could not read metacard type {}", key, e);
+            throw new MetacardCreationException(
+                    DynamicSchemaResolver.COULD_NOT_READ_METACARD_TYPE_MESSAGE);
+        }
+
+        if (documents == null || documents.isEmpty()) {
+            return null;
+        }
+
+        SolrDocument typeDocument = documents.get(0);
+        return (byte[]) typeDocument.getFieldValue(SchemaFields.METACARD_TYPE_OBJECT_FIELD_NAME);
+    }
+
+    private File getFile(String key) {
+        try {
+            return new File(directory, URLEncoder.encode(key, "UTF-8") + FILE_EXTENSION);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException("UTF-8 is not supported", e);
+        }
+    }
+
+    static byte[] serialize(MetacardType metacardType) throws MetacardCreationException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ObjectOutputStream out = null;
+        try {
+            out = new ObjectOutputStream(baos);
+            out.writeObject(metacardType);
+            out.flush();
+            return baos.toByteArray();
+        } catch (IOException e) {
+            LOGGER.warn("IO exception writing metacard type", e);
+            throw new MetacardCreationException(
+                    DynamicSchemaResolver.COULD_NOT_READ_METACARD_TYPE_MESSAGE);
+        } finally {
+            IOUtils.closeQuietly(out);
+        }
+    }
+
+    static MetacardType deserialize(byte[] bytes) throws MetacardCreationException {
+        if (bytes == null) {
+            throw new MetacardCreationException(
+                    DynamicSchemaResolver.COULD_NOT_READ_METACARD_TYPE_MESSAGE);
+        }
+
+        ObjectInputStream in = null;
+        try {
+            in = new ObjectInputStream(new ByteArrayInputStream(bytes));
+            return (MetacardType) in.readObject();
+        } catch (IOException e) {
+            LOGGER.warn("IO exception loading cached metacard type", e);
+            throw new MetacardCreationException(
+                    DynamicSchemaResolver.COULD_NOT_READ_METACARD_TYPE_MESSAGE);
+        } catch (ClassNotFoundException e) {
+            LOGGER.warn("Class exception loading cached metacard type", e);
+            throw new MetacardCreationException(
+                    DynamicSchemaResolver.COULD_NOT_READ_METACARD_TYPE_MESSAGE);
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+}
@@ -15,21 +15,27 @@
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
-import java.io.ByteArrayInputStream;
-import java.io.IOException;
-import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
 
-import org.apache.commons.io.IOUtils;
+import org.apache.solr.client.solrj.SolrServer;
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.common.SolrDocument;
 import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SimpleOrderedMap;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 
@@ -39,6 +45,8 @@
 import ddf.catalog.data.MetacardType;
 import ddf.catalog.data.impl.AttributeDescriptorImpl;
 import ddf.catalog.data.impl.BasicTypes;
+import ddf.catalog.data.impl.MetacardImpl;
+import ddf.catalog.data.impl.MetacardTypeImpl;
 
 public class DynamicSchemaResolverTest {
     /**
@@ -67,32 +75,152 @@ public void testAddFields() throws Exception {
         when(mockMetacard.getMetacardType().getAttributeDescriptors())
                 .thenReturn(addtributeDescriptors);
         when(mockMetacard.getAttribute(name)).thenReturn(mockAttribute);
-        ArgumentCaptor<byte[]> metacardTypeBytes = ArgumentCaptor.forClass(byte[].class);
+        ArgumentCaptor<String> metacardTypeKey = ArgumentCaptor.forClass(String.class);
         SolrInputDocument mockSolrInputDocument = mock(SolrInputDocument.class);
-        DynamicSchemaResolver resolver = new DynamicSchemaResolver();
+        SolrMetacardTypeStore store = new SolrMetacardTypeStore(mock(SolrServer.class));
+        DynamicSchemaResolver resolver = new DynamicSchemaResolver(store);
 
         // Perform Test
         resolver.addFields(mockMetacard, mockSolrInputDocument);
 
         // Verify: Verify that TestAttributeDescritorImpl has been recreated as a AttributeDescriptorImpl.
-        verify(mockSolrInputDocument).addField(eq(SchemaFields.METACARD_TYPE_OBJECT_FIELD_NAME),
-                metacardTypeBytes.capture());
-        byte[] serializedMetacardType = metacardTypeBytes.getValue();
-        MetacardType metacardType = deserializeMetacardType(serializedMetacardType);
+        verify(mockSolrInputDocument).addField(eq(SchemaFields.METACARD_TYPE_KEY_FIELD_NAME),
+                metacardTypeKey.capture());
+        verify(mockSolrInputDocument, never())
+                .addField(eq(SchemaFields.METACARD_TYPE_OBJECT_FIELD_NAME), any());
+        MetacardType metacardType = store.get(metacardTypeKey.getValue());
         for (AttributeDescriptor attributeDescriptor : metacardType.getAttributeDescriptors()) {
             assertThat(attributeDescriptor.getClass().getName(),
                     is(AttributeDescriptorImpl.class.getName()));
         }
     }
 
-    private MetacardType deserializeMetacardType(byte[] serializedMetacardType)
-            throws ClassNotFoundException, IOException {
-        ByteArrayInputStream bais = new ByteArrayInputStream((byte[]) serializedMetacardType);
-        ObjectInputStream in = new ObjectInputStream(bais);
-        MetacardType metacardType = (MetacardType) in.readObject();
-        IOUtils.closeQuietly(bais);
-        IOUtils.closeQuietly(in);
-        return metacardType;
+    @Test
+    public void testMetacardTypeStoredOnce() throws Exception {
+        SolrServer typeServer = mock(SolrServer.class);
+        DynamicSchemaResolver resolver = new DynamicSchemaResolver(
+                new SolrMetacardTypeStore(typeServer));
+
+        resolver.addFields(new MetacardImpl(), new SolrInputDocument());
+        resolver.addFields(new MetacardImpl(), new SolrInputDocument());
+
+        verify(typeServer, times(1)).add(any(SolrInputDocument.class));
     }
-}
 
+    @Test
+    public void testGetMetacardTypeFromKey() throws Exception {
+        DynamicSchemaResolver resolver = new DynamicSchemaResolver();
+        SolrInputDocument inputDocument = new SolrInputDocument();
+        resolver.addFields(new MetacardImpl(), inputDocument);
+
+        SolrDocument document = new SolrDocument();
+        document.setField(SchemaFields.METACARD_TYPE_FIELD_NAME,
+                inputDocument.getFieldValue(SchemaFields.METACARD_TYPE_FIELD_NAME));
+        document.setField(SchemaFields.METACARD_TYPE_KEY_FIELD_NAME,
+                inputDocument.getFieldValue(SchemaFields.METACARD_TYPE_KEY_FIELD_NAME));
+
+        MetacardType metacardType = resolver.getMetacardType(document);
+
+        assertThat(metacardType.getName(), is(BasicTypes.BASIC_METACARD.getName()));
+        assertThat(metacardType.getAttributeDescriptors().size(),
+                is(BasicTypes.BASIC_METACARD.getAttributeDescriptors().size()));
+    }
+
+    @Test
+    public void testMetacardTypeSurvivesInMemoryStore() throws Exception {
+        Set<AttributeDescriptor> descriptors = new HashSet<>();
+        descriptors.add(new AttributeDescriptorImpl("custom-attribute", true, true, false, false,
+                BasicTypes.STRING_TYPE));
+        MetacardType metacardType = new MetacardTypeImpl("custom", descriptors);
+        SolrInputDocument inputDocument = new SolrInputDocument();
+        new DynamicSchemaResolver().addFields(new MetacardImpl(metacardType), inputDocument);
+
+        SolrDocument document = new SolrDocument();
+        for (String fieldName : inputDocument.getFieldNames()) {
+            document.setField(fieldName, inputDocument.getFieldValue(fieldName));
+        }
+
+        // A new resolver stands for a restart, when the in-memory store is empty
+        MetacardType restoredType = new DynamicSchemaResolver().getMetacardType(document);
+
+        assertThat(restoredType.getName(), is("custom"));
+        assertThat(restoredType.getAttributeDescriptor("custom-attribute").getType(),
+                is((Object) BasicTypes.STRING_TYPE));
+    }
+
+    @Test
+    public void testGetLegacyMetacardType() throws Exception {
+        SolrDocument document = new SolrDocument();
+        document.setField(SchemaFields.METACARD_TYPE_FIELD_NAME,
+                BasicTypes.BASIC_METACARD.getName());
+        document.setField(SchemaFields.METACARD_TYPE_OBJECT_FIELD_NAME,
+                SolrMetacardTypeStore.serialize(BasicTypes.BASIC_METACARD));
+
+        MetacardType metacardType = new DynamicSchemaResolver().getMetacardType(document);
+
+        assertThat(metacardType.getName(), is(BasicTypes.BASIC_METACARD.getName()));
+    }
+
+    @Test
+    public void testMetacardTypeKeyDependsOnDescriptors() {
+        Set<AttributeDescriptor> descriptors = new HashSet<>(
+                BasicTypes.BASIC_METACARD.getAttributeDescriptors());
+        String basicKey = SolrMetacardTypeStore.getKey(BasicTypes.BASIC_METACARD);
+
+        assertThat(SolrMetacardTypeStore.getKey(
+                new MetacardTypeImpl(BasicTypes.BASIC_METACARD.getName(),
+                        descriptors)), is(basicKey));
+
+        descriptors.add(new AttributeDescriptorImpl("extra", true, true, false, false,
+                BasicTypes.STRING_TYPE));
+        assertThat(SolrMetacardTypeStore.getKey(
+                new MetacardTypeImpl(BasicTypes.BASIC_METACARD.getName(),
+                        descriptors)).equals(basicKey), is(false));
+    }
+
+    @Test
+    public void testExtractedTextSentToEachField() throws Exception {
+        SolrInputDocument document = addMetadata(new DynamicSchemaResolver());
+
+        assertThat(document.getFieldValue("metadata_txt_ws"), is((Object) " Flagstaff"));
+        assertThat(document.getFieldValue("metadata_txt_ws_has_case"), is((Object) " Flagstaff"));
+        assertThat(document.getFieldValue("metadata_txt_tokenized"), is((Object) " Flagstaff"));
+        assertThat(document.getFieldValue("metadata_txt_tokenized_has_case"),
+                is((Object) " Flagstaff"));
+    }
+
+    @Test
+    public void testExtractedTextSentOnceWhenCopiedBySchema() throws Exception {
+        SimpleOrderedMap<Object> whitespaceField = new SimpleOrderedMap<>();
+        whitespaceField.add("copyDests", Arrays.asList("*_txt_ws_has_case", "*_txt_tokenized",
+                "*_txt_tokenized_has_case"));
+        SimpleOrderedMap<Object> dynamicFields = new SimpleOrderedMap<>();
+        dynamicFields.add("*_txt_ws", whitespaceField);
+        SimpleOrderedMap<Object> schema = new SimpleOrderedMap<>();
+        schema.add("dynamicFields", dynamicFields);
+        NamedList<Object> lukeResponse = new NamedList<>();
+        lukeResponse.add(DynamicSchemaResolver.FIELDS_KEY, new SimpleOrderedMap<Object>());
+        lukeResponse.add("schema", schema);
+        QueryResponse response = mock(QueryResponse.class);
+        when(response.getResponse()).thenReturn(lukeResponse);
+        SolrServer server = mock(SolrServer.class);
+        when(server.query(any(SolrParams.class))).thenReturn(response);
+
+        DynamicSchemaResolver resolver = new DynamicSchemaResolver();
+        resolver.addFieldsFromServer(server);
+        SolrInputDocument document = addMetadata(resolver);
+
+        assertThat(document.getFieldValue("metadata_txt_ws"), is((Object) " Flagstaff"));
+        assertThat(document.containsKey("metadata_txt_ws_has_case"), is(false));
+        assertThat(document.containsKey("metadata_txt_tokenized"), is(false));
+        assertThat(document.containsKey("metadata_txt_tokenized_has_case"), is(false));
+    }
+
+    private SolrInputDocument addMetadata(DynamicSchemaResolver resolver) throws Exception {
+        MetacardImpl metacard = new MetacardImpl();
+        metacard.setMetadata("<city name=\" \">  Flagstaff <!-- comment --> </city>");
+        SolrInputDocument document = new SolrInputDocument();
+        resolver.addFields(metacard, document);
+        return document;
+    }
+}
@@ -0,0 +1,47 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package ddf.catalog.source.solr;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.solr.client.solrj.SolrServer;
+import org.junit.Test;
+
+import ddf.catalog.data.Metacard;
+import ddf.catalog.filter.FilterAdapter;
+
+public class SolrMetacardClientTest {
+
+    @Test
+    public void testDeleteByIdsLeavesIdentifiersUnchanged() throws Exception {
+        SolrServer server = mock(SolrServer.class);
+        SolrMetacardClient client = new SolrMetacardClient(server, mock(FilterAdapter.class),
+                mock(SolrFilterDelegateFactory.class), new DynamicSchemaResolver());
+        List<Serializable> identifiers = Arrays.<Serializable>asList(1L, "2");
+
+        client.deleteByIds(Metacard.ID, identifiers, false);
+
+        verify(server).deleteById(Arrays.asList("1", "2"));
+        assertThat(identifiers.get(0), instanceOf(Long.class));
+        assertThat(identifiers, contains((Serializable) 1L, "2"));
+    }
+}
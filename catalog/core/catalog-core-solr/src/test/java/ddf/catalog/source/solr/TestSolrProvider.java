@@ -41,6 +41,7 @@
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -75,6 +76,7 @@
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import ddf.catalog.Constants;
 import ddf.catalog.data.AttributeDescriptor;
 import ddf.catalog.data.ContentType;
 import ddf.catalog.data.Metacard;
@@ -614,6 +616,83 @@ public void testUpdateEmptyList() throws IngestException, UnsupportedQueryExcept
 
     }
 
+    /**
+     * Tests updating more metacards than a boolean query can match.
+     */
+    @Test
+    public void testUpdateLargeList() throws Exception {
+
+        deleteAllIn(provider);
+
+        int metacardCount = SolrCatalogProvider.MAX_BOOLEAN_CLAUSES + 100;
+        List<Metacard> metacards = new ArrayList<Metacard>();
+        for (int i = 0; i < metacardCount; i++) {
+            metacards.add(new MockMetacard(Library.getFlagstaffRecord()));
+        }
+
+        CreateResponse createResponse = create(metacards);
+
+        String[] ids = new String[metacardCount];
+        List<Metacard> updatedMetacards = new ArrayList<Metacard>();
+        for (int i = 0; i < metacardCount; i++) {
+            ids[i] = createResponse.getCreatedMetacards().get(i).getId();
+            MockMetacard updatedMetacard = new MockMetacard(Library.getTampaRecord());
+            updatedMetacard.setId(ids[i]);
+            updatedMetacards.add(updatedMetacard);
+        }
+
+        UpdateResponse updateResponse = update(ids, updatedMetacards);
+
+        assertEquals(metacardCount, updateResponse.getUpdatedMetacards().size());
+        for (Update update : updateResponse.getUpdatedMetacards()) {
+            assertEquals(update.getOldMetacard().getId(), update.getNewMetacard().getId());
+            assertTrue(update.getNewMetacard().getMetadata().indexOf("TPA") != ALL_RESULTS);
+        }
+    }
+
+    @Test
+    public void testCursorPaging() throws Exception {
+
+        deleteAllIn(provider);
+
+        int metacardCount = 25;
+        List<Metacard> metacards = new ArrayList<Metacard>();
+        for (int i = 0; i < metacardCount; i++) {
+            metacards.add(new MockMetacard(Library.getFlagstaffRecord()));
+        }
+        create(metacards);
+
+        QueryImpl query = new CommonQueryBuilder().like(Metacard.ID, "*", false, false);
+        query.setPageSize(10);
+        // The start index is ignored by cursors
+        query.setStartIndex(5);
+
+        Set<String> ids = new HashSet<String>();
+        Serializable cursorMark = "*";
+        int pages = 0;
+        while (true) {
+            Map<String, Serializable> properties = new HashMap<String, Serializable>();
+            properties.put(Constants.QUERY_CURSOR_MARK, cursorMark);
+            SourceResponse sourceResponse = provider
+                    .query(new QueryRequestImpl(query, properties));
+            Serializable nextCursorMark = sourceResponse
+                    .getPropertyValue(Constants.QUERY_CURSOR_MARK);
+            assertNotNull(nextCursorMark);
+            if (sourceResponse.getResults().isEmpty()) {
+                assertEquals(cursorMark, nextCursorMark);
+                break;
+            }
+            for (Result result : sourceResponse.getResults()) {
+                assertTrue(ids.add(result.getMetacard().getId()));
+            }
+            cursorMark = nextCursorMark;
+            pages++;
+        }
+
+        assertEquals(metacardCount, ids.size());
+        assertEquals(3, pages);
+    }
+
     @Test
     public void testUpdateByMetacardId() throws Exception {
 
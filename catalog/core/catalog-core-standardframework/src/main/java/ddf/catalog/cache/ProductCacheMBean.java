@@ -0,0 +1,40 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package ddf.catalog.cache;
+
+/**
+ * Usage and eviction statistics of the product cache.
+ */
+public interface ProductCacheMBean {
+
+    public static final String OBJECTNAME = "ddf.catalog.cache.impl.ResourceCache:service=product-cache";
+
+    long getCacheDirSizeBytes();
+
+    int getEntryCount();
+
+    long getHitCount();
+
+    long getMissCount();
+
+    /**
+     * @return the ratio of product cache lookups that found a valid product, 0 if there were none
+     */
+    double getHitRatio();
+
+    long getEvictionCount();
+
+    long getEvictedBytes();
+
+}
@@ -13,6 +13,8 @@
  */
 package ddf.catalog.cache;
 
+import java.util.Map;
+
 import ddf.catalog.data.Metacard;
 import ddf.catalog.resource.Resource;
 import ddf.catalog.resource.data.ReliableResource;
@@ -42,6 +44,16 @@ public interface ResourceCacheInterface {
      */
     Resource getValid(String key, Metacard latestMetacard);
 
+    /**
+     * Gets the valid resources cached for several keys in one lookup. Unlike
+     * {@link #getValid(String, Metacard)}, keys without a valid resource are left out of the
+     * result rather than failing the lookup.
+     *
+     * @param latestMetacards the Metacards from the Catalog, by cache key
+     * @return the valid resources found in the cache, by cache key
+     */
+    Map<String, Resource> getAllValid(Map<String, Metacard> latestMetacards);
+
     /**
      * Queries cache to determine if it contains a valid resource with the provided key.
      * <p/>
@@ -63,6 +75,15 @@ public interface ResourceCacheInterface {
      */
     boolean isPending(String key);
 
+    /**
+     * Gets the resource with specified cache key that is in the process of being cached.
+     * The file of the returned resource is being written to and may not be complete yet.
+     *
+     * @param key
+     * @return the pending resource, {@code null} if no resource with that key is being cached
+     */
+    ReliableResource getPendingCacheEntry(String key);
+
     /**
      * Removes resource from list of pending resources being added to cache.
      * This can help when multiple clients may be interacting with the same cache in order to
@@ -76,9 +97,14 @@ public interface ResourceCacheInterface {
      * Adds resource to list of resources in process of being cached.
      * This can help when multiple clients may be interacting with the same cache in order to
      * prevent multiple copies of the same resource being cached.
+     * <p/>
+     * Only one of several clients adding an entry with the same key at the same time succeeds,
+     * and only that client should write the resource to the cache.
      *
-     * @param cacheKey
+     * @param reliableResource
+     * @return {@code true} if the entry was added, {@code false} if the resource is already
+     * cached or being cached
      */
-    void addPendingCacheEntry(ReliableResource reliableResource);
+    boolean addPendingCacheEntry(ReliableResource reliableResource);
 
 }
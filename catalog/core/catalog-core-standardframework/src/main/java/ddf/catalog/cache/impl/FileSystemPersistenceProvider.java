@@ -14,34 +14,49 @@
 package ddf.catalog.cache.impl;
 
 import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInput;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutput;
 import java.io.ObjectOutputStream;
-import java.io.OutputStream;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 
+import javax.activation.MimeType;
+import javax.activation.MimeTypeParseException;
+
 import org.apache.commons.io.IOUtils;
+import org.codice.ddf.platform.util.SegmentStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.hazelcast.core.MapLoader;
 import com.hazelcast.core.MapStore;
 
+import ddf.catalog.data.Metacard;
+import ddf.catalog.resource.data.ReliableResource;
+
 /**
  * Hazelcast persistence provider implementation of @MapLoader and @MapStore to serialize
  * and persist Java objects stored in Hazelcast cache to disk.
+ * <p/>
+ * The values are kept in an append-only @SegmentStore rather than in one file per key, so that
+ * storing a value takes a single append and all the keys are loaded from the store's index
+ * without listing the directory. @ReliableResource values, i.e., the product cache entries, are
+ * written with a compact encoding of their fields; other values are Java-serialized. Files from
+ * the previous one-file-per-key format are imported into the store the first time it is opened.
  */
 public class FileSystemPersistenceProvider
         implements MapLoader<String, Object>, MapStore<String, Object> {
@@ -55,8 +70,14 @@
 
     private static final String PERSISTENCE_PATH = "data/";
 
+    private static final byte JAVA_SERIALIZED = 0;
+
+    private static final byte RELIABLE_RESOURCE = 1;
+
     private String mapName = "default";
 
+    private SegmentStore segmentStore;
+
     FileSystemPersistenceProvider(String mapName) {
         LOGGER.trace("INSIDE: FileSystemPersistenceProvider constructor,  mapName = {}", mapName);
         this.mapName = mapName;
@@ -80,53 +101,36 @@ String getMapStorePath() {
 
     @Override
     public void store(String key, Object value) {
-        OutputStream file = null;
-        ObjectOutput output = null;
-
         LOGGER.trace("Entering: store - key: {}", key);
-        try {
-            File dir = new File(getMapStorePath());
-            if (!dir.exists()) {
-                boolean success = dir.mkdir();
-                if (!success) {
-                    LOGGER.error("Could not make directory: {}", dir.getAbsolutePath());
-                }
-            }
-            LOGGER.debug("file name: {}{}{}", getMapStorePath(), key, SER);
-            file = new FileOutputStream(getMapStoreFile(key));
-            OutputStream buffer = new BufferedOutputStream(file);
-            output = new ObjectOutputStream(buffer);
-            output.writeObject(value);
-        } catch (IOException e) {
-            LOGGER.info("IOException storing value in cache with key = {}", key, e);
-        } finally {
-            try {
-                if (output != null) {
-                    output.close();
-                }
-            } catch (IOException e) {
-                // Intentionally ignored
-            }
-            IOUtils.closeQuietly(file);
-        }
+        storeAll(Collections.singletonMap(key, value));
         LOGGER.trace("Exiting: store");
     }
 
     @Override
     public void storeAll(Map<String, Object> keyValueMap) {
+        Map<String, byte[]> values = new LinkedHashMap<>(keyValueMap.size());
         for (Map.Entry<String, Object> entry : keyValueMap.entrySet()) {
-            store(entry.getKey(), entry.getValue());
+            try {
+                values.put(entry.getKey(), encode(entry.getValue()));
+            } catch (IOException e) {
+                LOGGER.info("IOException storing value in cache with key = {}", entry.getKey(),
+                        e);
+            }
+        }
+
+        try {
+            getSegmentStore().putAll(values);
+        } catch (IOException e) {
+            LOGGER.info("IOException storing values in cache with keys = {}", values.keySet(), e);
         }
     }
 
     @Override
     public void delete(String key) {
-        File file = getMapStoreFile(key);
-        if (file.exists()) {
-            boolean success = file.delete();
-            if (!success) {
-                LOGGER.error("Could not delete file {}", file.getAbsolutePath());
-            }
+        try {
+            getSegmentStore().delete(key);
+        } catch (IOException e) {
+            LOGGER.error("Could not delete value with key {}", key, e);
         }
     }
 
@@ -146,23 +150,13 @@ public Object load(String key) {
     }
 
     Object loadFromPersistence(String key) {
-        File file = getMapStoreFile(key);
-        if (!file.exists()) {
-            return null;
-        }
-        InputStream inputStream = null;
         try {
-            inputStream = new FileInputStream(getMapStorePath() + key + SER);
-            InputStream buffer = new BufferedInputStream(inputStream);
-            ObjectInput input = new ObjectInputStream(buffer);
-            Object obj = (Object) input.readObject();
-            return obj;
+            byte[] value = getSegmentStore().get(key);
+            return value == null ? null : decode(value);
         } catch (IOException e) {
             LOGGER.info("IOException", e);
         } catch (ClassNotFoundException e) {
             LOGGER.info("ClassNotFoundException", e);
-        } finally {
-            IOUtils.closeQuietly(inputStream);
         }
         return null;
     }
@@ -180,6 +174,67 @@ public Map<String, Object> loadAll(Collection<String> keys) {
         return values;
     }
 
+    @Override
+    public Set<String> loadAllKeys() {
+        LOGGER.debug("Entering loadAllKeys");
+        try {
+            return getSegmentStore().keySet();
+        } catch (IOException e) {
+            LOGGER.info("IOException loading keys from {}", getMapStorePath(), e);
+            return new HashSet<String>();
+        } finally {
+            LOGGER.debug("Leaving loadAllKeys");
+        }
+    }
+
+    public void clear() {
+        try {
+            getSegmentStore().clear();
+        } catch (IOException e) {
+            LOGGER.error("Could not clear {}", getMapStorePath(), e);
+        }
+    }
+
+    private synchronized SegmentStore getSegmentStore() throws IOException {
+        if (segmentStore == null) {
+            segmentStore = new SegmentStore(new File(getMapStorePath()));
+            importSerializedFiles();
+        }
+        return segmentStore;
+    }
+
+    /**
+     * Moves the values persisted one file per key by earlier versions into the segment store.
+     */
+    private void importSerializedFiles() throws IOException {
+        File[] files = new File(getMapStorePath()).listFiles(getFilenameFilter());
+        if (files == null || files.length == 0) {
+            return;
+        }
+
+        LOGGER.info("Importing {} persisted values from {}", files.length, getMapStorePath());
+        for (File file : files) {
+            InputStream inputStream = null;
+            boolean imported = false;
+            try {
+                inputStream = new FileInputStream(file);
+                ObjectInput input = new ObjectInputStream(new BufferedInputStream(inputStream));
+                Object value = input.readObject();
+                segmentStore.put(file.getName().replaceFirst(SER_REGEX, ""), encode(value));
+                imported = true;
+            } catch (IOException | ClassNotFoundException e) {
+                LOGGER.warn("Could not import persisted value from {}, keeping the file",
+                        file.getAbsolutePath(), e);
+            } finally {
+                IOUtils.closeQuietly(inputStream);
+            }
+            // The file is only deleted once its value is safely in the store
+            if (imported && !file.delete()) {
+                LOGGER.error("Could not delete file {}", file.getAbsolutePath());
+            }
+        }
+    }
+
     private FilenameFilter getFilenameFilter() {
         FilenameFilter filter = new FilenameFilter() {
             @Override
@@ -190,39 +245,79 @@ public boolean accept(File file, String name) {
         return filter;
     }
 
-    @Override
-    public Set<String> loadAllKeys() {
-        Set<String> keys = new HashSet<String>();
-        LOGGER.debug("Entering loadAllKeys");
-
-        File[] files = new File(getMapStorePath()).listFiles(getFilenameFilter());
-        if (files == null) {
-            return keys;
+    private byte[] encode(Object value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        if (value instanceof ReliableResource) {
+            ReliableResource resource = (ReliableResource) value;
+            output.writeByte(RELIABLE_RESOURCE);
+            writeNullableString(output, resource.getKey());
+            writeNullableString(output, resource.getFilePath());
+            writeNullableString(output,
+                    resource.getMimeType() == null ? null : resource.getMimeType().toString());
+            writeNullableString(output, resource.getName());
+            output.writeLong(resource.getSize());
+            output.writeLong(resource.getLastTouchedMillis());
+            writeObject(output, resource.getMetacard());
+        } else {
+            output.writeByte(JAVA_SERIALIZED);
+            writeObject(output, value);
         }
+        output.flush();
+        return bytes.toByteArray();
+    }
 
-        for (File file : files) {
-            keys.add(file.getName().replaceFirst(SER_REGEX, ""));
+    private Object decode(byte[] value) throws IOException, ClassNotFoundException {
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(value));
+        byte type = input.readByte();
+        switch (type) {
+        case JAVA_SERIALIZED:
+            return new ObjectInputStream(input).readObject();
+        case RELIABLE_RESOURCE:
+            String key = readNullableString(input);
+            String filePath = readNullableString(input);
+            String mimeType = readNullableString(input);
+            String name = readNullableString(input);
+            long size = input.readLong();
+            long lastTouchedMillis = input.readLong();
+            Metacard metacard = (Metacard) new ObjectInputStream(input).readObject();
+            ReliableResource resource = new ReliableResource(key, filePath, parseMimeType(
+                    mimeType), name, metacard);
+            resource.setSize(size);
+            resource.setLastTouchedMillis(lastTouchedMillis);
+            return resource;
+        default:
+            throw new IOException("Unknown persisted value type " + type);
         }
+    }
 
-        LOGGER.debug("Leaving loadAllKeys");
+    private MimeType parseMimeType(String mimeType) {
+        if (mimeType == null) {
+            return null;
+        }
+        try {
+            return new MimeType(mimeType);
+        } catch (MimeTypeParseException e) {
+            LOGGER.debug("Could not parse persisted mime type {}", mimeType, e);
+            return null;
+        }
+    }
 
-        return keys;
+    private void writeObject(DataOutputStream output, Object value) throws IOException {
+        ObjectOutputStream objectOutput = new ObjectOutputStream(output);
+        objectOutput.writeObject(value);
+        objectOutput.flush();
     }
 
-    public void clear() {
-        File[] files = new File(getMapStorePath()).listFiles(getFilenameFilter());
-        if (null != files) {
-            for (File file : files) {
-                boolean success = file.delete();
-                if (!success) {
-                    LOGGER.error("Could not delete file {}", file.getAbsolutePath());
-                }
-            }
+    private void writeNullableString(DataOutputStream output, String value) throws IOException {
+        output.writeBoolean(value != null);
+        if (value != null) {
+            output.writeUTF(value);
         }
     }
 
-    private File getMapStoreFile(String key) {
-        return new File(getMapStorePath() + key + SER);
+    private String readNullableString(DataInputStream input) throws IOException {
+        return input.readBoolean() ? input.readUTF() : null;
     }
 
 }
@@ -14,11 +14,20 @@
 package ddf.catalog.cache.impl;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -29,18 +38,26 @@
 import com.hazelcast.core.HazelcastInstanceAware;
 import com.hazelcast.core.IAtomicLong;
 import com.hazelcast.core.IMap;
-import com.hazelcast.query.PagingPredicate;
 
 import ddf.catalog.resource.data.ReliableResource;
 import ddf.catalog.resource.data.ReliableResourceComparator;
 
+/**
+ * Keeps track of the size of the product cache directory and evicts the least recently used
+ * products once it grows over its maximum size.
+ * <p/>
+ * The products are kept in an in-memory index, in least recently used order, alongside the
+ * Hazelcast map, so that the next product to evict is always found in constant time. Evictions
+ * run in the background, after a product has been added, and remove products until the directory
+ * is back under its low watermark.
+ */
 public class ProductCacheDirListener<K, V> implements EntryListener<K, V>, HazelcastInstanceAware {
 
     private static final String CACHE_DIR_SIZE = "cache.dir.size";
 
     private static final String PRODUCT_CACHE_NAME = "Product_Cache";
 
-    private static final int DEFAULT_PAGE_SIZE = 10;
+    private static final int DEFAULT_LOW_WATERMARK_PERCENT = 100;
 
     private static Logger logger = LoggerFactory.getLogger(ProductCacheDirListener.class);
 
@@ -50,8 +67,40 @@
 
     private long maxDirSizeBytes;
 
+    private int lowWatermarkPercent = DEFAULT_LOW_WATERMARK_PERCENT;
+
     private Set<String> manuallyEvictedEntries = Collections.synchronizedSet(new HashSet<String>());
 
+    /**
+     * Cached products, by cache key, from the least to the most recently used. Guarded by itself.
+     */
+    private final Map<String, ReliableResource> lruIndex = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final ExecutorService defaultEvictionExecutor = Executors.newSingleThreadExecutor();
+
+    private Executor evictionExecutor = defaultEvictionExecutor;
+
+    private final AtomicBoolean evictionScheduled = new AtomicBoolean(false);
+
+    private final AtomicLong evictionCount = new AtomicLong(0);
+
+    private final AtomicLong evictedBytes = new AtomicLong(0);
+
+    private final Runnable evictionTask = new Runnable() {
+        @Override
+        public void run() {
+            try {
+                evictLeastRecentlyUsed();
+            } finally {
+                evictionScheduled.set(false);
+            }
+            // A product may have been added after the last check of the eviction
+            if (isOverMaxDirSize()) {
+                scheduleEviction();
+            }
+        }
+    };
+
     /**
      * Constructor for new Hazelcast listener
      *
@@ -66,33 +115,40 @@ public void setHazelcastInstance(HazelcastInstance hc) {
         logger.debug("Setting hazelcast instance");
         this.map = hc.getMap(PRODUCT_CACHE_NAME);
         this.cacheDirSize = hc.getAtomicLong(CACHE_DIR_SIZE);
+        loadIndex();
+    }
+
+    /**
+     * Rebuilds the index from the products already in the map, e.g., from a persisted cache.
+     */
+    @SuppressWarnings("rawtypes")
+    private void loadIndex() {
+        List<Map.Entry> entries = new ArrayList<Map.Entry>(map.entrySet());
+        Collections.sort(entries, new ReliableResourceComparator());
+
+        synchronized (lruIndex) {
+            lruIndex.clear();
+            for (Map.Entry entry : entries) {
+                ReliableResource resource = (ReliableResource) entry.getValue();
+                lruIndex.put(resource.getKey(), resource);
+            }
+        }
+        logger.debug("Loaded {} cached products in the LRU index", entries.size());
     }
 
     @Override
-    public synchronized void entryAdded(EntryEvent<K, V> event) {
+    public void entryAdded(EntryEvent<K, V> event) {
         V value = event.getValue();
         if (value.getClass().isAssignableFrom(ReliableResource.class)) {
             ReliableResource resource = (ReliableResource) value;
             logger.debug("entry added event triggered: {}", resource.getKey());
 
-            long currentCacheDirSize = cacheDirSize.addAndGet(resource.getSize());
-            if (maxDirSizeBytes > 0 && maxDirSizeBytes < currentCacheDirSize) {
-                PagingPredicate pp = new PagingPredicate(new ReliableResourceComparator(),
-                        DEFAULT_PAGE_SIZE);
-                Collection<ReliableResource> lruResourceEntries = map.values(pp);
-
-                Iterator<ReliableResource> itr = lruResourceEntries.iterator();
-                while (maxDirSizeBytes < currentCacheDirSize) {
-                    if (itr.hasNext()) {
-                        ReliableResource rr = itr.next();
-                        deleteFromCache(map, rr);
-                        currentCacheDirSize -= rr.getSize();
-                    } else {
-                        pp.nextPage();
-                        lruResourceEntries = map.values(pp);
-                        itr = lruResourceEntries.iterator();
-                    }
-                }
+            synchronized (lruIndex) {
+                lruIndex.put(resource.getKey(), resource);
+            }
+            cacheDirSize.addAndGet(resource.getSize());
+            if (isOverMaxDirSize()) {
+                scheduleEviction();
             }
         }
     }
@@ -106,6 +162,7 @@ public void entryRemoved(EntryEvent<K, V> event) {
             if (manuallyEvictedEntries.contains(resource.getKey())) {
                 manuallyEvictedEntries.remove(resource.getKey());
             } else {
+                removeFromIndex(resource.getKey());
                 cacheDirSize.addAndGet(-resource.getSize());
             }
         }
@@ -122,11 +179,92 @@ public void entryEvicted(EntryEvent<K, V> event) {
         if (value.getClass().isAssignableFrom(ReliableResource.class)) {
             ReliableResource resource = (ReliableResource) value;
             logger.debug("entry evicted event triggered: {}", resource.getKey());
+            removeFromIndex(resource.getKey());
             cacheDirSize.addAndGet(-resource.getSize());
         }
     }
 
-    private void deleteFromCache(IMap<String, ReliableResource> cacheMap, ReliableResource rr) {
+    /**
+     * Marks a cached product as the most recently used one, e.g., when it is retrieved from the
+     * cache.
+     *
+     * @param key the cache key of the product
+     */
+    public void touch(String key) {
+        synchronized (lruIndex) {
+            lruIndex.get(key);
+        }
+    }
+
+    /**
+     * Adds a product to the index right away, e.g., when it is put in the map by this node, rather
+     * than when the entry added event is delivered.
+     *
+     * @param resource the cached product
+     */
+    public void index(ReliableResource resource) {
+        synchronized (lruIndex) {
+            lruIndex.put(resource.getKey(), resource);
+        }
+    }
+
+    /**
+     * Filters cache keys down to those of the products in the index, without marking them as
+     * used. Keys that are not indexed are not in the map, so they need not be looked up.
+     *
+     * @param keys the cache keys to look for
+     * @return the keys of the indexed products
+     */
+    public Set<String> getIndexedKeys(Collection<String> keys) {
+        Set<String> indexedKeys = new HashSet<>();
+        synchronized (lruIndex) {
+            for (String key : keys) {
+                if (lruIndex.containsKey(key)) {
+                    indexedKeys.add(key);
+                }
+            }
+        }
+        return indexedKeys;
+    }
+
+    private boolean isOverMaxDirSize() {
+        return maxDirSizeBytes > 0 && maxDirSizeBytes < cacheDirSize.get();
+    }
+
+    private void scheduleEviction() {
+        if (evictionScheduled.compareAndSet(false, true)) {
+            evictionExecutor.execute(evictionTask);
+        }
+    }
+
+    private void evictLeastRecentlyUsed() {
+        if (maxDirSizeBytes <= 0) {
+            return;
+        }
+
+        long lowWatermarkBytes = (long) (maxDirSizeBytes * (lowWatermarkPercent / 100.0));
+        long currentCacheDirSize = cacheDirSize.get();
+        while (lowWatermarkBytes < currentCacheDirSize) {
+            ReliableResource rr;
+            synchronized (lruIndex) {
+                Iterator<ReliableResource> itr = lruIndex.values().iterator();
+                if (!itr.hasNext()) {
+                    break;
+                }
+                rr = itr.next();
+                itr.remove();
+            }
+            currentCacheDirSize = deleteFromCache(map, rr);
+        }
+    }
+
+    private void removeFromIndex(String key) {
+        synchronized (lruIndex) {
+            lruIndex.remove(key);
+        }
+    }
+
+    private long deleteFromCache(IMap<String, ReliableResource> cacheMap, ReliableResource rr) {
         logger.debug("entry being deleted: {}", rr.getKey());
         manuallyEvictedEntries.add(rr.getKey());
 
@@ -141,7 +279,16 @@ private void deleteFromCache(IMap<String, ReliableResource> cacheMap, ReliableRe
                 logger.error("Could not delete file {}", cachedFile.getAbsolutePath());
             }
         }
-        cacheDirSize.addAndGet(-rr.getSize());
+        evictionCount.incrementAndGet();
+        evictedBytes.addAndGet(rr.getSize());
+        return cacheDirSize.addAndGet(-rr.getSize());
+    }
+
+    /**
+     * Stops the background evictions.
+     */
+    public void shutdown() {
+        defaultEvictionExecutor.shutdownNow();
     }
 
     public long getMaxDirSizeBytes() {
@@ -152,4 +299,41 @@ public void setMaxDirSizeBytes(long maxDirSizeBytes) {
         this.maxDirSizeBytes = maxDirSizeBytes;
     }
 
+    public int getLowWatermarkPercent() {
+        return lowWatermarkPercent;
+    }
+
+    /**
+     * @param lowWatermarkPercent the size, as a percentage of the maximum size, that the cache
+     *                            directory is brought back to once it exceeds the maximum size
+     */
+    public void setLowWatermarkPercent(int lowWatermarkPercent) {
+        this.lowWatermarkPercent = Math.max(0, Math.min(100, lowWatermarkPercent));
+    }
+
+    /**
+     * @param evictionExecutor the {@link Executor} that evictions are run on
+     */
+    public void setEvictionExecutor(Executor evictionExecutor) {
+        this.evictionExecutor = evictionExecutor;
+    }
+
+    public long getCacheDirSizeBytes() {
+        return cacheDirSize == null ? 0 : cacheDirSize.get();
+    }
+
+    public int getEntryCount() {
+        synchronized (lruIndex) {
+            return lruIndex.size();
+        }
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    public long getEvictedBytes() {
+        return evictedBytes.get();
+    }
+
 }
@@ -16,9 +16,21 @@
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.net.URL;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
@@ -36,13 +48,14 @@
 import com.hazelcast.core.HazelcastInstance;
 import com.hazelcast.core.IMap;
 
+import ddf.catalog.cache.ProductCacheMBean;
 import ddf.catalog.cache.ResourceCacheInterface;
 import ddf.catalog.data.Metacard;
 import ddf.catalog.data.impl.MetacardImpl;
 import ddf.catalog.resource.Resource;
 import ddf.catalog.resource.data.ReliableResource;
 
-public class ResourceCache implements ResourceCacheInterface {
+public class ResourceCache implements ResourceCacheInterface, ProductCacheMBean {
 
     private static final String KARAF_HOME = "karaf.home";
 
@@ -60,7 +73,10 @@ public class ResourceCache implements ResourceCacheInterface {
 
     private static final long DEFAULT_MAX_CACHE_DIR_SIZE_BYTES = 10737418240L;  //10 GB
 
-    private List<String> pendingCache = new ArrayList<String>();
+    /**
+     * Resources being cached, by cache key
+     */
+    private ConcurrentMap<String, ReliableResource> pendingCache = new ConcurrentHashMap<>();
 
     /**
      * Directory for products cached to file system
@@ -78,6 +94,12 @@ public class ResourceCache implements ResourceCacheInterface {
 
     private String xmlConfigFilename;
 
+    private final AtomicLong hitCount = new AtomicLong(0);
+
+    private final AtomicLong missCount = new AtomicLong(0);
+
+    private ObjectName objectName;
+
     //called after all parameters are set
     public void setCache(HazelcastInstance instance) {
         LOGGER.debug("In setCache");
@@ -91,6 +113,27 @@ public void setCache(HazelcastInstance instance) {
         cache = this.instance.getMap(PRODUCT_CACHE_NAME);
         cacheListener.setHazelcastInstance(this.instance);
         cache.addEntryListener(cacheListener, true);
+        configureMBean();
+    }
+
+    private void configureMBean() {
+        MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+        try {
+            objectName = new ObjectName(ProductCacheMBean.OBJECTNAME);
+            try {
+                mbeanServer.registerMBean(new StandardMBean(this, ProductCacheMBean.class),
+                        objectName);
+            } catch (InstanceAlreadyExistsException e) {
+                LOGGER.debug("Re-registering Product Cache MBean");
+                mbeanServer.unregisterMBean(objectName);
+                mbeanServer.registerMBean(new StandardMBean(this, ProductCacheMBean.class),
+                        objectName);
+            }
+        } catch (MalformedObjectNameException e) {
+            LOGGER.info("Could not create object name", e);
+        } catch (Exception e) {
+            LOGGER.warn("Could not register Product Cache MBean.", e);
+        }
     }
 
     public void setupCache() {
@@ -149,6 +192,14 @@ private Config getHazelcastConfig(BundleContext context, String xmlConfigFilenam
     }
 
     public void teardownCache() {
+        cacheListener.shutdown();
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (Exception e) {
+                LOGGER.debug("Could not unregister Product Cache MBean.", e);
+            }
+        }
         instance.shutdown();
     }
 
@@ -162,6 +213,16 @@ public void setCacheDirMaxSizeMegabytes(long cacheDirMaxSizeMegabytes) {
         cacheListener.setMaxDirSizeBytes(cacheDirMaxSizeMegabytes * BYTES_IN_MEGABYTES);
     }
 
+    public int getCacheDirLowWatermarkPercent() {
+        return cacheListener.getLowWatermarkPercent();
+    }
+
+    public void setCacheDirLowWatermarkPercent(int cacheDirLowWatermarkPercent) {
+        LOGGER.debug("Setting low watermark for cache directory: {}%",
+                cacheDirLowWatermarkPercent);
+        cacheListener.setLowWatermarkPercent(cacheDirLowWatermarkPercent);
+    }
+
     public String getProductCacheDirectory() {
         return productCacheDirectory;
     }
@@ -236,6 +297,43 @@ public void setXmlConfigFilename(String xmlConfigFilename) {
         this.xmlConfigFilename = xmlConfigFilename;
     }
 
+    @Override
+    public long getCacheDirSizeBytes() {
+        return cacheListener.getCacheDirSizeBytes();
+    }
+
+    @Override
+    public int getEntryCount() {
+        return cacheListener.getEntryCount();
+    }
+
+    @Override
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    @Override
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    @Override
+    public double getHitRatio() {
+        long hits = hitCount.get();
+        long lookups = hits + missCount.get();
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return cacheListener.getEvictionCount();
+    }
+
+    @Override
+    public long getEvictedBytes() {
+        return cacheListener.getEvictedBytes();
+    }
+
     /**
      * Returns true if resource with specified cache key is already in the process of
      * being cached. This check helps clients prevent attempting to cache the same resource
@@ -246,7 +344,12 @@ public void setXmlConfigFilename(String xmlConfigFilename) {
      */
     @Override
     public boolean isPending(String key) {
-        return pendingCache.contains(key);
+        return key != null && pendingCache.containsKey(key);
+    }
+
+    @Override
+    public ReliableResource getPendingCacheEntry(String key) {
+        return key == null ? null : pendingCache.get(key);
     }
 
     /**
@@ -260,6 +363,7 @@ public void put(ReliableResource reliableResource) {
         LOGGER.trace("ENTERING: put(ReliableResource)");
         reliableResource.setLastTouchedMillis(System.currentTimeMillis());
         cache.put(reliableResource.getKey(), reliableResource);
+        cacheListener.index(reliableResource);
         removePendingCacheEntry(reliableResource.getKey());
 
         LOGGER.trace("EXITING: put(ReliableResource)");
@@ -267,23 +371,28 @@ public void put(ReliableResource reliableResource) {
 
     @Override
     public void removePendingCacheEntry(String cacheKey) {
-        if (!pendingCache.remove(cacheKey)) {
+        ReliableResource pendingResource = pendingCache.remove(cacheKey);
+        if (pendingResource == null) {
             LOGGER.debug("Did not find pending cache entry with key = {}", cacheKey);
         } else {
             LOGGER.debug("Removed pending cache entry with key = {}", cacheKey);
+            // Wakes up the readers of the cache file so that they see caching ended
+            pendingResource.notifyProgress();
         }
     }
 
     @Override
-    public void addPendingCacheEntry(ReliableResource reliableResource) {
+    public boolean addPendingCacheEntry(ReliableResource reliableResource) {
         String cacheKey = reliableResource.getKey();
-        if (isPending(cacheKey)) {
-            LOGGER.debug("Cache entry with key = {} is already pending", cacheKey);
-        } else if (containsValid(cacheKey, reliableResource.getMetacard())) {
+        if (containsValid(cacheKey, reliableResource.getMetacard())) {
             LOGGER.debug("Cache entry with key = {} is already in cache", cacheKey);
-        } else {
-            pendingCache.add(cacheKey);
+            return false;
         }
+        if (pendingCache.putIfAbsent(cacheKey, reliableResource) != null) {
+            LOGGER.debug("Cache entry with key = {} is already pending", cacheKey);
+            return false;
+        }
+        return true;
     }
 
     /**
@@ -308,6 +417,7 @@ public Resource getValid(String key, Metacard latestMetacard) {
         // cache directory has had files deleted from it.
         if (cachedResource != null) {
             if (!validateCacheEntry(cachedResource, latestMetacard)) {
+                missCount.incrementAndGet();
                 throw new IllegalArgumentException(
                         "Entry found in cache was out-of-date or otherwise invalid.  Will need to be re-cached.  Entry key: "
                                 + key);
@@ -315,23 +425,64 @@ public Resource getValid(String key, Metacard latestMetacard) {
 
             if (cachedResource.hasProduct()) {
                 LOGGER.debug("EXITING: get() for key {}", key);
+                hitCount.incrementAndGet();
+                cacheListener.touch(key);
                 return cachedResource;
             } else {
                 LOGGER.debug(
                         "Entry found in the cache, but no product found in cache directory for key = {}",
                         key);
                 cache.remove(key);
+                missCount.incrementAndGet();
                 throw new IllegalArgumentException(
                         "Entry found in the cache, but no product found in cache directory for key = "
                                 + key);
             }
         } else {
             LOGGER.debug("No product found in cache for key = {}", key);
+            missCount.incrementAndGet();
             throw new IllegalArgumentException("No product found in cache for key = " + key);
         }
 
     }
 
+    /**
+     * Only the keys in the index of the cached products are looked up, all at once, so keys that
+     * were never cached cost no lookup in the cache map.
+     */
+    @Override
+    public Map<String, Resource> getAllValid(Map<String, Metacard> latestMetacards) {
+        Map<String, Resource> validResources = new HashMap<>();
+        Set<String> keys = cacheListener.getIndexedKeys(latestMetacards.keySet());
+        missCount.addAndGet(latestMetacards.size() - keys.size());
+        if (keys.isEmpty()) {
+            return validResources;
+        }
+
+        Map<Object, Object> cachedResources = cache.getAll(new HashSet<Object>(keys));
+        for (String key : keys) {
+            ReliableResource cachedResource = (ReliableResource) cachedResources.get(key);
+            Metacard latestMetacard = latestMetacards.get(key);
+            if (cachedResource == null || latestMetacard == null || !validateCacheEntry(
+                    cachedResource, latestMetacard)) {
+                missCount.incrementAndGet();
+            } else if (!cachedResource.hasProduct()) {
+                LOGGER.debug(
+                        "Entry found in the cache, but no product found in cache directory for key = {}",
+                        key);
+                cache.remove(key);
+                missCount.incrementAndGet();
+            } else {
+                hitCount.incrementAndGet();
+                cacheListener.touch(key);
+                validResources.put(key, cachedResource);
+            }
+        }
+        LOGGER.debug("Found {} valid cached resources for {} keys", validResources.size(),
+                latestMetacards.size());
+        return validResources;
+    }
+
     /**
      * States whether an item is in the cache or not.
      *
@@ -14,14 +14,17 @@
 package ddf.catalog.cache.solr.impl;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -35,9 +38,13 @@
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
 import ddf.catalog.data.Metacard;
 import ddf.catalog.data.Result;
 import ddf.catalog.federation.FederationStrategy;
+import ddf.catalog.impl.SourceHealthMonitor;
 import ddf.catalog.operation.CreateResponse;
 import ddf.catalog.operation.DeleteResponse;
 import ddf.catalog.operation.Query;
@@ -109,8 +116,29 @@ public class CachingFederationStrategy implements FederationStrategy, PostIngest
      */
     protected static final String UPDATE_QUERY_MODE = "update";
 
+    /**
+     * Request and response property holding the federation cursor token. A request with a cursor
+     * token receives the token of the next page in its response properties.
+     */
+    protected static final String QUERY_CURSOR = "cursor";
+
+    /**
+     * Cursor token used to start a new federation cursor
+     */
+    protected static final String QUERY_CURSOR_START = "*";
+
     private static final int DEFAULT_MAX_START_INDEX = 50000;
 
+    private static final long MAX_CURSORS = 10000;
+
+    private static final long CURSOR_EXPIRATION_MINUTES = 10;
+
+    private static final long DEFAULT_HEDGE_DELAY_MILLIS = 2000;
+
+    private static final long MIN_HEDGE_DELAY_MILLIS = 50;
+
+    private static final double HEDGE_PERCENTILE = 95;
+
     private static Logger logger = LoggerFactory.getLogger(CachingFederationStrategy.class);
 
     private final SolrCache cache;
@@ -139,6 +167,16 @@ public class CachingFederationStrategy implements FederationStrategy, PostIngest
 
     private boolean isCachingEverything = false;
 
+    private SourceHealthMonitor sourceHealthMonitor;
+
+    private volatile List<List<String>> sourceGroups = Collections.emptyList();
+
+    private volatile long hedgeDelayMillis = DEFAULT_HEDGE_DELAY_MILLIS;
+
+    private final Cache<String, FederationCursor> cursors = CacheBuilder.newBuilder()
+            .maximumSize(MAX_CURSORS)
+            .expireAfterAccess(CURSOR_EXPIRATION_MINUTES, TimeUnit.MINUTES).build();
+
     /**
      * Instantiates an {@code AbstractFederationStrategy} with the provided {@link ExecutorService}.
      *
@@ -196,6 +234,10 @@ private QueryResponse sourceFederate(List<Source> sources, final QueryRequest qu
             }
         }
 
+        // Mirrors of the same catalog are queried as one source, keyed by their first member
+        Map<Source, List<Source>> mirrors = new HashMap<Source, List<Source>>();
+        sources = groupMirrors(sources, mirrors);
+
         Query originalQuery = queryRequest.getQuery();
 
         int offset = originalQuery.getStartIndex();
@@ -206,6 +248,21 @@ private QueryResponse sourceFederate(List<Source> sources, final QueryRequest qu
             offset = this.maxStartIndex;
         }
 
+        FederationCursor cursor = null;
+        FederationCursor continuedCursor = getCursor(queryRequest);
+        if (continuedCursor != null) {
+            // Each source is queried from where the previous page left off, so no offset is needed
+            cursor = continuedCursor;
+            offset = 1;
+        } else if (queryRequest.getPropertyValue(QUERY_CURSOR) != null) {
+            cursor = new FederationCursor();
+            if (offset > 1 && sources.size() == 1 && sources.get(0) != null) {
+                // A single source applies the offset itself, so its skipped results are consumed
+                cursor = cursor.advance(
+                        Collections.singletonMap(sources.get(0).getId(), offset - 1));
+            }
+        }
+
         final QueryResponseImpl queryResponseQueue = new QueryResponseImpl(queryRequest, null);
 
         Map<Future<SourceResponse>, Source> futures = new HashMap<Future<SourceResponse>, Source>();
@@ -224,21 +281,26 @@ private QueryResponse sourceFederate(List<Source> sources, final QueryRequest qu
                 if (!futures.containsValue(source)) {
                     logger.debug("running query on source: {}", source.getId());
 
-                    try {
-                        for (PreFederatedQueryPlugin service : preQuery) {
-                            try {
-                                modifiedQueryRequest = service
-                                        .process(source, modifiedQueryRequest);
-                            } catch (PluginExecutionException e) {
-                                logger.warn("Error executing PreFederatedQueryPlugin", e);
-                            }
+                    if (continuedCursor != null) {
+                        modifiedQueryRequest = getCursorQueryRequest(queryRequest,
+                                continuedCursor.getStartIndex(source.getId()));
+                    }
+
+                    Callable<SourceResponse> callable;
+                    List<Source> members = mirrors.get(source);
+                    if (members == null) {
+                        callable = new CallableSourceResponse(source,
+                                processPreFederatedQuery(source, modifiedQueryRequest));
+                    } else {
+                        Map<Source, QueryRequest> memberRequests = new HashMap<>();
+                        for (Source member : members) {
+                            memberRequests.put(member,
+                                    processPreFederatedQuery(member, modifiedQueryRequest));
                         }
-                    } catch (StopProcessingException e) {
-                        logger.warn("Plugin stopped processing", e);
+                        callable = new HedgedSourceResponse(members, memberRequests);
                     }
 
-                    futures.put(queryCompletion.submit(new CallableSourceResponse(source,
-                                    modifiedQueryRequest)), source);
+                    futures.put(queryCompletion.submit(callable), source);
                 } else {
                     logger.warn("Duplicate source found with name {}. Ignoring second one.",
                             source.getId());
@@ -259,7 +321,7 @@ private QueryResponse sourceFederate(List<Source> sources, final QueryRequest qu
         }
 
         queryExecutorService.submit(createMonitor(queryCompletion, futures, queryResponseQueue,
-                modifiedQueryRequest));
+                modifiedQueryRequest, cursor));
 
         QueryResponse queryResponse = null;
         if (offset > 1 && sources.size() > 1) {
@@ -286,6 +348,68 @@ private QueryResponse sourceFederate(List<Source> sources, final QueryRequest qu
         return queryResponse;
     }
 
+    private QueryRequest processPreFederatedQuery(Source source, QueryRequest queryRequest) {
+        QueryRequest modifiedQueryRequest = queryRequest;
+        try {
+            for (PreFederatedQueryPlugin service : preQuery) {
+                try {
+                    modifiedQueryRequest = service.process(source, modifiedQueryRequest);
+                } catch (PluginExecutionException e) {
+                    logger.warn("Error executing PreFederatedQueryPlugin", e);
+                }
+            }
+        } catch (StopProcessingException e) {
+            logger.warn("Plugin stopped processing", e);
+        }
+        return modifiedQueryRequest;
+    }
+
+    /**
+     * Replaces the members of each configured source group by the first of them in the list of
+     * sources, and maps it to all the members that are being queried.
+     */
+    private List<Source> groupMirrors(List<Source> sources, Map<Source, List<Source>> mirrors) {
+        List<List<String>> groups = sourceGroups;
+        if (groups.isEmpty()) {
+            return sources;
+        }
+
+        List<Source> groupedSources = new ArrayList<Source>(sources.size());
+        Set<Source> grouped = new HashSet<Source>();
+        for (Source source : sources) {
+            if (source != null && grouped.contains(source)) {
+                continue;
+            }
+            groupedSources.add(source);
+
+            List<String> group = source == null ? null : getSourceGroup(groups, source.getId());
+            if (group != null) {
+                List<Source> members = new ArrayList<Source>();
+                for (Source member : sources) {
+                    if (member != null && group.contains(member.getId()) && !members
+                            .contains(member)) {
+                        members.add(member);
+                    }
+                }
+                grouped.addAll(members);
+                if (members.size() > 1) {
+                    logger.debug("Querying mirrors {} as one source", group);
+                    mirrors.put(source, members);
+                }
+            }
+        }
+        return groupedSources;
+    }
+
+    private List<String> getSourceGroup(List<List<String>> groups, String sourceId) {
+        for (List<String> group : groups) {
+            if (group.contains(sourceId)) {
+                return group;
+            }
+        }
+        return null;
+    }
+
     private Query getModifiedQuery(Query originalQuery, int numberOfSources, int offset,
             int pageSize) {
 
@@ -319,6 +443,40 @@ private Query getModifiedQuery(Query originalQuery, int numberOfSources, int off
         return query;
     }
 
+    private FederationCursor getCursor(QueryRequest queryRequest) {
+        Object token = queryRequest.getPropertyValue(QUERY_CURSOR);
+        if (token == null || QUERY_CURSOR_START.equals(token)) {
+            return null;
+        }
+
+        FederationCursor cursor = cursors.getIfPresent(token.toString());
+        if (cursor == null) {
+            logger.debug("Unknown or expired cursor {}, starting a new cursor", token);
+        }
+        return cursor;
+    }
+
+    private QueryRequest getCursorQueryRequest(QueryRequest queryRequest, int startIndex) {
+        Query originalQuery = queryRequest.getQuery();
+        Query query = new QueryImpl(originalQuery, startIndex, originalQuery.getPageSize(),
+                originalQuery.getSortBy(), originalQuery.requestsTotalResultsCount(),
+                originalQuery.getTimeoutMillis());
+        return new QueryRequestImpl(query, queryRequest.isEnterprise(),
+                queryRequest.getSourceIds(), queryRequest.getProperties());
+    }
+
+    /**
+     * Registers a federation cursor so that it can be continued by a later query.
+     *
+     * @param cursor the cursor to register
+     * @return the token identifying the cursor
+     */
+    String putCursor(FederationCursor cursor) {
+        String token = UUID.randomUUID().toString();
+        cursors.put(token, cursor);
+        return token;
+    }
+
     /**
      * Base 1 offset, hence page size is one less.
      */
@@ -398,18 +556,72 @@ public void setExpirationAgeInMinutes(long expirationAgeInMinutes) {
         cache.setExpirationAgeInMinutes(expirationAgeInMinutes);
     }
 
+    /**
+     * Sets the {@link SourceHealthMonitor} the outcome and latency of each source query are
+     * recorded in.
+     *
+     * @param sourceHealthMonitor the {@link SourceHealthMonitor}, or {@code null} to not record
+     *                            source queries
+     */
+    public void setSourceHealthMonitor(SourceHealthMonitor sourceHealthMonitor) {
+        this.sourceHealthMonitor = sourceHealthMonitor;
+    }
+
+    /**
+     * Sets the groups of federated sources that mirror the same catalog. A query to the members
+     * of a group is sent to the fastest of them only, and hedged to a second member if the first
+     * one has not answered within its usual latency.
+     *
+     * @param sourceGroups the groups, each a comma-separated list of source IDs
+     */
+    public void setSourceGroups(List<String> sourceGroups) {
+        List<List<String>> groups = new ArrayList<List<String>>();
+        if (sourceGroups != null) {
+            for (String sourceGroup : sourceGroups) {
+                if (sourceGroup == null || sourceGroup.trim().isEmpty()) {
+                    continue;
+                }
+                List<String> group = new ArrayList<String>();
+                for (String sourceId : sourceGroup.split(",")) {
+                    if (!sourceId.trim().isEmpty()) {
+                        group.add(sourceId.trim());
+                    }
+                }
+                if (group.size() > 1) {
+                    groups.add(group);
+                } else {
+                    logger.warn("Ignoring source group [{}] with less than two sources",
+                            sourceGroup);
+                }
+            }
+        }
+        logger.debug("Setting source groups to {}", groups);
+        this.sourceGroups = groups;
+    }
+
+    /**
+     * @param hedgeDelayMillis how long, in milliseconds, to wait for a member of a source group
+     *                         whose latency is not known yet before querying another member
+     */
+    public void setHedgeDelayMillis(long hedgeDelayMillis) {
+        this.hedgeDelayMillis = Math.max(hedgeDelayMillis, MIN_HEDGE_DELAY_MILLIS);
+    }
+
     public void setCachingEverything(boolean cachingEverything) {
         this.isCachingEverything = cachingEverything;
     }
 
     protected Runnable createMonitor(final CompletionService<SourceResponse> completionService,
             final Map<Future<SourceResponse>, Source> futures,
-            final QueryResponseImpl returnResults, final QueryRequest request) {
+            final QueryResponseImpl returnResults, final QueryRequest request,
+            final FederationCursor cursor) {
 
-        return new SortedQueryMonitor(this, completionService, futures, returnResults, request);
+        return new SortedQueryMonitor(this, completionService, futures, returnResults, request,
+                cursor);
     }
 
     public void shutdown() {
+        cursors.invalidateAll();
         cacheCommitPhaser.shutdown();
         cacheBulkProcessor.shutdown();
     }
@@ -449,6 +661,10 @@ public void run() {
 
             logger.debug("Closing Queue and setting the total count");
             offsetResultQueue.setHits(originalResults.getHits());
+            if (originalResults.containsPropertyName(QUERY_CURSOR)) {
+                offsetResultQueue.getProperties()
+                        .put(QUERY_CURSOR, originalResults.getPropertyValue(QUERY_CURSOR));
+            }
             offsetResultQueue.closeResultQueue();
         }
     }
@@ -477,6 +693,8 @@ private class CallableSourceResponse implements Callable<SourceResponse> {
 
         private final Source source;
 
+        private volatile boolean cancelled;
+
         public CallableSourceResponse(Source source, QueryRequest request) {
             this.source = source;
             this.request = request;
@@ -484,8 +702,7 @@ public CallableSourceResponse(Source source, QueryRequest request) {
 
         @Override
         public SourceResponse call() throws Exception {
-            final SourceResponse sourceResponse = source
-                    .query(new QueryRequestImpl(request.getQuery(), request.getProperties()));
+            final SourceResponse sourceResponse = query();
 
             if (INDEX_QUERY_MODE.equals(request.getPropertyValue(QUERY_MODE))) {
                 cacheCommitPhaser.add(sourceResponse.getResults());
@@ -507,6 +724,128 @@ public void run() {
 
             return sourceResponse;
         }
+
+        private SourceResponse query() throws Exception {
+            long start = System.currentTimeMillis();
+            boolean failed = true;
+            try {
+                SourceResponse sourceResponse = source.query(
+                        new QueryRequestImpl(request.getQuery(), request.getProperties()));
+                failed = false;
+                return sourceResponse;
+            } finally {
+                // A hedged query that lost the race does not say anything about its source
+                if (sourceHealthMonitor != null && !(failed && cancelled)) {
+                    long latency = System.currentTimeMillis() - start;
+                    if (failed) {
+                        sourceHealthMonitor.recordFailure(source.getId(), latency);
+                    } else {
+                        sourceHealthMonitor.recordSuccess(source.getId(), latency);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Queries the fastest member of a group of mirrored sources and, if it has not answered
+     * within its 95th percentile latency or has failed, a second member. The first response is
+     * returned and the other query is cancelled.
+     */
+    private class HedgedSourceResponse implements Callable<SourceResponse> {
+
+        private final List<Source> members;
+
+        private final Map<Source, QueryRequest> requests;
+
+        HedgedSourceResponse(List<Source> members, Map<Source, QueryRequest> requests) {
+            this.members = members;
+            this.requests = requests;
+        }
+
+        @Override
+        public SourceResponse call() throws Exception {
+            List<Source> orderedMembers = orderByLatency(members);
+            int maxAttempts = Math.min(2, orderedMembers.size());
+            CompletionService<SourceResponse> completion = new ExecutorCompletionService<>(
+                    queryExecutorService);
+            Map<Future<SourceResponse>, CallableSourceResponse> attempts = new HashMap<>();
+
+            submit(completion, attempts, orderedMembers.get(0));
+            int completed = 0;
+            ExecutionException failure = null;
+            try {
+                Future<SourceResponse> future = completion
+                        .poll(getHedgeDelay(orderedMembers.get(0)), TimeUnit.MILLISECONDS);
+                while (true) {
+                    if (future != null) {
+                        completed++;
+                        try {
+                            return future.get();
+                        } catch (ExecutionException e) {
+                            logger.debug("Query to source {} failed",
+                                    attempts.get(future).source.getId(), e);
+                            failure = e;
+                        }
+                    }
+
+                    if (attempts.size() < maxAttempts) {
+                        Source hedge = orderedMembers.get(attempts.size());
+                        logger.debug("Hedging query to source {} with source {}",
+                                orderedMembers.get(0).getId(), hedge.getId());
+                        submit(completion, attempts, hedge);
+                    } else if (completed == attempts.size()) {
+                        Throwable cause = failure.getCause();
+                        throw cause instanceof Exception ? (Exception) cause : failure;
+                    }
+                    future = completion.take();
+                }
+            } finally {
+                for (Map.Entry<Future<SourceResponse>, CallableSourceResponse> attempt : attempts
+                        .entrySet()) {
+                    if (!attempt.getKey().isDone()) {
+                        attempt.getValue().cancelled = true;
+                        attempt.getKey().cancel(true);
+                    }
+                }
+            }
+        }
+
+        private void submit(CompletionService<SourceResponse> completion,
+                Map<Future<SourceResponse>, CallableSourceResponse> attempts, Source member) {
+            CallableSourceResponse callable = new CallableSourceResponse(member,
+                    requests.get(member));
+            attempts.put(completion.submit(callable), callable);
+        }
+
+        private long getHedgeDelay(Source member) {
+            long latency = sourceHealthMonitor == null ?
+                    -1 :
+                    sourceHealthMonitor.getLatencyPercentile(member.getId(), HEDGE_PERCENTILE);
+            return latency < 0 ? hedgeDelayMillis : Math.max(latency, MIN_HEDGE_DELAY_MILLIS);
+        }
+
+        /**
+         * Orders the members by median latency. Members that have not been queried yet come
+         * first so that their latency gets known.
+         */
+        private List<Source> orderByLatency(List<Source> members) {
+            List<Source> orderedMembers = new ArrayList<Source>(members);
+            if (sourceHealthMonitor != null) {
+                final Map<Source, Long> latencies = new HashMap<Source, Long>();
+                for (Source member : members) {
+                    latencies.put(member,
+                            sourceHealthMonitor.getLatencyPercentile(member.getId(), 50));
+                }
+                Collections.sort(orderedMembers, new Comparator<Source>() {
+                    @Override
+                    public int compare(Source first, Source second) {
+                        return Long.compare(latencies.get(first), latencies.get(second));
+                    }
+                });
+            }
+            return orderedMembers;
+        }
     }
 
     /**
@@ -0,0 +1,65 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package ddf.catalog.cache.solr.impl;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Continuation state of a federated query. Keeps track of how many results of each source have
+ * already been returned in previous pages so that the next page only needs to request
+ * {@code pageSize} results from each source, starting right after the last result consumed from
+ * that source.
+ * <p>
+ * Cursors are immutable; advancing a cursor creates a new one so that a page can be requested
+ * again with the same cursor token.
+ */
+class FederationCursor {
+
+    private final Map<String, Integer> consumedResults;
+
+    FederationCursor() {
+        this(Collections.<String, Integer>emptyMap());
+    }
+
+    private FederationCursor(Map<String, Integer> consumedResults) {
+        this.consumedResults = consumedResults;
+    }
+
+    /**
+     * @param sourceId id of the source
+     * @return the 1-based index of the next result to request from the source
+     */
+    int getStartIndex(String sourceId) {
+        Integer consumed = consumedResults.get(sourceId);
+        return consumed == null ? 1 : consumed + 1;
+    }
+
+    /**
+     * Creates a new cursor positioned after the results returned in a page.
+     *
+     * @param pageResults number of results returned in the page, keyed by source id
+     * @return the advanced cursor
+     */
+    FederationCursor advance(Map<String, Integer> pageResults) {
+        Map<String, Integer> advanced = new HashMap<>(consumedResults);
+        for (Map.Entry<String, Integer> entry : pageResults.entrySet()) {
+            Integer consumed = advanced.get(entry.getKey());
+            advanced.put(entry.getKey(),
+                    consumed == null ? entry.getValue() : consumed + entry.getValue());
+        }
+        return new FederationCursor(Collections.unmodifiableMap(advanced));
+    }
+}
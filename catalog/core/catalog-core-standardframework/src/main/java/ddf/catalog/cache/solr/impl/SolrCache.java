@@ -65,6 +65,7 @@
 import ddf.catalog.source.solr.SolrFilterDelegate;
 import ddf.catalog.source.solr.SolrFilterDelegateFactory;
 import ddf.catalog.source.solr.SolrMetacardClient;
+import ddf.catalog.source.solr.SolrMetacardTypeStore;
 
 
 /**
@@ -262,7 +263,8 @@ public void updateServer(String newUrl) {
 
                 server = SolrServerFactory.getHttpSolrServer(url, METACARD_CACHE_CORE_NAME);
                 client = new CacheSolrMetacardClient(this.server, filterAdapter,
-                        solrFilterDelegateFactory);
+                        solrFilterDelegateFactory, new SolrMetacardTypeStore(SolrServerFactory
+                        .getHttpSolrServer(url, SolrMetacardTypeStore.METACARD_TYPES_CORE_NAME)));
             }
         } else {
             this.url = null;
@@ -341,9 +343,10 @@ public void run() {
     private class CacheSolrMetacardClient extends SolrMetacardClient {
 
         public CacheSolrMetacardClient(SolrServer solrServer, FilterAdapter catalogFilterAdapter,
-                                       SolrFilterDelegateFactory solrFilterDelegateFactory) {
+                                       SolrFilterDelegateFactory solrFilterDelegateFactory,
+                                       SolrMetacardTypeStore metacardTypeStore) {
             super(solrServer, catalogFilterAdapter, solrFilterDelegateFactory,
-                    new DynamicSchemaResolver());
+                    new DynamicSchemaResolver(metacardTypeStore));
         }
 
         @Override
@@ -14,9 +14,9 @@
 package ddf.catalog.cache.solr.impl;
 
 import java.io.Serializable;
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -45,6 +45,7 @@
 import ddf.catalog.source.Source;
 import ddf.catalog.util.impl.DistanceResultComparator;
 import ddf.catalog.util.impl.RelevanceResultComparator;
+import ddf.catalog.util.impl.SortedResultMerger;
 import ddf.catalog.util.impl.TemporalResultComparator;
 
 class SortedQueryMonitor implements Runnable {
@@ -64,10 +65,24 @@ class SortedQueryMonitor implements Runnable {
 
     private long deadline;
 
+    private final FederationCursor cursor;
+
     public SortedQueryMonitor(CachingFederationStrategy cachingFederationStrategy,
             CompletionService<SourceResponse> completionService,
             Map<Future<SourceResponse>, Source> futures, QueryResponseImpl returnResults,
             QueryRequest request) {
+        this(cachingFederationStrategy, completionService, futures, returnResults, request, null);
+    }
+
+    /**
+     * @param cursor the federation cursor to advance past the returned results, or {@code null}
+     *               if the query is not using a cursor
+     */
+    public SortedQueryMonitor(CachingFederationStrategy cachingFederationStrategy,
+            CompletionService<SourceResponse> completionService,
+            Map<Future<SourceResponse>, Source> futures, QueryResponseImpl returnResults,
+            QueryRequest request, FederationCursor cursor) {
+        this.cursor = cursor;
         this.cachingFederationStrategy = cachingFederationStrategy;
 
         this.completionService = completionService;
@@ -104,7 +119,13 @@ public void run() {
             }
         }
 
-        List<Result> resultList = new ArrayList<>();
+        // Merge each source's results as it completes, only retaining a page worth of results
+        SortedResultMerger resultMerger = new SortedResultMerger(coreComparator,
+                query.getPageSize());
+        // Only tracked for cursors, which need to know how many results each source contributed
+        Map<Result, String> resultSources = cursor != null ?
+                new IdentityHashMap<Result, String>() :
+                null;
         long totalHits = 0;
         Set<ProcessingDetails> processingDetails = returnResults.getProcessingDetails();
 
@@ -138,7 +159,12 @@ public void run() {
                     processingDetails
                             .add(new ProcessingDetailsImpl(sourceId, new NullPointerException()));
                 } else {
-                    resultList.addAll(sourceResponse.getResults());
+                    resultMerger.add(sourceResponse.getResults());
+                    if (resultSources != null && sourceResponse.getResults() != null) {
+                        for (Result result : sourceResponse.getResults()) {
+                            resultSources.put(result, sourceId);
+                        }
+                    }
                     totalHits += sourceResponse.getHits();
 
                     Map<String, Serializable> properties = sourceResponse.getProperties();
@@ -162,7 +188,7 @@ public void run() {
                         new Exception(Exceptions.getFullMessage(e))));
             }
         }
-        logger.debug("All sources finished returning results: {}", resultList.size());
+        logger.debug("All sources finished returning results: {}", resultMerger.size());
 
         returnResults.setHits(totalHits);
         if (CachingFederationStrategy.INDEX_QUERY_MODE
@@ -170,19 +196,26 @@ public void run() {
             QueryResponse result = cachingFederationStrategy.queryCache(request);
             returnResults.addResults(result.getResults(), true);
         } else {
-            returnResults.addResults(sortedResults(resultList, coreComparator), true);
+            List<Result> results = resultMerger.drain();
+            if (resultSources != null) {
+                advanceCursor(results, resultSources, returnProperties);
+            }
+            returnResults.addResults(results, true);
         }
     }
 
-    List<Result> sortedResults(List<Result> results, Comparator<? super Result> comparator) {
-        Collections.sort(results, comparator);
-
-        int maxResults = Integer.MAX_VALUE;
-        if (query.getPageSize() > 0) {
-            maxResults = query.getPageSize();
+    private void advanceCursor(List<Result> results, Map<Result, String> resultSources,
+            Map<String, Serializable> returnProperties) {
+        Map<String, Integer> pageResults = new HashMap<>();
+        for (Result result : results) {
+            String sourceId = resultSources.get(result);
+            Integer count = pageResults.get(sourceId);
+            pageResults.put(sourceId, count == null ? 1 : count + 1);
         }
 
-        return results.size() > maxResults ? results.subList(0, maxResults) : results;
+        String token = cachingFederationStrategy.putCursor(cursor.advance(pageResults));
+        returnProperties.put(CachingFederationStrategy.QUERY_CURSOR, token);
+        logger.debug("Advanced federation cursor to {}", token);
     }
 
     private void timeoutRemainingSources(Set<ProcessingDetails> processingDetails) {
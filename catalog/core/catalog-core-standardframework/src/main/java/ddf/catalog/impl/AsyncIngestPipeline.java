@@ -0,0 +1,576 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package ddf.catalog.impl;
+
+import java.io.Serializable;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ddf.catalog.AsyncIngestFramework;
+import ddf.catalog.data.Metacard;
+import ddf.catalog.operation.CreateRequest;
+import ddf.catalog.operation.CreateResponse;
+import ddf.catalog.operation.DeleteRequest;
+import ddf.catalog.operation.DeleteResponse;
+import ddf.catalog.operation.UpdateRequest;
+import ddf.catalog.operation.UpdateResponse;
+import ddf.catalog.operation.impl.CreateRequestImpl;
+import ddf.catalog.operation.impl.CreateResponseImpl;
+import ddf.catalog.source.IngestException;
+
+/**
+ * {@link AsyncIngestFramework} that runs the ingest operations of a {@link CatalogFrameworkImpl}
+ * as a pipeline of three stages:
+ * <ol>
+ * <li/>pre-ingest: request validation and {@link ddf.catalog.plugin.PreIngestPlugin}s, on a
+ * bounded pool of threads;
+ * <li/>provider: calls to the local {@link ddf.catalog.source.CatalogProvider}. Create requests
+ * queued within {@code maxBatchDelayMillis} of each other are combined into a single provider
+ * call of up to {@code maxBatchSize} metacards, as long as they have the same request
+ * properties;
+ * <li/>post-ingest: {@link ddf.catalog.plugin.PostIngestPlugin}s, on a bounded pool of threads,
+ * after the future of the request has been completed.
+ * </ol>
+ * When a stage is full, the stage feeding it waits, down to the callers of the asynchronous
+ * methods which then run the pre-ingest stage themselves. A create request waits for room in the
+ * provider stage for up to {@code queueTimeoutMillis}, after which it fails.
+ * <p>
+ * When the provider fails to create a batch, every request of the batch fails. The provider may
+ * have created some of the metacards before failing, so creating the requests again could create
+ * those metacards twice.
+ */
+public class AsyncIngestPipeline implements AsyncIngestFramework, AsyncIngestPipelineMBean {
+
+    public static final int DEFAULT_THREAD_POOL_SIZE = 4;
+
+    public static final int DEFAULT_QUEUE_SIZE = 1000;
+
+    public static final int DEFAULT_MAX_BATCH_SIZE = 500;
+
+    public static final long DEFAULT_MAX_BATCH_DELAY_MILLIS = 50;
+
+    public static final long DEFAULT_QUEUE_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsyncIngestPipeline.class);
+
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+
+    private final CatalogFrameworkImpl framework;
+
+    private int threadPoolSize = DEFAULT_THREAD_POOL_SIZE;
+
+    private int queueSize = DEFAULT_QUEUE_SIZE;
+
+    private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+
+    private long maxBatchDelayMillis = DEFAULT_MAX_BATCH_DELAY_MILLIS;
+
+    private long queueTimeoutMillis = DEFAULT_QUEUE_TIMEOUT_MILLIS;
+
+    private ThreadPoolExecutor preIngestExecutor;
+
+    private ThreadPoolExecutor postIngestExecutor;
+
+    private BlockingQueue<PendingCreate> providerQueue;
+
+    private Thread providerThread;
+
+    private volatile boolean running;
+
+    private final AtomicLong providerBatches = new AtomicLong();
+
+    private final AtomicLong batchedRequests = new AtomicLong();
+
+    private ObjectName objectName;
+
+    public AsyncIngestPipeline(CatalogFrameworkImpl framework) {
+        this.framework = framework;
+    }
+
+    public void setThreadPoolSize(int threadPoolSize) {
+        this.threadPoolSize = threadPoolSize;
+    }
+
+    public void setQueueSize(int queueSize) {
+        this.queueSize = queueSize;
+    }
+
+    public void setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public void setMaxBatchDelayMillis(long maxBatchDelayMillis) {
+        this.maxBatchDelayMillis = maxBatchDelayMillis;
+    }
+
+    public void setQueueTimeoutMillis(long queueTimeoutMillis) {
+        this.queueTimeoutMillis = queueTimeoutMillis;
+    }
+
+    public synchronized void init() {
+        int threads = threadPoolSize > 0 ? threadPoolSize : DEFAULT_THREAD_POOL_SIZE;
+        int capacity = queueSize > 0 ? queueSize : DEFAULT_QUEUE_SIZE;
+
+        preIngestExecutor = createExecutor(threads, capacity, "async-pre-ingest-");
+        postIngestExecutor = createExecutor(threads, capacity, "async-post-ingest-");
+        providerQueue = new ArrayBlockingQueue<>(capacity);
+
+        running = true;
+        providerThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                processCreates();
+            }
+        }, "async-ingest-provider");
+        providerThread.setDaemon(true);
+        providerThread.start();
+
+        registerMBean();
+    }
+
+    /**
+     * Stops accepting requests and waits for the queued requests to go through the pipeline.
+     */
+    public synchronized void destroy() {
+        if (!running) {
+            return;
+        }
+
+        preIngestExecutor.shutdown();
+        awaitTermination(preIngestExecutor, "pre-ingest");
+
+        running = false;
+        try {
+            providerThread.join(TimeUnit.SECONDS.toMillis(SHUTDOWN_TIMEOUT_SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        providerThread.interrupt();
+        for (PendingCreate pending : drain(providerQueue)) {
+            pending.future.completeExceptionally(
+                    new IngestException("Asynchronous ingest was shut down"));
+        }
+
+        postIngestExecutor.shutdown();
+        awaitTermination(postIngestExecutor, "post-ingest");
+
+        unregisterMBean();
+    }
+
+    @Override
+    public CompletableFuture<CreateResponse> createAsync(final CreateRequest createRequest) {
+        final CompletableFuture<CreateResponse> future = new CompletableFuture<>();
+        submitPreIngest(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    CreateRequest createReq = framework.preProcessCreate(createRequest);
+                    // Bounded, since this may run on the caller's thread when pre-ingest is full
+                    if (!providerQueue.offer(new PendingCreate(createReq, future),
+                            queueTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                        future.completeExceptionally(new IngestException(
+                                "Timed out waiting for room to queue create request"));
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    future.completeExceptionally(
+                            new IngestException("Interrupted queuing create request"));
+                } catch (Exception e) {
+                    future.completeExceptionally(e);
+                }
+            }
+        }, future);
+        return future;
+    }
+
+    @Override
+    public CompletableFuture<UpdateResponse> updateAsync(final UpdateRequest updateRequest) {
+        final CompletableFuture<UpdateResponse> future = new CompletableFuture<>();
+        submitPreIngest(new Runnable() {
+            @Override
+            public void run() {
+                final UpdateResponse updateResponse;
+                try {
+                    updateResponse = framework
+                            .providerUpdate(framework.preProcessUpdate(updateRequest));
+                } catch (Exception e) {
+                    future.completeExceptionally(e);
+                    return;
+                }
+                future.complete(updateResponse);
+                submitPostIngest(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            framework.postProcessUpdate(updateResponse);
+                        } catch (IngestException e) {
+                            LOGGER.warn("Unable to run post-ingest plugins on update", e);
+                        }
+                    }
+                });
+            }
+        }, future);
+        return future;
+    }
+
+    @Override
+    public CompletableFuture<DeleteResponse> deleteAsync(final DeleteRequest deleteRequest) {
+        final CompletableFuture<DeleteResponse> future = new CompletableFuture<>();
+        submitPreIngest(new Runnable() {
+            @Override
+            public void run() {
+                final DeleteResponse deleteResponse;
+                try {
+                    deleteResponse = framework
+                            .providerDelete(framework.preProcessDelete(deleteRequest));
+                } catch (Exception e) {
+                    future.completeExceptionally(e);
+                    return;
+                }
+                future.complete(deleteResponse);
+                submitPostIngest(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            framework.postProcessDelete(deleteResponse);
+                        } catch (IngestException e) {
+                            LOGGER.warn("Unable to run post-ingest plugins on delete", e);
+                        }
+                    }
+                });
+            }
+        }, future);
+        return future;
+    }
+
+    @Override
+    public int getPreIngestQueueDepth() {
+        return preIngestExecutor == null ? 0 : preIngestExecutor.getQueue().size();
+    }
+
+    @Override
+    public int getProviderQueueDepth() {
+        return providerQueue == null ? 0 : providerQueue.size();
+    }
+
+    @Override
+    public int getPostIngestQueueDepth() {
+        return postIngestExecutor == null ? 0 : postIngestExecutor.getQueue().size();
+    }
+
+    @Override
+    public long getProviderBatches() {
+        return providerBatches.get();
+    }
+
+    @Override
+    public double getAverageBatchSize() {
+        long batches = providerBatches.get();
+        return batches == 0 ? 0 : (double) batchedRequests.get() / batches;
+    }
+
+    /**
+     * Takes the queued create requests off the provider queue in batches until the pipeline is
+     * shut down and the queue is empty.
+     */
+    private void processCreates() {
+        while (running || !providerQueue.isEmpty()) {
+            try {
+                List<PendingCreate> batch = takeBatch();
+                for (List<PendingCreate> group : groupByProperties(batch)) {
+                    createBatch(group);
+                }
+            } catch (InterruptedException e) {
+                if (running) {
+                    LOGGER.warn("Asynchronous ingest provider thread interrupted");
+                }
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private List<PendingCreate> takeBatch() throws InterruptedException {
+        List<PendingCreate> batch = new ArrayList<>();
+        PendingCreate pending = providerQueue.poll(1, TimeUnit.SECONDS);
+        if (pending == null) {
+            return batch;
+        }
+        batch.add(pending);
+
+        int metacards = pending.request.getMetacards().size();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxBatchDelayMillis);
+        while (metacards < maxBatchSize) {
+            long remaining = deadline - System.nanoTime();
+            pending = remaining > 0 ?
+                    providerQueue.poll(remaining, TimeUnit.NANOSECONDS) :
+                    providerQueue.poll();
+            if (pending == null) {
+                break;
+            }
+            batch.add(pending);
+            metacards += pending.request.getMetacards().size();
+        }
+        return batch;
+    }
+
+    /**
+     * Only requests with the same properties, e.g. the same security subject, can be sent to the
+     * provider together.
+     */
+    private Iterable<List<PendingCreate>> groupByProperties(List<PendingCreate> batch) {
+        Map<Map<String, Serializable>, List<PendingCreate>> groups = new LinkedHashMap<>();
+        for (PendingCreate pending : batch) {
+            List<PendingCreate> group = groups.get(pending.request.getProperties());
+            if (group == null) {
+                group = new ArrayList<>();
+                groups.put(pending.request.getProperties(), group);
+            }
+            group.add(pending);
+        }
+        return groups.values();
+    }
+
+    private void createBatch(List<PendingCreate> group) {
+        providerBatches.incrementAndGet();
+        batchedRequests.addAndGet(group.size());
+
+        if (group.size() == 1) {
+            createSingle(group.get(0));
+            return;
+        }
+
+        List<Metacard> metacards = new ArrayList<>();
+        for (PendingCreate pending : group) {
+            metacards.addAll(pending.request.getMetacards());
+        }
+        CreateRequest batchRequest = new CreateRequestImpl(metacards,
+                group.get(0).request.getProperties());
+
+        CreateResponse batchResponse;
+        try {
+            batchResponse = framework.providerCreate(batchRequest);
+        } catch (IngestException | RuntimeException e) {
+            // Not retried one request at a time, since the provider may have created some of the
+            // metacards before failing and they would be created twice
+            LOGGER.debug("Unable to create batch of {} requests", group.size(), e);
+            for (PendingCreate pending : group) {
+                fail(pending, new IngestException("Unable to create the batch of " + group.size()
+                        + " requests this request was part of", e));
+            }
+            return;
+        }
+
+        // Metacards with an ID, either from the request or set by the provider, are matched by
+        // ID. Metacards without one can only be matched by their position in the response, when
+        // the provider created as many metacards as were requested.
+        List<Metacard> createdMetacards = batchResponse.getCreatedMetacards();
+        Map<String, Metacard> createdById = new HashMap<>();
+        for (Metacard created : createdMetacards) {
+            if (created != null && created.getId() != null) {
+                createdById.put(created.getId(), created);
+            }
+        }
+        boolean matchByPosition = createdMetacards.size() == metacards.size();
+
+        Map<String, Serializable> properties = batchResponse.getProperties();
+        int position = 0;
+        for (PendingCreate pending : group) {
+            List<Metacard> requested = pending.request.getMetacards();
+            List<Metacard> created = new ArrayList<>(requested.size());
+            for (Metacard metacard : requested) {
+                Metacard match;
+                if (metacard.getId() != null) {
+                    match = createdById.get(metacard.getId());
+                } else {
+                    match = matchByPosition ? createdMetacards.get(position) : null;
+                }
+                if (match != null) {
+                    created.add(match);
+                }
+                position++;
+            }
+
+            if (created.isEmpty()) {
+                fail(pending, new IngestException(
+                        "Provider did not create any of the " + requested.size()
+                                + " metacards of the request"));
+            } else {
+                if (created.size() < requested.size()) {
+                    LOGGER.warn("Provider created {} of the {} metacards of a batched request",
+                            created.size(), requested.size());
+                }
+                complete(pending, new CreateResponseImpl(pending.request,
+                        properties == null ? null : new HashMap<>(properties), created));
+            }
+        }
+    }
+
+    private void createSingle(PendingCreate pending) {
+        CreateResponse createResponse;
+        try {
+            createResponse = framework.providerCreate(pending.request);
+        } catch (IngestException | RuntimeException e) {
+            fail(pending, e);
+            return;
+        }
+        complete(pending, createResponse);
+    }
+
+    /**
+     * Completes the future of a create request and runs the post-ingest plugins on the post-ingest
+     * stage, so the callbacks of the future do not hold up the provider thread.
+     */
+    private void complete(final PendingCreate pending, final CreateResponse createResponse) {
+        submitPostIngest(new Runnable() {
+            @Override
+            public void run() {
+                pending.future.complete(createResponse);
+                framework.postProcessCreate(createResponse, pending.request);
+            }
+        });
+    }
+
+    private void fail(final PendingCreate pending, final Exception e) {
+        submitPostIngest(new Runnable() {
+            @Override
+            public void run() {
+                pending.future.completeExceptionally(e);
+            }
+        });
+    }
+
+    private void submitPreIngest(Runnable task, CompletableFuture<?> future) {
+        if (!running) {
+            future.completeExceptionally(new IngestException("Asynchronous ingest is not running"));
+            return;
+        }
+        try {
+            preIngestExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            if (preIngestExecutor.isShutdown()) {
+                future.completeExceptionally(
+                        new IngestException("Asynchronous ingest is not running"));
+            } else {
+                // Queue is full, slow the caller down by having it do the work
+                task.run();
+            }
+        }
+    }
+
+    private void submitPostIngest(Runnable task) {
+        try {
+            postIngestExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            // Queue is full, slow the previous stage down by having it do the work
+            task.run();
+        }
+    }
+
+    private ThreadPoolExecutor createExecutor(int threads, int capacity, final String namePrefix) {
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(capacity), new ThreadFactory() {
+            private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, namePrefix + threadNumber.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            }
+        }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    private void awaitTermination(ThreadPoolExecutor executor, String stage) {
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                LOGGER.warn("Dropping {} {} tasks that were not run before shutdown",
+                        executor.shutdownNow().size(), stage);
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private List<PendingCreate> drain(BlockingQueue<PendingCreate> queue) {
+        List<PendingCreate> drained = new ArrayList<>();
+        queue.drainTo(drained);
+        return drained;
+    }
+
+    private void registerMBean() {
+        MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+        try {
+            objectName = new ObjectName(AsyncIngestPipelineMBean.OBJECTNAME);
+            try {
+                mbeanServer.registerMBean(new StandardMBean(this, AsyncIngestPipelineMBean.class),
+                        objectName);
+            } catch (InstanceAlreadyExistsException e) {
+                LOGGER.info("Re-registering asynchronous ingest MBean");
+                mbeanServer.unregisterMBean(objectName);
+                mbeanServer.registerMBean(new StandardMBean(this, AsyncIngestPipelineMBean.class),
+                        objectName);
+            }
+        } catch (MalformedObjectNameException e) {
+            LOGGER.info("Could not create object name", e);
+        } catch (Exception e) {
+            LOGGER.warn("Could not register MBean.", e);
+        }
+    }
+
+    private void unregisterMBean() {
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (Exception e) {
+                LOGGER.debug("Could not unregister MBean.", e);
+            }
+        }
+    }
+
+    private static class PendingCreate {
+
+        private final CreateRequest request;
+
+        private final CompletableFuture<CreateResponse> future;
+
+        PendingCreate(CreateRequest request, CompletableFuture<CreateResponse> future) {
+            this.request = request;
+            this.future = future;
+        }
+    }
+}
@@ -39,6 +39,8 @@
 import org.slf4j.LoggerFactory;
 import org.slf4j.ext.XLogger;
 
+import com.codahale.metrics.Timer;
+
 import ddf.catalog.CatalogFramework;
 import ddf.catalog.Constants;
 import ddf.catalog.cache.impl.CacheKey;
@@ -239,8 +241,12 @@ public class CatalogFrameworkImpl extends DescribableImpl implements CatalogFram
 
     private SourcePoller poller;
 
+    private SourceHealthMonitor sourceHealthMonitor;
+
     private boolean fanoutEnabled = false;
 
+    private final CatalogFrameworkMetrics frameworkMetrics = new CatalogFrameworkMetrics();
+
     private QueryResponsePostProcessor queryResponsePostProcessor;
 
     private SystemInfo systemInfo;
@@ -391,6 +397,35 @@ public void setFanoutEnabled(boolean fanoutEnabled) {
         this.fanoutEnabled = fanoutEnabled;
     }
 
+    /**
+     * Sets the {@link SourceHealthMonitor} whose open circuits keep remote sources from being
+     * queried.
+     *
+     * @param sourceHealthMonitor the {@link SourceHealthMonitor}, or {@code null} to query every
+     *                            available source
+     */
+    public void setSourceHealthMonitor(SourceHealthMonitor sourceHealthMonitor) {
+        this.sourceHealthMonitor = sourceHealthMonitor;
+    }
+
+    /**
+     * Enables timing of the framework stages and plugins, reported through JMX by the
+     * {@link CatalogFrameworkMetrics}.
+     *
+     * @param latencyMetricsEnabled true to time the framework stages and plugins
+     */
+    public void setLatencyMetricsEnabled(boolean latencyMetricsEnabled) {
+        LOGGER.debug("Setting latencyMetricsEnabled = {}", latencyMetricsEnabled);
+        frameworkMetrics.setEnabled(latencyMetricsEnabled);
+    }
+
+    /**
+     * Unregisters the latency timers from JMX.
+     */
+    public void destroy() {
+        frameworkMetrics.destroy();
+    }
+
     public void setReliableResourceDownloadManager(ReliableResourceDownloadManager rrdm) {
         this.reliableResourceDownloadManager = rrdm;
     }
@@ -410,6 +445,11 @@ public void setCacheDirMaxSizeMegabytes(long maxSize) {
         this.productCache.setCacheDirMaxSizeMegabytes(maxSize);
     }
 
+    public void setCacheDirLowWatermarkPercent(int lowWatermarkPercent) {
+        LOGGER.debug("Setting product cache low watermark to {}%", lowWatermarkPercent);
+        this.productCache.setCacheDirLowWatermarkPercent(lowWatermarkPercent);
+    }
+
     public void setCacheEnabled(boolean cacheEnabled) {
         LOGGER.debug("Setting cacheEnabled = {}", cacheEnabled);
         this.reliableResourceDownloadManager.setCacheEnabled(cacheEnabled);
@@ -462,6 +502,28 @@ public void setCacheWhenCanceled(boolean cacheWhenCanceled) {
         this.reliableResourceDownloadManager.setCacheWhenCanceled(cacheWhenCanceled);
     }
 
+    /**
+     * Set the number of byte ranges of a product to retrieve at once. A value of 1 retrieves
+     * products as a single stream.
+     *
+     * @param downloadSegments
+     */
+    public void setDownloadSegments(int downloadSegments) {
+        LOGGER.debug("Setting downloadSegments = {}", downloadSegments);
+        this.reliableResourceDownloadManager.setSegmentCount(downloadSegments);
+    }
+
+    /**
+     * Set the minimum size, in megabytes, of the products retrieved as several byte ranges at once.
+     *
+     * @param minSegmentedDownloadSize
+     */
+    public void setMinSegmentedDownloadSize(long minSegmentedDownloadSize) {
+        LOGGER.debug("Setting minSegmentedDownloadSize = {} MB", minSegmentedDownloadSize);
+        this.reliableResourceDownloadManager
+                .setMinSegmentedSizeMegabytes(minSegmentedDownloadSize);
+    }
+
     public void setRetrieveStatusEventPublisher(
             DownloadsStatusEventPublisher retrieveStatusEventPublisher) {
         this.retrieveStatusEventPublisher = retrieveStatusEventPublisher;
@@ -488,6 +550,30 @@ public void bind(CatalogProvider catalogProvider) {
         LOGGER.trace("EXITING: bind with CatalogProvider arg");
     }
 
+    /**
+     * Invoked by blueprint when a plugin is bound, so that the latency timers of the plugin are
+     * named after its service rather than its class.
+     *
+     * @param reference the reference of the plugin service
+     */
+    public void bindPlugin(ServiceReference reference) {
+        if (context != null && reference != null) {
+            frameworkMetrics.bindPlugin(reference, context.getService(reference));
+        }
+    }
+
+    /**
+     * Invoked by blueprint when a plugin is unbound.
+     *
+     * @param reference the reference of the plugin service
+     */
+    public void unbindPlugin(ServiceReference reference) {
+        if (context != null && reference != null) {
+            frameworkMetrics.unbindPlugin(reference);
+            context.ungetService(reference);
+        }
+    }
+
     /**
      * Invoked by blueprint when a {@link CatalogProvider} is deleted and unbound from this
      * CatalogFramework instance.
@@ -778,12 +864,45 @@ protected void addCatalogSourceDescriptor(Set<SourceDescriptor> descriptors) {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The local provider is sent the {@link CreateRequest} returned by the last
+     * {@link PreIngestPlugin}, as for updates and deletes, so plugins that return a new request
+     * rather than modifying the given one are honored.
+     */
     @Override
     public CreateResponse create(CreateRequest createRequest)
             throws IngestException, SourceUnavailableException {
         final String methodName = "create";
         LOGGER.entry(methodName);
 
+        CreateRequest createReq = preProcessCreate(createRequest);
+        CreateResponse createResponse = providerCreate(createReq);
+        createResponse = postProcessCreate(createResponse, createReq);
+
+        LOGGER.exit(methodName);
+
+        // if debug is enabled then catalog might take a significant performance hit w/r/t string
+        // building
+        if (INGEST_LOGGER.isDebugEnabled()) {
+            INGEST_LOGGER.debug("{} metacards were successfully ingested. {}",
+                    createReq.getMetacards().size(), buildIngestLog(createReq));
+        }
+        return createResponse;
+    }
+
+    /**
+     * Validates the {@link CreateRequest} and runs it through the {@link PreIngestPlugin}s. First
+     * stage of {@link #create(CreateRequest)}.
+     *
+     * @param createRequest the {@link CreateRequest} to process
+     * @return the {@link CreateRequest} to send to the local provider
+     * @throws IngestException            if the request is invalid or a plugin stopped processing
+     * @throws SourceUnavailableException if the local provider is not available
+     */
+    protected CreateRequest preProcessCreate(CreateRequest createRequest)
+            throws IngestException, SourceUnavailableException {
         if (fanoutEnabled) {
             IngestException ingestException = new IngestException(FANOUT_MESSAGE);
             LOGGER.throwing(ingestException);
@@ -792,7 +911,13 @@ public CreateResponse create(CreateRequest createRequest)
 
         CreateRequest createReq = createRequest;
 
-        validateCreateRequest(createReq);
+        Timer.Context validationTimer = frameworkMetrics.time(CatalogFrameworkMetrics.CREATE,
+                CatalogFrameworkMetrics.VALIDATION);
+        try {
+            validateCreateRequest(createReq);
+        } finally {
+            CatalogFrameworkMetrics.stop(validationTimer);
+        }
 
         if (!sourceIsAvailable(catalog)) {
             SourceUnavailableException sourceUnavailableException = new SourceUnavailableException(
@@ -806,25 +931,22 @@ public CreateResponse create(CreateRequest createRequest)
             throw sourceUnavailableException;
         }
 
-        CreateResponse createResponse = null;
-
         Exception ingestError = null;
         try {
             for (PreIngestPlugin plugin : preIngest) {
+                Timer.Context timer = frameworkMetrics.time(CatalogFrameworkMetrics.CREATE,
+                        CatalogFrameworkMetrics.PRE_INGEST, plugin);
                 try {
                     createReq = plugin.process(createReq);
                 } catch (PluginExecutionException e) {
                     LOGGER.info(
                             "Plugin processing failed. This is allowable. Skipping to next plugin.",
                             e);
+                } finally {
+                    CatalogFrameworkMetrics.stop(timer);
                 }
             }
             validateCreateRequest(createReq);
-
-            // Call the create on the catalog
-            LOGGER.debug("Calling catalog.create() with " + createReq.getMetacards().size()
-                    + " entries.");
-            createResponse = catalog.create(createRequest);
         } catch (IngestException iee) {
             INGEST_LOGGER.warn("Ingest error", iee);
             ingestError = iee;
@@ -844,32 +966,80 @@ public CreateResponse create(CreateRequest createRequest)
             }
         }
 
+        return createReq;
+    }
+
+    /**
+     * Creates the metacards of a pre-processed {@link CreateRequest} in the local provider. Second
+     * stage of {@link #create(CreateRequest)}.
+     *
+     * @param createReq the {@link CreateRequest} returned by {@link #preProcessCreate(CreateRequest)}
+     * @return the validated {@link CreateResponse} of the local provider
+     * @throws IngestException if the local provider failed to create the metacards
+     */
+    protected CreateResponse providerCreate(CreateRequest createReq) throws IngestException {
+        CreateResponse createResponse;
+
+        Exception ingestError = null;
+        try {
+            // Call the create on the catalog
+            LOGGER.debug("Calling catalog.create() with " + createReq.getMetacards().size()
+                    + " entries.");
+            Timer.Context timer = frameworkMetrics.time(CatalogFrameworkMetrics.CREATE,
+                    CatalogFrameworkMetrics.PROVIDER);
+            try {
+                createResponse = catalog.create(createReq);
+            } finally {
+                CatalogFrameworkMetrics.stop(timer);
+            }
+        } catch (IngestException iee) {
+            INGEST_LOGGER.warn("Ingest error", iee);
+            ingestError = iee;
+            throw iee;
+        } catch (RuntimeException re) {
+            LOGGER.warn("Exception during runtime while performing create", re);
+            ingestError = re;
+            throw new IngestException("Exception during runtime while performing create");
+        } finally {
+            if (ingestError != null && INGEST_LOGGER.isWarnEnabled()) {
+                INGEST_LOGGER.warn("Error on create operation. {} metacards failed to ingest. {}",
+                        createReq.getMetacards().size(), buildIngestLog(createReq), ingestError);
+            }
+        }
+
+        return validateFixCreateResponse(createResponse, createReq);
+    }
+
+    /**
+     * Runs a {@link CreateResponse} through the {@link PostIngestPlugin}s. Last stage of
+     * {@link #create(CreateRequest)}. Plugin failures are logged and do not fail the create.
+     *
+     * @param createResponse the {@link CreateResponse} returned by {@link #providerCreate(CreateRequest)}
+     * @param createReq      the {@link CreateRequest} the response is for
+     * @return the {@link CreateResponse} returned by the last plugin
+     */
+    protected CreateResponse postProcessCreate(CreateResponse createResponse,
+            CreateRequest createReq) {
         try {
-            createResponse = validateFixCreateResponse(createResponse, createReq);
             for (final PostIngestPlugin plugin : postIngest) {
+                Timer.Context timer = frameworkMetrics.time(CatalogFrameworkMetrics.CREATE,
+                        CatalogFrameworkMetrics.POST_INGEST, plugin);
                 try {
                     createResponse = plugin.process(createResponse);
                 } catch (PluginExecutionException e) {
                     LOGGER.info(
                             "Plugin processing failed. This is allowable. Skipping to next plugin.",
                             e);
+                } finally {
+                    CatalogFrameworkMetrics.stop(timer);
                 }
             }
         } catch (RuntimeException re) {
             LOGGER.warn(
                     "Exception during runtime while performing doing post create operations (plugins and pubsub)",
                     re);
-
-        } finally {
-            LOGGER.exit(methodName);
         }
 
-        // if debug is enabled then catalog might take a significant performance hit w/r/t string
-        // building
-        if (INGEST_LOGGER.isDebugEnabled()) {
-            INGEST_LOGGER.debug("{} metacards were successfully ingested. {}",
-                    createReq.getMetacards().size(), buildIngestLog(createReq));
-        }
         return createResponse;
     }
 
@@ -879,6 +1049,26 @@ public UpdateResponse update(UpdateRequest updateRequest)
         final String methodName = "update";
         LOGGER.entry(methodName);
 
+        try {
+            UpdateRequest updateReq = preProcessUpdate(updateRequest);
+            UpdateResponse updateResponse = providerUpdate(updateReq);
+            return postProcessUpdate(updateResponse);
+        } finally {
+            LOGGER.exit(methodName);
+        }
+    }
+
+    /**
+     * Validates the {@link UpdateRequest} and runs it through the {@link PreIngestPlugin}s. First
+     * stage of {@link #update(UpdateRequest)}.
+     *
+     * @param updateRequest the {@link UpdateRequest} to process
+     * @return the {@link UpdateRequest} to send to the local provider
+     * @throws IngestException            if the request is invalid or a plugin stopped processing
+     * @throws SourceUnavailableException if the local provider is not available
+     */
+    protected UpdateRequest preProcessUpdate(UpdateRequest updateRequest)
+            throws IngestException, SourceUnavailableException {
         if (fanoutEnabled) {
             IngestException ingestException = new IngestException(FANOUT_MESSAGE);
             LOGGER.throwing(ingestException);
@@ -892,44 +1082,92 @@ public UpdateResponse update(UpdateRequest updateRequest)
             throw sourceUnavailableException;
         }
         UpdateRequest updateReq = updateRequest;
-        validateUpdateRequest(updateReq);
-        UpdateResponse updateResponse = null;
+        Timer.Context validationTimer = frameworkMetrics.time(CatalogFrameworkMetrics.UPDATE,
+                CatalogFrameworkMetrics.VALIDATION);
+        try {
+            validateUpdateRequest(updateReq);
+        } finally {
+            CatalogFrameworkMetrics.stop(validationTimer);
+        }
         try {
-
             for (PreIngestPlugin plugin : preIngest) {
+                Timer.Context timer = frameworkMetrics.time(CatalogFrameworkMetrics.UPDATE,
+                        CatalogFrameworkMetrics.PRE_INGEST, plugin);
                 try {
                     updateReq = plugin.process(updateReq);
                 } catch (PluginExecutionException e) {
                     LOGGER.warn("error processing update in PreIngestPlugin", e);
+                } finally {
+                    CatalogFrameworkMetrics.stop(timer);
                 }
             }
             validateUpdateRequest(updateReq);
+        } catch (StopProcessingException see) {
+            LOGGER.warn(PRE_INGEST_ERROR, see);
+            throw new IngestException(PRE_INGEST_ERROR + see.getMessage());
 
-            // Call the create on the catalog
-            LOGGER.debug("Calling catalog.update() with " + updateRequest.getUpdates().size()
+        } catch (RuntimeException re) {
+            LOGGER.warn("Exception during runtime while performing update", re);
+            throw new IngestException("Exception during runtime while performing update");
+        }
+
+        return updateReq;
+    }
+
+    /**
+     * Updates the metacards of a pre-processed {@link UpdateRequest} in the local provider. Second
+     * stage of {@link #update(UpdateRequest)}.
+     *
+     * @param updateReq the {@link UpdateRequest} returned by {@link #preProcessUpdate(UpdateRequest)}
+     * @return the validated {@link UpdateResponse} of the local provider
+     * @throws IngestException if the local provider failed to update the metacards
+     */
+    protected UpdateResponse providerUpdate(UpdateRequest updateReq) throws IngestException {
+        try {
+            // Call the update on the catalog
+            LOGGER.debug("Calling catalog.update() with " + updateReq.getUpdates().size()
                     + " updates.");
-            updateResponse = catalog.update(updateReq);
+            UpdateResponse updateResponse;
+            Timer.Context timer = frameworkMetrics.time(CatalogFrameworkMetrics.UPDATE,
+                    CatalogFrameworkMetrics.PROVIDER);
+            try {
+                updateResponse = catalog.update(updateReq);
+            } finally {
+                CatalogFrameworkMetrics.stop(timer);
+            }
+            return validateFixUpdateResponse(updateResponse, updateReq);
+        } catch (RuntimeException re) {
+            LOGGER.warn("Exception during runtime while performing update", re);
+            throw new IngestException("Exception during runtime while performing update");
+        }
+    }
 
+    /**
+     * Runs an {@link UpdateResponse} through the {@link PostIngestPlugin}s. Last stage of
+     * {@link #update(UpdateRequest)}.
+     *
+     * @param updateResponse the {@link UpdateResponse} returned by {@link #providerUpdate(UpdateRequest)}
+     * @return the {@link UpdateResponse} returned by the last plugin
+     * @throws IngestException if a plugin failed unexpectedly
+     */
+    protected UpdateResponse postProcessUpdate(UpdateResponse updateResponse)
+            throws IngestException {
+        try {
             // Handle the posting of messages to pubsub
-            updateResponse = validateFixUpdateResponse(updateResponse, updateReq);
             for (final PostIngestPlugin plugin : postIngest) {
+                Timer.Context timer = frameworkMetrics.time(CatalogFrameworkMetrics.UPDATE,
+                        CatalogFrameworkMetrics.POST_INGEST, plugin);
                 try {
                     updateResponse = plugin.process(updateResponse);
                 } catch (PluginExecutionException e) {
                     LOGGER.info("Plugin exception", e);
+                } finally {
+                    CatalogFrameworkMetrics.stop(timer);
                 }
             }
-
-        } catch (StopProcessingException see) {
-            LOGGER.warn(PRE_INGEST_ERROR, see);
-            throw new IngestException(PRE_INGEST_ERROR + see.getMessage());
-
         } catch (RuntimeException re) {
             LOGGER.warn("Exception during runtime while performing update", re);
             throw new IngestException("Exception during runtime while performing update");
-
-        } finally {
-            LOGGER.exit(methodName);
         }
 
         return updateResponse;
@@ -941,6 +1179,26 @@ public DeleteResponse delete(DeleteRequest deleteRequest)
         final String methodName = "delete";
         LOGGER.entry(methodName);
 
+        try {
+            DeleteRequest deleteReq = preProcessDelete(deleteRequest);
+            DeleteResponse deleteResponse = providerDelete(deleteReq);
+            return postProcessDelete(deleteResponse);
+        } finally {
+            LOGGER.exit(methodName);
+        }
+    }
+
+    /**
+     * Validates the {@link DeleteRequest} and runs it through the {@link PreIngestPlugin}s. First
+     * stage of {@link #delete(DeleteRequest)}.
+     *
+     * @param deleteRequest the {@link DeleteRequest} to process
+     * @return the {@link DeleteRequest} to send to the local provider
+     * @throws IngestException            if the request is invalid or a plugin stopped processing
+     * @throws SourceUnavailableException if the local provider is not available
+     */
+    protected DeleteRequest preProcessDelete(DeleteRequest deleteRequest)
+            throws IngestException, SourceUnavailableException {
         if (fanoutEnabled) {
             IngestException ingestException = new IngestException(FANOUT_MESSAGE);
             LOGGER.throwing(ingestException);
@@ -954,46 +1212,95 @@ public DeleteResponse delete(DeleteRequest deleteRequest)
             throw sourceUnavailableException;
         }
 
-        validateDeleteRequest(deleteRequest);
-        DeleteResponse deleteResponse = null;
+        Timer.Context validationTimer = frameworkMetrics.time(CatalogFrameworkMetrics.DELETE,
+                CatalogFrameworkMetrics.VALIDATION);
+        try {
+            validateDeleteRequest(deleteRequest);
+        } finally {
+            CatalogFrameworkMetrics.stop(validationTimer);
+        }
         try {
             for (PreIngestPlugin plugin : preIngest) {
+                Timer.Context timer = frameworkMetrics.time(CatalogFrameworkMetrics.DELETE,
+                        CatalogFrameworkMetrics.PRE_INGEST, plugin);
                 try {
                     deleteRequest = plugin.process(deleteRequest);
                 } catch (PluginExecutionException e) {
                     LOGGER.info(
                             "Plugin processing failed. This is allowable. Skipping to next plugin.",
                             e);
+                } finally {
+                    CatalogFrameworkMetrics.stop(timer);
                 }
             }
             validateDeleteRequest(deleteRequest);
+        } catch (StopProcessingException see) {
+            LOGGER.warn(PRE_INGEST_ERROR + see.getMessage(), see);
+            throw new IngestException(PRE_INGEST_ERROR + see.getMessage());
+
+        } catch (RuntimeException re) {
+            LOGGER.warn("Exception during runtime while performing delete", re);
+            throw new IngestException("Exception during runtime while performing delete");
+        }
+
+        return deleteRequest;
+    }
 
+    /**
+     * Deletes the metacards of a pre-processed {@link DeleteRequest} from the local provider.
+     * Second stage of {@link #delete(DeleteRequest)}.
+     *
+     * @param deleteRequest the {@link DeleteRequest} returned by {@link #preProcessDelete(DeleteRequest)}
+     * @return the validated {@link DeleteResponse} of the local provider
+     * @throws IngestException if the local provider failed to delete the metacards
+     */
+    protected DeleteResponse providerDelete(DeleteRequest deleteRequest) throws IngestException {
+        try {
             // Call the Provider delete method
             LOGGER.debug(
                     "Calling catalog.delete() with " + deleteRequest.getAttributeValues().size()
                             + " entries.");
-            deleteResponse = catalog.delete(deleteRequest);
+            DeleteResponse deleteResponse;
+            Timer.Context timer = frameworkMetrics.time(CatalogFrameworkMetrics.DELETE,
+                    CatalogFrameworkMetrics.PROVIDER);
+            try {
+                deleteResponse = catalog.delete(deleteRequest);
+            } finally {
+                CatalogFrameworkMetrics.stop(timer);
+            }
+            return validateFixDeleteResponse(deleteResponse, deleteRequest);
+        } catch (RuntimeException re) {
+            LOGGER.warn("Exception during runtime while performing delete", re);
+            throw new IngestException("Exception during runtime while performing delete");
+        }
+    }
 
+    /**
+     * Runs a {@link DeleteResponse} through the {@link PostIngestPlugin}s. Last stage of
+     * {@link #delete(DeleteRequest)}.
+     *
+     * @param deleteResponse the {@link DeleteResponse} returned by {@link #providerDelete(DeleteRequest)}
+     * @return the {@link DeleteResponse} returned by the last plugin
+     * @throws IngestException if a plugin failed unexpectedly
+     */
+    protected DeleteResponse postProcessDelete(DeleteResponse deleteResponse)
+            throws IngestException {
+        try {
             // Post results to be available for pubsub
-            deleteResponse = validateFixDeleteResponse(deleteResponse, deleteRequest);
             for (final PostIngestPlugin plugin : postIngest) {
+                Timer.Context timer = frameworkMetrics.time(CatalogFrameworkMetrics.DELETE,
+                        CatalogFrameworkMetrics.POST_INGEST, plugin);
                 try {
                     deleteResponse = plugin.process(deleteResponse);
                 } catch (PluginExecutionException e) {
                     LOGGER.info("Plugin exception", e);
+                } finally {
+                    CatalogFrameworkMetrics.stop(timer);
                 }
             }
-
-        } catch (StopProcessingException see) {
-            LOGGER.warn(PRE_INGEST_ERROR + see.getMessage(), see);
-            throw new IngestException(PRE_INGEST_ERROR + see.getMessage());
-
         } catch (RuntimeException re) {
             LOGGER.warn("Exception during runtime while performing delete", re);
             throw new IngestException("Exception during runtime while performing delete");
-
-        } finally {
-            LOGGER.exit(methodName);
         }
 
         return deleteResponse;
@@ -1045,7 +1352,13 @@ public QueryResponse query(QueryRequest queryRequest, FederationStrategy strateg
         QueryRequest queryReq = queryRequest;
 
         try {
-            validateQueryRequest(queryReq);
+            Timer.Context validationTimer = frameworkMetrics.time(CatalogFrameworkMetrics.QUERY,
+                    CatalogFrameworkMetrics.VALIDATION);
+            try {
+                validateQueryRequest(queryReq);
+            } finally {
+                CatalogFrameworkMetrics.stop(validationTimer);
+            }
 
             if (fanoutEnabled) {
                 // Force an enterprise query
@@ -1054,12 +1367,16 @@ public QueryResponse query(QueryRequest queryRequest, FederationStrategy strateg
             }
 
             for (PreQueryPlugin service : preQuery) {
+                Timer.Context timer = frameworkMetrics.time(CatalogFrameworkMetrics.QUERY,
+                        CatalogFrameworkMetrics.PRE_QUERY, service);
                 try {
                     queryReq = service.process(queryReq);
                 } catch (PluginExecutionException see) {
                     LOGGER.warn("Error executing PreQueryPlugin: " + see.getMessage(), see);
                 } catch (StopProcessingException e) {
                     throw new FederationException("Query could not be executed.", e);
+                } finally {
+                    CatalogFrameworkMetrics.stop(timer);
                 }
             }
 
@@ -1078,17 +1395,28 @@ public QueryResponse query(QueryRequest queryRequest, FederationStrategy strateg
                 }
             }
 
-            queryResponse = doQuery(queryReq, fedStrategy);
-
-            validateFixQueryResponse(queryResponse, queryReq, overrideFanoutRename);
+            // The federation strategy returns before the sources have responded, getting the
+            // results while validating the response is what waits for them
+            Timer.Context federationTimer = frameworkMetrics.time(CatalogFrameworkMetrics.QUERY,
+                    CatalogFrameworkMetrics.FEDERATION);
+            try {
+                queryResponse = doQuery(queryReq, fedStrategy);
+                validateFixQueryResponse(queryResponse, queryReq, overrideFanoutRename);
+            } finally {
+                CatalogFrameworkMetrics.stop(federationTimer);
+            }
 
             for (PostQueryPlugin service : postQuery) {
+                Timer.Context timer = frameworkMetrics.time(CatalogFrameworkMetrics.QUERY,
+                        CatalogFrameworkMetrics.POST_QUERY, service);
                 try {
                     queryResponse = service.process(queryResponse);
                 } catch (PluginExecutionException see) {
                     LOGGER.warn("Error executing PostQueryPlugin: " + see.getMessage(), see);
                 } catch (StopProcessingException e) {
                     throw new FederationException("Query could not be executed.", e);
+                } finally {
+                    CatalogFrameworkMetrics.stop(timer);
                 }
             }
 
@@ -1142,10 +1470,12 @@ private QueryResponse doQuery(QueryRequest queryRequest, FederationStrategy stra
 
             // add all the federated sources
             for (FederatedSource source : federatedSources) {
-                if (sourceIsAvailable(source)) {
-                    sourcesToQuery.add(source);
-                } else {
+                if (!sourceIsAvailable(source)) {
                     exceptions.add(createUnavailableProcessingDetails(source));
+                } else if (!sourceIsHealthy(source)) {
+                    exceptions.add(createUnhealthyProcessingDetails(source));
+                } else {
+                    sourcesToQuery.add(source);
                 }
             }
 
@@ -1171,10 +1501,12 @@ private QueryResponse doQuery(QueryRequest queryRequest, FederationStrategy stra
                     for (FederatedSource source : federatedSources) {
                         if (id != null && id.equals(source.getId())) {
                             sourceFound = true;
-                            if (sourceIsAvailable(source)) {
-                                sourcesToQuery.add(source);
-                            } else {
+                            if (!sourceIsAvailable(source)) {
                                 exceptions.add(createUnavailableProcessingDetails(source));
+                            } else if (!sourceIsHealthy(source)) {
+                                exceptions.add(createUnhealthyProcessingDetails(source));
+                            } else {
+                                sourcesToQuery.add(source);
                             }
                         }
                     }
@@ -1193,7 +1525,7 @@ private QueryResponse doQuery(QueryRequest queryRequest, FederationStrategy stra
         if (addConnectedSources) {
             // add Connected Sources
             for (ConnectedSource source : connectedSources) {
-                if (sourceIsAvailable(source)) {
+                if (sourceIsAvailable(source) && sourceIsHealthy(source)) {
                     sourcesToQuery.add(source);
                 } else {
                     // do nothing -- we don't care if a connected source is
@@ -1301,6 +1633,18 @@ private ProcessingDetailsImpl createUnavailableProcessingDetails(Source source)
         return exception;
     }
 
+    private ProcessingDetailsImpl createUnhealthyProcessingDetails(Source source) {
+        ProcessingDetailsImpl exception = new ProcessingDetailsImpl();
+        SourceUnavailableException sue = new SourceUnavailableException("Source \"" + source
+                .getId() + "\" has recently been failing or slow and will not be queried");
+        exception.setException(sue);
+        exception.setSourceId(source.getId());
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Source Unhealthy", sue);
+        }
+        return exception;
+    }
+
     @Override
     public BinaryContent transform(Metacard metacard, String transformerShortname,
             Map<String, Serializable> arguments) throws CatalogTransformerException {
@@ -1321,7 +1665,13 @@ public BinaryContent transform(Metacard metacard, String transformerShortname,
         } else {
             MetacardTransformer transformer = (MetacardTransformer) context.getService(refs[0]);
             if (metacard != null) {
-                return transformer.transform(metacard, arguments);
+                Timer.Context timer = frameworkMetrics.time(CatalogFrameworkMetrics.TRANSFORM,
+                        transformerShortname);
+                try {
+                    return transformer.transform(metacard, arguments);
+                } finally {
+                    CatalogFrameworkMetrics.stop(timer);
+                }
             } else {
                 throw new IllegalArgumentException("Metacard is null.");
             }
@@ -1349,7 +1699,13 @@ public BinaryContent transform(SourceResponse response, String transformerShortn
             QueryResponseTransformer transformer = (QueryResponseTransformer) context
                     .getService(refs[0]);
             if (response != null) {
-                return transformer.transform(response, arguments);
+                Timer.Context timer = frameworkMetrics.time(CatalogFrameworkMetrics.TRANSFORM,
+                        transformerShortname);
+                try {
+                    return transformer.transform(response, arguments);
+                } finally {
+                    CatalogFrameworkMetrics.stop(timer);
+                }
             } else {
                 throw new IllegalArgumentException("QueryResponse is null.");
             }
@@ -1435,12 +1791,16 @@ protected ResourceResponse getResource(ResourceRequest resourceRequest, boolean
         try {
 
             for (PreResourcePlugin plugin : preResource) {
+                Timer.Context timer = frameworkMetrics.time(CatalogFrameworkMetrics.RESOURCE,
+                        CatalogFrameworkMetrics.PRE_RESOURCE, plugin);
                 try {
                     resourceReq = plugin.process(resourceReq);
                 } catch (PluginExecutionException e) {
                     LOGGER.info(
                             "Plugin processing failed. This is allowable. Skipping to next plugin.",
                             e);
+                } finally {
+                    CatalogFrameworkMetrics.stop(timer);
                 }
             }
 
@@ -1495,7 +1855,9 @@ protected ResourceResponse getResource(ResourceRequest resourceRequest, boolean
                 LOGGER.error("resource not found", e1);
                 throw new ResourceNotFoundException(e1);
             }
-            if (productCache != null && productCache.containsValid(key, metacard)) {
+            // The cache only holds whole products, so requests for a range are never served from it
+            if (productCache != null && !ResourceRetriever.isRangeRequest(resourceRequest)
+                    && productCache.containsValid(key, metacard)) {
                 try {
                     Resource resource = productCache.getValid(key, metacard);
                     resourceResponse = new ResourceResponseImpl(resourceRequest, requestProperties,
@@ -1554,12 +1916,16 @@ protected ResourceResponse getResource(ResourceRequest resourceRequest, boolean
             resourceResponse = validateFixGetResourceResponse(resourceResponse, resourceReq);
 
             for (PostResourcePlugin plugin : postResource) {
+                Timer.Context timer = frameworkMetrics.time(CatalogFrameworkMetrics.RESOURCE,
+                        CatalogFrameworkMetrics.POST_RESOURCE, plugin);
                 try {
                     resourceResponse = plugin.process(resourceResponse);
                 } catch (PluginExecutionException e) {
                     LOGGER.info(
                             "Plugin processing failed. This is allowable. Skipping to next plugin.",
                             e);
+                } finally {
+                    CatalogFrameworkMetrics.stop(timer);
                 }
             }
 
@@ -1950,6 +2316,22 @@ protected Query createPropertyIsEqualToQuery(String propertyName, String literal
                 new LiteralImpl(literal)));
     }
 
+    /**
+     * Checks that the circuit of the specified remote source is not open, i.e. that its recent
+     * queries have not been failing or slow. A half-open circuit lets a single probe query
+     * through.
+     *
+     * @param source the {@link Source} to check the health of
+     * @return true if the {@link Source} should be queried, false otherwise
+     */
+    protected boolean sourceIsHealthy(Source source) {
+        if (sourceHealthMonitor == null || sourceHealthMonitor.allowQuery(source.getId())) {
+            return true;
+        }
+        LOGGER.debug("Circuit of source \"{}\" is open", source.getId());
+        return false;
+    }
+
     /**
      * Checks that the specified source is valid and available.
      *
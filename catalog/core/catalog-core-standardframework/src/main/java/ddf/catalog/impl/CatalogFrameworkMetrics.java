@@ -0,0 +1,201 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package ddf.catalog.impl;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceReference;
+
+import com.codahale.metrics.JmxReporter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+/**
+ * Latency {@link Timer}s for the stages of the {@link CatalogFrameworkImpl} operations and for
+ * each plugin they invoke. The timers are reported through JMX in the same domain as the
+ * {@code CatalogMetrics}, e.g. {@code ddf.metrics.catalog:name=Framework.Query.Federation}.
+ * <p>
+ * The timers of plugins bound through {@link #bindPlugin(ServiceReference, Object)} are named
+ * after their service PID, or their Blueprint component, since their classes may be proxies
+ * that all plugins share. Other plugins are identified by their class name.
+ * <p>
+ * The timers of the main stages are registered up front so that collectors for the metrics
+ * endpoint can find them. Timing is disabled by default. When disabled,
+ * {@link #time(String, String)} only reads a flag and returns {@code null}, which
+ * {@link #stop(Timer.Context)} ignores.
+ */
+public class CatalogFrameworkMetrics {
+
+    public static final String QUERY = "Query";
+
+    public static final String CREATE = "Create";
+
+    public static final String UPDATE = "Update";
+
+    public static final String DELETE = "Delete";
+
+    public static final String RESOURCE = "Resource";
+
+    public static final String TRANSFORM = "Transform";
+
+    public static final String VALIDATION = "Validation";
+
+    public static final String PRE_QUERY = "PreQuery";
+
+    public static final String FEDERATION = "Federation";
+
+    public static final String POST_QUERY = "PostQuery";
+
+    public static final String PRE_INGEST = "PreIngest";
+
+    public static final String PROVIDER = "Provider";
+
+    public static final String POST_INGEST = "PostIngest";
+
+    public static final String PRE_RESOURCE = "PreResource";
+
+    public static final String POST_RESOURCE = "PostResource";
+
+    protected static final String FRAMEWORK_SCOPE = "Framework";
+
+    protected static final String DOMAIN = "ddf.metrics.catalog";
+
+    private static final String BLUEPRINT_COMPONENT_NAME = "osgi.service.blueprint.compname";
+
+    protected final MetricRegistry metrics = new MetricRegistry();
+
+    protected final JmxReporter reporter = JmxReporter.forRegistry(metrics).inDomain(DOMAIN)
+            .convertDurationsTo(TimeUnit.MILLISECONDS).build();
+
+    private final Map<Object, String> pluginNames = Collections
+            .synchronizedMap(new IdentityHashMap<Object, String>());
+
+    private final Map<ServiceReference, Object> boundPlugins = new ConcurrentHashMap<>();
+
+    private volatile boolean enabled;
+
+    public CatalogFrameworkMetrics() {
+        String[][] stages = {{QUERY, VALIDATION}, {QUERY, FEDERATION}, {CREATE, PROVIDER},
+                {UPDATE, PROVIDER}, {DELETE, PROVIDER}};
+        for (String[] stage : stages) {
+            metrics.timer(MetricRegistry.name(FRAMEWORK_SCOPE, stage));
+        }
+        reporter.start();
+    }
+
+    /**
+     * Stops the timer, if there is one.
+     *
+     * @param context the context returned when the timer was started, may be {@code null}
+     */
+    public static void stop(Timer.Context context) {
+        if (context != null) {
+            context.stop();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Starts timing a stage of an operation.
+     *
+     * @param operation the operation, e.g. {@link #QUERY}
+     * @param stage     the stage of the operation, e.g. {@link #FEDERATION}
+     * @return the timer context to {@link #stop(Timer.Context)}, or {@code null} if timing is
+     * disabled
+     */
+    public Timer.Context time(String operation, String stage) {
+        if (!enabled) {
+            return null;
+        }
+        return metrics.timer(MetricRegistry.name(FRAMEWORK_SCOPE, operation, stage)).time();
+    }
+
+    /**
+     * Starts timing a plugin invoked in a stage of an operation.
+     *
+     * @param operation the operation, e.g. {@link #QUERY}
+     * @param stage     the stage of the operation, e.g. {@link #POST_QUERY}
+     * @param plugin    the plugin, identified by the name it was bound with or by its class name
+     * @return the timer context to {@link #stop(Timer.Context)}, or {@code null} if timing is
+     * disabled
+     */
+    public Timer.Context time(String operation, String stage, Object plugin) {
+        if (!enabled) {
+            return null;
+        }
+        String pluginName = pluginNames.get(plugin);
+        if (pluginName == null) {
+            pluginName = plugin.getClass().getSimpleName();
+        }
+        return metrics.timer(MetricRegistry.name(FRAMEWORK_SCOPE, operation, stage, pluginName))
+                .time();
+    }
+
+    /**
+     * Names the timers of a plugin after its service.
+     *
+     * @param reference the reference of the plugin service
+     * @param plugin    the plugin, as invoked by the framework
+     */
+    public void bindPlugin(ServiceReference reference, Object plugin) {
+        if (plugin == null) {
+            return;
+        }
+        boundPlugins.put(reference, plugin);
+        pluginNames.put(plugin, getPluginName(reference, plugin));
+    }
+
+    /**
+     * @param reference the reference of a plugin service that is going away
+     */
+    public void unbindPlugin(ServiceReference reference) {
+        Object plugin = boundPlugins.remove(reference);
+        if (plugin != null) {
+            pluginNames.remove(plugin);
+        }
+    }
+
+    static String getPluginName(ServiceReference reference, Object plugin) {
+        Object pid = reference.getProperty(Constants.SERVICE_PID);
+        if (pid != null) {
+            return pid.toString();
+        }
+        Object componentName = reference.getProperty(BLUEPRINT_COMPONENT_NAME);
+        if (componentName != null && reference.getBundle() != null) {
+            return reference.getBundle().getSymbolicName() + "." + componentName;
+        }
+        return plugin.getClass().getSimpleName() + "-" + reference
+                .getProperty(Constants.SERVICE_ID);
+    }
+
+    /**
+     * Unregisters the timers from JMX.
+     */
+    public void destroy() {
+        enabled = false;
+        reporter.stop();
+    }
+}
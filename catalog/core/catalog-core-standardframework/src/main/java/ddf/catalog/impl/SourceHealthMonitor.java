@@ -0,0 +1,292 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package ddf.catalog.impl;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tracks the outcome and latency of the most recent queries sent to each source and keeps a
+ * circuit breaker per source.
+ * <p>
+ * A query that fails, or that takes longer than the slow query threshold, counts against the
+ * source. Once enough of the queries in a source's window count against it, the circuit opens and
+ * {@link #allowQuery(String)} rejects queries to the source for the open duration. After that, a
+ * single probe query is let through. The circuit closes again if the probe succeeds in time and
+ * reopens otherwise. Sources that have not been queried yet are always allowed.
+ */
+public class SourceHealthMonitor {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SourceHealthMonitor.class);
+
+    private static final int MINIMUM_QUERIES = 5;
+
+    private final ConcurrentMap<String, SourceHealth> sources = new ConcurrentHashMap<>();
+
+    private volatile boolean enabled = true;
+
+    private volatile int windowSize = 20;
+
+    private volatile int failureRateThreshold = 50;
+
+    private volatile long slowQueryMillis = TimeUnit.SECONDS.toMillis(10);
+
+    private volatile long openDurationMillis = TimeUnit.SECONDS.toMillis(30);
+
+    /**
+     * @param enabled false to allow every query, regardless of the health of the source
+     */
+    public void setEnabled(boolean enabled) {
+        LOGGER.debug("Setting circuit breaker enabled = {}", enabled);
+        this.enabled = enabled;
+    }
+
+    /**
+     * @param windowSize the number of recent queries per source the health is computed from
+     */
+    public void setWindowSize(int windowSize) {
+        if (windowSize < 1) {
+            LOGGER.warn("Invalid source health window size {}, keeping {}", windowSize,
+                    this.windowSize);
+            return;
+        }
+        this.windowSize = windowSize;
+        sources.clear();
+    }
+
+    /**
+     * @param failureRateThreshold the percentage of failed or slow queries in the window that
+     *                             opens the circuit of a source
+     */
+    public void setFailureRateThreshold(int failureRateThreshold) {
+        this.failureRateThreshold = Math.min(Math.max(failureRateThreshold, 1), 100);
+    }
+
+    /**
+     * @param slowQueryMillis the latency, in milliseconds, above which a query counts against the
+     *                        source even if it succeeds
+     */
+    public void setSlowQueryMillis(long slowQueryMillis) {
+        this.slowQueryMillis = slowQueryMillis;
+    }
+
+    /**
+     * @param openDurationMillis how long, in milliseconds, an open circuit rejects queries before
+     *                           a probe query is let through
+     */
+    public void setOpenDurationMillis(long openDurationMillis) {
+        this.openDurationMillis = openDurationMillis;
+    }
+
+    /**
+     * Determines whether a query should be sent to a source. When the open duration of the
+     * circuit has elapsed, the first caller is allowed to send a probe query and the circuit is
+     * half-open until its outcome is recorded.
+     *
+     * @param sourceId the ID of the source to query
+     * @return true if the source should be queried
+     */
+    public boolean allowQuery(String sourceId) {
+        if (!enabled || sourceId == null) {
+            return true;
+        }
+        SourceHealth health = sources.get(sourceId);
+        return health == null || health.allowQuery(currentTimeMillis());
+    }
+
+    /**
+     * Records a query that returned a response.
+     *
+     * @param sourceId      the ID of the source that was queried
+     * @param latencyMillis how long the query took
+     */
+    public void recordSuccess(String sourceId, long latencyMillis) {
+        record(sourceId, latencyMillis, false);
+    }
+
+    /**
+     * Records a query that failed.
+     *
+     * @param sourceId      the ID of the source that was queried
+     * @param latencyMillis how long the query took to fail
+     */
+    public void recordFailure(String sourceId, long latencyMillis) {
+        record(sourceId, latencyMillis, true);
+    }
+
+    /**
+     * @param sourceId the ID of the source
+     * @return the state of the circuit of the source
+     */
+    public State getState(String sourceId) {
+        SourceHealth health = sourceId == null ? null : sources.get(sourceId);
+        return health == null ? State.CLOSED : health.getState();
+    }
+
+    /**
+     * @param sourceId   the ID of the source
+     * @param percentile the percentile, between 0 and 100
+     * @return the latency percentile, in milliseconds, of the queries in the window of the
+     * source, or -1 if the source has not been queried
+     */
+    public long getLatencyPercentile(String sourceId, double percentile) {
+        SourceHealth health = sourceId == null ? null : sources.get(sourceId);
+        return health == null ? -1 : health.getLatencyPercentile(percentile);
+    }
+
+    /**
+     * @param sourceId the ID of the source
+     * @return the percentage of failed or slow queries in the window of the source
+     */
+    public int getFailureRate(String sourceId) {
+        SourceHealth health = sourceId == null ? null : sources.get(sourceId);
+        return health == null ? 0 : health.getFailureRate();
+    }
+
+    long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    private void record(String sourceId, long latencyMillis, boolean failed) {
+        if (sourceId == null) {
+            return;
+        }
+        SourceHealth health = sources.get(sourceId);
+        if (health == null) {
+            SourceHealth newHealth = new SourceHealth(sourceId, windowSize);
+            health = sources.putIfAbsent(sourceId, newHealth);
+            if (health == null) {
+                health = newHealth;
+            }
+        }
+        health.record(latencyMillis, failed || latencyMillis > slowQueryMillis,
+                currentTimeMillis());
+    }
+
+    private class SourceHealth {
+
+        private final String sourceId;
+
+        private final long[] latencies;
+
+        private final boolean[] failures;
+
+        private int next;
+
+        private int count;
+
+        private int failureCount;
+
+        private State state = State.CLOSED;
+
+        private long stateChanged;
+
+        SourceHealth(String sourceId, int windowSize) {
+            this.sourceId = sourceId;
+            this.latencies = new long[windowSize];
+            this.failures = new boolean[windowSize];
+        }
+
+        synchronized boolean allowQuery(long now) {
+            switch (state) {
+            case OPEN:
+                if (now - stateChanged < openDurationMillis) {
+                    return false;
+                }
+                LOGGER.debug("Sending a probe query to source {}", sourceId);
+                setState(State.HALF_OPEN, now);
+                return true;
+            case HALF_OPEN:
+                // Let another probe through if the outcome of the last one was never recorded
+                if (now - stateChanged < openDurationMillis) {
+                    return false;
+                }
+                stateChanged = now;
+                return true;
+            default:
+                return true;
+            }
+        }
+
+        synchronized void record(long latencyMillis, boolean failed, long now) {
+            if (state == State.HALF_OPEN) {
+                if (failed) {
+                    setState(State.OPEN, now);
+                } else {
+                    // The source has recovered, so its earlier queries no longer count against it
+                    next = 0;
+                    count = 0;
+                    failureCount = 0;
+                    setState(State.CLOSED, now);
+                }
+            }
+
+            if (count == latencies.length) {
+                if (failures[next]) {
+                    failureCount--;
+                }
+            } else {
+                count++;
+            }
+            latencies[next] = latencyMillis;
+            failures[next] = failed;
+            if (failed) {
+                failureCount++;
+            }
+            next = (next + 1) % latencies.length;
+
+            if (state == State.CLOSED && count >= Math.min(MINIMUM_QUERIES, latencies.length)
+                    && getFailureRate() >= failureRateThreshold) {
+                LOGGER.warn("{}% of the last {} queries to source {} failed or took longer than "
+                        + "{} ms; not querying it for {} ms", getFailureRate(), count, sourceId,
+                        slowQueryMillis, openDurationMillis);
+                setState(State.OPEN, now);
+            }
+        }
+
+        synchronized State getState() {
+            return state;
+        }
+
+        synchronized int getFailureRate() {
+            return count == 0 ? 0 : failureCount * 100 / count;
+        }
+
+        synchronized long getLatencyPercentile(double percentile) {
+            if (count == 0) {
+                return -1;
+            }
+            // Until the window wraps around, only its first entries are filled in
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile / 100 * count) - 1;
+            return sorted[Math.min(Math.max(index, 0), count - 1)];
+        }
+
+        private void setState(State newState, long now) {
+            LOGGER.debug("Circuit of source {} is {}", sourceId, newState);
+            state = newState;
+            stateChanged = now;
+        }
+    }
+}
@@ -55,6 +55,10 @@ public class ReliableResource implements Resource, Serializable {
 
     private Metacard metacard;
 
+    // Counts the writes to the file of this resource while it is pending caching, so that
+    // readers of the file can wait for them instead of polling it
+    private transient long progress = 0L;
+
     //    public ReliableResource(String key, String filePath) {
     //        this(key, filePath, null, null);
     //    }
@@ -176,4 +180,39 @@ public void setLastTouchedMillis(long lastTouchedMillis) {
     public Metacard getMetacard() {
         return metacard;
     }
+
+    /**
+     * @return the number of writes to the file of this resource signalled so far
+     */
+    public synchronized long getProgress() {
+        return progress;
+    }
+
+    /**
+     * Signals that more of this resource has been written to its file, or that caching it ended,
+     * waking up the readers waiting for it.
+     */
+    public synchronized void notifyProgress() {
+        progress++;
+        notifyAll();
+    }
+
+    /**
+     * Waits until more of this resource is written to its file, or caching it ends.
+     *
+     * @param seenProgress  the progress the caller has already seen
+     * @param timeoutMillis the maximum time to wait, in milliseconds
+     * @return true if there was progress since {@code seenProgress}, false if the wait timed out
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public synchronized boolean awaitProgress(long seenProgress, long timeoutMillis)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        long remaining = timeoutMillis;
+        while (progress == seenProgress && remaining > 0) {
+            wait(remaining);
+            remaining = deadline - System.currentTimeMillis();
+        }
+        return progress != seenProgress;
+    }
 }
@@ -0,0 +1,143 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package ddf.catalog.resource.download;
+
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ddf.catalog.cache.ResourceCacheInterface;
+import ddf.catalog.resource.data.ReliableResource;
+
+/**
+ * The @InputStream used by a client to read a resource that another download is caching, from
+ * the cache file being written to. Reads wait on the pending cache entry until the download
+ * signals that more of the file has been written, and end once the resource has been added to
+ * the cache.
+ * <p/>
+ * If the other download stops caching the resource, e.g., because it failed or was canceled,
+ * the remaining reads throw an @IOException.
+ */
+public class PendingCacheInputStream extends InputStream {
+
+    // Upper bound on a single wait for the caching download, in case a change of the pending
+    // entry is not signalled
+    static final long MAX_WAIT_MS = 1000;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PendingCacheInputStream.class);
+
+    private final ResourceCacheInterface resourceCache;
+
+    private final ReliableResource pendingResource;
+
+    private InputStream cacheFileInputStream;
+
+    private long bytesRead = 0;
+
+    private boolean complete = false;
+
+    /**
+     * @param resourceCache   the cache the resource is being added to
+     * @param pendingResource the pending cache entry of the resource
+     */
+    public PendingCacheInputStream(ResourceCacheInterface resourceCache,
+            ReliableResource pendingResource) {
+        this.resourceCache = resourceCache;
+        this.pendingResource = pendingResource;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        int numBytesRead = read(b, 0, 1);
+        return numBytesRead == -1 ? -1 : b[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte b[], int off, int len) throws IOException {
+        if (b == null) {
+            throw new NullPointerException();
+        } else if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        } else if (len == 0) {
+            return 0;
+        }
+
+        while (!complete) {
+            // Check before reading so that no bytes written before the entry stopped being
+            // pending are missed, and no write is missed while waiting
+            long progress = pendingResource.getProgress();
+            boolean pending = resourceCache.isPending(pendingResource.getKey());
+
+            int numBytesRead = readFromCacheFile(b, off, len);
+            if (numBytesRead > 0) {
+                bytesRead += numBytesRead;
+                return numBytesRead;
+            }
+
+            if (!pending) {
+                if (resourceCache.containsValid(pendingResource.getKey(),
+                        pendingResource.getMetacard())) {
+                    LOGGER.debug("Read {} bytes of cached resource {}", bytesRead,
+                            pendingResource.getKey());
+                    complete = true;
+                } else {
+                    close();
+                    throw new IOException(
+                            "Caching of resource " + pendingResource.getKey()
+                                    + " failed or was cancelled - cannot retrieve product");
+                }
+            } else {
+                try {
+                    pendingResource.awaitProgress(progress, MAX_WAIT_MS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException(
+                            "Interrupted while waiting for resource " + pendingResource.getKey());
+                }
+            }
+        }
+
+        return -1;
+    }
+
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    @Override
+    public void close() {
+        IOUtils.closeQuietly(cacheFileInputStream);
+        cacheFileInputStream = null;
+    }
+
+    private int readFromCacheFile(byte[] b, int off, int len) throws IOException {
+        if (cacheFileInputStream == null) {
+            try {
+                cacheFileInputStream = new FileInputStream(pendingResource.getFilePath());
+            } catch (FileNotFoundException e) {
+                // The caching download has not created the file yet
+                LOGGER.trace("Cache file {} not found", pendingResource.getFilePath());
+                return 0;
+            }
+        }
+        return cacheFileInputStream.read(b, off, len);
+    }
+}
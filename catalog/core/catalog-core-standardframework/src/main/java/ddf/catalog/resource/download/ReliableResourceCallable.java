@@ -219,55 +219,8 @@ public ReliableResourceStatus call() {
                 break;
             }
 
-            // Synchronized to prevent being interrupted in the middle of writing to the
-            // OutputStreams
-            synchronized (lock) {
-
-                // If download was interrupted or canceled break now so that the bytesRead count does
-                // not
-                // get out of sync with the bytesWritten counts. If this count gets out of sync
-                // then potentially the output streams will be one chunk off from the input stream
-                // when a retry is attempted and the InputStream is skipped forward.
-                if (cancelDownload || interruptDownload || Thread.interrupted()) {
-                    LOGGER.debug("Breaking from download loop due to cancel or interrupt received");
-                    if (reliableResourceStatus != null) {
-                        reliableResourceStatus.setMessage(
-                                "Breaking from download loop due to cancel or interrupt received");
-                    }
-                    return reliableResourceStatus;
-                }
-
-                bytesRead.addAndGet(n);
-
-                if (cacheFileOutputStream != null) {
-                    try {
-                        cacheFileOutputStream.write(buffer, 0, n);
-                    } catch (IOException e) {
-                        LOGGER.info("IOException during write to cached file's OutputStream", e);
-                        reliableResourceStatus = new ReliableResourceStatus(
-                                DownloadStatus.CACHED_FILE_OUTPUT_STREAM_EXCEPTION,
-                                bytesRead.get());
-                    }
-                }
-
-                if (countingFbos != null) {
-                    try {
-                        countingFbos.write(buffer, 0, n);
-                        countingFbos.flush();
-                    } catch (IOException e) {
-                        LOGGER.info(
-                                "IOException during write to FileBackedOutputStream for client to read",
-                                e);
-                        reliableResourceStatus = new ReliableResourceStatus(
-                                DownloadStatus.CLIENT_OUTPUT_STREAM_EXCEPTION, bytesRead.get());
-                    }
-                }
-
-                // Return status here so that each stream can be attempted to be updated regardless of
-                // which one might have had an exception
-                if (reliableResourceStatus != null) {
-                    return reliableResourceStatus;
-                }
+            if (!writeChunk(buffer, n)) {
+                return reliableResourceStatus;
             }
             LOGGER.trace("chunkCount = {},  bytesRead = {}", chunkCount, bytesRead.get());
         }
@@ -281,4 +234,79 @@ public ReliableResourceStatus call() {
 
         return reliableResourceStatus;
     }
+
+    /**
+     * Writes a chunk of product data to the cache file and to the @FileBackedOutputStream read
+     * by the client, and counts it as read.
+     *
+     * @param buffer the chunk of product data
+     * @param n      the number of bytes of the buffer to write
+     * @return true if the download can go on, false if it was stopped or a write failed, in
+     * which case the status of the download is set
+     */
+    protected boolean writeChunk(byte[] buffer, int n) {
+        // Synchronized to prevent being interrupted in the middle of writing to the
+        // OutputStreams
+        synchronized (lock) {
+
+            // If download was interrupted or canceled break now so that the bytesRead count does
+            // not
+            // get out of sync with the bytesWritten counts. If this count gets out of sync
+            // then potentially the output streams will be one chunk off from the input stream
+            // when a retry is attempted and the InputStream is skipped forward.
+            if (cancelDownload || interruptDownload || Thread.interrupted()) {
+                LOGGER.debug("Breaking from download loop due to cancel or interrupt received");
+                if (reliableResourceStatus != null) {
+                    reliableResourceStatus.setMessage(
+                            "Breaking from download loop due to cancel or interrupt received");
+                }
+                return false;
+            }
+
+            bytesRead.addAndGet(n);
+
+            if (cacheFileOutputStream != null) {
+                try {
+                    cacheFileOutputStream.write(buffer, 0, n);
+                } catch (IOException e) {
+                    LOGGER.info("IOException during write to cached file's OutputStream", e);
+                    reliableResourceStatus = new ReliableResourceStatus(
+                            DownloadStatus.CACHED_FILE_OUTPUT_STREAM_EXCEPTION,
+                            bytesRead.get());
+                }
+            }
+
+            if (countingFbos != null) {
+                try {
+                    countingFbos.write(buffer, 0, n);
+                    countingFbos.flush();
+                } catch (IOException e) {
+                    LOGGER.info(
+                            "IOException during write to FileBackedOutputStream for client to read",
+                            e);
+                    reliableResourceStatus = new ReliableResourceStatus(
+                            DownloadStatus.CLIENT_OUTPUT_STREAM_EXCEPTION, bytesRead.get());
+                }
+            }
+
+            // Return status here so that each stream can be attempted to be updated regardless of
+            // which one might have had an exception
+            if (reliableResourceStatus != null) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return true if the download was interrupted or canceled
+     */
+    protected boolean isStopped() {
+        return interruptDownload || cancelDownload;
+    }
+
+    protected void setReliableResourceStatus(ReliableResourceStatus reliableResourceStatus) {
+        this.reliableResourceStatus = reliableResourceStatus;
+    }
 }
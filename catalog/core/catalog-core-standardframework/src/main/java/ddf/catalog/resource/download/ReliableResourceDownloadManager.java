@@ -14,9 +14,17 @@
 package ddf.catalog.resource.download;
 
 import java.io.IOException;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.commons.lang.StringUtils;
@@ -25,6 +33,7 @@
 
 import com.google.common.base.Stopwatch;
 
+import ddf.catalog.cache.impl.CacheKey;
 import ddf.catalog.cache.impl.ResourceCache;
 import ddf.catalog.data.Metacard;
 import ddf.catalog.event.retrievestatus.DownloadStatusInfo;
@@ -34,8 +43,11 @@
 import ddf.catalog.operation.ResourceRequest;
 import ddf.catalog.operation.ResourceResponse;
 import ddf.catalog.operation.impl.ResourceResponseImpl;
+import ddf.catalog.resource.Resource;
 import ddf.catalog.resource.ResourceNotFoundException;
 import ddf.catalog.resource.ResourceNotSupportedException;
+import ddf.catalog.resource.data.ReliableResource;
+import ddf.catalog.resource.impl.ResourceImpl;
 import ddf.catalog.resourceretriever.ResourceRetriever;
 
 /**
@@ -61,6 +73,11 @@ public class ReliableResourceDownloadManager {
 
     private ReliableResourceDownloaderConfig downloaderConfig = new ReliableResourceDownloaderConfig();
 
+    // Downloads being started, keyed by cache key. Each completes with its pending cache entry,
+    // or null if it does not cache the product.
+    private final ConcurrentMap<String, CompletableFuture<ReliableResource>> startingDownloads =
+            new ConcurrentHashMap<>();
+
     /**
      * @param resourceCache
      *            reference to the @ResourceCache to cache the resource in
@@ -121,29 +138,62 @@ public ResourceResponse download(ResourceRequest resourceRequest, Metacard metac
             throw new DownloadException("Cannot download resource if request is null");
         }
 
-        try {
-            resourceResponse = retriever.retrieveResource();
-        } catch (ResourceNotFoundException | ResourceNotSupportedException | IOException e) {
-            throw new DownloadException("Cannot download resource", e);
-        }
-
-        resourceResponse.getProperties().put(Metacard.ID, metacard.getId());
-        // Sources do not create ResourceResponses with the original ResourceRequest, hence
-        // it is added here because it will be needed for caching
-        resourceResponse = new ResourceResponseImpl(resourceRequest,
-                resourceResponse.getProperties(), resourceResponse.getResource());
+        /*
+         * Only one request for a product starts downloading it at a time. The others wait for it
+         * to start and then read the product from the cache file it writes.
+         */
+        String cacheKey = getSharedCacheKey(resourceRequest, metacard);
+        CompletableFuture<ReliableResource> started = null;
+        if (cacheKey != null) {
+            CompletableFuture<ReliableResource> starting = new CompletableFuture<>();
+            CompletableFuture<ReliableResource> otherStarting = startingDownloads
+                    .putIfAbsent(cacheKey, starting);
+            ReliableResource pendingResource;
+            if (otherStarting == null) {
+                started = starting;
+                pendingResource = downloaderConfig.getResourceCache()
+                        .getPendingCacheEntry(cacheKey);
+            } else {
+                pendingResource = waitForPendingResource(otherStarting, cacheKey);
+            }
 
-        // TODO - this should be before retrieveResource() but eventPublisher requires a
-        // resourceResponse and that resource response must have a resource request in it (to get
-        // USER property)
-        eventPublisher
-                .postRetrievalStatus(resourceResponse, ProductRetrievalStatus.STARTED, metacard,
-                        null, 0L, downloadIdentifier);
+            if (pendingResource != null) {
+                completeStart(cacheKey, started, pendingResource);
+                return getPendingResourceResponse(resourceRequest, metacard, pendingResource);
+            }
+        }
 
         AtomicBoolean downloadStarted = new AtomicBoolean(Boolean.FALSE);
-        ReliableResourceDownloader downloader = new ReliableResourceDownloader(downloaderConfig,
-                downloadStarted, downloadIdentifier, resourceResponse, retriever);
-        resourceResponse = downloader.setupDownload(metacard, downloadStatusInfo);
+        ReliableResourceDownloader downloader;
+        try {
+            try {
+                resourceResponse = retriever.retrieveResource();
+            } catch (ResourceNotFoundException | ResourceNotSupportedException | IOException e) {
+                throw new DownloadException("Cannot download resource", e);
+            }
+
+            resourceResponse.getProperties().put(Metacard.ID, metacard.getId());
+            // Sources do not create ResourceResponses with the original ResourceRequest, hence
+            // it is added here because it will be needed for caching
+            resourceResponse = new ResourceResponseImpl(resourceRequest,
+                    resourceResponse.getProperties(), resourceResponse.getResource());
+
+            // TODO - this should be before retrieveResource() but eventPublisher requires a
+            // resourceResponse and that resource response must have a resource request in it (to
+            // get USER property)
+            eventPublisher
+                    .postRetrievalStatus(resourceResponse, ProductRetrievalStatus.STARTED, metacard,
+                            null, 0L, downloadIdentifier);
+
+            downloader = new ReliableResourceDownloader(downloaderConfig, downloadStarted,
+                    downloadIdentifier, resourceResponse, retriever);
+            resourceResponse = downloader.setupDownload(metacard, downloadStatusInfo);
+            completeStart(cacheKey, started, downloader.getPendingResource());
+        } finally {
+            // Lets the requests waiting for this download retrieve the product themselves if it
+            // could not be started
+            completeStart(cacheKey, started, null);
+        }
 
         // Start download in separate thread so can return ResourceResponse with
         // ReliableResourceInputStream available for client to start reading from
@@ -168,6 +218,78 @@ public ResourceResponse download(ResourceRequest resourceRequest, Metacard metac
         return resourceResponse;
     }
 
+    /**
+     * @return the key of the product in the cache if downloads of it can be shared, {@code null}
+     * if caching is disabled or the request is for a range of the product
+     */
+    private String getSharedCacheKey(ResourceRequest resourceRequest, Metacard metacard) {
+        if (!downloaderConfig.isCacheEnabled() || downloaderConfig.getResourceCache() == null
+                || ResourceRetriever.isRangeRequest(resourceRequest)) {
+            return null;
+        }
+
+        try {
+            return new CacheKey(metacard, resourceRequest).generateKey();
+        } catch (Exception e) {
+            LOGGER.debug("Cannot create cache key for resource with metacard ID = {}",
+                    metacard.getId(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Waits for another request to start downloading a product, for up to the retrieval monitor
+     * period, i.e., as long as a started retrieval may go without progress.
+     *
+     * @return the pending cache entry the other download writes to, {@code null} if it does not
+     * cache the product or did not start in time
+     */
+    private ReliableResource waitForPendingResource(
+            CompletableFuture<ReliableResource> otherStarting, String cacheKey)
+            throws DownloadException {
+        LOGGER.debug("Waiting for the download of product with key = {} to start", cacheKey);
+        try {
+            return otherStarting
+                    .get(downloaderConfig.getMonitorPeriodMS(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DownloadException("Interrupted while waiting for download to start", e);
+        } catch (ExecutionException e) {
+            return null;
+        } catch (TimeoutException e) {
+            LOGGER.debug("Download of product with key = {} did not start within {} ms,"
+                    + " retrieving it directly", cacheKey, downloaderConfig.getMonitorPeriodMS());
+            return null;
+        }
+    }
+
+    /**
+     * Releases the requests waiting for this request to start downloading a product. Does
+     * nothing if this request is not the one starting the download or has already released them.
+     */
+    private void completeStart(String cacheKey, CompletableFuture<ReliableResource> started,
+            ReliableResource pendingResource) {
+        if (started != null && started.complete(pendingResource)) {
+            startingDownloads.remove(cacheKey, started);
+        }
+    }
+
+    /**
+     * Returns a {@link ResourceResponse} reading the product from the cache file being written by
+     * another download of the same product, so that simultaneous requests for a product share a
+     * single retrieval from its source.
+     */
+    private ResourceResponse getPendingResourceResponse(ResourceRequest resourceRequest,
+            Metacard metacard, ReliableResource pendingResource) {
+        LOGGER.debug("Reading product being cached with key = {}", pendingResource.getKey());
+        Map<String, Serializable> properties = new HashMap<>();
+        properties.put(Metacard.ID, metacard.getId());
+        Resource resource = new ResourceImpl(
+                new PendingCacheInputStream(downloaderConfig.getResourceCache(), pendingResource),
+                pendingResource.getMimeType(), pendingResource.getName());
+        return new ResourceResponseImpl(resourceRequest, properties, resource);
+    }
+
     public void setMaxRetryAttempts(int maxRetryAttempts) {
         downloaderConfig.setMaxRetryAttempts(maxRetryAttempts);
     }
@@ -195,4 +317,13 @@ public void setCacheWhenCanceled(boolean cacheWhenCanceled) {
     public void setChunkSize(int chunkSize) {
         downloaderConfig.setChunkSize(chunkSize);
     }
+
+    public void setSegmentCount(int segmentCount) {
+        downloaderConfig.setSegmentCount(segmentCount);
+    }
+
+    public void setMinSegmentedSizeMegabytes(long minSegmentedSize) {
+        downloaderConfig
+                .setMinSegmentedSize(minSegmentedSize * ReliableResourceDownloaderConfig.MB);
+    }
 }
@@ -59,6 +59,13 @@ public class ReliableResourceDownloader implements Runnable {
 
     public static final String BYTES_SKIPPED = "BytesSkipped";
 
+    /**
+     * Response property set by the resource readers when the source returned only the requested
+     * range of the product, rather than the whole product with the bytes outside the range
+     * discarded.
+     */
+    public static final String RANGE_RETRIEVED = "RangeRetrieved";
+
     private static final Logger LOGGER = LoggerFactory.getLogger(ReliableResourceDownloader.class);
 
     private static final int DEFAULT_FILE_BACKED_OUTPUT_STREAM_THRESHOLD =
@@ -106,6 +113,8 @@ public class ReliableResourceDownloader implements Runnable {
 
     private ResourceRetriever retriever;
 
+    private long resourceSize;
+
     /**
      * Only set to true if cacheEnabled is true *AND* product being downloaded is not already
      * pending caching, e.g., another client has already started downloading and caching it.
@@ -156,11 +165,14 @@ public ResourceResponse setupDownload(Metacard metacard,
 
         // Get handle to retrieved product's InputStream
         resourceInputStream = resource.getInputStream();
+        resourceSize = resource.getSize();
 
         eventListener.setDownloadMap(downloadIdentifier, resourceResponse);
         downloadStatusInfo.addDownloadInfo(downloadIdentifier, this, resourceResponse);
 
-        if (downloaderConfig.isCacheEnabled()) {
+        // The cache only holds whole products, which downloads of a range do not retrieve
+        if (downloaderConfig.isCacheEnabled()
+                && !ResourceRetriever.isRangeRequest(resourceResponse.getRequest())) {
             CacheKey keyMaker = new CacheKey(metacard, resourceResponse.getRequest());
             String key = null;
             try {
@@ -169,27 +181,34 @@ public ResourceResponse setupDownload(Metacard metacard,
                 LOGGER.info("Cannot create cache key for resource with metacard ID = {}",
                         metacard.getId());
             }
-            if (key != null && !resourceCache.isPending(key)) {
+            if (key != null) {
 
                 // Fully qualified path to cache file that will be written to.
                 // Example:
                 // <INSTALL-DIR>/data/product-cache/<source-id>-<metacard-id>
                 // <INSTALL-DIR>/data/product-cache/ddf.distribution-abc123
-                filePath = FilenameUtils.concat(resourceCache.getProductCacheDirectory(), key);
-                reliableResource = new ReliableResource(key, filePath, mimeType, resourceName,
-                        metacard);
-                resourceCache.addPendingCacheEntry(reliableResource);
-
-                try {
-                    fos = FileUtils.openOutputStream(new File(filePath));
-                    doCaching = true;
-                    this.downloadState.setCacheEnabled(true);
-                } catch (IOException e) {
-                    LOGGER.info("Unable to open cache file {} - no caching will be done.",
-                            filePath);
+                String cacheFilePath = FilenameUtils
+                        .concat(resourceCache.getProductCacheDirectory(), key);
+                ReliableResource pendingResource = new ReliableResource(key, cacheFilePath,
+                        mimeType, resourceName, metacard);
+
+                // Only one of the downloads of the same product started at the same time gets
+                // to cache it; the others just stream it to their client
+                if (resourceCache.addPendingCacheEntry(pendingResource)) {
+                    filePath = cacheFilePath;
+                    reliableResource = pendingResource;
+                    try {
+                        fos = new CacheFileOutputStream(new File(filePath), pendingResource);
+                        doCaching = true;
+                        this.downloadState.setCacheEnabled(true);
+                    } catch (IOException e) {
+                        LOGGER.info("Unable to open cache file {} - no caching will be done.",
+                                filePath);
+                        resourceCache.removePendingCacheEntry(key);
+                    }
+                } else {
+                    LOGGER.debug("Cache key {} is already pending caching", key);
                 }
-            } else {
-                LOGGER.debug("Cache key {} is already pending caching", key);
             }
         }
 
@@ -203,8 +222,7 @@ public void run() {
         int retryAttempts = 0;
 
         try {
-            reliableResourceCallable = new ReliableResourceCallable(resourceInputStream,
-                    countingFbos, fos, downloaderConfig.getChunkSize(), lock);
+            reliableResourceCallable = createInitialCallable();
             downloadFuture = null;
             ResourceRetrievalMonitor resourceRetrievalMonitor = null;
             this.downloadState.setDownloadState(DownloadManagerState.DownloadState.IN_PROGRESS);
@@ -267,6 +285,12 @@ public void run() {
                         .equals(reliableResourceStatus.getDownloadStatus())) {
                     LOGGER.debug("Cancelling resourceRetrievalMonitor");
                     resourceRetrievalMonitor.cancel();
+                    if (reliableResourceCallable instanceof SegmentedResourceCallable) {
+                        // Only the first segment was read from the product InputStream - do not
+                        // close it, since closing it can read the rest of the product (see the
+                        // handling of interrupts below)
+                        resourceInputStream = null;
+                    }
                     if (downloadState.getDownloadState() != DownloadState.CANCELED) {
                         LOGGER.debug("Sending Product Retrieval Complete event");
                         eventPublisher.postRetrievalStatus(resourceResponse,
@@ -296,6 +320,17 @@ public void run() {
                 } else {
                     bytesRead = reliableResourceStatus.getBytesRead();
                     LOGGER.debug("Download not complete, only read {} bytes", bytesRead);
+
+                    if (reliableResourceCallable instanceof SegmentedResourceCallable
+                            && isResumedFromResourceInputStream(reliableResourceStatus)) {
+                        // The segments were read from their own InputStreams, so the product
+                        // InputStream is not positioned after the bytes read - get a new one
+                        resourceInputStream = null;
+                        if (retrieveResource(bytesRead) == null) {
+                            reliableResourceStatus = new ReliableResourceStatus(
+                                    DownloadStatus.PRODUCT_INPUT_STREAM_EXCEPTION, bytesRead);
+                        }
+                    }
                     if (fos != null) {
                         fos.flush();
                     }
@@ -449,6 +484,57 @@ public void run() {
         }
     }
 
+    private ReliableResourceCallable createInitialCallable() {
+        if (isSegmentable()) {
+            try {
+                File segmentsFile = doCaching ?
+                        new File(filePath + SegmentedResourceCallable.SEGMENTS_FILE_EXTENSION) :
+                        File.createTempFile("product-",
+                                SegmentedResourceCallable.SEGMENTS_FILE_EXTENSION);
+                LOGGER.debug("Downloading {} bytes in {} segments", resourceSize,
+                        downloaderConfig.getSegmentCount());
+                return new SegmentedResourceCallable(resourceInputStream, countingFbos, fos,
+                        retriever, segmentsFile, resourceSize, downloaderConfig.getSegmentCount(),
+                        downloaderConfig.getChunkSize(), downloaderConfig.getMaxRetryAttempts(),
+                        lock);
+            } catch (IOException e) {
+                LOGGER.info("Unable to create segments file - downloading as a single stream",
+                        e);
+            }
+        }
+
+        return new ReliableResourceCallable(resourceInputStream, countingFbos, fos,
+                downloaderConfig.getChunkSize(), lock);
+    }
+
+    /**
+     * Only products of known size, requested from their start to their end, are downloaded in
+     * segments.
+     */
+    private boolean isSegmentable() {
+        if (downloaderConfig.getSegmentCount() <= 1 || resourceSize <= 0
+                || resourceSize < downloaderConfig.getMinSegmentedSize()) {
+            return false;
+        }
+
+        if (resourceResponse.containsPropertyName(BYTES_SKIPPED)) {
+            return false;
+        }
+
+        return !ResourceRetriever.isRangeRequest(resourceResponse.getRequest());
+    }
+
+    /**
+     * @return true if the download is resumed by reading the rest of the product InputStream
+     * after the given status, rather than by retrieving the product again
+     */
+    private boolean isResumedFromResourceInputStream(ReliableResourceStatus status) {
+        return DownloadStatus.CACHED_FILE_OUTPUT_STREAM_EXCEPTION.equals(status.getDownloadStatus())
+                || DownloadStatus.CLIENT_OUTPUT_STREAM_EXCEPTION.equals(status.getDownloadStatus())
+                || (DownloadStatus.RESOURCE_DOWNLOAD_CANCELED.equals(status.getDownloadStatus())
+                && doCaching && downloaderConfig.isCacheWhenCanceled());
+    }
+
     private ReliableResourceCallable retrieveResource(long bytesRead) {
 
         ReliableResourceCallable reliableResourceCallable = null;
@@ -587,6 +673,14 @@ public ResourceResponse getResourceResponse() {
         return resourceResponse;
     }
 
+    /**
+     * @return the pending cache entry this download writes to, {@code null} if it does not cache
+     * the resource
+     */
+    public ReliableResource getPendingResource() {
+        return doCaching ? reliableResource : null;
+    }
+
     @VisibleForTesting
     void setFileOutputStream(FileOutputStream fos) {
         this.fos = fos;
@@ -596,4 +690,44 @@ void setFileOutputStream(FileOutputStream fos) {
     void setCountingOutputStream(CountingOutputStream countingFbos) {
         this.countingFbos = countingFbos;
     }
+
+    /**
+     * The @FileOutputStream the resource is cached to, which signals each write to the pending
+     * cache entry so that the clients reading the cache file wake up as soon as there is more to
+     * read.
+     */
+    private static class CacheFileOutputStream extends FileOutputStream {
+
+        private final ReliableResource pendingResource;
+
+        CacheFileOutputStream(File file, ReliableResource pendingResource) throws IOException {
+            super(createParentDirectory(file));
+            this.pendingResource = pendingResource;
+        }
+
+        private static File createParentDirectory(File file) throws IOException {
+            if (file.getParentFile() != null) {
+                FileUtils.forceMkdir(file.getParentFile());
+            }
+            return file;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            super.write(b);
+            pendingResource.notifyProgress();
+        }
+
+        @Override
+        public void write(byte[] b) throws IOException {
+            super.write(b);
+            pendingResource.notifyProgress();
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            super.write(b, off, len);
+            pendingResource.notifyProgress();
+        }
+    }
 }
@@ -45,6 +45,10 @@ public class ReliableResourceDownloaderConfig {
 
     private int chunkSize = DEFAULT_CHUNK_SIZE;
 
+    private int segmentCount = 1;
+
+    private long minSegmentedSize = 100 * MB;
+
     public int getChunkSize() {
         return chunkSize;
     }
@@ -53,6 +57,22 @@ public void setChunkSize(int chunkSize) {
         this.chunkSize = chunkSize;
     }
 
+    public int getSegmentCount() {
+        return segmentCount;
+    }
+
+    public void setSegmentCount(int segmentCount) {
+        this.segmentCount = segmentCount;
+    }
+
+    public long getMinSegmentedSize() {
+        return minSegmentedSize;
+    }
+
+    public void setMinSegmentedSize(long minSegmentedSize) {
+        this.minSegmentedSize = minSegmentedSize;
+    }
+
     public int getMonitorInitialDelayMS() {
         return monitorInitialDelayMS;
     }
@@ -0,0 +1,331 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package ddf.catalog.resource.download;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.io.CountingOutputStream;
+
+import ddf.catalog.operation.ResourceResponse;
+import ddf.catalog.resource.ResourceNotFoundException;
+import ddf.catalog.resource.ResourceNotSupportedException;
+import ddf.catalog.resourceretriever.ResourceRetriever;
+
+/**
+ * SegmentedResourceCallable downloads a product of known size as several byte ranges (segments)
+ * at once, each over its own connection to the Source, instead of reading a single
+ * @InputStream. Segments are written in place into a segments file, preallocated to the size of
+ * the product, and the bytes are copied from there, in order, to the @FileBackedOutputStream read
+ * by the client and to the cache file as soon as all the bytes before them have been received.
+ * The client and the cache file therefore see the same sequential stream as with a
+ * @ReliableResourceCallable, and the first bytes reach the client as soon as the first segment
+ * starts to come in.
+ * <p/>
+ * The first segment is read from the @InputStream of the original product retrieval. Each
+ * segment that fails is retrieved again from where it stopped, up to the maximum number of
+ * retry attempts. If a segment still fails, or the Source ignores the requested range, a
+ * PRODUCT_INPUT_STREAM_EXCEPTION status is returned with the number of bytes already copied in
+ * order, so that the @ReliableResourceDownloader resumes the download from there as a single
+ * stream.
+ */
+public class SegmentedResourceCallable extends ReliableResourceCallable {
+
+    static final String SEGMENTS_FILE_EXTENSION = ".segments";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SegmentedResourceCallable.class);
+
+    private static final long PROGRESS_WAIT_MS = 100;
+
+    private final Object progress = new Object();
+
+    private final InputStream input;
+
+    private final ResourceRetriever retriever;
+
+    private final File segmentsFile;
+
+    private final long resourceSize;
+
+    private final int segmentCount;
+
+    private final int chunkSize;
+
+    private final int maxRetryAttempts;
+
+    private FileChannel segmentsChannel;
+
+    /**
+     * @param input            the product @InputStream of the original retrieval, read for the
+     *                         first segment
+     * @param countingFbos     the FileBackedOutputStream read by the client, or null
+     * @param fos              the @FileOutputStream that the cached product is written to, or null
+     * @param retriever        the @ResourceRetriever used to retrieve the ranges of the product
+     * @param segmentsFile     the file the segments are written to, deleted once done
+     * @param resourceSize     the size of the product, in bytes
+     * @param segmentCount     the number of segments to download at once
+     * @param chunkSize        the number of bytes to read and write at a time
+     * @param maxRetryAttempts the maximum number of attempts to retrieve each segment
+     * @param lock             the lock held while writing to the output streams
+     */
+    public SegmentedResourceCallable(InputStream input, CountingOutputStream countingFbos,
+            FileOutputStream fos, ResourceRetriever retriever, File segmentsFile,
+            long resourceSize, int segmentCount, int chunkSize, int maxRetryAttempts,
+            Object lock) {
+        super(input, countingFbos, fos, chunkSize, lock);
+        this.input = input;
+        this.retriever = retriever;
+        this.segmentsFile = segmentsFile;
+        this.resourceSize = resourceSize;
+        this.segmentCount = segmentCount;
+        this.chunkSize = chunkSize;
+        this.maxRetryAttempts = maxRetryAttempts;
+    }
+
+    @Override
+    public ReliableResourceStatus call() {
+        List<Segment> segments = createSegments();
+        ExecutorService segmentExecutor = Executors.newFixedThreadPool(segments.size());
+        RandomAccessFile randomAccessFile = null;
+
+        try {
+            randomAccessFile = new RandomAccessFile(segmentsFile, "rw");
+            randomAccessFile.setLength(resourceSize);
+            segmentsChannel = randomAccessFile.getChannel();
+
+            LOGGER.debug("Downloading {} bytes in {} segments", resourceSize, segments.size());
+            for (Segment segment : segments) {
+                segmentExecutor.execute(segment);
+            }
+
+            return copyInOrder(segments);
+        } catch (IOException e) {
+            LOGGER.info("Unable to write or read segments file {}", segmentsFile, e);
+            setReliableResourceStatus(
+                    new ReliableResourceStatus(DownloadStatus.PRODUCT_INPUT_STREAM_EXCEPTION,
+                            getBytesRead()));
+            return getReliableResourceStatus();
+        } finally {
+            segmentExecutor.shutdownNow();
+            IOUtils.closeQuietly(randomAccessFile);
+            FileUtils.deleteQuietly(segmentsFile);
+        }
+    }
+
+    private List<Segment> createSegments() {
+        List<Segment> segments = new ArrayList<>(segmentCount);
+        long segmentSize = (resourceSize + segmentCount - 1) / segmentCount;
+        for (long start = 0; start < resourceSize; start += segmentSize) {
+            segments.add(new Segment(start, Math.min(start + segmentSize, resourceSize),
+                    start == 0 ? input : null));
+        }
+        return segments;
+    }
+
+    private ReliableResourceStatus copyInOrder(List<Segment> segments) throws IOException {
+        byte[] buffer = new byte[chunkSize];
+
+        while (!isStopped() && !Thread.interrupted()) {
+            long bytesRead = getBytesRead();
+            if (bytesRead >= resourceSize) {
+                LOGGER.debug("All segments downloaded successfully");
+                setReliableResourceStatus(
+                        new ReliableResourceStatus(DownloadStatus.RESOURCE_DOWNLOAD_COMPLETE,
+                                bytesRead));
+                getReliableResourceStatus().setMessage("Download completed successfully");
+                return getReliableResourceStatus();
+            }
+
+            long available = getContiguousBytes(segments);
+            if (available > bytesRead) {
+                int n = segmentsChannel.read(
+                        ByteBuffer.wrap(buffer, 0, (int) Math.min(buffer.length,
+                                available - bytesRead)), bytesRead);
+                if (!writeChunk(buffer, n)) {
+                    return getReliableResourceStatus();
+                }
+                continue;
+            }
+
+            // Segments after a failed one are still copied until the failed one is reached, so
+            // that the download resumes from as far as possible
+            Segment nextSegment = getFirstIncompleteSegment(segments);
+            if (nextSegment != null && nextSegment.failed
+                    && getContiguousBytes(segments) == bytesRead) {
+                LOGGER.info("Unable to download segment starting at byte {} - bytesRead = {}",
+                        nextSegment.start, bytesRead);
+                setReliableResourceStatus(new ReliableResourceStatus(
+                        DownloadStatus.PRODUCT_INPUT_STREAM_EXCEPTION, bytesRead));
+                return getReliableResourceStatus();
+            }
+
+            synchronized (progress) {
+                if (getContiguousBytes(segments) == available) {
+                    try {
+                        progress.wait(PROGRESS_WAIT_MS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        }
+
+        return getReliableResourceStatus();
+    }
+
+    /**
+     * @return the number of bytes from the start of the product that have all been received
+     */
+    private long getContiguousBytes(List<Segment> segments) {
+        Segment segment = getFirstIncompleteSegment(segments);
+        return segment == null ? resourceSize : segment.start + segment.bytesWritten.get();
+    }
+
+    private Segment getFirstIncompleteSegment(List<Segment> segments) {
+        for (Segment segment : segments) {
+            if (!segment.isComplete()) {
+                return segment;
+            }
+        }
+        return null;
+    }
+
+    private void signalProgress() {
+        synchronized (progress) {
+            progress.notifyAll();
+        }
+    }
+
+    /**
+     * Downloads the bytes from start (inclusive) to end (exclusive) of the product.
+     */
+    private class Segment implements Runnable {
+
+        private final long start;
+
+        private final long end;
+
+        private final AtomicLong bytesWritten = new AtomicLong(0);
+
+        private InputStream segmentInput;
+
+        private volatile boolean failed = false;
+
+        Segment(long start, long end, InputStream segmentInput) {
+            this.start = start;
+            this.end = end;
+            this.segmentInput = segmentInput;
+        }
+
+        boolean isComplete() {
+            return bytesWritten.get() >= end - start;
+        }
+
+        @Override
+        public void run() {
+            byte[] buffer = new byte[chunkSize];
+            int attempts = 0;
+
+            try {
+                while (!isComplete() && !isStopped() && !Thread.currentThread().isInterrupted()) {
+                    attempts++;
+                    InputStream in = null;
+                    try {
+                        if (segmentInput != null) {
+                            // The original product InputStream is closed by the downloader,
+                            // since closing it here could read the rest of the product
+                            in = segmentInput;
+                            segmentInput = null;
+                        } else {
+                            in = retrieveRange(start + bytesWritten.get());
+                            if (in == null) {
+                                break;
+                            }
+                        }
+                        readInto(in, buffer);
+                    } catch (IOException | ResourceNotFoundException
+                            | ResourceNotSupportedException e) {
+                        LOGGER.debug("Attempt {} to download segment starting at byte {} failed",
+                                attempts, start, e);
+                        if (attempts >= maxRetryAttempts) {
+                            break;
+                        }
+                    } finally {
+                        if (in != input) {
+                            IOUtils.closeQuietly(in);
+                        }
+                    }
+                }
+            } catch (RuntimeException e) {
+                LOGGER.info("Download of segment starting at byte {} failed", start, e);
+            } finally {
+                // Always signal, so that the reader copying the segments in order does not wait
+                // for this segment forever
+                if (!isComplete()) {
+                    failed = true;
+                }
+                signalProgress();
+            }
+        }
+
+        private InputStream retrieveRange(long offset)
+                throws IOException, ResourceNotFoundException, ResourceNotSupportedException {
+            ResourceResponse response = retriever.retrieveResource(offset, end - 1);
+            InputStream in = response.getResource().getInputStream();
+            // A source that sends the whole product for every range would transfer it once per
+            // segment, so the product is downloaded as a single stream instead
+            if (!Boolean.TRUE.equals(
+                    response.getPropertyValue(ReliableResourceDownloader.RANGE_RETRIEVED))) {
+                LOGGER.info("Source did not retrieve the range starting at byte {}", offset);
+                IOUtils.closeQuietly(in);
+                return null;
+            }
+            return in;
+        }
+
+        private void readInto(InputStream in, byte[] buffer) throws IOException {
+            while (!isComplete() && !isStopped()) {
+                long remaining = end - start - bytesWritten.get();
+                int n = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (n == -1) {
+                    throw new IOException(
+                            "Product InputStream ended before the end of the segment");
+                }
+
+                ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, n);
+                long position = start + bytesWritten.get();
+                while (byteBuffer.hasRemaining()) {
+                    position += segmentsChannel.write(byteBuffer, position);
+                }
+                bytesWritten.addAndGet(n);
+                signalProgress();
+            }
+        }
+    }
+}
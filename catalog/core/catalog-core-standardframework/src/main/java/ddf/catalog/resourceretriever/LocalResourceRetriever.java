@@ -16,7 +16,6 @@
 import java.io.IOException;
 import java.io.Serializable;
 import java.net.URI;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -52,6 +51,12 @@ public ResourceResponse retrieveResource() throws ResourceNotFoundException {
 
     @Override
     public ResourceResponse retrieveResource(long bytesToSkip) throws ResourceNotFoundException {
+        return retrieveResource(bytesToSkip, -1);
+    }
+
+    @Override
+    public ResourceResponse retrieveResource(long bytesToSkip, long rangeEnd)
+            throws ResourceNotFoundException {
         final String methodName = "retrieveResource";
         LOGGER.trace("ENTERING: {}", methodName);
         ResourceResponse resource = null;
@@ -60,11 +65,8 @@ public ResourceResponse retrieveResource(long bytesToSkip) throws ResourceNotFou
             throw new ResourceNotFoundException("Unable to find resource due to null URI");
         }
 
-        Map<String, Serializable> props = new HashMap<String, Serializable>(properties);
-
-        if (bytesToSkip > 0) {
-            props.put(BYTES_TO_SKIP, new Long(bytesToSkip));
-        }
+        Map<String, Serializable> props = ResourceRetriever
+                .getPropertiesToSkip(properties, bytesToSkip, rangeEnd);
 
         for (ResourceReader reader : resourceReaders) {
             if (reader != null) {
@@ -16,7 +16,6 @@
 import java.io.IOException;
 import java.io.Serializable;
 import java.net.URI;
-import java.util.HashMap;
 import java.util.Map;
 
 import ddf.catalog.operation.ResourceResponse;
@@ -52,18 +51,20 @@ public ResourceResponse retrieveResource()
     @Override
     public ResourceResponse retrieveResource(long bytesToSkip)
             throws ResourceNotFoundException, IOException, ResourceNotSupportedException {
+        return retrieveResource(bytesToSkip, -1);
+    }
+
+    @Override
+    public ResourceResponse retrieveResource(long bytesToSkip, long rangeEnd)
+            throws ResourceNotFoundException, IOException, ResourceNotSupportedException {
 
         if (resourceUri == null) {
             throw new ResourceNotFoundException(
                     "Cannot retrieve resource because resourceUri is null.");
         }
 
-        // Create a fresh HashMap so as not to disturb the existing properties if we need to add to them
-        Map<String, Serializable> props = new HashMap<String, Serializable>(properties);
-
-        if (bytesToSkip > 0) {
-            props.put(BYTES_TO_SKIP, new Long(bytesToSkip));
-        }
+        Map<String, Serializable> props = ResourceRetriever
+                .getPropertiesToSkip(properties, bytesToSkip, rangeEnd);
 
         return source.retrieveResource(resourceUri, props);
     }
@@ -14,7 +14,11 @@
 package ddf.catalog.resourceretriever;
 
 import java.io.IOException;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
 
+import ddf.catalog.operation.ResourceRequest;
 import ddf.catalog.operation.ResourceResponse;
 import ddf.catalog.resource.ResourceNotFoundException;
 import ddf.catalog.resource.ResourceNotSupportedException;
@@ -23,10 +27,84 @@ public interface ResourceRetriever {
 
     static final String BYTES_TO_SKIP = "BytesToSkip";
 
+    static final String RANGE_END = "RangeEnd";
+
     public ResourceResponse retrieveResource()
             throws ResourceNotFoundException, ResourceNotSupportedException, IOException;
 
+    /**
+     * Retrieves the resource again, e.g., to resume a download.
+     *
+     * @param bytesToSkip the number of bytes already retrieved, counted from the start of the
+     *                    range requested with the {@link #BYTES_TO_SKIP} property, if any
+     */
     public ResourceResponse retrieveResource(long bytesToSkip)
             throws ResourceNotFoundException, ResourceNotSupportedException, IOException;
 
+    /**
+     * Retrieves a range of the resource, e.g., to download it in several segments at once.
+     *
+     * @param bytesToSkip the offset of the first byte of the range, counted as for
+     *                    {@link #retrieveResource(long)}
+     * @param rangeEnd    the offset of the last byte of the range, inclusive, counted from the same
+     *                    start, or a negative value to retrieve up to the end of the resource
+     */
+    public ResourceResponse retrieveResource(long bytesToSkip, long rangeEnd)
+            throws ResourceNotFoundException, ResourceNotSupportedException, IOException;
+
+    /**
+     * @param request the request for a resource, may be {@code null}
+     * @return true if the request is for a range of the resource rather than the whole resource
+     */
+    static boolean isRangeRequest(ResourceRequest request) {
+        return request != null && (request.containsPropertyName(BYTES_TO_SKIP)
+                || request.containsPropertyName(RANGE_END));
+    }
+
+    /**
+     * Computes the properties to retrieve a resource with, after the given number of bytes.
+     *
+     * @param properties  the properties of the original request
+     * @param bytesToSkip the number of bytes already retrieved
+     * @return a copy of the properties, with {@link #BYTES_TO_SKIP} moved forward by
+     * {@code bytesToSkip}
+     */
+    static Map<String, Serializable> getPropertiesToSkip(Map<String, Serializable> properties,
+            long bytesToSkip) {
+        return getPropertiesToSkip(properties, bytesToSkip, -1);
+    }
+
+    /**
+     * Computes the properties to retrieve a range of a resource with.
+     *
+     * @param properties  the properties of the original request
+     * @param bytesToSkip the offset of the first byte of the range
+     * @param rangeEnd    the offset of the last byte of the range, inclusive, or a negative value
+     *                    to keep the end of the original request
+     * @return a copy of the properties, with {@link #BYTES_TO_SKIP} and {@link #RANGE_END} moved
+     * forward by the start of the range of the original request
+     */
+    static Map<String, Serializable> getPropertiesToSkip(Map<String, Serializable> properties,
+            long bytesToSkip, long rangeEnd) {
+        // Create a fresh HashMap so as not to disturb the existing properties
+        Map<String, Serializable> props = new HashMap<String, Serializable>(properties);
+
+        if (bytesToSkip > 0) {
+            long rangeStart = 0;
+            if (properties.get(BYTES_TO_SKIP) != null) {
+                rangeStart = Long.parseLong(properties.get(BYTES_TO_SKIP).toString());
+            }
+            props.put(BYTES_TO_SKIP, rangeStart + bytesToSkip);
+        }
+
+        if (rangeEnd >= 0) {
+            long rangeStart = 0;
+            if (properties.get(BYTES_TO_SKIP) != null) {
+                rangeStart = Long.parseLong(properties.get(BYTES_TO_SKIP).toString());
+            }
+            props.put(RANGE_END, rangeStart + rangeEnd);
+        }
+
+        return props;
+    }
 }
@@ -13,6 +13,7 @@
  */
 package ddf.catalog.cache;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
@@ -21,6 +22,7 @@
 import java.io.File;
 import java.io.IOException;
 import java.util.Collection;
+import java.util.concurrent.Executor;
 
 import javax.activation.MimeType;
 
@@ -65,6 +67,13 @@ public static void oneTimeSetup() {
                 workingDir + File.separator + ResourceCache.DEFAULT_PRODUCT_CACHE_DIRECTORY;
         hcInstanceFactory = new TestHazelcastInstanceFactory(10);
         listener = new ProductCacheDirListener<Object, Object>(15);
+        // Evict in the thread adding the entries so that the tests can check the cache right away
+        listener.setEvictionExecutor(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        });
     }
 
     @AfterClass
@@ -249,6 +258,66 @@ public void testCacheDirMaxSizePaging() throws IOException, InterruptedException
         verifyCached(cacheMap, rrKeyPrefix + indexOf125Bytes, oneTwentyFiveBytesFileName);
     }
 
+    @Test
+    public void testLeastRecentlyUsedEvicted() throws IOException, InterruptedException {
+        HazelcastInstance instance = initializeTestHazelcastInstance();
+        listener.setMaxDirSizeBytes(30);
+        listener.setHazelcastInstance(instance);
+        IMap<String, ReliableResource> cacheMap = instance.getMap(PRODUCT_CACHE_NAME);
+
+        String rrKeyPrefix = "rr";
+        String rr1FileNameBase = "10bytes.txt";
+        for (int i = 0; i < 3; i++) {
+            simulateAddFileToProductCache(rrKeyPrefix + i, rr1FileNameBase, i + rr1FileNameBase,
+                    cacheMap);
+        }
+
+        // rr0 was added first but was used since
+        listener.touch(rrKeyPrefix + 0);
+        simulateAddFileToProductCache(rrKeyPrefix + 3, rr1FileNameBase, 3 + rr1FileNameBase,
+                cacheMap);
+
+        verifyCached(cacheMap, rrKeyPrefix + 0, 0 + rr1FileNameBase);
+        verifyRemovedFromCache(cacheMap, rrKeyPrefix + 1, 1 + rr1FileNameBase);
+        verifyCached(cacheMap, rrKeyPrefix + 2, 2 + rr1FileNameBase);
+        verifyCached(cacheMap, rrKeyPrefix + 3, 3 + rr1FileNameBase);
+    }
+
+    @Test
+    public void testEvictionToLowWatermarkInBackground() throws IOException, InterruptedException {
+        HazelcastInstance instance = initializeTestHazelcastInstance();
+        ProductCacheDirListener<Object, Object> backgroundListener = new ProductCacheDirListener<Object, Object>(
+                40);
+        backgroundListener.setLowWatermarkPercent(50);
+        backgroundListener.setHazelcastInstance(instance);
+        IMap<String, ReliableResource> cacheMap = instance.getMap(PRODUCT_CACHE_NAME);
+
+        String rrKeyPrefix = "rr";
+        String rr1FileNameBase = "10bytes.txt";
+        try {
+            for (int i = 0; i < 5; i++) {
+                simulateAddFileToProductCache(backgroundListener, rrKeyPrefix + i,
+                        rr1FileNameBase, i + rr1FileNameBase, cacheMap);
+            }
+
+            for (int i = 0; i < 50 && backgroundListener.getCacheDirSizeBytes() > 20; i++) {
+                Thread.sleep(100);
+            }
+
+            // Evicted down to 50% of the max size, oldest first
+            for (int i = 0; i < 3; i++) {
+                verifyRemovedFromCache(cacheMap, rrKeyPrefix + i, i + rr1FileNameBase);
+            }
+            verifyCached(cacheMap, rrKeyPrefix + 3, 3 + rr1FileNameBase);
+            verifyCached(cacheMap, rrKeyPrefix + 4, 4 + rr1FileNameBase);
+            assertEquals(3, backgroundListener.getEvictionCount());
+            assertEquals(30, backgroundListener.getEvictedBytes());
+            assertEquals(2, backgroundListener.getEntryCount());
+        } finally {
+            backgroundListener.shutdown();
+        }
+    }
+
     @Test
     public void testCacheDirMaxSize0() throws IOException, InterruptedException {
         HazelcastInstance instance = initializeTestHazelcastInstance();
@@ -284,6 +353,12 @@ private HazelcastInstance initializeTestHazelcastInstance() {
 
     private ReliableResource simulateAddFileToProductCache(String key, String fileName,
             String destFileName, IMap<String, ReliableResource> cacheMap) throws IOException {
+        return simulateAddFileToProductCache(listener, key, fileName, destFileName, cacheMap);
+    }
+
+    private ReliableResource simulateAddFileToProductCache(
+            ProductCacheDirListener<Object, Object> listener, String key, String fileName,
+            String destFileName, IMap<String, ReliableResource> cacheMap) throws IOException {
         String productOriginalLocation =
                 System.getProperty("user.dir") + "/src/test/resources/" + fileName;
         File rrCachedFile = new File(productCacheDir + "/" + destFileName);
@@ -0,0 +1,62 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package ddf.catalog.cache.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.ObjectOutputStream;
+import java.util.Collections;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FileSystemPersistenceProviderTest {
+
+    private FileSystemPersistenceProvider provider;
+
+    private File storeDirectory;
+
+    @Before
+    public void setUp() {
+        provider = new FileSystemPersistenceProvider("persistence-provider-test");
+        storeDirectory = new File(provider.getMapStorePath());
+        assertTrue(storeDirectory.mkdirs());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(storeDirectory);
+    }
+
+    @Test
+    public void testOnlyImportedLegacyFilesDeleted() throws Exception {
+        File importedFile = new File(storeDirectory, "imported.ser");
+        ObjectOutputStream output = new ObjectOutputStream(new FileOutputStream(importedFile));
+        output.writeObject("value");
+        output.close();
+        File corruptFile = new File(storeDirectory, "corrupt.ser");
+        FileUtils.writeStringToFile(corruptFile, "not a serialized object");
+
+        assertEquals(Collections.singleton("imported"), provider.loadAllKeys());
+        assertEquals("value", provider.load("imported"));
+        assertFalse(importedFile.exists());
+        assertTrue(corruptFile.exists());
+    }
+}
@@ -15,6 +15,8 @@
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.mock;
@@ -27,6 +29,8 @@
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Map;
 
 import javax.activation.MimeType;
 import javax.activation.MimeTypeParseException;
@@ -44,6 +48,7 @@
 import com.hazelcast.core.HazelcastInstance;
 import com.hazelcast.core.IMap;
 
+import ddf.catalog.data.Metacard;
 import ddf.catalog.data.impl.MetacardImpl;
 import ddf.catalog.resource.Resource;
 import ddf.catalog.resource.data.ReliableResource;
@@ -159,6 +164,39 @@ public void testPutThenGet() throws CacheException, MimeTypeParseException, IOEx
         assertFalse(resourceCache.isPending(key));
     }
 
+    @Test
+    public void testAddPendingCacheEntryOnlyOnce() throws MimeTypeParseException {
+        String key = "ddf-1-abc123";
+        MetacardImpl metacard = new MetacardImpl();
+        ReliableResource reliableResource = new ReliableResource(key,
+                defaultProductCacheDirectory + File.separator + key, new MimeType(), "name",
+                metacard);
+        ReliableResource otherReliableResource = new ReliableResource(key,
+                defaultProductCacheDirectory + File.separator + key, new MimeType(), "name",
+                metacard);
+
+        assertTrue(resourceCache.addPendingCacheEntry(reliableResource));
+        assertFalse(resourceCache.addPendingCacheEntry(otherReliableResource));
+        assertSame(reliableResource, resourceCache.getPendingCacheEntry(key));
+
+        resourceCache.removePendingCacheEntry(key);
+        assertNull(resourceCache.getPendingCacheEntry(key));
+        assertTrue(resourceCache.addPendingCacheEntry(otherReliableResource));
+    }
+
+    @Test
+    public void testRemovePendingCacheEntryWakesUpReaders() throws Exception {
+        String key = "ddf-1-abc123";
+        ReliableResource reliableResource = new ReliableResource(key,
+                defaultProductCacheDirectory + File.separator + key, new MimeType(), "name",
+                new MetacardImpl());
+        resourceCache.addPendingCacheEntry(reliableResource);
+        long progress = reliableResource.getProgress();
+
+        resourceCache.removePendingCacheEntry(key);
+        assertTrue(reliableResource.awaitProgress(progress, 0));
+    }
+
     /**
      * Verifies that put() method works even if entry being added was never
      * in the pending cache list.
@@ -184,6 +222,43 @@ public void testPutThenGetNotPending()
                 resourceCache.getValid(key, metacard)));
     }
 
+    @Test
+    public void testPutThenGetAllValid()
+            throws CacheException, MimeTypeParseException, IOException {
+        String fileName = "15bytes.txt";
+        String productLocation = System.getProperty("user.dir") + "/src/test/resources/" + fileName;
+        File rrCachedFile = new File(productLocation);
+        String key = "ddf-1-abc123";
+        MetacardImpl metacard = new MetacardImpl();
+        ReliableResource reliableResource = new ReliableResource(key,
+                rrCachedFile.getAbsolutePath(), new MimeType(), fileName, metacard);
+        resourceCache.put(reliableResource);
+
+        Map<String, Metacard> latestMetacards = new HashMap<>();
+        latestMetacards.put(key, metacard);
+        latestMetacards.put("ddf-1-def456", new MetacardImpl());
+        Map<String, Resource> validResources = resourceCache.getAllValid(latestMetacards);
+
+        assertEquals(1, validResources.size());
+        assertTrue(assertReliableResourceEquals(reliableResource, validResources.get(key)));
+    }
+
+    @Test
+    public void testGetAllValidWhenNoProductInCacheDirectory() throws MimeTypeParseException {
+        String key = "ddf-1-abc123";
+        MetacardImpl metacard = new MetacardImpl();
+        ReliableResource reliableResource = new ReliableResource(key,
+                defaultProductCacheDirectory + File.separator + key, new MimeType(), "name",
+                metacard);
+        resourceCache.put(reliableResource);
+
+        Map<String, Metacard> latestMetacards = new HashMap<>();
+        latestMetacards.put(key, metacard);
+
+        assertTrue(resourceCache.getAllValid(latestMetacards).isEmpty());
+        assertFalse(resourceCache.containsValid(key, metacard));
+    }
+
     @Test(expected = Exception.class)
     public void testGetWhenNullKey() throws Exception, MimeTypeParseException, IOException {
         resourceCache.getValid(null, new MetacardImpl());
@@ -0,0 +1,162 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package ddf.catalog.cache.solr.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.opengis.filter.Filter;
+
+import ddf.catalog.data.Metacard;
+import ddf.catalog.data.Result;
+import ddf.catalog.data.impl.MetacardImpl;
+import ddf.catalog.data.impl.ResultImpl;
+import ddf.catalog.operation.QueryRequest;
+import ddf.catalog.operation.QueryResponse;
+import ddf.catalog.operation.SourceResponse;
+import ddf.catalog.operation.impl.QueryImpl;
+import ddf.catalog.operation.impl.QueryRequestImpl;
+import ddf.catalog.operation.impl.SourceResponseImpl;
+import ddf.catalog.plugin.PostFederatedQueryPlugin;
+import ddf.catalog.plugin.PreFederatedQueryPlugin;
+import ddf.catalog.source.Source;
+import ddf.catalog.source.UnsupportedQueryException;
+
+public class CachingFederationStrategyTest {
+
+    private static final long SLOW_QUERY_MILLIS = 10000;
+
+    private ExecutorService queryExecutor;
+
+    private CachingFederationStrategy strategy;
+
+    private QueryRequest queryRequest;
+
+    @Before
+    public void setUp() {
+        queryExecutor = Executors.newCachedThreadPool();
+        strategy = new CachingFederationStrategy(queryExecutor,
+                Collections.<PreFederatedQueryPlugin>emptyList(),
+                Collections.<PostFederatedQueryPlugin>emptyList(), mock(SolrCache.class),
+                mock(ExecutorService.class));
+        strategy.setSourceGroups(Arrays.asList("mirror1, mirror2", "other1,other2"));
+        strategy.setHedgeDelayMillis(100);
+
+        queryRequest = new QueryRequestImpl(
+                new QueryImpl(mock(Filter.class), 1, 10, null, false, 30000));
+    }
+
+    @After
+    public void tearDown() {
+        strategy.shutdown();
+        queryExecutor.shutdownNow();
+    }
+
+    @Test
+    public void testQueriesOneMirror() throws Exception {
+        Source mirror1 = mockSource("mirror1", 0, 3);
+        Source mirror2 = mockSource("mirror2", 0, 5);
+
+        QueryResponse response = strategy.federate(Arrays.asList(mirror1, mirror2), queryRequest);
+
+        assertEquals(3, response.getResults().size());
+        assertEquals(3, response.getHits());
+        verify(mirror2, never()).query(any(QueryRequest.class));
+    }
+
+    @Test
+    public void testHedgesSlowMirror() throws Exception {
+        Source mirror1 = mockSource("mirror1", SLOW_QUERY_MILLIS, 3);
+        Source mirror2 = mockSource("mirror2", 0, 5);
+
+        long start = System.currentTimeMillis();
+        QueryResponse response = strategy.federate(Arrays.asList(mirror1, mirror2), queryRequest);
+
+        assertEquals(5, response.getResults().size());
+        assertTrue(System.currentTimeMillis() - start < SLOW_QUERY_MILLIS);
+        verify(mirror1).query(any(QueryRequest.class));
+    }
+
+    @Test
+    public void testFailsOverToMirror() throws Exception {
+        Source mirror1 = mockSource("mirror1", 0, 3);
+        when(mirror1.query(any(QueryRequest.class)))
+                .thenThrow(new UnsupportedQueryException("failed"));
+        Source mirror2 = mockSource("mirror2", SLOW_QUERY_MILLIS / 20, 5);
+
+        QueryResponse response = strategy.federate(Arrays.asList(mirror1, mirror2), queryRequest);
+
+        assertEquals(5, response.getResults().size());
+        assertTrue(response.getProcessingDetails().isEmpty());
+    }
+
+    @Test
+    public void testQueriesOtherSources() throws Exception {
+        Source mirror1 = mockSource("mirror1", 0, 3);
+        Source mirror2 = mockSource("mirror2", 0, 3);
+        Source other1 = mockSource("other1", 0, 2);
+        Source source = mockSource("source", 0, 1);
+
+        QueryResponse response = strategy
+                .federate(Arrays.asList(mirror1, source, other1, mirror2), queryRequest);
+
+        assertEquals(6, response.getResults().size());
+        assertEquals(6, response.getHits());
+        verify(mirror2, never()).query(any(QueryRequest.class));
+        verify(other1).query(any(QueryRequest.class));
+        verify(source).query(any(QueryRequest.class));
+    }
+
+    private Source mockSource(String id, final long delayMillis, int resultCount)
+            throws Exception {
+        Source source = mock(Source.class);
+        when(source.getId()).thenReturn(id);
+
+        final Result[] results = new Result[resultCount];
+        for (int i = 0; i < resultCount; i++) {
+            Metacard metacard = new MetacardImpl();
+            metacard.setSourceId(id);
+            ResultImpl result = new ResultImpl(metacard);
+            result.setRelevanceScore(1.0);
+            results[i] = result;
+        }
+
+        when(source.query(any(QueryRequest.class))).thenAnswer(new Answer<SourceResponse>() {
+            @Override
+            public SourceResponse answer(InvocationOnMock invocation) throws Throwable {
+                Thread.sleep(delayMillis);
+                List<Result> resultList = Arrays.asList(results);
+                return new SourceResponseImpl((QueryRequest) invocation.getArguments()[0],
+                        resultList, (long) resultList.size());
+            }
+        });
+        return source;
+    }
+}
@@ -0,0 +1,53 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package ddf.catalog.cache.solr.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class FederationCursorTest {
+
+    @Test
+    public void newCursorStartsAtFirstResult() {
+        assertThat(new FederationCursor().getStartIndex("source")).isEqualTo(1);
+    }
+
+    @Test
+    public void advanceAccumulatesConsumedResults() {
+        Map<String, Integer> firstPage = new HashMap<>();
+        firstPage.put("source1", 7);
+        firstPage.put("source2", 3);
+
+        Map<String, Integer> secondPage = new HashMap<>();
+        secondPage.put("source1", 2);
+        secondPage.put("source3", 8);
+
+        FederationCursor cursor = new FederationCursor();
+        FederationCursor firstCursor = cursor.advance(firstPage);
+        FederationCursor secondCursor = firstCursor.advance(secondPage);
+
+        assertThat(secondCursor.getStartIndex("source1")).isEqualTo(10);
+        assertThat(secondCursor.getStartIndex("source2")).isEqualTo(4);
+        assertThat(secondCursor.getStartIndex("source3")).isEqualTo(9);
+
+        // Advancing does not modify the original cursors
+        assertThat(cursor.getStartIndex("source1")).isEqualTo(1);
+        assertThat(firstCursor.getStartIndex("source1")).isEqualTo(8);
+        assertThat(firstCursor.getStartIndex("source3")).isEqualTo(1);
+    }
+}
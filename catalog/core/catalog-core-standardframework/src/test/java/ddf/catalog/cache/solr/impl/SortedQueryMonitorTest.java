@@ -15,6 +15,7 @@
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.extractor.Extractors.byName;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyLong;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.mock;
@@ -36,6 +37,7 @@
 import org.assertj.core.util.Lists;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 
@@ -198,6 +200,38 @@ public Future answer(InvocationOnMock invocationOnMock) throws Throwable {
                         InterruptedException.class);
     }
 
+    @Test
+    public void cursorAdvancedPastReturnedResults() throws Exception {
+        when(query.getTimeoutMillis()).thenReturn(0L);
+        when(queryRequest.getQuery()).thenReturn(query);
+        when(cachingFederationStrategy.putCursor(any(FederationCursor.class)))
+                .thenReturn("next-page");
+
+        SortedQueryMonitor queryMonitor = new SortedQueryMonitor(cachingFederationStrategy,
+                completionService, futures, queryResponse, queryRequest, new FederationCursor());
+
+        final Iterator<Future<SourceResponse>> futureIter = getFutureIterator();
+        when(completionService.take()).thenAnswer(new Answer<Future>() {
+            @Override
+            public Future answer(InvocationOnMock invocationOnMock) throws Throwable {
+                return futureIter.next();
+            }
+        });
+        queryMonitor.run();
+
+        ArgumentCaptor<FederationCursor> cursorCaptor = ArgumentCaptor
+                .forClass(FederationCursor.class);
+        verify(cachingFederationStrategy).putCursor(cursorCaptor.capture());
+
+        FederationCursor nextCursor = cursorCaptor.getValue();
+        assertThat(nextCursor.getStartIndex("Source-0")).isEqualTo(1);
+        assertThat(nextCursor.getStartIndex("Source-1")).isEqualTo(4);
+        assertThat(nextCursor.getStartIndex("Source-2")).isEqualTo(2);
+        assertThat(nextCursor.getStartIndex("Source-3")).isEqualTo(1);
+        assertThat(queryResponse.getPropertyValue(CachingFederationStrategy.QUERY_CURSOR))
+                .isEqualTo("next-page");
+    }
+
     public Iterator<Future<SourceResponse>> getFutureIterator() {
         List<Future<SourceResponse>> futureKeys = new ArrayList<>();
         futureKeys.addAll(futures.keySet());
@@ -0,0 +1,250 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package ddf.catalog.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.isA;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import ddf.catalog.data.ContentType;
+import ddf.catalog.data.Metacard;
+import ddf.catalog.data.impl.MetacardImpl;
+import ddf.catalog.federation.FederationStrategy;
+import ddf.catalog.operation.CreateRequest;
+import ddf.catalog.operation.CreateResponse;
+import ddf.catalog.operation.impl.CreateRequestImpl;
+import ddf.catalog.operation.impl.CreateResponseImpl;
+import ddf.catalog.plugin.PostIngestPlugin;
+import ddf.catalog.plugin.PostQueryPlugin;
+import ddf.catalog.plugin.PostResourcePlugin;
+import ddf.catalog.plugin.PreIngestPlugin;
+import ddf.catalog.plugin.PreQueryPlugin;
+import ddf.catalog.plugin.PreResourcePlugin;
+import ddf.catalog.resource.ResourceReader;
+import ddf.catalog.source.CatalogProvider;
+import ddf.catalog.source.ConnectedSource;
+import ddf.catalog.source.FederatedSource;
+import ddf.catalog.source.IngestException;
+import ddf.catalog.source.Source;
+import ddf.catalog.util.impl.SourcePoller;
+
+public class AsyncIngestPipelineTest {
+
+    private MockMemoryProvider provider;
+
+    private PostIngestPlugin postIngestPlugin;
+
+    private CatalogFrameworkImpl framework;
+
+    private AsyncIngestPipeline pipeline;
+
+    @Before
+    public void setUp() {
+        provider = new MockMemoryProvider("Provider", "Provider", "v1.0", "DDF",
+                new HashSet<ContentType>(), true, new Date());
+        startPipeline(provider);
+    }
+
+    private void startPipeline(CatalogProvider catalogProvider) {
+        postIngestPlugin = mock(PostIngestPlugin.class);
+
+        SourcePoller mockPoller = mock(SourcePoller.class);
+        when(mockPoller.getCachedSource(isA(Source.class))).thenReturn(null);
+
+        framework = new CatalogFrameworkImpl(
+                Collections.singletonList(catalogProvider), null,
+                new ArrayList<PreIngestPlugin>(), Collections.singletonList(postIngestPlugin),
+                new ArrayList<PreQueryPlugin>(), new ArrayList<PostQueryPlugin>(),
+                new ArrayList<PreResourcePlugin>(), new ArrayList<PostResourcePlugin>(),
+                new ArrayList<ConnectedSource>(), new ArrayList<FederatedSource>(),
+                new ArrayList<ResourceReader>(), (FederationStrategy) null, null, null,
+                mockPoller, null, null, null);
+        framework.bind(catalogProvider);
+
+        pipeline = new AsyncIngestPipeline(framework);
+        pipeline.setMaxBatchDelayMillis(500);
+        pipeline.init();
+    }
+
+    @After
+    public void tearDown() {
+        pipeline.destroy();
+    }
+
+    @Test
+    public void testConcurrentCreatesAreBatched() throws Exception {
+        List<CompletableFuture<CreateResponse>> futures = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            futures.add(pipeline.createAsync(new CreateRequestImpl(metacards("title" + i, 2))));
+        }
+
+        for (int i = 0; i < 3; i++) {
+            CreateResponse response = futures.get(i).get(10, TimeUnit.SECONDS);
+            assertEquals(2, response.getCreatedMetacards().size());
+            for (Metacard metacard : response.getCreatedMetacards()) {
+                assertNotNull(metacard.getId());
+                assertEquals("title" + i, metacard.getTitle());
+            }
+        }
+
+        assertEquals(6, provider.size());
+        assertEquals(1, pipeline.getProviderBatches());
+        verify(postIngestPlugin, timeout(10000).times(3)).process(any(CreateResponse.class));
+    }
+
+    @Test
+    public void testBatchIsSplitByMetacardId() throws Exception {
+        pipeline.destroy();
+        startPipeline(new MockMemoryProvider("Provider", "Provider", "v1.0", "DDF",
+                new HashSet<ContentType>(), true, new Date()) {
+            @Override
+            public CreateResponse create(CreateRequest request) {
+                // Returns the created metacards out of order, without the dropped ones
+                List<Metacard> created = new ArrayList<>();
+                for (Metacard metacard : request.getMetacards()) {
+                    if (!"dropped".equals(metacard.getTitle())) {
+                        created.add(0, metacard);
+                    }
+                }
+                return new CreateResponseImpl(request, null, created);
+            }
+        });
+
+        List<Metacard> kept = metacards("kept", 2);
+        List<Metacard> dropped = metacards("dropped", 1);
+        for (int i = 0; i < kept.size(); i++) {
+            ((MetacardImpl) kept.get(i)).setId("kept" + i);
+        }
+        ((MetacardImpl) dropped.get(0)).setId("dropped0");
+        CompletableFuture<CreateResponse> keptFuture = pipeline
+                .createAsync(new CreateRequestImpl(kept));
+        CompletableFuture<CreateResponse> droppedFuture = pipeline
+                .createAsync(new CreateRequestImpl(dropped));
+
+        CreateResponse response = keptFuture.get(10, TimeUnit.SECONDS);
+        assertEquals(2, response.getCreatedMetacards().size());
+        assertEquals("kept0", response.getCreatedMetacards().get(0).getId());
+        assertEquals("kept1", response.getCreatedMetacards().get(1).getId());
+        try {
+            droppedFuture.get(10, TimeUnit.SECONDS);
+            fail("Create should have failed");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IngestException);
+        }
+        assertEquals(1, pipeline.getProviderBatches());
+    }
+
+    @Test
+    public void testFailedBatchIsNotRetried() throws Exception {
+        pipeline.destroy();
+        final AtomicInteger creates = new AtomicInteger();
+        startPipeline(new MockMemoryProvider("Provider", "Provider", "v1.0", "DDF",
+                new HashSet<ContentType>(), true, new Date()) {
+            @Override
+            public CreateResponse create(CreateRequest request) {
+                creates.incrementAndGet();
+                throw new IllegalStateException("Provider failed");
+            }
+        });
+
+        List<CompletableFuture<CreateResponse>> futures = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            futures.add(pipeline.createAsync(new CreateRequestImpl(metacards("title" + i, 1))));
+        }
+
+        for (CompletableFuture<CreateResponse> future : futures) {
+            try {
+                future.get(10, TimeUnit.SECONDS);
+                fail("Create should have failed");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IngestException);
+            }
+        }
+        assertEquals(1, pipeline.getProviderBatches());
+        assertEquals(1, creates.get());
+    }
+
+    @Test
+    public void testCreateCompletesOffProviderThread() throws Exception {
+        final AtomicReference<String> completingThread = new AtomicReference<>();
+        CompletableFuture<CreateResponse> future = pipeline
+                .createAsync(new CreateRequestImpl(metacards("title", 1)));
+        future.whenComplete(new BiConsumer<CreateResponse, Throwable>() {
+            @Override
+            public void accept(CreateResponse createResponse, Throwable throwable) {
+                completingThread.set(Thread.currentThread().getName());
+            }
+        }).get(10, TimeUnit.SECONDS);
+
+        assertTrue(completingThread.get(), completingThread.get().startsWith("async-post-ingest-"));
+    }
+
+    @Test
+    public void testCreateFailureCompletesExceptionally() throws Exception {
+        framework.setFanoutEnabled(true);
+
+        try {
+            pipeline.createAsync(new CreateRequestImpl(metacards("title", 1)))
+                    .get(10, TimeUnit.SECONDS);
+            fail("Create should have failed");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IngestException);
+        }
+        assertEquals(0, provider.size());
+    }
+
+    @Test
+    public void testCreateAfterDestroyCompletesExceptionally() throws Exception {
+        pipeline.destroy();
+
+        CompletableFuture<CreateResponse> future = pipeline
+                .createAsync(new CreateRequestImpl(metacards("title", 1)));
+
+        assertTrue(future.isCompletedExceptionally());
+    }
+
+    private List<Metacard> metacards(String title, int count) {
+        List<Metacard> metacards = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            MetacardImpl metacard = new MetacardImpl();
+            metacard.setTitle(title);
+            metacards.add(metacard);
+        }
+        return metacards;
+    }
+}
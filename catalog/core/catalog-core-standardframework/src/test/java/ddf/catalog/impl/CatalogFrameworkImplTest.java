@@ -28,6 +28,7 @@
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.isA;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -110,6 +111,8 @@
 import ddf.catalog.resource.ResourceNotFoundException;
 import ddf.catalog.resource.ResourceNotSupportedException;
 import ddf.catalog.resource.ResourceReader;
+import ddf.catalog.resource.download.ReliableResourceDownloadManager;
+import ddf.catalog.resourceretriever.ResourceRetriever;
 import ddf.catalog.source.CatalogProvider;
 import ddf.catalog.source.ConnectedSource;
 import ddf.catalog.source.FederatedSource;
@@ -190,6 +193,45 @@ public void testCreate() throws Exception {
 
     }
 
+    /**
+     * Tests that the framework passes the create request returned by the pre-ingest plugins to
+     * the local provider.
+     */
+    @Test
+    public void testCreateWithPreIngestPluginRequest() throws Exception {
+        MockMemoryProvider provider = new MockMemoryProvider("Provider", "Provider", "v1.0", "DDF",
+                new HashSet<ContentType>(), true, new Date());
+
+        SourcePoller mockPoller = mock(SourcePoller.class);
+        when(mockPoller.getCachedSource(isA(Source.class))).thenReturn(null);
+
+        List<Metacard> pluginMetacards = new ArrayList<Metacard>();
+        MetacardImpl pluginCard = new MetacardImpl();
+        pluginCard.setTitle("from plugin");
+        pluginMetacards.add(pluginCard);
+        pluginMetacards.add(new MetacardImpl());
+        PreIngestPlugin preIngestPlugin = mock(PreIngestPlugin.class);
+        when(preIngestPlugin.process(any(CreateRequest.class)))
+                .thenReturn(new CreateRequestImpl(pluginMetacards, null));
+
+        CatalogFrameworkImpl framework = new CatalogFrameworkImpl(
+                Collections.singletonList((CatalogProvider) provider), null,
+                Collections.singletonList(preIngestPlugin), new ArrayList<PostIngestPlugin>(),
+                new ArrayList<PreQueryPlugin>(), new ArrayList<PostQueryPlugin>(),
+                new ArrayList<PreResourcePlugin>(), new ArrayList<PostResourcePlugin>(),
+                new ArrayList<ConnectedSource>(), new ArrayList<FederatedSource>(),
+                new ArrayList<ResourceReader>(), null, null, null, mockPoller, null, null, null);
+        framework.bind(provider);
+
+        List<Metacard> metacards = new ArrayList<Metacard>();
+        metacards.add(new MetacardImpl());
+
+        CreateResponse response = framework.create(new CreateRequestImpl(metacards, null));
+        assertEquals(2, provider.size());
+        assertEquals(2, response.getCreatedMetacards().size());
+        assertEquals("from plugin", response.getCreatedMetacards().get(0).getTitle());
+    }
+
     /**
      * Tests that the framework properly passes an update request to the local provider.
      */
@@ -1515,6 +1557,47 @@ public void testGetResourceOptions() throws Exception {
 
     @Test
     public void testGetResourceFromCache() throws Exception {
+        ResourceCache resourceCache = mock(ResourceCache.class);
+        Resource mockResource = mock(Resource.class);
+        when(resourceCache.containsValid(isA(String.class), isA(Metacard.class))).thenReturn(true);
+        when(resourceCache.getValid(isA(String.class), isA(Metacard.class)))
+                .thenReturn(mockResource);
+        ReliableResourceDownloadManager downloadManager = mock(
+                ReliableResourceDownloadManager.class);
+
+        ResourceResponse response = getFederatedResource(resourceCache, downloadManager,
+                new HashMap<String, Serializable>());
+
+        assertThat(response, is(ResourceResponse.class));
+        assertThat(response.getResource(), is(mockResource));
+        verify(downloadManager, never()).download(any(ResourceRequest.class),
+                any(Metacard.class), any(ResourceRetriever.class));
+    }
+
+    @Test
+    public void testGetResourceRangeNotFromCache() throws Exception {
+        ResourceCache resourceCache = mock(ResourceCache.class);
+        when(resourceCache.containsValid(isA(String.class), isA(Metacard.class))).thenReturn(true);
+        Resource downloadedResource = mock(Resource.class);
+        ResourceResponse downloadedResponse = mock(ResourceResponse.class);
+        when(downloadedResponse.getResource()).thenReturn(downloadedResource);
+        ReliableResourceDownloadManager downloadManager = mock(
+                ReliableResourceDownloadManager.class);
+        when(downloadManager.download(any(ResourceRequest.class), any(Metacard.class),
+                any(ResourceRetriever.class))).thenReturn(downloadedResponse);
+        Map<String, Serializable> properties = new HashMap<>();
+        properties.put(ResourceRetriever.BYTES_TO_SKIP, 100L);
+
+        ResourceResponse response = getFederatedResource(resourceCache, downloadManager,
+                properties);
+
+        assertThat(response.getResource(), is(downloadedResource));
+        verify(resourceCache, never()).getValid(anyString(), any(Metacard.class));
+    }
+
+    private ResourceResponse getFederatedResource(ResourceCache resourceCache,
+            ReliableResourceDownloadManager downloadManager, Map<String, Serializable> properties)
+            throws Exception {
         String localProviderName = "ddf";
         String federatedSite1Name = "fed-site-1";
         String metacardId = "123";
@@ -1570,12 +1653,6 @@ public void testGetResourceFromCache() throws Exception {
         List<ResourceReader> resourceReaders = new ArrayList<ResourceReader>();
         resourceReaders.add(resourceReader);
 
-        ResourceCache resourceCache = mock(ResourceCache.class);
-        Resource mockResource = mock(Resource.class);
-        when(resourceCache.containsValid(isA(String.class), isA(Metacard.class))).thenReturn(true);
-        when(resourceCache.getValid(isA(String.class), isA(Metacard.class)))
-                .thenReturn(mockResource);
-
         CatalogFrameworkImpl framework = new CatalogFrameworkImpl(
                 Collections.singletonList((CatalogProvider) provider), null,
                 new ArrayList<PreIngestPlugin>(), new ArrayList<PostIngestPlugin>(),
@@ -1583,7 +1660,7 @@ public void testGetResourceFromCache() throws Exception {
                 new ArrayList<PreResourcePlugin>(), new ArrayList<PostResourcePlugin>(),
                 new ArrayList<ConnectedSource>(), federatedSources, resourceReaders, strategy,
                 mock(QueryResponsePostProcessor.class), null, mockPoller, resourceCache, null,
-                null);
+                downloadManager);
         framework.bind(provider);
         framework.setId("ddf");
 
@@ -1593,11 +1670,9 @@ public void testGetResourceFromCache() throws Exception {
         }
         ids.add(framework.getId());
 
-        ResourceRequestById request = new ResourceRequestById(metacardId);
-
-        ResourceResponse response = framework.getResource(request, federatedSite1Name);
+        ResourceRequestById request = new ResourceRequestById(metacardId, properties);
 
-        assertThat(response, is(ResourceResponse.class));
+        return framework.getResource(request, federatedSite1Name);
     }
 
     /**
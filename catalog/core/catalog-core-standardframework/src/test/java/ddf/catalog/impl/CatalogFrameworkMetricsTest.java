@@ -0,0 +1,140 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package ddf.catalog.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.ObjectName;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceReference;
+
+import com.codahale.metrics.Timer;
+
+import ddf.catalog.operation.QueryRequest;
+import ddf.catalog.plugin.PreQueryPlugin;
+
+public class CatalogFrameworkMetricsTest {
+
+    private CatalogFrameworkMetrics frameworkMetrics;
+
+    @Before
+    public void setUp() {
+        frameworkMetrics = new CatalogFrameworkMetrics();
+    }
+
+    @After
+    public void tearDown() {
+        frameworkMetrics.destroy();
+    }
+
+    @Test
+    public void testDisabledByDefault() {
+        assertNull(frameworkMetrics.time(CatalogFrameworkMetrics.QUERY,
+                CatalogFrameworkMetrics.FEDERATION));
+
+        // Stopping a missing timer is a no-op
+        CatalogFrameworkMetrics.stop(null);
+
+        assertEquals(0, frameworkMetrics.metrics.timer("Framework.Query.Federation").getCount());
+    }
+
+    @Test
+    public void testStageTimer() {
+        frameworkMetrics.setEnabled(true);
+
+        Timer.Context context = frameworkMetrics.time(CatalogFrameworkMetrics.QUERY,
+                CatalogFrameworkMetrics.FEDERATION);
+        assertNotNull(context);
+        CatalogFrameworkMetrics.stop(context);
+
+        assertEquals(1, frameworkMetrics.metrics.timer("Framework.Query.Federation").getCount());
+    }
+
+    @Test
+    public void testPluginTimerNamedAfterPluginClass() {
+        frameworkMetrics.setEnabled(true);
+
+        CatalogFrameworkMetrics.stop(frameworkMetrics.time(CatalogFrameworkMetrics.QUERY,
+                CatalogFrameworkMetrics.PRE_QUERY, new TestPreQueryPlugin()));
+
+        assertEquals(1, frameworkMetrics.metrics
+                .timer("Framework.Query.PreQuery.TestPreQueryPlugin").getCount());
+    }
+
+    @Test
+    public void testPluginTimersNamedAfterServicePid() {
+        frameworkMetrics.setEnabled(true);
+        PreQueryPlugin firstPlugin = new TestPreQueryPlugin();
+        PreQueryPlugin secondPlugin = new TestPreQueryPlugin();
+        ServiceReference firstReference = mock(ServiceReference.class);
+        when(firstReference.getProperty(Constants.SERVICE_PID)).thenReturn("first.plugin");
+        ServiceReference secondReference = mock(ServiceReference.class);
+        when(secondReference.getProperty(Constants.SERVICE_PID)).thenReturn("second.plugin");
+        frameworkMetrics.bindPlugin(firstReference, firstPlugin);
+        frameworkMetrics.bindPlugin(secondReference, secondPlugin);
+
+        CatalogFrameworkMetrics.stop(frameworkMetrics.time(CatalogFrameworkMetrics.QUERY,
+                CatalogFrameworkMetrics.PRE_QUERY, firstPlugin));
+        CatalogFrameworkMetrics.stop(frameworkMetrics.time(CatalogFrameworkMetrics.QUERY,
+                CatalogFrameworkMetrics.PRE_QUERY, secondPlugin));
+
+        assertEquals(1, frameworkMetrics.metrics.timer("Framework.Query.PreQuery.first.plugin")
+                .getCount());
+        assertEquals(1, frameworkMetrics.metrics.timer("Framework.Query.PreQuery.second.plugin")
+                .getCount());
+
+        frameworkMetrics.unbindPlugin(firstReference);
+        CatalogFrameworkMetrics.stop(frameworkMetrics.time(CatalogFrameworkMetrics.QUERY,
+                CatalogFrameworkMetrics.PRE_QUERY, firstPlugin));
+        assertEquals(1, frameworkMetrics.metrics
+                .timer("Framework.Query.PreQuery.TestPreQueryPlugin").getCount());
+    }
+
+    @Test
+    public void testPluginNamedAfterBlueprintComponent() {
+        Bundle bundle = mock(Bundle.class);
+        when(bundle.getSymbolicName()).thenReturn("plugin-bundle");
+        ServiceReference reference = mock(ServiceReference.class);
+        when(reference.getBundle()).thenReturn(bundle);
+        when(reference.getProperty("osgi.service.blueprint.compname")).thenReturn("plugin");
+
+        assertEquals("plugin-bundle.plugin",
+                CatalogFrameworkMetrics.getPluginName(reference, new TestPreQueryPlugin()));
+    }
+
+    @Test
+    public void testStageTimersRegisteredInJmx() throws Exception {
+        assertTrue(ManagementFactory.getPlatformMBeanServer().isRegistered(
+                new ObjectName("ddf.metrics.catalog:name=Framework.Query.Federation")));
+    }
+
+    private static class TestPreQueryPlugin implements PreQueryPlugin {
+        @Override
+        public QueryRequest process(QueryRequest input) {
+            return input;
+        }
+    }
+}
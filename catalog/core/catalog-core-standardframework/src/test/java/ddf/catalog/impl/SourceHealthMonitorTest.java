@@ -0,0 +1,190 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package ddf.catalog.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class SourceHealthMonitorTest {
+
+    private static final String SOURCE_ID = "remote";
+
+    private long now = 1000000L;
+
+    private SourceHealthMonitor monitor;
+
+    @Before
+    public void setUp() {
+        monitor = new SourceHealthMonitor() {
+            @Override
+            long currentTimeMillis() {
+                return now;
+            }
+        };
+        monitor.setWindowSize(10);
+        monitor.setFailureRateThreshold(50);
+        monitor.setSlowQueryMillis(1000);
+        monitor.setOpenDurationMillis(30000);
+    }
+
+    @Test
+    public void testUnknownSourceIsAllowed() {
+        assertTrue(monitor.allowQuery(SOURCE_ID));
+        assertEquals(SourceHealthMonitor.State.CLOSED, monitor.getState(SOURCE_ID));
+        assertEquals(-1, monitor.getLatencyPercentile(SOURCE_ID, 90));
+    }
+
+    @Test
+    public void testOpensOnFailures() {
+        monitor.recordSuccess(SOURCE_ID, 10);
+        monitor.recordFailure(SOURCE_ID, 10);
+        monitor.recordSuccess(SOURCE_ID, 10);
+        monitor.recordFailure(SOURCE_ID, 10);
+        // Too few queries to judge the source yet
+        assertTrue(monitor.allowQuery(SOURCE_ID));
+
+        monitor.recordFailure(SOURCE_ID, 10);
+
+        assertEquals(60, monitor.getFailureRate(SOURCE_ID));
+        assertEquals(SourceHealthMonitor.State.OPEN, monitor.getState(SOURCE_ID));
+        assertFalse(monitor.allowQuery(SOURCE_ID));
+    }
+
+    @Test
+    public void testOpensOnSlowQueries() {
+        for (int i = 0; i < 5; i++) {
+            monitor.recordSuccess(SOURCE_ID, 25000);
+        }
+
+        assertEquals(25000, monitor.getLatencyPercentile(SOURCE_ID, 50));
+        assertFalse(monitor.allowQuery(SOURCE_ID));
+    }
+
+    @Test
+    public void testStaysClosedBelowThreshold() {
+        for (int i = 0; i < 20; i++) {
+            if (i % 3 == 0) {
+                monitor.recordFailure(SOURCE_ID, 10);
+            } else {
+                monitor.recordSuccess(SOURCE_ID, 10);
+            }
+        }
+
+        assertTrue(monitor.allowQuery(SOURCE_ID));
+        assertEquals(SourceHealthMonitor.State.CLOSED, monitor.getState(SOURCE_ID));
+    }
+
+    @Test
+    public void testHalfOpenProbeCloses() {
+        openCircuit();
+
+        now += 30000;
+        assertTrue(monitor.allowQuery(SOURCE_ID));
+        assertEquals(SourceHealthMonitor.State.HALF_OPEN, monitor.getState(SOURCE_ID));
+        // Only a single probe is let through
+        assertFalse(monitor.allowQuery(SOURCE_ID));
+
+        monitor.recordSuccess(SOURCE_ID, 10);
+
+        assertEquals(SourceHealthMonitor.State.CLOSED, monitor.getState(SOURCE_ID));
+        assertEquals(0, monitor.getFailureRate(SOURCE_ID));
+        assertTrue(monitor.allowQuery(SOURCE_ID));
+    }
+
+    @Test
+    public void testRecoveryForgetsLatenciesBeforeOutage() {
+        for (int i = 0; i < 3; i++) {
+            monitor.recordSuccess(SOURCE_ID, 5);
+        }
+        for (int i = 0; i < 3; i++) {
+            monitor.recordFailure(SOURCE_ID, 5000);
+        }
+        assertEquals(SourceHealthMonitor.State.OPEN, monitor.getState(SOURCE_ID));
+
+        now += 30000;
+        assertTrue(monitor.allowQuery(SOURCE_ID));
+        monitor.recordSuccess(SOURCE_ID, 20);
+
+        assertEquals(SourceHealthMonitor.State.CLOSED, monitor.getState(SOURCE_ID));
+        assertEquals(20, monitor.getLatencyPercentile(SOURCE_ID, 10));
+        assertEquals(20, monitor.getLatencyPercentile(SOURCE_ID, 90));
+
+        monitor.recordSuccess(SOURCE_ID, 30);
+        assertEquals(20, monitor.getLatencyPercentile(SOURCE_ID, 10));
+        assertEquals(30, monitor.getLatencyPercentile(SOURCE_ID, 90));
+        assertEquals(0, monitor.getFailureRate(SOURCE_ID));
+    }
+
+    @Test
+    public void testHalfOpenProbeReopens() {
+        openCircuit();
+
+        now += 30000;
+        assertTrue(monitor.allowQuery(SOURCE_ID));
+        monitor.recordSuccess(SOURCE_ID, 5000);
+
+        assertEquals(SourceHealthMonitor.State.OPEN, monitor.getState(SOURCE_ID));
+        now += 29999;
+        assertFalse(monitor.allowQuery(SOURCE_ID));
+        now += 1;
+        assertTrue(monitor.allowQuery(SOURCE_ID));
+    }
+
+    @Test
+    public void testLostProbeIsRetried() {
+        openCircuit();
+
+        now += 30000;
+        assertTrue(monitor.allowQuery(SOURCE_ID));
+        now += 30000;
+        assertTrue(monitor.allowQuery(SOURCE_ID));
+    }
+
+    @Test
+    public void testLatencyPercentile() {
+        for (int i = 1; i <= 10; i++) {
+            monitor.recordSuccess(SOURCE_ID, i * 10);
+        }
+        assertEquals(50, monitor.getLatencyPercentile(SOURCE_ID, 50));
+        assertEquals(90, monitor.getLatencyPercentile(SOURCE_ID, 90));
+
+        // The oldest latencies fall out of the window
+        for (int i = 0; i < 5; i++) {
+            monitor.recordSuccess(SOURCE_ID, 500);
+        }
+        assertEquals(60, monitor.getLatencyPercentile(SOURCE_ID, 10));
+        assertEquals(100, monitor.getLatencyPercentile(SOURCE_ID, 50));
+        assertEquals(500, monitor.getLatencyPercentile(SOURCE_ID, 90));
+    }
+
+    @Test
+    public void testDisabled() {
+        openCircuit();
+
+        monitor.setEnabled(false);
+
+        assertTrue(monitor.allowQuery(SOURCE_ID));
+    }
+
+    private void openCircuit() {
+        for (int i = 0; i < 5; i++) {
+            monitor.recordFailure(SOURCE_ID, 10);
+        }
+        assertFalse(monitor.allowQuery(SOURCE_ID));
+    }
+}
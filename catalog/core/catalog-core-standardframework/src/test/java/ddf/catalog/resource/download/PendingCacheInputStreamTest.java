@@ -0,0 +1,120 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package ddf.catalog.resource.download;
+
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.activation.MimeType;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import ddf.catalog.cache.ResourceCacheInterface;
+import ddf.catalog.data.Metacard;
+import ddf.catalog.data.impl.MetacardImpl;
+import ddf.catalog.resource.data.ReliableResource;
+
+public class PendingCacheInputStreamTest {
+
+    private static final String KEY = "ddf-1-abc123";
+
+    private static final long WRITE_DELAY_MS = 100;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private ResourceCacheInterface resourceCache;
+
+    private ReliableResource pendingResource;
+
+    private File cacheFile;
+
+    @Before
+    public void setUp() throws Exception {
+        cacheFile = new File(temporaryFolder.getRoot(), KEY);
+        resourceCache = mock(ResourceCacheInterface.class);
+        pendingResource = new ReliableResource(KEY, cacheFile.getAbsolutePath(), new MimeType(),
+                "name", new MetacardImpl());
+    }
+
+    @Test
+    public void testReadWhileCaching() throws Exception {
+        // The file is written to while the entry is pending, signalling each write the way the
+        // caching download does
+        final AtomicBoolean pending = new AtomicBoolean(true);
+        when(resourceCache.isPending(KEY)).thenAnswer(new Answer<Boolean>() {
+            @Override
+            public Boolean answer(InvocationOnMock invocation) throws Throwable {
+                return pending.get();
+            }
+        });
+        when(resourceCache.containsValid(any(String.class), any(Metacard.class))).thenReturn(true);
+
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(WRITE_DELAY_MS);
+                    FileUtils.writeStringToFile(cacheFile, "first ", "UTF-8");
+                    pendingResource.notifyProgress();
+                    Thread.sleep(WRITE_DELAY_MS);
+                    FileUtils.writeStringToFile(cacheFile, "second", "UTF-8", true);
+                    pendingResource.notifyProgress();
+                    Thread.sleep(WRITE_DELAY_MS);
+                    pending.set(false);
+                    pendingResource.notifyProgress();
+                } catch (IOException | InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+        writer.start();
+
+        PendingCacheInputStream inputStream = new PendingCacheInputStream(resourceCache,
+                pendingResource);
+        long start = System.currentTimeMillis();
+
+        assertEquals("first second", IOUtils.toString(inputStream, "UTF-8"));
+        assertEquals(12, inputStream.getBytesRead());
+        // Woken up by each write instead of waiting out the maximum wait
+        assertThat(System.currentTimeMillis() - start,
+                lessThan(PendingCacheInputStream.MAX_WAIT_MS));
+        writer.join();
+    }
+
+    @Test(expected = IOException.class)
+    public void testCachingFailed() throws Exception {
+        FileUtils.writeStringToFile(cacheFile, "partial", "UTF-8");
+        when(resourceCache.isPending(KEY)).thenReturn(false);
+        when(resourceCache.containsValid(any(String.class), any(Metacard.class)))
+                .thenReturn(false);
+
+        IOUtils.toString(new PendingCacheInputStream(resourceCache, pendingResource), "UTF-8");
+    }
+}
@@ -20,10 +20,13 @@
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -34,6 +37,8 @@
 import java.io.Serializable;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -147,6 +152,7 @@ public static void oneTimeSetup() throws IOException {
     public void setup() {
         resourceCache = mock(ResourceCache.class);
         when(resourceCache.getProductCacheDirectory()).thenReturn(productCacheDirectory);
+        when(resourceCache.addPendingCacheEntry(any(ReliableResource.class))).thenReturn(true);
         eventPublisher = mock(DownloadsStatusEventPublisher.class);
         eventListener = mock(DownloadsStatusEventListener.class);
         downloadStatusInfo = new DownloadStatusInfoImpl();
@@ -245,6 +251,129 @@ public void testDownloadWithoutCaching() throws Exception {
         cleanup();
     }
 
+    @Test
+    public void testConcurrentDownloadsShareOneRetrieval() throws Exception {
+        mis = new MockInputStream(productInputFilename);
+        final Metacard metacard = getMockMetacard(EXPECTED_METACARD_ID,
+                EXPECTED_METACARD_SOURCE_ID);
+        resourceResponse = getMockResourceResponse();
+
+        final CountDownLatch retrievalStarted = new CountDownLatch(1);
+        final CountDownLatch sourceResponded = new CountDownLatch(1);
+        final ResourceRetriever retriever = mock(ResourceRetriever.class);
+        when(retriever.retrieveResource()).thenAnswer(new Answer<ResourceResponse>() {
+            @Override
+            public ResourceResponse answer(InvocationOnMock invocation) throws Throwable {
+                retrievalStarted.countDown();
+                sourceResponded.await();
+                return resourceResponse;
+            }
+        });
+
+        int chunkSize = 50;
+        downloadMgr.setCacheEnabled(true);
+        downloadMgr.setChunkSize(chunkSize);
+
+        ExecutorService requests = Executors.newCachedThreadPool();
+        Future<ResourceResponse> firstDownload = requests.submit(new Callable<ResourceResponse>() {
+            @Override
+            public ResourceResponse call() throws Exception {
+                return downloadMgr.download(resourceRequest, metacard, retriever);
+            }
+        });
+        assertTrue(retrievalStarted.await(3, TimeUnit.SECONDS));
+        Future<ResourceResponse> secondDownload = requests
+                .submit(new Callable<ResourceResponse>() {
+                    @Override
+                    public ResourceResponse call() throws Exception {
+                        return downloadMgr.download(resourceRequest, metacard, retriever);
+                    }
+                });
+        sourceResponded.countDown();
+
+        productInputStream = firstDownload.get(3, TimeUnit.SECONDS).getResource()
+                .getInputStream();
+        assertThat(productInputStream, is(instanceOf(ReliableResourceInputStream.class)));
+        assertThat(secondDownload.get(3, TimeUnit.SECONDS).getResource().getInputStream(),
+                is(instanceOf(PendingCacheInputStream.class)));
+        verify(retriever, times(1)).retrieveResource();
+        requests.shutdown();
+
+        verifyClientBytesRead(clientRead(chunkSize, productInputStream));
+
+        cleanup();
+    }
+
+    @Test
+    public void testDownloadNotStartedInTimeIsRetrievedDirectly() throws Exception {
+        mis = new MockInputStream(productInputFilename);
+        final Metacard metacard = getMockMetacard(EXPECTED_METACARD_ID,
+                EXPECTED_METACARD_SOURCE_ID);
+        resourceResponse = getMockResourceResponse();
+
+        final CountDownLatch retrievalStarted = new CountDownLatch(1);
+        final CountDownLatch sourceResponded = new CountDownLatch(1);
+        final ResourceRetriever stalledRetriever = mock(ResourceRetriever.class);
+        when(stalledRetriever.retrieveResource()).thenAnswer(new Answer<ResourceResponse>() {
+            @Override
+            public ResourceResponse answer(InvocationOnMock invocation) throws Throwable {
+                retrievalStarted.countDown();
+                sourceResponded.await();
+                throw new IOException("Source did not respond");
+            }
+        });
+        ResourceRetriever retriever = mock(ResourceRetriever.class);
+        when(retriever.retrieveResource()).thenReturn(resourceResponse);
+
+        int chunkSize = 50;
+        downloadMgr.setCacheEnabled(true);
+        downloadMgr.setChunkSize(chunkSize);
+        downloadMgr.setMonitorPeriod(1);
+
+        ExecutorService requests = Executors.newSingleThreadExecutor();
+        requests.submit(new Callable<ResourceResponse>() {
+            @Override
+            public ResourceResponse call() throws Exception {
+                return downloadMgr.download(resourceRequest, metacard, stalledRetriever);
+            }
+        });
+        assertTrue(retrievalStarted.await(3, TimeUnit.SECONDS));
+
+        // Stops waiting for the stalled download after the monitor period
+        productInputStream = downloadMgr.download(resourceRequest, metacard, retriever)
+                .getResource().getInputStream();
+        assertThat(productInputStream, is(instanceOf(ReliableResourceInputStream.class)));
+        verify(retriever).retrieveResource();
+        sourceResponded.countDown();
+        requests.shutdown();
+
+        verifyClientBytesRead(clientRead(chunkSize, productInputStream));
+
+        cleanup();
+    }
+
+    @Test
+    public void testRangeRequestDoesNotReadPendingDownload() throws Exception {
+        mis = new MockInputStream(productInputFilename);
+        Metacard metacard = getMockMetacard(EXPECTED_METACARD_ID, EXPECTED_METACARD_SOURCE_ID);
+        resourceResponse = getMockResourceResponse();
+        when(resourceRequest.containsPropertyName(ResourceRetriever.BYTES_TO_SKIP))
+                .thenReturn(true);
+        when(resourceCache.getPendingCacheEntry(anyString()))
+                .thenReturn(mock(ReliableResource.class));
+
+        ResourceRetriever retriever = mock(ResourceRetriever.class);
+        when(retriever.retrieveResource()).thenReturn(resourceResponse);
+
+        int chunkSize = 50;
+        startDownload(true, chunkSize, false, metacard, retriever);
+        verify(retriever).retrieveResource();
+
+        verifyClientBytesRead(clientRead(chunkSize, productInputStream));
+
+        cleanup();
+    }
+
     @Test
     //@Ignore
     public void testDownloadWithCaching() throws Exception {
@@ -15,6 +15,7 @@
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyLong;
@@ -22,6 +23,7 @@
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -59,6 +61,7 @@
 import ddf.catalog.resource.Resource;
 import ddf.catalog.resource.ResourceNotFoundException;
 import ddf.catalog.resource.ResourceNotSupportedException;
+import ddf.catalog.resource.data.ReliableResource;
 import ddf.catalog.resourceretriever.ResourceRetriever;
 
 public class ReliableResourceDownloaderTest {
@@ -126,6 +129,7 @@ public void testCacheExceptionDuringWrite() throws Exception {
 
         ResourceCache mockCache = mock(ResourceCache.class);
         when(mockCache.isPending(anyString())).thenReturn(false);
+        when(mockCache.addPendingCacheEntry(any(ReliableResource.class))).thenReturn(true);
         when(mockCache.getProductCacheDirectory()).thenReturn(productCacheDirectory);
         downloaderConfig.setResourceCache(mockCache);
 
@@ -150,6 +154,30 @@ public void testCacheExceptionDuringWrite() throws Exception {
 
     }
 
+    @Test
+    public void testRangeDownloadNotCached() throws Exception {
+        downloaderConfig.setCacheEnabled(true);
+
+        ResourceCache mockCache = mock(ResourceCache.class);
+        when(mockCache.addPendingCacheEntry(any(ReliableResource.class))).thenReturn(true);
+        when(mockCache.getProductCacheDirectory()).thenReturn(productCacheDirectory);
+        downloaderConfig.setResourceCache(mockCache);
+
+        mis = new MockInputStream(productInputFilename);
+        ResourceResponse mockResponse = getMockResourceResponse(mis);
+        when(mockResponse.getRequest().containsPropertyName(ResourceRetriever.RANGE_END))
+                .thenReturn(true);
+
+        ReliableResourceDownloader downloader = new ReliableResourceDownloader(downloaderConfig,
+                new AtomicBoolean(), DOWNLOAD_ID, mockResponse, getMockRetriever());
+        downloader.setupDownload(mockMetacard, new DownloadStatusInfoImpl());
+        downloader.run();
+
+        verify(mockCache, never()).addPendingCacheEntry(any(ReliableResource.class));
+        verify(mockCache, never()).put(any(ReliableResource.class));
+        assertThat(downloader.getPendingResource(), is(nullValue()));
+    }
+
     @Test
     @Ignore
     // Can't figure out how to throw IOExcetion from CountingOutputStream
@@ -159,6 +187,7 @@ public void testClientOutputStreamException() throws Exception {
 
         ResourceCache mockCache = mock(ResourceCache.class);
         when(mockCache.isPending(anyString())).thenReturn(false);
+        when(mockCache.addPendingCacheEntry(any(ReliableResource.class))).thenReturn(true);
         when(mockCache.getProductCacheDirectory()).thenReturn(productCacheDirectory);
         downloaderConfig.setResourceCache(mockCache);
 
@@ -0,0 +1,194 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package ddf.catalog.resource.download;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.google.common.io.CountingOutputStream;
+
+import ddf.catalog.operation.ResourceResponse;
+import ddf.catalog.operation.impl.ResourceResponseImpl;
+import ddf.catalog.resource.impl.ResourceImpl;
+import ddf.catalog.resourceretriever.ResourceRetriever;
+
+public class SegmentedResourceCallableTest {
+
+    private static final int SIZE = 10000;
+
+    private static final int CHUNK_SIZE = 64;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private byte[] product;
+
+    private ResourceRetriever retriever;
+
+    private ByteArrayOutputStream clientOutput;
+
+    private File cacheFile;
+
+    private File segmentsFile;
+
+    @Before
+    public void setUp() throws Exception {
+        product = new byte[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            product[i] = (byte) i;
+        }
+        retriever = mock(ResourceRetriever.class);
+        clientOutput = new ByteArrayOutputStream();
+        cacheFile = temporaryFolder.newFile("product");
+        segmentsFile = new File(temporaryFolder.getRoot(),
+                "product" + SegmentedResourceCallable.SEGMENTS_FILE_EXTENSION);
+    }
+
+    @Test
+    public void testSegmentsWrittenInOrder() throws Exception {
+        when(retriever.retrieveResource(anyLong(), anyLong()))
+                .thenAnswer(new RangeAnswer(true, true));
+
+        ReliableResourceStatus status = download(4);
+
+        assertEquals(DownloadStatus.RESOURCE_DOWNLOAD_COMPLETE, status.getDownloadStatus());
+        assertEquals(SIZE, status.getBytesRead());
+        assertArrayEquals(product, clientOutput.toByteArray());
+        assertArrayEquals(product, FileUtils.readFileToByteArray(cacheFile));
+        assertFalse(segmentsFile.exists());
+    }
+
+    @Test
+    public void testFailedSegmentRetried() throws Exception {
+        when(retriever.retrieveResource(anyLong(), anyLong()))
+                .thenThrow(new IOException("Connection reset"))
+                .thenAnswer(new RangeAnswer(true, true));
+
+        ReliableResourceStatus status = download(2);
+
+        assertEquals(DownloadStatus.RESOURCE_DOWNLOAD_COMPLETE, status.getDownloadStatus());
+        assertArrayEquals(product, clientOutput.toByteArray());
+    }
+
+    @Test
+    public void testRangesNotSupported() throws Exception {
+        when(retriever.retrieveResource(anyLong(), anyLong()))
+                .thenAnswer(new RangeAnswer(false, false));
+
+        ReliableResourceStatus status = download(2);
+
+        // Only the first segment, read from the original InputStream, could be downloaded
+        assertEquals(DownloadStatus.PRODUCT_INPUT_STREAM_EXCEPTION, status.getDownloadStatus());
+        assertEquals(SIZE / 2, status.getBytesRead());
+        assertArrayEquals(Arrays.copyOf(product, SIZE / 2), clientOutput.toByteArray());
+        assertFalse(segmentsFile.exists());
+    }
+
+    @Test
+    public void testRangeReadFromWholeProductBySource() throws Exception {
+        when(retriever.retrieveResource(anyLong(), anyLong()))
+                .thenAnswer(new RangeAnswer(true, false));
+
+        ReliableResourceStatus status = download(2);
+
+        // The Source would send the whole product for each segment, so the rest of the product
+        // is left to be downloaded as a single stream
+        assertEquals(DownloadStatus.PRODUCT_INPUT_STREAM_EXCEPTION, status.getDownloadStatus());
+        assertEquals(SIZE / 2, status.getBytesRead());
+        assertArrayEquals(Arrays.copyOf(product, SIZE / 2), clientOutput.toByteArray());
+        assertFalse(segmentsFile.exists());
+    }
+
+    @Test(timeout = 10000)
+    public void testSegmentFailingWithRuntimeExceptionEndsDownload() throws Exception {
+        when(retriever.retrieveResource(anyLong(), anyLong()))
+                .thenThrow(new IllegalStateException("Source misbehaved"));
+
+        ReliableResourceStatus status = download(2);
+
+        assertEquals(DownloadStatus.PRODUCT_INPUT_STREAM_EXCEPTION, status.getDownloadStatus());
+        assertEquals(SIZE / 2, status.getBytesRead());
+        assertFalse(segmentsFile.exists());
+    }
+
+    private ReliableResourceStatus download(int segmentCount) throws IOException {
+        FileOutputStream fos = new FileOutputStream(cacheFile);
+        try {
+            SegmentedResourceCallable callable = new SegmentedResourceCallable(
+                    new ByteArrayInputStream(product), new CountingOutputStream(clientOutput),
+                    fos, retriever, segmentsFile, SIZE, segmentCount, CHUNK_SIZE, 3,
+                    new Object());
+            return callable.call();
+        } finally {
+            IOUtils.closeQuietly(fos);
+        }
+    }
+
+    /**
+     * Returns the requested range of the product, as a Source that supports ranges does, or the
+     * whole product. A Source that does not support ranges may also read the whole product and
+     * skip to the requested range itself, without reporting that the range was retrieved.
+     */
+    private class RangeAnswer implements Answer<ResourceResponse> {
+
+        private final boolean rangesSupported;
+
+        private final boolean rangeRetrieved;
+
+        RangeAnswer(boolean rangesSupported, boolean rangeRetrieved) {
+            this.rangesSupported = rangesSupported;
+            this.rangeRetrieved = rangeRetrieved;
+        }
+
+        @Override
+        public ResourceResponse answer(InvocationOnMock invocation) throws Throwable {
+            Map<String, Serializable> properties = new HashMap<>();
+            byte[] bytes = product;
+            if (rangesSupported) {
+                int start = ((Long) invocation.getArguments()[0]).intValue();
+                int end = ((Long) invocation.getArguments()[1]).intValue();
+                bytes = Arrays.copyOfRange(product, start, end + 1);
+                properties.put(ReliableResourceDownloader.BYTES_SKIPPED, Boolean.TRUE);
+            }
+            if (rangeRetrieved) {
+                properties.put(ReliableResourceDownloader.RANGE_RETRIEVED, Boolean.TRUE);
+            }
+            return new ResourceResponseImpl(null, properties,
+                    new ResourceImpl(new ByteArrayInputStream(bytes), "product"));
+        }
+    }
+}
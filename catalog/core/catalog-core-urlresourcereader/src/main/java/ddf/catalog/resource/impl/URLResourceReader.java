@@ -19,10 +19,13 @@
 import java.io.InputStream;
 import java.io.Serializable;
 import java.net.URI;
-import java.net.URLConnection;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.file.InvalidPathException;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -34,6 +37,7 @@
 
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
 import org.apache.commons.lang.StringUtils;
 import org.apache.cxf.jaxrs.client.WebClient;
 import org.apache.cxf.jaxrs.ext.multipart.ContentDisposition;
@@ -59,6 +63,11 @@
  * A URLResourceReader retrieves a {@link ddf.catalog.resource.Resource} from a local or remote file system using a
  * {@link URI}. The {@link URI} is used to specify the file location. A URLResourceReader supports
  * {@link URI}s with HTTP, HTTPS, and file schemes.
+ * <p>
+ * A byte range of the resource can be retrieved with the {@code BytesToSkip} and {@code RangeEnd}
+ * properties. The range is requested from HTTP servers with a {@code Range} header, and read
+ * directly from its position in files. The returned {@link ResourceResponse} then has the
+ * {@code BytesSkipped} property set.
  */
 public class URLResourceReader implements ResourceReader {
 
@@ -84,6 +93,23 @@ public class URLResourceReader implements ResourceReader {
 
     private static final String BYTES_TO_SKIP = "BytesToSkip";
 
+    /**
+     * Offset of the last byte to retrieve, inclusive
+     */
+    private static final String RANGE_END = "RangeEnd";
+
+    private static final String BYTES_SKIPPED = "BytesSkipped";
+
+    /**
+     * Set when only the requested range was read from the resource, as opposed to reading the
+     * whole resource and discarding the bytes outside of the range
+     */
+    private static final String RANGE_RETRIEVED = "RangeRetrieved";
+
+    private static final String HEADER_RANGE = "Range";
+
+    private static final String BYTES_EQUAL = "bytes=";
+
     private static final Set<String> QUALIFIER_SET = ImmutableSet.of(URL_HTTP_SCHEME,
             URL_HTTPS_SCHEME, URL_FILE_SCHEME);
 
@@ -215,16 +241,26 @@ public Set<String> getRootResourceDirectories() {
     @Override
     public ResourceResponse retrieveResource(URI resourceURI, Map<String, Serializable> properties)
         throws IOException, ResourceNotFoundException {
-        String bytesToSkip = null;
+        long bytesToSkip = 0;
+        Long rangeEnd = null;
 
         if (resourceURI == null) {
             LOGGER.warn("Resource URI was null");
             throw new ResourceNotFoundException("Unable to find resource");
         }
 
-        if (properties.containsKey(BYTES_TO_SKIP)) {
-            bytesToSkip = properties.get(BYTES_TO_SKIP).toString();
-            LOGGER.debug("bytesToSkip: {}", bytesToSkip);
+        try {
+            if (properties.get(BYTES_TO_SKIP) != null) {
+                bytesToSkip = Long.parseLong(properties.get(BYTES_TO_SKIP).toString());
+                LOGGER.debug("bytesToSkip: {}", bytesToSkip);
+            }
+            if (properties.get(RANGE_END) != null) {
+                rangeEnd = Long.parseLong(properties.get(RANGE_END).toString());
+                LOGGER.debug("rangeEnd: {}", rangeEnd);
+            }
+        } catch (NumberFormatException e) {
+            throw new ResourceNotFoundException("Invalid byte range for resource ["
+                    + resourceURI.toString() + "]", e);
         }
 
         if (resourceURI.getScheme().equals(URL_HTTP_SCHEME)
@@ -232,14 +268,16 @@ public ResourceResponse retrieveResource(URI resourceURI, Map<String, Serializab
             LOGGER.debug("Resource URI is HTTP or HTTPS");
             String fileAddress = resourceURI.toURL().getFile();
             LOGGER.debug("resource name: {}", fileAddress);
-            return retrieveHttpProduct(resourceURI, fileAddress, bytesToSkip, properties);
+            return retrieveHttpProduct(resourceURI, fileAddress, bytesToSkip, rangeEnd,
+                    properties);
         } else if (resourceURI.getScheme().equals(URL_FILE_SCHEME)) {
             LOGGER.debug("Resource URI is a File");
             File filePathName = new File(resourceURI);
             if (validateFilePath(filePathName)) {
                 String fileName = filePathName.getName();
                 LOGGER.debug("resource name: {}", fileName);
-                return retrieveFileProduct(resourceURI, fileName, bytesToSkip);
+                return retrieveFileProduct(resourceURI, filePathName, fileName, bytesToSkip,
+                        rangeEnd);
             } else {
                 throw new ResourceNotFoundException("Error retrieving resource ["
                         + resourceURI.toString() + "]. Invalid Resource URI of ["
@@ -256,25 +294,26 @@ public ResourceResponse retrieveResource(URI resourceURI, Map<String, Serializab
         }
     }
 
-    private ResourceResponse retrieveFileProduct(URI resourceURI, String productName,
-            String bytesToSkip) throws ResourceNotFoundException {
-        URLConnection connection = null;
+    private ResourceResponse retrieveFileProduct(URI resourceURI, File file, String productName,
+            long bytesToSkip, Long rangeEnd) throws ResourceNotFoundException {
+        FileChannel channel = null;
         try {
-            LOGGER.debug("Opening connection to: {}", resourceURI.toString());
-            connection = resourceURI.toURL().openConnection();
-
-            productName = StringUtils.defaultIfBlank(handleContentDispositionHeader(connection
-                    .getHeaderField(HttpHeaders.CONTENT_DISPOSITION)), productName);
+            LOGGER.debug("Opening channel to: {}", resourceURI.toString());
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
 
             String mimeType = getMimeType(resourceURI, productName);
 
-            InputStream is = connection.getInputStream();
-
-            skipBytes(is, bytesToSkip);
+            // Position the channel at the start of the range instead of reading up to it
+            channel.position(bytesToSkip);
+            InputStream is = limitToRange(Channels.newInputStream(channel), bytesToSkip,
+                    rangeEnd);
 
-            return new ResourceResponseImpl(new ResourceImpl(new BufferedInputStream(is), mimeType,
-                    FilenameUtils.getName(productName)));
+            long end = rangeEnd == null ? channel.size() : Math.min(rangeEnd + 1, channel.size());
+            return createResourceResponse(new BufferedInputStream(is), mimeType, productName,
+                    bytesToSkip > 0, bytesToSkip > 0 || rangeEnd != null,
+                    Math.max(end - bytesToSkip, 0));
         } catch (MimeTypeResolutionException | IOException e) {
+            IOUtils.closeQuietly(channel);
             LOGGER.error("Error retrieving resource", e);
             throw new ResourceNotFoundException("Unable to retrieve resource at: "
                     + resourceURI.toString(), e);
@@ -282,7 +321,7 @@ private ResourceResponse retrieveFileProduct(URI resourceURI, String productName
     }
 
     private ResourceResponse retrieveHttpProduct(URI resourceURI, String productName,
-            String bytesToSkip, Map<String, Serializable> properties)
+            long bytesToSkip, Long rangeEnd, Map<String, Serializable> properties)
         throws ResourceNotFoundException {
 
         try {
@@ -297,9 +336,18 @@ private ResourceResponse retrieveHttpProduct(URI resourceURI, String productName
                 RestSecurity.setSubjectOnClient(subject, client);
             }
 
-            Response response = client.get();
+            if (bytesToSkip > 0 || rangeEnd != null) {
+                String range = BYTES_EQUAL + bytesToSkip + "-";
+                if (rangeEnd != null) {
+                    range += rangeEnd;
+                }
+                LOGGER.debug("Requesting range: {}", range);
+                client.header(HEADER_RANGE, range);
+            }
+
+            Response clientResponse = client.get();
 
-            MultivaluedMap<String, Object> headers = response.getHeaders();
+            MultivaluedMap<String, Object> headers = clientResponse.getHeaders();
             List<Object> cdHeaders = headers.get(HttpHeaders.CONTENT_DISPOSITION);
             if (cdHeaders != null && !cdHeaders.isEmpty()) {
                 String contentHeader = (String) cdHeaders.get(0);
@@ -308,13 +356,14 @@ private ResourceResponse retrieveHttpProduct(URI resourceURI, String productName
             }
             String mimeType = getMimeType(resourceURI, productName);
 
-            Response clientResponse = client.get();
-
             InputStream is = null;
             Object entityObj = clientResponse.getEntity();
+            boolean partialContent =
+                    Response.Status.PARTIAL_CONTENT.getStatusCode() == clientResponse.getStatus();
             if (entityObj instanceof InputStream) {
                 is = (InputStream) entityObj;
-                if (Response.Status.OK.getStatusCode() != clientResponse.getStatus()) {
+                if (Response.Status.OK.getStatusCode() != clientResponse.getStatus()
+                        && !partialContent) {
                     String error = null;
                     try {
                         if (is != null) {
@@ -333,10 +382,18 @@ private ResourceResponse retrieveHttpProduct(URI resourceURI, String productName
                         "Received null response while retrieving resource.");
             }
 
-            skipBytes(is, bytesToSkip);
+            long size = -1;
+            if (!partialContent) {
+                // The server does not support ranges and sent the whole resource
+                skipBytes(is, bytesToSkip);
+                is = limitToRange(is, bytesToSkip, rangeEnd);
+                if (bytesToSkip == 0 && rangeEnd == null) {
+                    size = getContentLength(headers);
+                }
+            }
 
-            return new ResourceResponseImpl(new ResourceImpl(new BufferedInputStream(is), mimeType,
-                    FilenameUtils.getName(productName)));
+            return createResourceResponse(new BufferedInputStream(is), mimeType, productName,
+                    bytesToSkip > 0, partialContent, size);
         } catch (MimeTypeResolutionException | IOException | WebApplicationException e) {
             LOGGER.error("Error retrieving resource", e);
             throw new ResourceNotFoundException("Unable to retrieve resource at: "
@@ -344,6 +401,43 @@ private ResourceResponse retrieveHttpProduct(URI resourceURI, String productName
         }
     }
 
+    private ResourceResponse createResourceResponse(InputStream is, String mimeType,
+            String productName, boolean bytesSkipped, boolean rangeRetrieved, long size) {
+        Map<String, Serializable> responseProperties = new HashMap<>();
+        if (bytesSkipped) {
+            // So that callers do not skip the bytes again
+            responseProperties.put(BYTES_SKIPPED, Boolean.TRUE);
+        }
+        if (rangeRetrieved) {
+            // So that callers can tell whether retrieving ranges transfers less than the whole
+            // resource
+            responseProperties.put(RANGE_RETRIEVED, Boolean.TRUE);
+        }
+        ResourceImpl resource = new ResourceImpl(is, mimeType, FilenameUtils.getName(productName));
+        // So that callers can tell how much data to expect, e.g., to retrieve it in segments
+        resource.setSize(size);
+        return new ResourceResponseImpl(null, responseProperties, resource);
+    }
+
+    private long getContentLength(MultivaluedMap<String, Object> headers) {
+        Object contentLength = headers.getFirst(HttpHeaders.CONTENT_LENGTH);
+        if (contentLength != null) {
+            try {
+                return Long.parseLong(contentLength.toString());
+            } catch (NumberFormatException e) {
+                LOGGER.debug("Invalid Content-Length header: {}", contentLength);
+            }
+        }
+        return -1;
+    }
+
+    private InputStream limitToRange(InputStream is, long bytesToSkip, Long rangeEnd) {
+        if (rangeEnd == null) {
+            return is;
+        }
+        return new BoundedInputStream(is, Math.max(rangeEnd - bytesToSkip + 1, 0));
+    }
+
     private String getMimeType(URI resourceURI, String productName)
         throws MimeTypeResolutionException, IOException {
         // Determine the mime type in a hierarchical fashion. The hierarchy is based on the
@@ -409,11 +503,11 @@ private String handleContentDispositionHeader(String contentDispositionHeader) {
         return "";
     }
 
-    private void skipBytes(InputStream is, String bytesToSkip) throws IOException {
-        if (bytesToSkip != null) {
+    private void skipBytes(InputStream is, long bytesToSkip) throws IOException {
+        if (bytesToSkip > 0) {
             LOGGER.debug("Skipping {} bytes", bytesToSkip);
-            long bytesSkipped = is.skip(Long.valueOf(bytesToSkip));
-            if (Long.valueOf(bytesToSkip) != bytesSkipped) {
+            long bytesSkipped = IOUtils.skip(is, bytesToSkip);
+            if (bytesToSkip != bytesSkipped) {
                 LOGGER.debug("Did not skip specified bytes while retrieving resource."
                         + " Bytes to skip: {} -- Skipped Bytes: {}", bytesToSkip, bytesSkipped);
             }
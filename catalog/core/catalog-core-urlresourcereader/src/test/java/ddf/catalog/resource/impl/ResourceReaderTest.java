@@ -16,11 +16,14 @@
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.hasItems;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.io.ByteArrayInputStream;
@@ -43,6 +46,7 @@
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Response;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.cxf.jaxrs.client.WebClient;
 import org.apache.tika.metadata.HttpHeaders;
 import org.junit.Before;
@@ -112,6 +116,12 @@ public class ResourceReaderTest {
 
     private static final String BYTES_TO_SKIP = "BytesToSkip";
 
+    private static final String RANGE_END = "RangeEnd";
+
+    private static final String BYTES_SKIPPED = "BytesSkipped";
+
+    private static final String RANGE_RETRIEVED = "RangeRetrieved";
+
     @Rule
     public MethodRule watchman = new TestWatchman() {
         public void starting(FrameworkMethod method) {
@@ -362,6 +372,85 @@ public void testRetrievingPartialContent() throws Exception {
         Assert.assertEquals(3, response.getResource().getByteArray().length);
     }
 
+    @Test
+    public void testRetrievingRangeFromServer() throws Exception {
+        URI uri = new URI(HTTP_SCHEME_PLUS_SEP + HOST + TEST_PATH + BAD_FILE_NAME);
+
+        Response mockResponse = mock(Response.class);
+        when(mockWebClient.get()).thenReturn(mockResponse);
+        MultivaluedMap<String, Object> map = new MultivaluedHashMap<>();
+        map.put(HttpHeaders.CONTENT_DISPOSITION,
+                Arrays.<Object> asList("inline; filename=\"" + JPEG_FILE_NAME_1 + "\""));
+        when(mockResponse.getHeaders()).thenReturn(map);
+        when(mockResponse.getStatus())
+                .thenReturn(Response.Status.PARTIAL_CONTENT.getStatusCode());
+
+        // the server only sends the requested range
+        when(mockResponse.getEntity()).thenReturn(new ByteArrayInputStream(new byte[] {67, 68}));
+
+        Map<String, Serializable> arguments = new HashMap<String, Serializable>();
+        arguments.put(BYTES_TO_SKIP, 2L);
+        arguments.put(RANGE_END, 3L);
+
+        ResourceResponse response = doVerification(uri, JPEG_FILE_NAME_1, JPEG_MIME_TYPE,
+                arguments);
+
+        verify(mockWebClient).header("Range", "bytes=2-3");
+        assertArrayEquals(new byte[] {67, 68}, response.getResource().getByteArray());
+        assertThat(response.getPropertyValue(BYTES_SKIPPED), is((Serializable) Boolean.TRUE));
+        assertThat(response.getPropertyValue(RANGE_RETRIEVED), is((Serializable) Boolean.TRUE));
+    }
+
+    @Test
+    public void testRetrievingRangeFromServerWithoutRangeSupport() throws Exception {
+        URI uri = new URI(HTTP_SCHEME_PLUS_SEP + HOST + TEST_PATH + BAD_FILE_NAME);
+
+        Response mockResponse = mock(Response.class);
+        when(mockWebClient.get()).thenReturn(mockResponse);
+        MultivaluedMap<String, Object> map = new MultivaluedHashMap<>();
+        map.put(HttpHeaders.CONTENT_DISPOSITION,
+                Arrays.<Object> asList("inline; filename=\"" + JPEG_FILE_NAME_1 + "\""));
+        when(mockResponse.getHeaders()).thenReturn(map);
+        when(mockResponse.getStatus()).thenReturn(Response.Status.OK.getStatusCode());
+
+        when(mockResponse.getEntity()).thenReturn(getBinaryData());
+
+        Map<String, Serializable> arguments = new HashMap<String, Serializable>();
+        arguments.put(BYTES_TO_SKIP, 1L);
+        arguments.put(RANGE_END, 3L);
+
+        ResourceResponse response = doVerification(uri, JPEG_FILE_NAME_1, JPEG_MIME_TYPE,
+                arguments);
+
+        assertArrayEquals(new byte[] {66, 67, 68}, response.getResource().getByteArray());
+        assertThat(response.getPropertyValue(BYTES_SKIPPED), is((Serializable) Boolean.TRUE));
+        assertThat(response.getPropertyValue(RANGE_RETRIEVED), is(nullValue()));
+    }
+
+    @Test
+    public void testRetrievingRangeFromFile() throws Exception {
+        File file = new File(ABSOLUTE_PATH + TEST_PATH + JPEG_FILE_NAME_1);
+        byte[] fileBytes = FileUtils.readFileToByteArray(file);
+
+        Map<String, Serializable> arguments = new HashMap<String, Serializable>();
+        arguments.put(BYTES_TO_SKIP, 10L);
+        arguments.put(RANGE_END, 19L);
+
+        ResourceResponse response = doVerification(file.toURI(), JPEG_FILE_NAME_1,
+                JPEG_MIME_TYPE, arguments);
+
+        assertArrayEquals(Arrays.copyOfRange(fileBytes, 10, 20),
+                response.getResource().getByteArray());
+        assertThat(response.getPropertyValue(BYTES_SKIPPED), is((Serializable) Boolean.TRUE));
+        assertThat(response.getPropertyValue(RANGE_RETRIEVED), is((Serializable) Boolean.TRUE));
+
+        arguments.remove(RANGE_END);
+        response = doVerification(file.toURI(), JPEG_FILE_NAME_1, JPEG_MIME_TYPE, arguments);
+
+        assertArrayEquals(Arrays.copyOfRange(fileBytes, 10, fileBytes.length),
+                response.getResource().getByteArray());
+    }
+
     @Test
     public void testUnquotedNameInContentDisposition() throws Exception {
         URI uri = new URI(HTTP_SCHEME_PLUS_SEP + HOST + TEST_PATH + BAD_FILE_NAME);
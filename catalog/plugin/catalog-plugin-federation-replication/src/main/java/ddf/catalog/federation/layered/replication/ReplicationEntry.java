@@ -0,0 +1,108 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package ddf.catalog.federation.layered.replication;
+
+/**
+ * An operation to replicate to the parent, as recorded in the {@link ReplicationJournal}.
+ */
+public class ReplicationEntry {
+
+    public enum Operation {
+        CREATE, UPDATE, DELETE
+    }
+
+    private final Operation operation;
+
+    private final String id;
+
+    private final String mimeType;
+
+    private final byte[] data;
+
+    private final long timestamp;
+
+    private long sequence;
+
+    private long segment;
+
+    private long endOffset;
+
+    /**
+     * @param operation the operation to replicate
+     * @param id        the ID of the metacard
+     * @param mimeType  the mime type of the transformed metacard, or null for deletes
+     * @param data      the transformed metacard, or an empty array for deletes
+     */
+    public ReplicationEntry(Operation operation, String id, String mimeType, byte[] data) {
+        this(operation, id, mimeType, data, System.currentTimeMillis());
+    }
+
+    ReplicationEntry(Operation operation, String id, String mimeType, byte[] data,
+            long timestamp) {
+        this.operation = operation;
+        this.id = id;
+        this.mimeType = mimeType;
+        this.data = data;
+        this.timestamp = timestamp;
+    }
+
+    public Operation getOperation() {
+        return operation;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    /**
+     * @return the time the operation was journaled, in milliseconds
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return the position of the entry in the journal, starting at 1
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    void setPosition(long sequence, long segment, long endOffset) {
+        this.sequence = sequence;
+        this.segment = segment;
+        this.endOffset = endOffset;
+    }
+
+    long getSegment() {
+        return segment;
+    }
+
+    long getEndOffset() {
+        return endOffset;
+    }
+
+    @Override
+    public String toString() {
+        return operation + " " + id + " (" + sequence + ")";
+    }
+}
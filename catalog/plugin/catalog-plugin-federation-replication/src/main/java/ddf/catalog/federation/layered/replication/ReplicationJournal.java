@@ -0,0 +1,426 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package ddf.catalog.federation.layered.replication;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ddf.catalog.federation.layered.replication.ReplicationEntry.Operation;
+
+/**
+ * An append only journal of the operations to replicate, kept on local disk.
+ * <p>
+ * The entries are appended to segment files, named after the sequence number of their first entry.
+ * Each entry is written with its length and checksum, so that an entry torn by a crash is dropped
+ * when the journal is opened again. The position of the last replicated entry is kept in a
+ * checkpoint file, and the segments before it are deleted.
+ */
+public class ReplicationJournal implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReplicationJournal.class);
+
+    static final String SEGMENT_PREFIX = "segment-";
+
+    static final String SEGMENT_SUFFIX = ".journal";
+
+    static final String CHECKPOINT_FILE = "checkpoint.properties";
+
+    private static final String CHECKPOINT_SEGMENT = "segment";
+
+    private static final String CHECKPOINT_OFFSET = "offset";
+
+    private static final String CHECKPOINT_SEQUENCE = "sequence";
+
+    // The length and the checksum of the entry
+    private static final int HEADER_LENGTH = 8;
+
+    private final File directory;
+
+    private final long maxSegmentBytes;
+
+    private final boolean syncWrites;
+
+    private FileChannel writeChannel;
+
+    private long writeSegment;
+
+    private long lastSequence;
+
+    private long committedSegment;
+
+    private long committedOffset;
+
+    private long committedSequence;
+
+    private long readSegment;
+
+    private long readOffset;
+
+    private long readSequence;
+
+    /**
+     * Opens the journal in a directory, creating it if needed.
+     *
+     * @param directory       the directory of the journal
+     * @param maxSegmentBytes the size after which a new segment file is started
+     * @param syncWrites      true to force the entries to disk before {@link #append(List)}
+     *                        returns
+     * @throws IOException if the journal cannot be read or created
+     */
+    public ReplicationJournal(File directory, long maxSegmentBytes, boolean syncWrites)
+            throws IOException {
+        this.directory = directory;
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.syncWrites = syncWrites;
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create journal directory " + directory);
+        }
+
+        List<Long> segments = listSegments();
+        Properties checkpoint = readCheckpoint();
+        if (checkpoint != null) {
+            committedSegment = Long.parseLong(checkpoint.getProperty(CHECKPOINT_SEGMENT));
+            committedOffset = Long.parseLong(checkpoint.getProperty(CHECKPOINT_OFFSET));
+            committedSequence = Long.parseLong(checkpoint.getProperty(CHECKPOINT_SEQUENCE));
+        } else if (!segments.isEmpty()) {
+            committedSegment = segments.get(0);
+            committedSequence = committedSegment - 1;
+        }
+
+        lastSequence = committedSequence;
+        if (!segments.isEmpty()) {
+            writeSegment = segments.get(segments.size() - 1);
+            lastSequence = Math.max(lastSequence, recover(writeSegment));
+            writeChannel = FileChannel
+                    .open(getSegmentFile(writeSegment).toPath(), StandardOpenOption.WRITE);
+        }
+        rewind();
+
+        LOGGER.debug("Opened replication journal {} with {} pending entries", directory,
+                getBacklog());
+    }
+
+    /**
+     * Appends entries to the journal, assigning them their sequence numbers.
+     *
+     * @param entries the entries to append
+     * @throws IOException if the entries could not be written, in which case the entries that
+     *                     were not written are not in the journal
+     */
+    public synchronized void append(List<ReplicationEntry> entries) throws IOException {
+        for (ReplicationEntry entry : entries) {
+            if (writeChannel == null || writeChannel.size() >= maxSegmentBytes) {
+                roll();
+            }
+
+            long sequence = lastSequence + 1;
+            byte[] payload = encode(entry, sequence);
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_LENGTH + payload.length);
+            buffer.putInt(payload.length).putInt(checksum(payload)).put(payload);
+            buffer.flip();
+
+            long start = writeChannel.size();
+            try {
+                writeChannel.position(start);
+                while (buffer.hasRemaining()) {
+                    writeChannel.write(buffer);
+                }
+            } catch (IOException e) {
+                // Entries appended after a partial entry could not be read
+                writeChannel.truncate(start);
+                throw e;
+            }
+            entry.setPosition(sequence, writeSegment, start + buffer.limit());
+            lastSequence = sequence;
+        }
+
+        if (syncWrites && writeChannel != null) {
+            writeChannel.force(false);
+        }
+    }
+
+    /**
+     * Reads the entries following the last entry read, or the last entry committed if the journal
+     * was rewound.
+     *
+     * @param maxEntries the maximum number of entries to read
+     * @return the entries, in the order they were appended
+     * @throws IOException if the journal cannot be read
+     */
+    public synchronized List<ReplicationEntry> read(int maxEntries) throws IOException {
+        List<ReplicationEntry> entries = new ArrayList<>();
+
+        while (entries.size() < maxEntries && readSequence < lastSequence) {
+            File segmentFile = getSegmentFile(readSegment);
+            if (segmentFile.exists()) {
+                try (RandomAccessFile in = new RandomAccessFile(segmentFile, "r")) {
+                    in.seek(readOffset);
+                    ReplicationEntry entry;
+                    while (entries.size() < maxEntries
+                            && (entry = readEntry(in, readSegment)) != null) {
+                        entries.add(entry);
+                        readOffset = entry.getEndOffset();
+                        readSequence = entry.getSequence();
+                    }
+                }
+            }
+
+            if (entries.size() < maxEntries && readSequence < lastSequence) {
+                Long next = getNextSegment(readSegment);
+                if (next == null) {
+                    LOGGER.warn("Unable to read replication journal entry {} in {}",
+                            readSequence + 1, segmentFile);
+                    break;
+                }
+                readSegment = next;
+                readOffset = 0;
+            }
+        }
+
+        return entries;
+    }
+
+    /**
+     * Marks an entry, and all the entries before it, as replicated.
+     *
+     * @param entry the last replicated entry
+     * @throws IOException if the checkpoint cannot be written
+     */
+    public synchronized void commit(ReplicationEntry entry) throws IOException {
+        Properties checkpoint = new Properties();
+        checkpoint.setProperty(CHECKPOINT_SEGMENT, Long.toString(entry.getSegment()));
+        checkpoint.setProperty(CHECKPOINT_OFFSET, Long.toString(entry.getEndOffset()));
+        checkpoint.setProperty(CHECKPOINT_SEQUENCE, Long.toString(entry.getSequence()));
+
+        File checkpointFile = new File(directory, CHECKPOINT_FILE);
+        File tempFile = new File(directory, CHECKPOINT_FILE + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tempFile)) {
+            checkpoint.store(out, null);
+            if (syncWrites) {
+                out.getFD().sync();
+            }
+        }
+        Files.move(tempFile.toPath(), checkpointFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+
+        committedSegment = entry.getSegment();
+        committedOffset = entry.getEndOffset();
+        committedSequence = entry.getSequence();
+
+        for (Long segment : listSegments()) {
+            if (segment < committedSegment && !getSegmentFile(segment).delete()) {
+                LOGGER.debug("Unable to delete replicated journal segment {}", segment);
+            }
+        }
+    }
+
+    /**
+     * Moves the read position back to the last committed entry, so that the entries read since
+     * are read again.
+     */
+    public synchronized void rewind() {
+        readSegment = committedSegment;
+        readOffset = committedOffset;
+        readSequence = committedSequence;
+    }
+
+    /**
+     * @return the number of entries that were not committed
+     */
+    public synchronized long getBacklog() {
+        return lastSequence - committedSequence;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (writeChannel != null) {
+            writeChannel.close();
+            writeChannel = null;
+        }
+    }
+
+    private void roll() throws IOException {
+        close();
+        writeSegment = lastSequence + 1;
+        writeChannel = FileChannel.open(getSegmentFile(writeSegment).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        if (committedSequence == lastSequence && readSequence == lastSequence) {
+            // Nothing is pending, so reading can start from the new segment
+            readSegment = writeSegment;
+            readOffset = 0;
+        }
+        LOGGER.debug("Started replication journal segment {}", writeSegment);
+    }
+
+    /**
+     * Drops the entry torn by a crash at the end of a segment, if any.
+     *
+     * @return the sequence number of the last entry of the segment
+     */
+    private long recover(long segment) throws IOException {
+        long sequence = segment - 1;
+        try (RandomAccessFile file = new RandomAccessFile(getSegmentFile(segment), "rw")) {
+            ReplicationEntry entry;
+            while ((entry = readEntry(file, segment)) != null) {
+                sequence = entry.getSequence();
+            }
+            long end = file.getFilePointer();
+            if (end < file.length()) {
+                LOGGER.warn("Dropping {} bytes of incomplete entries from replication journal {}",
+                        file.length() - end, getSegmentFile(segment));
+                file.setLength(end);
+            }
+        }
+        return sequence;
+    }
+
+    /**
+     * @return the next entry, or null if the end of the segment or an invalid entry was reached,
+     * in which case the file pointer is left before that entry
+     */
+    private ReplicationEntry readEntry(RandomAccessFile in, long segment) throws IOException {
+        long start = in.getFilePointer();
+        long available = in.length() - start;
+        if (available < HEADER_LENGTH) {
+            return null;
+        }
+        int length = in.readInt();
+        int checksum = in.readInt();
+        if (length < 0 || length > available - HEADER_LENGTH) {
+            in.seek(start);
+            return null;
+        }
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        if (checksum(payload) != checksum) {
+            LOGGER.debug("Invalid checksum at {} in replication journal segment {}", start,
+                    segment);
+            in.seek(start);
+            return null;
+        }
+
+        ReplicationEntry entry = decode(payload);
+        entry.setPosition(entry.getSequence(), segment, in.getFilePointer());
+        return entry;
+    }
+
+    private byte[] encode(ReplicationEntry entry, long sequence) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(entry.getData().length + 128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeLong(sequence);
+            out.writeLong(entry.getTimestamp());
+            out.writeUTF(entry.getOperation().name());
+            // Creates may be journaled before the metacard has an ID
+            out.writeUTF(entry.getId() == null ? "" : entry.getId());
+            out.writeBoolean(entry.getMimeType() != null);
+            if (entry.getMimeType() != null) {
+                out.writeUTF(entry.getMimeType());
+            }
+            out.writeInt(entry.getData().length);
+            out.write(entry.getData());
+        }
+        return bytes.toByteArray();
+    }
+
+    private ReplicationEntry decode(byte[] payload) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            long sequence = in.readLong();
+            long timestamp = in.readLong();
+            Operation operation = Operation.valueOf(in.readUTF());
+            String id = in.readUTF();
+            String mimeType = in.readBoolean() ? in.readUTF() : null;
+            byte[] data = new byte[in.readInt()];
+            in.readFully(data);
+
+            ReplicationEntry entry = new ReplicationEntry(operation, id, mimeType, data,
+                    timestamp);
+            entry.setPosition(sequence, 0, 0);
+            return entry;
+        }
+    }
+
+    private int checksum(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private Properties readCheckpoint() throws IOException {
+        File checkpointFile = new File(directory, CHECKPOINT_FILE);
+        if (!checkpointFile.exists()) {
+            return null;
+        }
+        Properties checkpoint = new Properties();
+        try (InputStream in = new FileInputStream(checkpointFile)) {
+            checkpoint.load(in);
+        }
+        return checkpoint;
+    }
+
+    private List<Long> listSegments() {
+        List<Long> segments = new ArrayList<>();
+        String[] names = directory.list();
+        if (names != null) {
+            for (String name : names) {
+                if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                    try {
+                        segments.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                                name.length() - SEGMENT_SUFFIX.length())));
+                    } catch (NumberFormatException e) {
+                        LOGGER.debug("Ignoring file {} in replication journal", name, e);
+                    }
+                }
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    private Long getNextSegment(long segment) {
+        for (Long next : listSegments()) {
+            if (next > segment) {
+                return next;
+            }
+        }
+        return null;
+    }
+
+    File getSegmentFile(long segment) {
+        return new File(directory, String.format("%s%019d%s", SEGMENT_PREFIX, segment,
+                SEGMENT_SUFFIX));
+    }
+}
@@ -0,0 +1,390 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package ddf.catalog.federation.layered.replication;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.HashSet;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import org.apache.cxf.jaxrs.client.WebClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ddf.catalog.federation.layered.replication.ReplicationEntry.Operation;
+
+/**
+ * Replicates the operations of a {@link ReplicationJournal} to the parent, in the order they were
+ * journaled.
+ * <p>
+ * The operations are read from the journal in batches and sent by a single thread, so the
+ * operations on a metacard reach the parent in order. Updates followed by another update or a
+ * delete of the same metacard in the same batch are skipped. When the parent cannot be reached,
+ * fails, or does not authorize the operation, the operation is retried with an exponential
+ * backoff; when the parent rejects an operation, it is logged and dropped. A delete of a metacard
+ * the parent does not have counts as replicated.
+ */
+public class ReplicationQueue implements ReplicationQueueMBean {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReplicationQueue.class);
+
+    private static final long INITIAL_RETRY_DELAY = TimeUnit.SECONDS.toMillis(1);
+
+    private static final long MAX_RETRY_DELAY = TimeUnit.MINUTES.toMillis(5);
+
+    private static final String GZIP = "gzip";
+
+    private final ReplicationJournal journal;
+
+    private final ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1);
+
+    private final Runnable replicationTask = new Runnable() {
+        @Override
+        public void run() {
+            replicate();
+        }
+    };
+
+    private final AtomicLong replicatedCount = new AtomicLong();
+
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    private final AtomicLong failedAttemptCount = new AtomicLong();
+
+    private volatile WebClient client;
+
+    private volatile int batchSize = 100;
+
+    private volatile boolean compress = false;
+
+    private volatile long oldestPendingTimestamp;
+
+    private long pollInterval = TimeUnit.SECONDS.toMillis(1);
+
+    private long retryDelay;
+
+    private ObjectName objectName;
+
+    public ReplicationQueue(ReplicationJournal journal) {
+        this.journal = journal;
+        // Only the batch being sent delays a shutdown
+        scheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    /**
+     * Starts replicating the journal, and registers the metrics of the queue.
+     */
+    public void start() {
+        registerMBean();
+        scheduler.execute(replicationTask);
+    }
+
+    /**
+     * Stops replicating and closes the journal. The operations that were not replicated are
+     * replicated once a queue is started on the journal again.
+     */
+    public void shutdown() {
+        scheduler.shutdown();
+        try {
+            if (!scheduler.awaitTermination(10, TimeUnit.SECONDS)) {
+                scheduler.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            scheduler.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+
+        unregisterMBean();
+        try {
+            journal.close();
+        } catch (IOException e) {
+            LOGGER.warn("Unable to close the replication journal", e);
+        }
+    }
+
+    /**
+     * Journals operations to replicate.
+     *
+     * @param entries the operations to replicate
+     * @throws IOException if the operations could not be journaled
+     */
+    public void add(List<ReplicationEntry> entries) throws IOException {
+        journal.append(entries);
+    }
+
+    /**
+     * @param client the client of the parent, or null to stop replicating
+     */
+    public void setClient(WebClient client) {
+        this.client = client;
+    }
+
+    /**
+     * @param batchSize the maximum number of operations read from the journal at a time
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * @param compress true to compress the metacards sent to the parent with gzip
+     */
+    public void setCompress(boolean compress) {
+        this.compress = compress;
+    }
+
+    void setPollInterval(long pollInterval) {
+        this.pollInterval = pollInterval;
+    }
+
+    @Override
+    public long getBacklog() {
+        return journal.getBacklog();
+    }
+
+    @Override
+    public long getLag() {
+        long oldest = oldestPendingTimestamp;
+        if (oldest == 0 || journal.getBacklog() == 0) {
+            return 0;
+        }
+        return System.currentTimeMillis() - oldest;
+    }
+
+    @Override
+    public long getReplicatedCount() {
+        return replicatedCount.get();
+    }
+
+    @Override
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    @Override
+    public long getFailedAttemptCount() {
+        return failedAttemptCount.get();
+    }
+
+    private void replicate() {
+        long delay;
+        try {
+            delay = replicateBatch();
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Unable to replicate the journaled operations", e);
+            journal.rewind();
+            delay = getRetryDelay();
+        }
+
+        try {
+            scheduler.schedule(replicationTask, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            LOGGER.debug("Replication queue was shut down", e);
+        }
+    }
+
+    /**
+     * Sends the next batch of operations to the parent.
+     *
+     * @return the delay before the next batch, in milliseconds
+     */
+    long replicateBatch() throws IOException {
+        WebClient parentClient = client;
+        if (parentClient == null) {
+            return pollInterval;
+        }
+
+        List<ReplicationEntry> batch = journal.read(batchSize);
+        if (batch.isEmpty()) {
+            oldestPendingTimestamp = 0;
+            return pollInterval;
+        }
+        oldestPendingTimestamp = batch.get(0).getTimestamp();
+
+        Set<ReplicationEntry> superseded = getSuperseded(batch);
+        ReplicationEntry lastReplicated = null;
+        boolean failed = false;
+        try {
+            for (ReplicationEntry entry : batch) {
+                if (!superseded.contains(entry) && !replicate(parentClient, entry)) {
+                    oldestPendingTimestamp = entry.getTimestamp();
+                    failed = true;
+                    break;
+                }
+                lastReplicated = entry;
+            }
+        } finally {
+            if (lastReplicated != null) {
+                journal.commit(lastReplicated);
+            }
+        }
+
+        if (failed) {
+            journal.rewind();
+            return getRetryDelay();
+        }
+        retryDelay = 0;
+        return batch.size() < batchSize ? pollInterval : 0;
+    }
+
+    /**
+     * @return false if the operation should be retried
+     */
+    private boolean replicate(WebClient parentClient, ReplicationEntry entry) {
+        int status;
+        try {
+            status = send(parentClient, entry);
+        } catch (IOException | RuntimeException e) {
+            failedAttemptCount.incrementAndGet();
+            LOGGER.debug("Unable to replicate {}", entry, e);
+            return false;
+        }
+
+        Response.Status.Family family = Response.Status.Family.familyOf(status);
+        if (family == Response.Status.Family.SUCCESSFUL
+                || family == Response.Status.Family.REDIRECTION || (
+                entry.getOperation() == Operation.DELETE && status == 404)) {
+            replicatedCount.incrementAndGet();
+            return true;
+        } else if (family == Response.Status.Family.SERVER_ERROR || status == 408
+                || status == 429) {
+            failedAttemptCount.incrementAndGet();
+            LOGGER.debug("Parent failed to replicate {} with status {}", entry, status);
+            return false;
+        } else if (status == 401 || status == 403 || status == 407) {
+            // Credentials or permissions are fixed on either side without touching the journal
+            failedAttemptCount.incrementAndGet();
+            LOGGER.warn("Parent did not authorize replicating {}, status {}", entry, status);
+            return false;
+        }
+
+        rejectedCount.incrementAndGet();
+        LOGGER.warn("Parent rejected {} with status {}, dropping it", entry, status);
+        return true;
+    }
+
+    /**
+     * Sends an operation to the parent.
+     *
+     * @return the HTTP status of the response of the parent
+     */
+    protected int send(WebClient parentClient, ReplicationEntry entry) throws IOException {
+        WebClient entryClient = WebClient.fromClient(parentClient);
+        Response response;
+        if (entry.getOperation() == Operation.CREATE) {
+            response = entryClient.post(getBody(entryClient, entry));
+        } else if (entry.getOperation() == Operation.UPDATE) {
+            response = entryClient.path(entry.getId()).put(getBody(entryClient, entry));
+        } else {
+            response = entryClient.path(entry.getId()).delete();
+        }
+        int status = response.getStatus();
+        response.close();
+
+        LOGGER.debug("Replicated {}, parent responded with status {}", entry, status);
+        return status;
+    }
+
+    private byte[] getBody(WebClient entryClient, ReplicationEntry entry) throws IOException {
+        entryClient.type(entry.getMimeType() == null ?
+                MediaType.APPLICATION_OCTET_STREAM :
+                entry.getMimeType());
+        if (!compress) {
+            return entry.getData();
+        }
+
+        entryClient.header(HttpHeaders.CONTENT_ENCODING, GZIP);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(entry.getData().length / 4);
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(entry.getData());
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @return the updates that are replaced by a later update or delete of the same metacard
+     */
+    private Set<ReplicationEntry> getSuperseded(List<ReplicationEntry> batch) {
+        Set<ReplicationEntry> superseded = new HashSet<>();
+        Set<String> replacedIds = new HashSet<>();
+        ListIterator<ReplicationEntry> entries = batch.listIterator(batch.size());
+        while (entries.hasPrevious()) {
+            ReplicationEntry entry = entries.previous();
+            if (entry.getOperation() == Operation.CREATE) {
+                replacedIds.remove(entry.getId());
+            } else {
+                if (entry.getOperation() == Operation.UPDATE && replacedIds
+                        .contains(entry.getId())) {
+                    superseded.add(entry);
+                }
+                replacedIds.add(entry.getId());
+            }
+        }
+        return superseded;
+    }
+
+    private long getRetryDelay() {
+        retryDelay = retryDelay == 0 ?
+                INITIAL_RETRY_DELAY :
+                Math.min(retryDelay * 2, MAX_RETRY_DELAY);
+        LOGGER.info("Unable to replicate to the parent, retrying in {} ms. {} operations pending.",
+                retryDelay, journal.getBacklog());
+        return retryDelay;
+    }
+
+    private void registerMBean() {
+        MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+        try {
+            objectName = new ObjectName(ReplicationQueueMBean.OBJECTNAME);
+            try {
+                mbeanServer.registerMBean(new StandardMBean(this, ReplicationQueueMBean.class),
+                        objectName);
+            } catch (InstanceAlreadyExistsException e) {
+                LOGGER.debug("Re-registering replication queue MBean");
+                mbeanServer.unregisterMBean(objectName);
+                mbeanServer.registerMBean(new StandardMBean(this, ReplicationQueueMBean.class),
+                        objectName);
+            }
+        } catch (Exception e) {
+            LOGGER.warn("Could not register replication queue MBean.", e);
+        }
+    }
+
+    private void unregisterMBean() {
+        if (objectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (Exception e) {
+            LOGGER.debug("Could not unregister replication queue MBean.", e);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package ddf.catalog.federation.layered.replication;
+
+public interface ReplicationQueueMBean {
+
+    String OBJECTNAME = "ddf.catalog.federation.layered.replication.ReplicationQueue:service=replication-queue";
+
+    /**
+     * @return the number of journaled operations that were not replicated yet
+     */
+    long getBacklog();
+
+    /**
+     * @return how long, in milliseconds, the oldest operation that was not replicated has been
+     * waiting, as of the last batch read from the journal
+     */
+    long getLag();
+
+    /**
+     * @return the number of operations replicated since the queue started
+     */
+    long getReplicatedCount();
+
+    /**
+     * @return the number of operations the parent rejected and that were dropped
+     */
+    long getRejectedCount();
+
+    /**
+     * @return the number of failed attempts to reach the parent, which are retried
+     */
+    long getFailedAttemptCount();
+}
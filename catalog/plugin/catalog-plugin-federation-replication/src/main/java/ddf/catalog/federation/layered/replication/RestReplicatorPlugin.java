@@ -13,14 +13,11 @@
  */
 package ddf.catalog.federation.layered.replication;
 
+import java.io.File;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 
-import javax.ws.rs.core.MediaType;
-import javax.ws.rs.core.Response;
-
-import org.apache.commons.lang.builder.ToStringBuilder;
 import org.apache.cxf.jaxrs.client.WebClient;
 import org.codice.ddf.configuration.PropertyResolver;
 import org.slf4j.Logger;
@@ -28,6 +25,7 @@
 
 import ddf.catalog.data.BinaryContent;
 import ddf.catalog.data.Metacard;
+import ddf.catalog.federation.layered.replication.ReplicationEntry.Operation;
 import ddf.catalog.operation.CreateResponse;
 import ddf.catalog.operation.DeleteResponse;
 import ddf.catalog.operation.Update;
@@ -38,10 +36,19 @@
 import ddf.catalog.transform.CatalogTransformerException;
 import ddf.catalog.transform.MetacardTransformer;
 
+/**
+ * Replicates the created, updated and deleted metacards to a parent node.
+ * <p>
+ * The metacards are transformed and journaled on local disk while they are ingested, and a
+ * {@link ReplicationQueue} sends them to the parent in the background, so that ingest does not
+ * wait for the parent and the operations survive an outage of the parent or a restart.
+ */
 public class RestReplicatorPlugin implements PostIngestPlugin {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(RestReplicatorPlugin.class);
 
+    private static final long MAX_SEGMENT_BYTES = 16 * 1024 * 1024;
+
     /**
      * A configurable property of parent's location.
      */
@@ -51,24 +58,58 @@ public class RestReplicatorPlugin implements PostIngestPlugin {
 
     private WebClient client;
 
+    private String journalDirectory = "data/replication";
+
+    private int batchSize = 100;
+
+    private boolean compress = false;
+
+    private volatile ReplicationQueue queue;
+
     public RestReplicatorPlugin(String endpointAddress) {
         setParentAddress(endpointAddress);
     }
 
+    /**
+     * Opens the journal and starts replicating the operations that are pending.
+     */
+    public synchronized void init() {
+        try {
+            ReplicationJournal journal = new ReplicationJournal(new File(journalDirectory),
+                    MAX_SEGMENT_BYTES, true);
+            queue = new ReplicationQueue(journal);
+            queue.setClient(client);
+            queue.setBatchSize(batchSize);
+            queue.setCompress(compress);
+            queue.start();
+        } catch (IOException e) {
+            LOGGER.error("Unable to open the replication journal in {}, metacards will not be "
+                    + "replicated", journalDirectory, e);
+        }
+    }
+
+    /**
+     * Stops replicating. The pending operations are replicated once the plugin is started again.
+     */
+    public synchronized void destroy() {
+        if (queue != null) {
+            queue.shutdown();
+            queue = null;
+        }
+    }
+
     @Override
     public CreateResponse process(CreateResponse input) throws PluginExecutionException {
 
         if (client != null && transformer != null) {
 
-            for (Metacard m : input.getCreatedMetacards()) {
-
-                String data = transform(m, client);
-
-                Response r = client.post(data);
+            List<ReplicationEntry> entries = new ArrayList<>();
 
-                LOGGER.debug("Posted the following GeoJSON: {}\n", data);
-                LOGGER.debug("RESPONSE: [{}]", ToStringBuilder.reflectionToString(r));
+            for (Metacard m : input.getCreatedMetacards()) {
+                entries.add(transform(Operation.CREATE, m.getId(), m));
             }
+
+            journal(entries);
         }
 
         return input;
@@ -79,10 +120,6 @@ public UpdateResponse process(UpdateResponse input) throws PluginExecutionExcept
 
         if (client != null && transformer != null) {
 
-            WebClient updateClient = WebClient.fromClient(client);
-
-            updateClient.type(MediaType.APPLICATION_JSON);
-
             List<Update> updates = input.getUpdatedMetacards();
 
             if (updates == null) {
@@ -95,6 +132,8 @@ public UpdateResponse process(UpdateResponse input) throws PluginExecutionExcept
                         "Cannot replicate records that are not updated by " + Metacard.ID));
             }
 
+            List<ReplicationEntry> entries = new ArrayList<>();
+
             for (int i = 0; i < updates.size(); i++) {
 
                 Update update = updates.get(i);
@@ -103,18 +142,14 @@ public UpdateResponse process(UpdateResponse input) throws PluginExecutionExcept
                         && request.getUpdates().get(i) != null
                         && request.getUpdates().get(i).getKey() != null) {
 
-                    updateClient.path(request.getUpdates().get(i).getKey());
-
-                    Metacard newMetacard = update.getNewMetacard();
-
-                    String newData = transform(newMetacard, updateClient);
-
-                    Response r = updateClient.put(newData);
-
-                    LOGGER.debug("RESPONSE: [{}]", ToStringBuilder.reflectionToString(r));
+                    entries.add(transform(Operation.UPDATE,
+                            request.getUpdates().get(i).getKey().toString(),
+                            update.getNewMetacard()));
                 }
 
             }
+
+            journal(entries);
         }
 
         return input;
@@ -125,29 +160,24 @@ public DeleteResponse process(DeleteResponse input) throws PluginExecutionExcept
 
         if (client != null) {
 
-            WebClient updateClient = WebClient.fromClient(client);
-
-            updateClient.type(MediaType.APPLICATION_JSON);
-
             if (input == null || input.getDeletedMetacards() == null || input.getDeletedMetacards()
                     .isEmpty()) {
                 return input;
             }
 
-            for (int i = 0; i < input.getDeletedMetacards().size(); i++) {
+            List<ReplicationEntry> entries = new ArrayList<>();
 
-                Metacard metacard = input.getDeletedMetacards().get(i);
+            for (Metacard metacard : input.getDeletedMetacards()) {
 
                 if (metacard != null && metacard.getId() != null) {
 
-                    updateClient.path(metacard.getId());
-
-                    Response r = updateClient.delete();
-
-                    LOGGER.debug("RESPONSE: [{}]", ToStringBuilder.reflectionToString(r));
+                    entries.add(new ReplicationEntry(Operation.DELETE, metacard.getId(), null,
+                            new byte[0]));
                 }
 
             }
+
+            journal(entries);
         }
 
         return input;
@@ -157,7 +187,7 @@ public String getParentAddress() {
         return parentAddress.getResolvedString();
     }
 
-    public void setParentAddress(String endpointAddress) {
+    public synchronized void setParentAddress(String endpointAddress) {
 
         if (endpointAddress == null) {
 
@@ -177,6 +207,9 @@ public void setParentAddress(String endpointAddress) {
                     this.parentAddress);
         }
 
+        if (queue != null) {
+            queue.setClient(client);
+        }
     }
 
     public MetacardTransformer getTransformer() {
@@ -188,13 +221,81 @@ public void setTransformer(MetacardTransformer transformer) {
         LOGGER.debug("Changed transformer to [{}]", this.transformer);
     }
 
-    private String transform(Metacard m, WebClient client) throws PluginExecutionException {
+    /**
+     * @param journalDirectory the directory the operations to replicate are journaled in
+     */
+    public synchronized void setJournalDirectory(String journalDirectory) {
+        if (journalDirectory == null || journalDirectory.equals(this.journalDirectory)) {
+            return;
+        }
+        LOGGER.debug("Changed the journal directory from [{}] to [{}]", this.journalDirectory,
+                journalDirectory);
+        this.journalDirectory = journalDirectory;
+        if (queue != null) {
+            destroy();
+            init();
+        }
+    }
+
+    /**
+     * @param batchSize the maximum number of operations sent to the parent at a time
+     */
+    public synchronized void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            LOGGER.warn("Invalid replication batch size {}, keeping {}", batchSize,
+                    this.batchSize);
+            return;
+        }
+        this.batchSize = batchSize;
+        if (queue != null) {
+            queue.setBatchSize(batchSize);
+        }
+    }
+
+    /**
+     * @param compress true to send the metacards to the parent compressed with gzip
+     */
+    public synchronized void setCompress(boolean compress) {
+        this.compress = compress;
+        if (queue != null) {
+            queue.setCompress(compress);
+        }
+    }
+
+    /**
+     * @return the queue replicating the journal, or null if the journal could not be opened
+     */
+    ReplicationQueue getQueue() {
+        return queue;
+    }
+
+    private void journal(List<ReplicationEntry> entries) throws PluginExecutionException {
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        ReplicationQueue replicationQueue = queue;
+        if (replicationQueue == null) {
+            throw new PluginExecutionException(
+                    "Replication journal is not available, could not replicate metacards.");
+        }
+        try {
+            replicationQueue.add(entries);
+            LOGGER.debug("Journaled {} operations for replication", entries.size());
+        } catch (IOException e) {
+            LOGGER.warn("Could not journal metacards for replication.", e);
+            throw new PluginExecutionException("Could not replicate metacards.", e);
+        }
+    }
+
+    private ReplicationEntry transform(Operation operation, String id, Metacard m)
+            throws PluginExecutionException {
 
         BinaryContent binaryContent;
         try {
             binaryContent = transformer.transform(m, null);
-            client.type(getValidMimeType(binaryContent.getMimeTypeValue()));
-            return new String(binaryContent.getByteArray(), StandardCharsets.UTF_8);
+            return new ReplicationEntry(operation, id, binaryContent.getMimeTypeValue(),
+                    binaryContent.getByteArray());
         } catch (IOException e) {
             LOGGER.warn("Could not understand metacard.", e);
             throw new PluginExecutionException("Could not send metacard.");
@@ -203,11 +304,4 @@ private String transform(Metacard m, WebClient client) throws PluginExecutionExc
             throw new PluginExecutionException("Could not send metacard.");
         }
     }
-
-    private String getValidMimeType(String mimeTypeValue) {
-        if (mimeTypeValue == null) {
-            return MediaType.APPLICATION_OCTET_STREAM;
-        }
-        return mimeTypeValue;
-    }
 }
@@ -24,9 +24,12 @@
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 
 import javax.ws.rs.core.HttpHeaders;
@@ -42,12 +45,16 @@
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Ignore;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import ddf.catalog.data.BinaryContent;
 import ddf.catalog.data.Metacard;
+import ddf.catalog.federation.layered.replication.ReplicationEntry;
+import ddf.catalog.federation.layered.replication.ReplicationJournal;
 import ddf.catalog.federation.layered.replication.RestReplicatorPlugin;
 import ddf.catalog.operation.CreateResponse;
 import ddf.catalog.operation.DeleteResponse;
@@ -82,6 +89,9 @@ public class TestPlugin {
 
     private static Metacard metacard;
 
+    @Rule
+    public TemporaryFolder testFolder = new TemporaryFolder();
+
     @BeforeClass
     public static void initialize() throws InterruptedException {
         // startServer();
@@ -284,6 +294,36 @@ public void testDelete()
         assertThat(response, sameInstance(deleteResponse));
     }
 
+    @Test
+    public void testOperationsJournaled() throws Exception {
+        // given
+        File journalDirectory = testFolder.newFolder("replication");
+        plugin.setJournalDirectory(journalDirectory.getPath());
+        plugin.init();
+        when(metacard.getId()).thenReturn("23");
+
+        // when
+        try {
+            plugin.process(new CreateResponseImpl(new CreateRequestImpl(metacard), null,
+                    Arrays.asList(metacard)));
+            plugin.process(new UpdateResponseImpl(new UpdateRequestImpl("23", metacard), null,
+                    Arrays.asList(metacard), Arrays.asList(metacard)));
+            plugin.process(new DeleteResponseImpl(null, null, Arrays.asList(metacard)));
+        } finally {
+            plugin.destroy();
+        }
+
+        // then the parent is not running, so every operation is still pending
+        List<String> journaled = new ArrayList<>();
+        try (ReplicationJournal journal = new ReplicationJournal(journalDirectory, 1024 * 1024,
+                false)) {
+            for (ReplicationEntry entry : journal.read(10)) {
+                journaled.add(entry.getOperation() + " " + entry.getId());
+            }
+        }
+        assertThat(journaled, is(Arrays.asList("CREATE 23", "UPDATE 23", "DELETE 23")));
+    }
+
     @Test
     @Ignore
     public void testParentAddress() {
@@ -0,0 +1,156 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package ddf.catalog.federation.layered.replication;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ddf.catalog.federation.layered.replication.ReplicationEntry.Operation;
+
+public class TestReplicationJournal {
+
+    @Rule
+    public TemporaryFolder testFolder = new TemporaryFolder();
+
+    @Test
+    public void testReadsEntriesInOrder() throws IOException {
+        ReplicationJournal journal = openJournal();
+        journal.append(getEntries(5));
+
+        List<ReplicationEntry> entries = journal.read(3);
+        entries.addAll(journal.read(10));
+
+        assertThat(entries.size(), is(5));
+        for (int i = 0; i < entries.size(); i++) {
+            assertThat(entries.get(i).getSequence(), is(i + 1L));
+            assertThat(entries.get(i).getId(), is("id" + i));
+            assertThat(entries.get(i).getOperation(), is(Operation.UPDATE));
+            assertThat(entries.get(i).getMimeType(), is("text/plain"));
+            assertThat(new String(entries.get(i).getData(), StandardCharsets.UTF_8),
+                    is("data" + i));
+        }
+        assertThat(journal.read(10).isEmpty(), is(true));
+        assertThat(journal.getBacklog(), is(5L));
+        journal.close();
+    }
+
+    @Test
+    public void testRewindRereadsUncommittedEntries() throws IOException {
+        ReplicationJournal journal = openJournal();
+        journal.append(getEntries(5));
+
+        journal.commit(journal.read(2).get(1));
+        journal.read(2);
+        journal.rewind();
+
+        List<ReplicationEntry> entries = journal.read(10);
+        assertThat(entries.size(), is(3));
+        assertThat(entries.get(0).getId(), is("id2"));
+        assertThat(journal.getBacklog(), is(3L));
+        journal.close();
+    }
+
+    @Test
+    public void testReopenResumesAfterCheckpoint() throws IOException {
+        ReplicationJournal journal = openJournal();
+        journal.append(getEntries(5));
+        journal.commit(journal.read(3).get(2));
+        journal.close();
+
+        journal = openJournal();
+        assertThat(journal.getBacklog(), is(2L));
+        List<ReplicationEntry> entries = journal.read(10);
+        assertThat(entries.size(), is(2));
+        assertThat(entries.get(0).getId(), is("id3"));
+
+        journal.append(Collections.singletonList(getEntry("id5")));
+        assertThat(journal.read(10).get(0).getSequence(), is(6L));
+        journal.close();
+    }
+
+    @Test
+    public void testReopenDropsTornEntry() throws IOException {
+        ReplicationJournal journal = openJournal();
+        journal.append(getEntries(2));
+        journal.close();
+        try (FileOutputStream out = new FileOutputStream(journal.getSegmentFile(1), true)) {
+            out.write(new byte[] {0, 0, 0, 100, 1, 2, 3});
+        }
+
+        journal = openJournal();
+        journal.append(Collections.singletonList(getEntry("id2")));
+
+        List<ReplicationEntry> entries = journal.read(10);
+        assertThat(entries.size(), is(3));
+        assertThat(entries.get(2).getId(), is("id2"));
+        assertThat(entries.get(2).getSequence(), is(3L));
+        journal.close();
+    }
+
+    @Test
+    public void testCommitDeletesReplicatedSegments() throws IOException {
+        ReplicationJournal journal = new ReplicationJournal(testFolder.getRoot(), 1, true);
+        journal.append(getEntries(3));
+        assertThat(countSegments(), is(3));
+
+        List<ReplicationEntry> entries = journal.read(10);
+        journal.commit(entries.get(2));
+
+        assertThat(countSegments(), is(1));
+        assertThat(journal.getBacklog(), is(0L));
+
+        journal.append(Collections.singletonList(getEntry("id3")));
+        assertThat(journal.read(10).get(0).getId(), is("id3"));
+        journal.close();
+    }
+
+    private ReplicationJournal openJournal() throws IOException {
+        return new ReplicationJournal(testFolder.getRoot(), 1024 * 1024, true);
+    }
+
+    private int countSegments() {
+        int count = 0;
+        for (File file : testFolder.getRoot().listFiles()) {
+            if (file.getName().endsWith(ReplicationJournal.SEGMENT_SUFFIX)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private List<ReplicationEntry> getEntries(int count) {
+        List<ReplicationEntry> entries = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            entries.add(getEntry("id" + i));
+        }
+        return entries;
+    }
+
+    private ReplicationEntry getEntry(String id) {
+        return new ReplicationEntry(Operation.UPDATE, id, "text/plain",
+                id.replace("id", "data").getBytes(StandardCharsets.UTF_8));
+    }
+}
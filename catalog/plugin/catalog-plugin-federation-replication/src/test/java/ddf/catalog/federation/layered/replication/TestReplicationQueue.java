@@ -0,0 +1,210 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package ddf.catalog.federation.layered.replication;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+import org.apache.cxf.jaxrs.client.WebClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ddf.catalog.federation.layered.replication.ReplicationEntry.Operation;
+
+public class TestReplicationQueue {
+
+    private static final long POLL_INTERVAL = 1000;
+
+    @Rule
+    public TemporaryFolder testFolder = new TemporaryFolder();
+
+    private ReplicationJournal journal;
+
+    private MockQueue queue;
+
+    @Before
+    public void setup() throws IOException {
+        journal = new ReplicationJournal(testFolder.getRoot(), 1024 * 1024, false);
+        queue = new MockQueue(journal);
+        queue.setClient(mock(WebClient.class));
+        queue.setBatchSize(10);
+        queue.setPollInterval(POLL_INTERVAL);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        journal.close();
+    }
+
+    @Test
+    public void testReplicatesInOrder() throws IOException {
+        queue.add(Arrays.asList(getEntry(Operation.CREATE, "1"), getEntry(Operation.CREATE, "2"),
+                getEntry(Operation.DELETE, "1")));
+
+        assertThat(queue.replicateBatch(), is(POLL_INTERVAL));
+
+        assertThat(queue.sent, is(Arrays.asList("CREATE 1", "CREATE 2", "DELETE 1")));
+        assertThat(queue.getBacklog(), is(0L));
+        assertThat(queue.getReplicatedCount(), is(3L));
+    }
+
+    @Test
+    public void testSkipsSupersededUpdates() throws IOException {
+        queue.add(Arrays.asList(getEntry(Operation.UPDATE, "1"), getEntry(Operation.UPDATE, "2"),
+                getEntry(Operation.UPDATE, "1"), getEntry(Operation.UPDATE, "2"),
+                getEntry(Operation.DELETE, "2")));
+
+        queue.replicateBatch();
+
+        assertThat(queue.sent, is(Arrays.asList("UPDATE 1", "DELETE 2")));
+        assertThat(queue.getBacklog(), is(0L));
+    }
+
+    @Test
+    public void testKeepsUpdatesAfterCreate() throws IOException {
+        queue.add(Arrays.asList(getEntry(Operation.UPDATE, "1"), getEntry(Operation.CREATE, "1"),
+                getEntry(Operation.UPDATE, "1")));
+
+        queue.replicateBatch();
+
+        assertThat(queue.sent, is(Arrays.asList("UPDATE 1", "CREATE 1", "UPDATE 1")));
+    }
+
+    @Test
+    public void testRetriesWithBackoff() throws IOException {
+        queue.add(Arrays.asList(getEntry(Operation.CREATE, "1"), getEntry(Operation.CREATE, "2"),
+                getEntry(Operation.CREATE, "3")));
+        queue.statuses.addAll(Arrays.asList(201, 503));
+
+        assertThat(queue.replicateBatch(), is(1000L));
+        assertThat(queue.getBacklog(), is(2L));
+        assertThat(queue.getLag() >= 0, is(true));
+
+        queue.statuses.add(-1);
+        assertThat(queue.replicateBatch(), is(2000L));
+        assertThat(queue.getFailedAttemptCount(), is(2L));
+
+        assertThat(queue.replicateBatch(), is(POLL_INTERVAL));
+        assertThat(queue.sent,
+                is(Arrays.asList("CREATE 1", "CREATE 2", "CREATE 2", "CREATE 2", "CREATE 3")));
+        assertThat(queue.getBacklog(), is(0L));
+        assertThat(queue.getLag(), is(0L));
+    }
+
+    @Test
+    public void testDropsRejectedOperations() throws IOException {
+        queue.add(Arrays.asList(getEntry(Operation.UPDATE, "1"), getEntry(Operation.UPDATE, "2")));
+        queue.statuses.add(404);
+
+        queue.replicateBatch();
+
+        assertThat(queue.sent, is(Arrays.asList("UPDATE 1", "UPDATE 2")));
+        assertThat(queue.getRejectedCount(), is(1L));
+        assertThat(queue.getReplicatedCount(), is(1L));
+        assertThat(queue.getBacklog(), is(0L));
+    }
+
+    @Test
+    public void testRetriesUnauthorizedOperations() throws IOException {
+        queue.add(Arrays.asList(getEntry(Operation.CREATE, "1"), getEntry(Operation.CREATE, "2")));
+        queue.statuses.addAll(Arrays.asList(401, 403, 407));
+
+        assertThat(queue.replicateBatch(), is(1000L));
+        assertThat(queue.replicateBatch(), is(2000L));
+        assertThat(queue.replicateBatch(), is(4000L));
+        assertThat(queue.getBacklog(), is(2L));
+        assertThat(queue.getRejectedCount(), is(0L));
+
+        assertThat(queue.replicateBatch(), is(POLL_INTERVAL));
+        assertThat(queue.getReplicatedCount(), is(2L));
+        assertThat(queue.getBacklog(), is(0L));
+    }
+
+    @Test
+    public void testDeleteOfMissingMetacardReplicated() throws IOException {
+        queue.add(Arrays.asList(getEntry(Operation.DELETE, "1")));
+        queue.statuses.add(404);
+
+        queue.replicateBatch();
+
+        assertThat(queue.getReplicatedCount(), is(1L));
+        assertThat(queue.getRejectedCount(), is(0L));
+        assertThat(queue.getBacklog(), is(0L));
+    }
+
+    @Test
+    public void testContinuesWithFullBatches() throws IOException {
+        List<ReplicationEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 15; i++) {
+            entries.add(getEntry(Operation.CREATE, Integer.toString(i)));
+        }
+        queue.add(entries);
+
+        assertThat(queue.replicateBatch(), is(0L));
+        assertThat(queue.getBacklog(), is(5L));
+        assertThat(queue.replicateBatch(), is(POLL_INTERVAL));
+        assertThat(queue.getBacklog(), is(0L));
+    }
+
+    @Test
+    public void testWaitsForParent() throws IOException {
+        queue.add(Arrays.asList(getEntry(Operation.CREATE, "1")));
+        queue.setClient(null);
+
+        assertThat(queue.replicateBatch(), is(POLL_INTERVAL));
+
+        assertThat(queue.sent.isEmpty(), is(true));
+        assertThat(queue.getBacklog(), is(1L));
+    }
+
+    private ReplicationEntry getEntry(Operation operation, String id) {
+        return new ReplicationEntry(operation, id, "application/json", new byte[] {1});
+    }
+
+    /**
+     * Records the operations instead of sending them, and responds with the queued statuses, or
+     * fails to connect for a negative status.
+     */
+    private static class MockQueue extends ReplicationQueue {
+
+        private final List<String> sent = new ArrayList<>();
+
+        private final Deque<Integer> statuses = new ArrayDeque<>();
+
+        MockQueue(ReplicationJournal journal) {
+            super(journal);
+        }
+
+        @Override
+        protected int send(WebClient parentClient, ReplicationEntry entry) throws IOException {
+            sent.add(entry.getOperation() + " " + entry.getId());
+            Integer status = statuses.poll();
+            if (status != null && status < 0) {
+                throw new IOException("Connection refused");
+            }
+            return status == null ? 200 : status;
+        }
+    }
+}
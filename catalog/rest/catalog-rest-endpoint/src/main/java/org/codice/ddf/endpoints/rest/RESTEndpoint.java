@@ -47,6 +47,7 @@
 import javax.ws.rs.core.UriInfo;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
 import org.apache.commons.lang.StringUtils;
 import org.apache.cxf.jaxrs.ext.multipart.Attachment;
 import org.apache.cxf.jaxrs.ext.multipart.MultipartBody;
@@ -96,6 +97,8 @@ public class RESTEndpoint implements RESTService {
 
     static final String BYTES_TO_SKIP = "BytesToSkip";
 
+    static final String RANGE_END = "RangeEnd";
+
     private static final Logger LOGGER = LoggerFactory.getLogger(RESTEndpoint.class);
 
     private static final Logger INGEST_LOGGER = LoggerFactory
@@ -107,6 +110,8 @@ public class RESTEndpoint implements RESTService {
 
     private static final String HEADER_CONTENT_LENGTH = "Content-Length";
 
+    private static final String HEADER_CONTENT_RANGE = "Content-Range";
+
     private static final String HEADER_CONTENT_DISPOSITION = "Content-Disposition";
 
     private static final String FILE_ATTACHMENT_CONTENT_ID = "file";
@@ -441,18 +446,38 @@ public Response getDocument(@PathParam("sourceid") String sourceid, @PathParam("
                 // Check for Range header set the value in the map appropriately so that the catalogFramework
                 // can take care of the skipping
                 long bytesToSkip = getRangeStart(httpRequest);
+                Long rangeEnd = getRangeEnd(httpRequest);
 
                 if (bytesToSkip > 0) {
                     LOGGER.debug("Bytes to skip: {}", String.valueOf(bytesToSkip));
                     convertedMap.put(BYTES_TO_SKIP, bytesToSkip);
                 }
+                if (rangeEnd != null) {
+                    if (rangeEnd < bytesToSkip) {
+                        throw new UnsupportedQueryException(
+                                "Invalid range header: " + httpRequest.getHeader(HEADER_RANGE));
+                    }
+                    LOGGER.debug("Range end: {}", rangeEnd);
+                    convertedMap.put(RANGE_END, rangeEnd);
+                }
 
                 LOGGER.debug("Calling transform.");
                 final BinaryContent content = catalogFramework
                         .transform(card, transformer, convertedMap);
                 LOGGER.debug("Read and transform complete, preparing response.");
 
-                responseBuilder = Response.ok(content.getInputStream(), content.getMimeTypeValue());
+                if (rangeEnd != null) {
+                    // Sources may ignore the end of the range, so the content is bounded here
+                    long length = rangeEnd - bytesToSkip + 1;
+                    responseBuilder = Response.status(Status.PARTIAL_CONTENT)
+                            .entity(new BoundedInputStream(content.getInputStream(), length))
+                            .type(content.getMimeTypeValue());
+                    responseBuilder.header(HEADER_CONTENT_RANGE,
+                            BYTES + " " + bytesToSkip + "-" + rangeEnd + "/*");
+                } else {
+                    responseBuilder = Response
+                            .ok(content.getInputStream(), content.getMimeTypeValue());
+                }
 
                 // Add the Accept-ranges header to let the client know that we accept ranges in bytes
                 responseBuilder.header(HEADER_ACCEPT_RANGES, BYTES);
@@ -879,6 +904,28 @@ private long getRangeStart(HttpServletRequest httpRequest) throws UnsupportedQue
         return response;
     }
 
+    // Return null (end of stream) if the range header does not exist or has no end.
+    private Long getRangeEnd(HttpServletRequest httpRequest) throws UnsupportedQueryException {
+        if (httpRequest != null && rangeHeaderExists(httpRequest)) {
+            String rangeHeader = httpRequest.getHeader(HEADER_RANGE);
+            if (!rangeHeader.startsWith(BYTES_EQUAL)) {
+                throw new UnsupportedQueryException("Invalid range header: " + rangeHeader);
+            }
+
+            String range = rangeHeader.substring(BYTES_EQUAL.length());
+            int separator = range.indexOf('-');
+            if (separator != -1 && separator < range.length() - 1) {
+                try {
+                    return Long.valueOf(range.substring(separator + 1).trim());
+                } catch (NumberFormatException e) {
+                    throw new UnsupportedQueryException("Invalid range header: " + rangeHeader);
+                }
+            }
+        }
+
+        return null;
+    }
+
     private String getRange(String rangeHeader) throws UnsupportedQueryException {
         String response = null;
 
@@ -0,0 +1,262 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package ddf.catalog.security.filter.plugin;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.shiro.subject.PrincipalCollection;
+import org.apache.shiro.subject.Subject;
+import org.opensaml.saml2.core.Attribute;
+import org.opensaml.saml2.core.AttributeStatement;
+import org.opensaml.xml.XMLObject;
+import org.opensaml.xml.schema.XSString;
+import org.osgi.service.cm.ConfigurationEvent;
+import org.osgi.service.cm.ConfigurationListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import ddf.security.assertion.SecurityAssertion;
+import ddf.security.permission.CollectionPermission;
+import ddf.security.permission.KeyValueCollectionPermission;
+
+/**
+ * Caches the read decisions of the {@link FilterPlugin}.
+ * <p>
+ * The results of a query usually share a handful of distinct security markings, so a decision is
+ * cached per combination of the attributes of the subject and the security attributes of the
+ * metacard rather than per metacard. Decisions expire after a configurable time, which also bounds
+ * how long a change to file based policies takes to apply, and the whole cache is invalidated
+ * whenever a configuration, such as that of the authorization realms, changes.
+ */
+public class AuthorizationDecisionCache implements ConfigurationListener {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AuthorizationDecisionCache.class);
+
+    private volatile boolean enabled = true;
+
+    private volatile long maximumSize = 10000;
+
+    private volatile long expirationSeconds = 300;
+
+    private volatile Cache<List<Object>, Boolean> decisions = buildCache();
+
+    /**
+     * @param enabled false to evaluate the policies for every result
+     */
+    public void setEnabled(boolean enabled) {
+        LOGGER.debug("Setting authorization decision cache enabled = {}", enabled);
+        this.enabled = enabled;
+        invalidate();
+    }
+
+    /**
+     * @param maximumSize the maximum number of decisions to keep
+     */
+    public void setMaximumSize(long maximumSize) {
+        if (maximumSize < 1) {
+            LOGGER.warn("Invalid authorization decision cache size {}, keeping {}", maximumSize,
+                    this.maximumSize);
+            return;
+        }
+        this.maximumSize = maximumSize;
+        decisions = buildCache();
+    }
+
+    /**
+     * @param expirationSeconds how long, in seconds, a decision is kept
+     */
+    public void setExpirationSeconds(long expirationSeconds) {
+        if (expirationSeconds < 1) {
+            LOGGER.warn("Invalid authorization decision expiration {}, keeping {}",
+                    expirationSeconds, this.expirationSeconds);
+            return;
+        }
+        this.expirationSeconds = expirationSeconds;
+        decisions = buildCache();
+    }
+
+    /**
+     * Returns the decisions for a subject. The attributes of the subject are read once, so the
+     * returned object should be used for all the results of a single response.
+     *
+     * @param subject the subject the results are filtered for
+     * @return the decisions of the subject
+     */
+    public SubjectDecisions forSubject(Subject subject) {
+        return new SubjectDecisions(subject, enabled ? getSubjectKey(subject) : null);
+    }
+
+    /**
+     * Discards all cached decisions.
+     */
+    public void invalidate() {
+        decisions.invalidateAll();
+    }
+
+    @Override
+    public void configurationEvent(ConfigurationEvent event) {
+        // Any configuration may feed into the policies, e.g. that of the realms or the expansions
+        LOGGER.debug("Configuration {} changed, invalidating authorization decisions",
+                event.getPid());
+        invalidate();
+    }
+
+    public long getHitCount() {
+        return decisions.stats().hitCount();
+    }
+
+    public long getMissCount() {
+        return decisions.stats().missCount();
+    }
+
+    /**
+     * @return the ratio of the decisions that were found in the cache since it was last
+     * configured, or 1 if no decision has been requested
+     */
+    public double getHitRate() {
+        return decisions.stats().hitRate();
+    }
+
+    public long getSize() {
+        return decisions.size();
+    }
+
+    private Cache<List<Object>, Boolean> buildCache() {
+        return CacheBuilder.newBuilder().maximumSize(maximumSize)
+                .expireAfterWrite(expirationSeconds, TimeUnit.SECONDS).recordStats().build();
+    }
+
+    /**
+     * Reduces a subject to the attributes its decisions depend on. Subjects backed by a security
+     * assertion are identified by its principal and attributes, so that they share decisions
+     * across requests. Other subjects are identified by their principals.
+     *
+     * @return the key of the subject, or null if its decisions should not be cached
+     */
+    private Object getSubjectKey(Subject subject) {
+        PrincipalCollection principals = subject.getPrincipals();
+        if (principals == null || principals.isEmpty()) {
+            return null;
+        }
+        SecurityAssertion assertion = principals.oneByType(SecurityAssertion.class);
+        if (assertion == null) {
+            return principals;
+        }
+
+        SortedMap<String, SortedSet<String>> attributes = new TreeMap<>();
+        for (AttributeStatement statement : assertion.getAttributeStatements()) {
+            for (Attribute attribute : statement.getAttributes()) {
+                if (attribute.getName() == null) {
+                    continue;
+                }
+                SortedSet<String> values = attributes.get(attribute.getName());
+                if (values == null) {
+                    values = new TreeSet<>();
+                    attributes.put(attribute.getName(), values);
+                }
+                for (XMLObject value : attribute.getAttributeValues()) {
+                    if (value instanceof XSString && ((XSString) value).getValue() != null) {
+                        values.add(((XSString) value).getValue());
+                    } else if (value != null && value.getDOM() != null
+                            && value.getDOM().getTextContent() != null) {
+                        values.add(value.getDOM().getTextContent());
+                    } else {
+                        LOGGER.debug("Unable to read attribute {}, not caching decisions",
+                                attribute.getName());
+                        return null;
+                    }
+                }
+            }
+        }
+        String principal = assertion.getPrincipal() == null ?
+                null :
+                assertion.getPrincipal().getName();
+        return Arrays.asList(principal, attributes);
+    }
+
+    /**
+     * The decisions of one subject.
+     */
+    public final class SubjectDecisions {
+
+        private final Subject subject;
+
+        private final Object subjectKey;
+
+        private final KeyValueCollectionPermission permission = new KeyValueCollectionPermission(
+                CollectionPermission.READ_ACTION);
+
+        private SubjectDecisions(Subject subject, Object subjectKey) {
+            this.subject = subject;
+            this.subjectKey = subjectKey;
+        }
+
+        /**
+         * @param securityAttributes the security attributes of a metacard, or null if it has none
+         * @return true if the subject may read the metacard
+         */
+        public boolean isPermitted(Map<String, List<String>> securityAttributes) {
+            List<Object> key = getKey(securityAttributes);
+            if (key == null) {
+                return evaluate(securityAttributes);
+            }
+
+            Boolean decision = decisions.getIfPresent(key);
+            if (decision == null) {
+                decision = evaluate(securityAttributes);
+                decisions.put(key, decision);
+            }
+            return decision;
+        }
+
+        private boolean evaluate(Map<String, List<String>> securityAttributes) {
+            permission.clear();
+            if (securityAttributes != null) {
+                permission.addAll(securityAttributes);
+            }
+            return subject.isPermitted(permission);
+        }
+
+        /**
+         * Normalizes the security attributes, since neither the order of the attributes nor that
+         * of their values changes the decision.
+         */
+        private List<Object> getKey(Map<String, List<String>> securityAttributes) {
+            if (subjectKey == null) {
+                return null;
+            }
+            SortedMap<String, SortedSet<String>> normalized = new TreeMap<>();
+            if (securityAttributes != null) {
+                for (Map.Entry<String, List<String>> entry : securityAttributes.entrySet()) {
+                    if (entry.getKey() == null || entry.getValue() == null || entry.getValue()
+                            .contains(null)) {
+                        return null;
+                    }
+                    normalized.put(entry.getKey(), new TreeSet<>(entry.getValue()));
+                }
+            }
+            return Arrays.asList(subjectKey, normalized);
+        }
+    }
+}
@@ -30,8 +30,6 @@
 import ddf.catalog.plugin.StopProcessingException;
 import ddf.security.SecurityConstants;
 import ddf.security.common.audit.SecurityLogger;
-import ddf.security.permission.CollectionPermission;
-import ddf.security.permission.KeyValueCollectionPermission;
 
 /**
  * This {@link PostQueryPlugin} performs redaction and filtering on {@link QueryResponse} objects as
@@ -42,6 +40,16 @@ public class FilterPlugin implements PostQueryPlugin {
 
     private final Logger logger = LoggerFactory.getLogger(FilterPlugin.class);
 
+    private final AuthorizationDecisionCache decisionCache;
+
+    public FilterPlugin() {
+        this(new AuthorizationDecisionCache());
+    }
+
+    public FilterPlugin(AuthorizationDecisionCache decisionCache) {
+        this.decisionCache = decisionCache;
+    }
+
     /**
      * Processes a {@link ddf.catalog.operation.QueryResponse} after the execution of the
      * {@link ddf.catalog.operation.Query}.
@@ -79,8 +87,7 @@ public QueryResponse process(QueryResponse input)
         List<Result> results = input.getResults();
         List<Result> newResults = new ArrayList<Result>(results.size());
         Metacard metacard;
-        KeyValueCollectionPermission securityPermission = new KeyValueCollectionPermission(
-                CollectionPermission.READ_ACTION);
+        AuthorizationDecisionCache.SubjectDecisions decisions = decisionCache.forSubject(subject);
         int filteredMetacards = 0;
         for (Result result : results) {
             metacard = result.getMetacard();
@@ -89,11 +96,7 @@ public QueryResponse process(QueryResponse input)
             if (null != attr) {
                 map = (Map<String, List<String>>) attr.getValue();
             }
-            securityPermission.clear();
-            if (map != null) {
-                securityPermission.addAll(map);
-            }
-            if (!subject.isPermitted(securityPermission)) {
+            if (!decisions.isPermitted(map)) {
                 filteredMetacards++;
             } else {
                 newResults.add(result);
@@ -102,6 +105,8 @@ public QueryResponse process(QueryResponse input)
 
         logger.info("Filtered {} metacards, returned {}", filteredMetacards,
                 (newResults.size() - filteredMetacards));
+        logger.debug("Authorization decision cache hit rate {}, {} decisions cached",
+                decisionCache.getHitRate(), decisionCache.getSize());
         SecurityLogger.logInfo(
                 "Filtered " + filteredMetacards + " metacards, returned " + (newResults.size()
                         - filteredMetacards));
@@ -16,6 +16,8 @@
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.io.Serializable;
@@ -45,6 +47,7 @@
 import org.mockito.stubbing.Answer;
 import org.opengis.filter.FilterVisitor;
 import org.opengis.filter.sort.SortBy;
+import org.osgi.service.cm.ConfigurationEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -62,6 +65,7 @@
 import ddf.catalog.operation.impl.QueryResponseImpl;
 import ddf.catalog.plugin.PluginExecutionException;
 import ddf.catalog.plugin.StopProcessingException;
+import ddf.catalog.security.filter.plugin.AuthorizationDecisionCache;
 import ddf.catalog.security.filter.plugin.FilterPlugin;
 import ddf.security.SecurityConstants;
 import ddf.security.Subject;
@@ -75,15 +79,20 @@ public class FilterPluginTest {
 
     FilterPlugin plugin;
 
+    AuthorizationDecisionCache decisionCache;
+
+    AuthorizingRealm realm;
+
     QueryResponseImpl incomingResponse;
 
     @Before
     public void setup() {
-        plugin = new FilterPlugin();
+        decisionCache = new AuthorizationDecisionCache();
+        plugin = new FilterPlugin(decisionCache);
         QueryRequestImpl request = getSampleRequest();
         Map<String, Serializable> properties = new HashMap<String, Serializable>();
 
-        AuthorizingRealm realm = mock(AuthorizingRealm.class);
+        realm = mock(AuthorizingRealm.class);
 
         when(realm.getName()).thenReturn("mockRealm");
         when(realm.isPermitted(any(PrincipalCollection.class), any(Permission.class)))
@@ -107,18 +116,23 @@ public String getName() {
         properties.put(SecurityConstants.SECURITY_SUBJECT, subject);
         request.setProperties(properties);
 
-        incomingResponse = new QueryResponseImpl(request);
+        incomingResponse = createResponse(request);
+    }
+
+    private QueryResponseImpl createResponse(QueryRequestImpl request) {
+        QueryResponseImpl response = new QueryResponseImpl(request);
 
         ResultImpl result1 = new ResultImpl(getMoreRolesMetacard());
         ResultImpl result2 = new ResultImpl(getMissingRolesMetacard());
         ResultImpl result3 = new ResultImpl(getExactRolesMetacard());
         ResultImpl result4 = new ResultImpl(getNoRolesMetacard());
         ResultImpl result5 = new ResultImpl(getNoSecurityAttributeMetacard());
-        incomingResponse.addResult(result1, false);
-        incomingResponse.addResult(result2, false);
-        incomingResponse.addResult(result3, false);
-        incomingResponse.addResult(result4, false);
-        incomingResponse.addResult(result5, true);
+        response.addResult(result1, false);
+        response.addResult(result2, false);
+        response.addResult(result3, false);
+        response.addResult(result4, false);
+        response.addResult(result5, true);
+        return response;
     }
 
     public Answer<Boolean> makeDecision() {
@@ -155,6 +169,33 @@ public void testPluginFilter() {
         }
     }
 
+    @Test
+    public void testCachesDecisions() throws Exception {
+        verifyFilterResponse(plugin.process(incomingResponse));
+        // Metacards with an empty and without a security attribute share a decision
+        verify(realm, times(4)).isPermitted(any(PrincipalCollection.class), any(Permission.class));
+
+        QueryRequestImpl request = (QueryRequestImpl) incomingResponse.getRequest();
+        verifyFilterResponse(plugin.process(createResponse(request)));
+        verify(realm, times(4)).isPermitted(any(PrincipalCollection.class), any(Permission.class));
+        Assert.assertEquals(4, decisionCache.getMissCount());
+        Assert.assertEquals(6, decisionCache.getHitCount());
+
+        decisionCache.configurationEvent(mock(ConfigurationEvent.class));
+        verifyFilterResponse(plugin.process(createResponse(request)));
+        verify(realm, times(8)).isPermitted(any(PrincipalCollection.class), any(Permission.class));
+    }
+
+    @Test
+    public void testDecisionCacheDisabled() throws Exception {
+        decisionCache.setEnabled(false);
+
+        verifyFilterResponse(plugin.process(incomingResponse));
+
+        verify(realm, times(5)).isPermitted(any(PrincipalCollection.class), any(Permission.class));
+        Assert.assertEquals(0, decisionCache.getSize());
+    }
+
     @Test(expected = StopProcessingException.class)
     public void testNoSubject() throws Exception {
         QueryResponseImpl response = new QueryResponseImpl(getSampleRequest());
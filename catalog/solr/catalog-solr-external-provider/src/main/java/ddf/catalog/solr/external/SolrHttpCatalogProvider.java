@@ -42,6 +42,7 @@
 import ddf.catalog.source.solr.DynamicSchemaResolver;
 import ddf.catalog.source.solr.SolrCatalogProvider;
 import ddf.catalog.source.solr.SolrFilterDelegateFactory;
+import ddf.catalog.source.solr.SolrMetacardTypeStore;
 import ddf.catalog.util.impl.MaskableImpl;
 
 /**
@@ -257,7 +258,10 @@ private CatalogProvider getProvider() {
             if (isServerUp(this.server)) {
                 if (resolver == null) {
                     provider = new SolrCatalogProvider(server, filterAdapter,
-                            solrFilterDelegateFactory);
+                            solrFilterDelegateFactory, new DynamicSchemaResolver(
+                            new SolrMetacardTypeStore(SolrServerFactory.getHttpSolrServer(url,
+                                    SolrMetacardTypeStore.METACARD_TYPES_CORE_NAME,
+                                    SOLR_CATALOG_CONFIG_FILE))));
                 } else {
                     provider = new SolrCatalogProvider(server, filterAdapter,
                             solrFilterDelegateFactory, resolver);
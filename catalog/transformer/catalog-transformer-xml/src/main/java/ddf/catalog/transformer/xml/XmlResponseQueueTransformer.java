@@ -15,11 +15,17 @@
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Serializable;
 import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.RecursiveTask;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -48,6 +54,12 @@
 /**
  * Transforms a {@link SourceResponse} object into Metacard Element XML text, which is GML 3.1.1.
  * compliant XML.
+ * <p>
+ * In streaming mode, responses larger than the threshold are not buffered: the returned content
+ * is read while the metacards are marshalled, in threshold-sized chunks, on the
+ * {@code ForkJoinPool}. Only a bounded number of chunks are marshalled ahead of the reader.
+ * Streaming is off by default: an endpoint may already have sent a successful status and the
+ * first bytes when a marshalling error occurs, so the client only sees a truncated response.
  */
 public class XmlResponseQueueTransformer extends AbstractXmlTransformer
         implements QueryResponseTransformer {
@@ -127,6 +139,127 @@ private StringWriter doCompute() {
 
     } // end MetacardForkTask class
 
+    /**
+     * Reads the metacards element, marshalling its content in chunks as it is consumed. Up to
+     * {@code chunksInFlight} chunks are submitted to the pool ahead of the chunk being read, and
+     * chunks are returned in the order of the results.
+     */
+    private static class MetacardChunkInputStream extends InputStream {
+        private final List<Result> resultList;
+
+        private final ForkJoinPool fjp;
+
+        private final GeometryTransformer geometryTransformer;
+
+        private final int threshold;
+
+        private final int chunksInFlight;
+
+        private final MetacardMarshaller metacardMarshaller;
+
+        private final AtomicBoolean cancelOperation = new AtomicBoolean(false);
+
+        private final Deque<ForkJoinTask<StringWriter>> pendingChunks = new ArrayDeque<>();
+
+        private byte[] footer;
+
+        private int nextChunkStart = 0;
+
+        private byte[] buffer;
+
+        private int position = 0;
+
+        MetacardChunkInputStream(List<Result> resultList, ForkJoinPool fjp,
+                GeometryTransformer geometryTransformer, int threshold, int chunksInFlight,
+                MetacardMarshaller mcm, byte[] header, byte[] footer) {
+            this.resultList = resultList;
+            this.fjp = fjp;
+            this.geometryTransformer = geometryTransformer;
+            this.threshold = threshold;
+            this.chunksInFlight = chunksInFlight;
+            this.metacardMarshaller = mcm;
+            this.buffer = header;
+            this.footer = footer;
+
+            while (pendingChunks.size() < chunksInFlight && submitNextChunk()) {
+                // fill the window
+            }
+        }
+
+        private boolean submitNextChunk() {
+            if (nextChunkStart >= resultList.size()) {
+                return false;
+            }
+
+            // chunks hold fewer results than the threshold so that the tasks do not split them
+            int end = Math.min(nextChunkStart + threshold - 1, resultList.size());
+            ImmutableList<Result> chunk = ImmutableList
+                    .copyOf(resultList.subList(nextChunkStart, end));
+            pendingChunks.add(fjp.submit(
+                    new MetacardForkTask(chunk, fjp, geometryTransformer, threshold,
+                            cancelOperation, metacardMarshaller)));
+            nextChunkStart = end;
+            return true;
+        }
+
+        private boolean nextBuffer() throws IOException {
+            ForkJoinTask<StringWriter> chunk = pendingChunks.poll();
+            if (chunk != null) {
+                try {
+                    buffer = chunk.join().toString().getBytes(StandardCharsets.UTF_8);
+                } catch (RuntimeException e) {
+                    close();
+                    throw new IOException("Failed Query response transformation", e);
+                }
+                submitNextChunk();
+            } else if (footer != null) {
+                buffer = footer;
+                footer = null;
+            } else {
+                return false;
+            }
+            position = 0;
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int read = read(single, 0, 1);
+            return read == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+
+            while (buffer == null || position >= buffer.length) {
+                if (!nextBuffer()) {
+                    return -1;
+                }
+            }
+
+            int read = Math.min(len, buffer.length - position);
+            System.arraycopy(buffer, position, b, off, read);
+            position += read;
+            return read;
+        }
+
+        @Override
+        public void close() {
+            cancelOperation.set(true);
+            for (ForkJoinTask<StringWriter> chunk : pendingChunks) {
+                chunk.cancel(false);
+            }
+            pendingChunks.clear();
+            nextChunkStart = resultList.size();
+            buffer = null;
+            footer = null;
+        }
+    } // end MetacardChunkInputStream class
+
     private final ForkJoinPool fjp;
 
     private final GeometryTransformer geometryTransformer;
@@ -137,6 +270,8 @@ private StringWriter doCompute() {
 
     private int threshold;
 
+    private boolean streaming = false;
+
     private static final Logger LOGGER = LoggerFactory.getLogger(XmlResponseQueueTransformer.class);
 
     private final MimeType mimeType;
@@ -192,6 +327,16 @@ public void setThreshold(int threshold) {
         this.threshold = threshold <= 1 ? 2 : threshold;
     }
 
+    /**
+     * @param streaming true to return the content of responses larger than the threshold while
+     *                  it is being marshalled, rather than once it has been entirely marshalled.
+     *                  Marshalling errors are then reported when reading the content,
+     *                  possibly after part of it has been sent. Defaults to false.
+     */
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
     @Override
     public BinaryContent transform(SourceResponse response, Map<String, Serializable> args)
             throws CatalogTransformerException {
@@ -204,6 +349,22 @@ public BinaryContent transform(SourceResponse response, Map<String, Serializable
                 writer.addAttribute(nsRow.getKey(), nsRow.getValue());
             }
 
+            if (streaming && response.getResults() != null
+                    && response.getResults().size() >= threshold) {
+                writer.setRawValue("");
+                String header = writer.makeString();
+                writer.endNode(); // metacards
+                String footer = writer.makeString().substring(header.length());
+
+                // keep every worker busy, plus one chunk ready for the reader
+                InputStream content = new MetacardChunkInputStream(response.getResults(), fjp,
+                        geometryTransformer, threshold, fjp.getParallelism() + 1,
+                        metacardMarshaller, header.getBytes(StandardCharsets.UTF_8),
+                        footer.getBytes(StandardCharsets.UTF_8));
+
+                return new BinaryContentImpl(content, mimeType);
+            }
+
             if (response.getResults() != null && !response.getResults().isEmpty()) {
                 StringWriter metacardContent = fjp
                         .invoke(new MetacardForkTask(ImmutableList.copyOf(response.getResults()),
@@ -214,7 +375,8 @@ public BinaryContent transform(SourceResponse response, Map<String, Serializable
 
             writer.endNode(); // metacards
 
-            ByteArrayInputStream bais = new ByteArrayInputStream(writer.makeString().getBytes());
+            ByteArrayInputStream bais = new ByteArrayInputStream(
+                    writer.makeString().getBytes(StandardCharsets.UTF_8));
 
             return new BinaryContentImpl(bais, mimeType);
         } catch (Exception e) {
@@ -32,6 +32,7 @@
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -397,6 +398,78 @@ public void testCompareSerialToFork()
         assertEquals(serialOutput.replaceAll("\\s", ""), forkOutput.replaceAll("\\s", ""));
     }
 
+    @Test
+    public void testCompareBufferedToStreaming()
+            throws IOException, CatalogTransformerException, MimeTypeParseException {
+        SourceResponse response = givenSourceResponse(new MetacardStub("source1", "id1"),
+                new MetacardStub("source2", "id2"), new MetacardStub("source3", "id3"),
+                new MetacardStub("source4", "id4"), new MetacardStub("source5", "id5"));
+
+        PrintWriterProvider pwp = new PrintWriterProviderImpl();
+        MetacardMarshaller mcm = new MetacardMarshallerImpl(parser, pwp);
+
+        XmlResponseQueueTransformer bufferedXform = new XmlResponseQueueTransformer(parser, FJP,
+                pwp, mcm, getMimeType());
+        bufferedXform.setThreshold(2);
+
+        XmlResponseQueueTransformer streamingXform = new XmlResponseQueueTransformer(parser, FJP,
+                pwp, mcm, getMimeType());
+        streamingXform.setThreshold(2);
+        streamingXform.setStreaming(true);
+
+        String bufferedOutput = new String(bufferedXform.transform(response, null).getByteArray(),
+                StandardCharsets.UTF_8);
+        String streamingOutput = new String(
+                streamingXform.transform(response, null).getByteArray(), StandardCharsets.UTF_8);
+
+        assertEquals(bufferedOutput, streamingOutput);
+    }
+
+    @Test(expected = IOException.class)
+    public void testStreamingMetacardMarshallThrowsXmlPullParserException()
+            throws IOException, CatalogTransformerException, XmlPullParserException,
+            MimeTypeParseException {
+        SourceResponse response = givenSourceResponse(new MetacardStub("source1", "id1"),
+                new MetacardStub("source2", "id2"), new MetacardStub("source3", "id3"));
+
+        PrintWriterProvider pwp = new PrintWriterProviderImpl();
+        MetacardMarshaller mockMetacardMarshaller = mock(MetacardMarshaller.class);
+
+        when(mockMetacardMarshaller.marshal(any(Metacard.class), any(Map.class)))
+                .thenThrow(new XmlPullParserException(""));
+
+        XmlResponseQueueTransformer xrqt = new XmlResponseQueueTransformer(parser, FJP, pwp,
+                mockMetacardMarshaller, getMimeType());
+        xrqt.setThreshold(2);
+        xrqt.setStreaming(true);
+
+        BinaryContent bc = xrqt.transform(response, null);
+        bc.getByteArray();
+
+        // then exception
+    }
+
+    @Test(expected = CatalogTransformerException.class)
+    public void testLargeResponseBufferedByDefault()
+            throws IOException, CatalogTransformerException, XmlPullParserException,
+            MimeTypeParseException {
+        SourceResponse response = givenSourceResponse(new MetacardStub("source1", "id1"),
+                new MetacardStub("source2", "id2"), new MetacardStub("source3", "id3"));
+
+        PrintWriterProvider pwp = new PrintWriterProviderImpl();
+        MetacardMarshaller mockMetacardMarshaller = mock(MetacardMarshaller.class);
+
+        when(mockMetacardMarshaller.marshal(any(Metacard.class), any(Map.class)))
+                .thenThrow(new XmlPullParserException(""));
+
+        XmlResponseQueueTransformer xrqt = new XmlResponseQueueTransformer(parser, FJP, pwp,
+                mockMetacardMarshaller, getMimeType());
+        xrqt.setThreshold(2);
+
+        // then the error is reported before any content is returned
+        xrqt.transform(response, null);
+    }
+
     @Test
     public void testXmlResponseQueueTransformer() throws Exception {
 
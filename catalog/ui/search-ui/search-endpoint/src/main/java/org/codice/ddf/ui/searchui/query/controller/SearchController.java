@@ -19,15 +19,16 @@
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.codice.ddf.ui.searchui.query.controller.search.CacheQueryRunnable;
-import org.codice.ddf.ui.searchui.query.controller.search.FilteringSolrIndexCallable;
 import org.codice.ddf.ui.searchui.query.controller.search.SourceQueryRunnable;
 import org.codice.ddf.ui.searchui.query.model.Search;
 import org.codice.ddf.ui.searchui.query.model.SearchRequest;
-import org.codice.ddf.ui.searchui.query.solr.FilteringSolrIndex;
+import org.codice.ddf.ui.searchui.query.relevance.RelevanceIndex;
 import org.cometd.bayeux.server.BayeuxServer;
 import org.cometd.bayeux.server.ConfigurableServerChannel;
+import org.cometd.bayeux.server.ServerChannel;
 import org.cometd.bayeux.server.ServerMessage;
 import org.cometd.bayeux.server.ServerSession;
 import org.cometd.server.ServerMessageImpl;
@@ -35,6 +36,8 @@
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.util.concurrent.Futures;
 
 import ddf.action.ActionRegistry;
@@ -42,6 +45,8 @@
 import ddf.catalog.data.Result;
 import ddf.catalog.filter.FilterAdapter;
 import ddf.catalog.operation.Query;
+import ddf.catalog.source.UnsupportedQueryException;
+import ddf.catalog.transform.CatalogTransformerException;
 import ddf.security.Subject;
 
 /**
@@ -51,8 +56,18 @@ public class SearchController {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(SearchController.class);
 
+    private static final int MAX_SEARCHES = 1000;
+
+    private static final int SEARCH_EXPIRATION_MINUTES = 10;
+
     private final ExecutorService executorService;
 
+    // Searches are kept while they run, so that clients that miss a delta can resync them. They
+    // are evicted once they finish or are cancelled, and expire in case neither happens.
+    private final Cache<String, Search> searches = CacheBuilder.newBuilder()
+            .maximumSize(MAX_SEARCHES)
+            .expireAfterWrite(SEARCH_EXPIRATION_MINUTES, TimeUnit.MINUTES).build();
+
     private final FilterAdapter filterAdapter;
 
     private Boolean cacheDisabled = false;
@@ -121,6 +136,59 @@ public void configureChannel(ConfigurableServerChannel channel) {
         bayeuxServer.getChannel(channelName).publish(serverSession, reply, null);
     }
 
+    /**
+     * Push the current results of a search out to its client. Searches requested as deltas only
+     * push the changes since the previous push, each push being numbered in sequence. Once all
+     * of the sources responded, all of the results are pushed and the search is no longer kept.
+     *
+     * @param search - Search to push
+     * @param serverSession - Cometd ServerSession
+     * @throws CatalogTransformerException
+     */
+    public void publishResults(Search search, ServerSession serverSession)
+            throws CatalogTransformerException {
+        String id = search.getSearchRequest().getId();
+        // Holding the search lock keeps the pushes in the order of their sequence numbers
+        synchronized (search) {
+            boolean finished = search.isFinished();
+            Map<String, Object> jsonData = search.getSearchRequest().isDelta() && !finished ?
+                    search.transformDelta(id) :
+                    search.transform(id);
+            pushResults(id, jsonData, serverSession);
+            if (finished) {
+                // A newer search with the same ID is left alone
+                searches.asMap().remove(id, search);
+            }
+        }
+    }
+
+    /**
+     * Push all of the current results of a search out to its client, e.g. after the client missed
+     * a delta.
+     *
+     * @param id - ID of the search request
+     * @param serverSession - Cometd ServerSession
+     * @return true if the results were pushed, false if the search is unknown, finished,
+     * cancelled, expired or has no results yet
+     * @throws CatalogTransformerException
+     */
+    public boolean resyncResults(String id, ServerSession serverSession)
+            throws CatalogTransformerException {
+        Search search = searches.getIfPresent(id);
+        if (search == null) {
+            LOGGER.debug("Unable to resync unknown search {}", id);
+            return false;
+        }
+        synchronized (search) {
+            if (search.getCompositeQueryResponse() == null) {
+                return false;
+            }
+            LOGGER.debug("Resyncing search {}", id);
+            pushResults(id, search.transform(id), serverSession);
+        }
+        return true;
+    }
+
     /**
      * Execute all of the queries contained within the SearchRequest
      *
@@ -133,16 +201,18 @@ public void executeQuery(final SearchRequest request, final ServerSession sessio
             final Subject subject) {
 
         final Search search = new Search(request, actionRegistry);
+        searches.put(request.getId(), search);
+        evictOnCancel(request.getId());
         final Map<String, Result> results = Collections
                 .synchronizedMap(new HashMap<String, Result>());
 
-        final Future<FilteringSolrIndex> solrIndexFuture;
+        RelevanceIndex relevanceIndex = null;
         if (shouldNormalizeRelevance(request)) {
-            // Create in memory Solr instance asynchronously
-            solrIndexFuture = executorService
-                    .submit(new FilteringSolrIndexCallable(request, filterAdapter));
-        } else {
-            solrIndexFuture = Futures.immediateFuture(null);
+            try {
+                relevanceIndex = new RelevanceIndex(filterAdapter, request.getQuery());
+            } catch (UnsupportedQueryException e) {
+                LOGGER.warn("Failed to parse query for relevance normalization", e);
+            }
         }
 
         final Future cacheFuture;
@@ -150,7 +220,7 @@ public void executeQuery(final SearchRequest request, final ServerSession sessio
             // Send any previously cached results
             cacheFuture = executorService
                     .submit(new CacheQueryRunnable(this, request, subject, search, session, results,
-                                    solrIndexFuture));
+                                    relevanceIndex));
         } else {
             cacheFuture = Futures.immediateFuture(null);
         }
@@ -159,8 +229,33 @@ public void executeQuery(final SearchRequest request, final ServerSession sessio
             // Send the latest results from each source
             executorService
                     .submit(new SourceQueryRunnable(this, sourceId, request, subject, results,
-                            search, session, cacheFuture, solrIndexFuture));
+                            search, session, cacheFuture, relevanceIndex));
+        }
+    }
+
+    /**
+     * Clients cancel a search by unsubscribing from its channel, after which the search is no
+     * longer kept. The listener only refers to the search by its ID, since the channel outlives it.
+     *
+     * @param id - ID of the search request
+     */
+    private synchronized void evictOnCancel(final String id) {
+        ServerChannel channel = bayeuxServer == null ? null : bayeuxServer.getChannel("/" + id);
+        if (channel == null) {
+            return;
         }
+        channel.addListener(new ServerChannel.SubscriptionListener() {
+            public void subscribed(ServerSession session, ServerChannel channel) {
+            }
+
+            public void unsubscribed(ServerSession session, ServerChannel channel) {
+                if (channel.getSubscribers().isEmpty()) {
+                    LOGGER.debug("Search {} was cancelled", id);
+                    searches.invalidate(id);
+                    channel.removeListener(this);
+                }
+            }
+        });
     }
 
     public boolean shouldNormalizeDistance(SearchRequest request) {
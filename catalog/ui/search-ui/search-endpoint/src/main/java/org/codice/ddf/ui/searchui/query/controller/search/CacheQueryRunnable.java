@@ -16,32 +16,27 @@
 
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 
 import org.codice.ddf.ui.searchui.query.controller.SearchController;
 import org.codice.ddf.ui.searchui.query.model.Search;
 import org.codice.ddf.ui.searchui.query.model.SearchRequest;
-import org.codice.ddf.ui.searchui.query.solr.FilteringSolrIndex;
+import org.codice.ddf.ui.searchui.query.relevance.RelevanceIndex;
 import org.cometd.bayeux.server.ServerSession;
 
 import ddf.catalog.data.Result;
 import ddf.catalog.operation.QueryResponse;
-import ddf.catalog.source.IngestException;
 import ddf.catalog.transform.CatalogTransformerException;
 import ddf.security.Subject;
 
 public class CacheQueryRunnable extends QueryRunnable {
 
-    private final Future<FilteringSolrIndex> solrIndexFuture;
+    private final RelevanceIndex relevanceIndex;
 
     public CacheQueryRunnable(SearchController searchController, SearchRequest request,
             Subject subject, Search search, ServerSession session, Map<String, Result> results,
-            Future<FilteringSolrIndex> solrIndexFuture) {
+            RelevanceIndex relevanceIndex) {
         super(searchController, request, subject, search, session, results);
-        this.solrIndexFuture = solrIndexFuture;
+        this.relevanceIndex = relevanceIndex;
     }
 
     @Override
@@ -53,8 +48,7 @@ public void run() {
         search.update(response);
 
         try {
-            searchController
-                    .pushResults(request.getId(), search.transform(request.getId()), session);
+            searchController.publishResults(search, session);
         } catch (CatalogTransformerException e) {
             LOGGER.error("Failed to transform cached search results.", e);
         }
@@ -64,15 +58,8 @@ public void run() {
     }
 
     private void indexResults(QueryResponse response) {
-        if (searchController.shouldNormalizeRelevance(request)) {
-            try {
-                solrIndexFuture.get(FUTURE_TIMEOUT_SECONDS, TimeUnit.SECONDS)
-                        .add(response.getResults());
-            } catch (InterruptedException | IngestException e) {
-                LOGGER.error("Failed adding cached search results.", e);
-            } catch (ExecutionException | TimeoutException e) {
-                LOGGER.error("Failed to create index.", e);
-            }
+        if (relevanceIndex != null) {
+            relevanceIndex.add(response.getResults());
         }
     }
 }
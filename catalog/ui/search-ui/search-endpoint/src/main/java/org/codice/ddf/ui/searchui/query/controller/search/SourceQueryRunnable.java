@@ -27,7 +27,7 @@
 import org.codice.ddf.ui.searchui.query.controller.SearchController;
 import org.codice.ddf.ui.searchui.query.model.Search;
 import org.codice.ddf.ui.searchui.query.model.SearchRequest;
-import org.codice.ddf.ui.searchui.query.solr.FilteringSolrIndex;
+import org.codice.ddf.ui.searchui.query.relevance.RelevanceIndex;
 import org.cometd.bayeux.server.ServerSession;
 
 import com.google.common.collect.Ordering;
@@ -35,9 +35,6 @@
 import ddf.catalog.data.Result;
 import ddf.catalog.operation.Query;
 import ddf.catalog.operation.QueryResponse;
-import ddf.catalog.operation.impl.QueryRequestImpl;
-import ddf.catalog.source.IngestException;
-import ddf.catalog.source.UnsupportedQueryException;
 import ddf.catalog.transform.CatalogTransformerException;
 import ddf.security.Subject;
 
@@ -49,7 +46,7 @@ public class SourceQueryRunnable extends QueryRunnable {
 
     private final Future cacheFuture;
 
-    private final Future<FilteringSolrIndex> solrIndexFuture;
+    private final RelevanceIndex relevanceIndex;
 
     private final Comparator<Result> sortComparator;
 
@@ -61,11 +58,11 @@ public class SourceQueryRunnable extends QueryRunnable {
 
     public SourceQueryRunnable(SearchController searchController, String sourceId,
             SearchRequest request, Subject subject, Map<String, Result> results, Search search,
-            ServerSession session, Future cacheFuture, Future<FilteringSolrIndex> solrIndexFuture) {
+            ServerSession session, Future cacheFuture, RelevanceIndex relevanceIndex) {
         super(searchController, request, subject, search, session, results);
         this.sourceId = sourceId;
         this.cacheFuture = cacheFuture;
-        this.solrIndexFuture = solrIndexFuture;
+        this.relevanceIndex = relevanceIndex;
 
         sortComparator = getResultComparator(request.getQuery());
         maxResults = getMaxResults(request);
@@ -88,14 +85,12 @@ public void run() {
         normalize(request.getQuery(), sourceResponse.getResults());
         sort(sourceResponse.getResults());
         sendResults(sourceResponse);
-        cleanup();
     }
 
     private void sendResults(QueryResponse sourceResponse) {
         search.update(sourceId, sourceResponse);
         try {
-            searchController
-                    .pushResults(request.getId(), search.transform(request.getId()), session);
+            searchController.publishResults(search, session);
         } catch (CatalogTransformerException e) {
             LOGGER.error("Failed to transform federated search results.", e);
         }
@@ -109,16 +104,6 @@ private void waitForCache() {
         }
     }
 
-    private void cleanup() {
-        if (shouldNormalizeRelevance && search.isFinished()) {
-            try {
-                solrIndexFuture.get(FUTURE_TIMEOUT_SECONDS, TimeUnit.SECONDS).shutdown();
-            } catch (ExecutionException | InterruptedException | TimeoutException e) {
-                LOGGER.debug("Waiting for solr index failed", e);
-            }
-        }
-    }
-
     private void sort(List<Result> responseResults) {
         List<Result> sortedResults = Ordering.from(sortComparator)
                 .immutableSortedCopy(results.values());
@@ -131,20 +116,9 @@ private void sort(List<Result> responseResults) {
 
     private void normalize(Query query, List<Result> responseResults) {
         if (shouldNormalizeRelevance) {
-            FilteringSolrIndex index = null;
-            try {
-                index = solrIndexFuture.get(FUTURE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
-                index.add(responseResults);
-
-                List<Result> indexResults = index.query(new QueryRequestImpl(query)).getResults();
-
-                normalizeRelevance(indexResults, results);
-            } catch (InterruptedException | ExecutionException | TimeoutException e) {
-                LOGGER.warn("Failed to get index for relevance normalization", e);
-            } catch (UnsupportedQueryException e) {
-                LOGGER.warn("Failed to parse query for relevance normalization", e);
-            } catch (IngestException e) {
-                LOGGER.warn("Failed to ingest results for relevance normalization", e);
+            if (relevanceIndex != null) {
+                relevanceIndex.add(responseResults);
+                normalizeRelevance(relevanceIndex.query(), results);
             }
         } else if (shouldNormalizeDistance) {
             normalizeDistances(query, results);
@@ -15,13 +15,16 @@
 package org.codice.ddf.ui.searchui.query.model;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import org.apache.commons.collections.Bag;
 import org.apache.commons.collections.bag.HashBag;
+import org.apache.commons.lang.ObjectUtils;
 import org.apache.commons.lang.StringUtils;
 import org.codice.ddf.ui.searchui.query.model.QueryStatus.State;
 import org.joda.time.DateTime;
@@ -45,6 +48,11 @@
 
 /**
  * This class represents the cached asynchronous query response from all sources.
+ * <p>
+ * Each transformation of the search is numbered with a sequence number. A full transformation
+ * contains all of the results, while a delta transformation only contains the results the client
+ * has not been sent yet, or whose relevance or distance changed, and refers to the others by
+ * their {@link #KEY}. Clients that miss a delta can request a full transformation again.
  */
 public class Search {
 
@@ -84,6 +92,12 @@ public class Search {
 
     public static final String CACHED = "cached";
 
+    public static final String KEY = "key";
+
+    public static final String SEQUENCE = "seq";
+
+    public static final String DELTA = "delta";
+
     private static final Logger LOGGER = LoggerFactory.getLogger(Search.class);
 
     private static final DateTimeFormatter ISO_8601_DATE_FORMAT = DateTimeFormat
@@ -105,6 +119,14 @@ public class Search {
 
     private long responseNum = 0;
 
+    private long sequence = 0;
+
+    private Map<String, List<Object>> sentResults = new HashMap<>();
+
+    private Map<String, List<Object>> sentStatus = new HashMap<>();
+
+    private Set<String> sentTypes = new HashSet<>();
+
     private Search() {
 
     }
@@ -234,7 +256,14 @@ private void addObject(Map<String, Object> obj, String name, Object value) {
         }
     }
 
-    public Map<String, Object> transform(String searchRequestId) throws
+    /**
+     * Transforms all of the results and statuses of this search.
+     *
+     * @param searchRequestId - ID of the search request
+     * @return the JSON representation of the search
+     * @throws CatalogTransformerException
+     */
+    public synchronized Map<String, Object> transform(String searchRequestId) throws
             CatalogTransformerException {
 
         SourceResponse upstreamResponse = this.getCompositeQueryResponse();
@@ -249,11 +278,144 @@ public Map<String, Object> transform(String searchRequestId) throws
         addObject(result, ID, searchRequestId);
         addObject(result, RESULTS, getResultList(upstreamResponse.getResults()));
         addObject(result, STATUS, getQueryStatus(this.getQueryStatus()));
-        addObject(result, METACARD_TYPES, getMetacardTypes(upstreamResponse.getResults()));
+        Map<String, Object> types = getMetacardTypes(upstreamResponse.getResults());
+        addObject(result, METACARD_TYPES, types);
+
+        sentResults = getResultSnapshots(upstreamResponse.getResults());
+        sentStatus = getStatusSnapshots();
+        sentTypes = new HashSet<>(types.keySet());
+        addObject(result, SEQUENCE, ++sequence);
+        addObject(result, DELTA, false);
 
         return result;
     }
 
+    /**
+     * Transforms the changes to this search since its last transformation. The results are listed
+     * in order, but only the new results are transformed, the results whose relevance or distance
+     * changed only contain those, and the others only contain their key. The statuses and
+     * metacard types are only included when they changed. If the search was never transformed,
+     * the full search is returned.
+     *
+     * @param searchRequestId - ID of the search request
+     * @return the JSON representation of the changes to the search
+     * @throws CatalogTransformerException
+     */
+    public synchronized Map<String, Object> transformDelta(String searchRequestId) throws
+            CatalogTransformerException {
+        if (sequence == 0) {
+            return transform(searchRequestId);
+        }
+
+        SourceResponse upstreamResponse = this.getCompositeQueryResponse();
+        if (upstreamResponse == null) {
+            throw new CatalogTransformerException(
+                    "Cannot transform null " + SourceResponse.class.getName());
+        }
+
+        Map<String, Object> result = new HashMap<>();
+
+        addObject(result, HITS, this.getHits());
+        addObject(result, ID, searchRequestId);
+        addObject(result, RESULTS, getResultDelta(upstreamResponse.getResults()));
+
+        Map<String, List<Object>> statusSnapshots = getStatusSnapshots();
+        List<Map<String, Object>> statuses = new ArrayList<>();
+        for (Map<String, Object> status : getQueryStatus(this.getQueryStatus())) {
+            String sourceId = (String) status.get(ID);
+            if (!ObjectUtils.equals(statusSnapshots.get(sourceId), sentStatus.get(sourceId))) {
+                statuses.add(status);
+            }
+        }
+        addObject(result, STATUS, statuses);
+
+        Map<String, Object> types = getMetacardTypes(upstreamResponse.getResults());
+        types.keySet().removeAll(sentTypes);
+        addObject(result, METACARD_TYPES, types);
+
+        sentResults = getResultSnapshots(upstreamResponse.getResults());
+        sentStatus = statusSnapshots;
+        sentTypes.addAll(types.keySet());
+        addObject(result, SEQUENCE, ++sequence);
+        addObject(result, DELTA, true);
+
+        return result;
+    }
+
+    /**
+     * @return the sequence number of the last transformation, or 0 if the search was never
+     * transformed
+     */
+    public synchronized long getSequence() {
+        return sequence;
+    }
+
+    private List<Map<String, Object>> getResultDelta(List<Result> results)
+            throws CatalogTransformerException {
+        List<Map<String, Object>> resultsList = new ArrayList<>();
+        for (Result result : results) {
+            if (result == null) {
+                throw new CatalogTransformerException(
+                        "Cannot transform null " + Result.class.getName());
+            }
+            String key = getResultKey(result.getMetacard());
+            List<Object> sentSnapshot = sentResults.get(key);
+            List<Object> snapshot = getResultSnapshot(result);
+
+            if (sentSnapshot == null || !sentSnapshot.subList(0, 2)
+                    .equals(snapshot.subList(0, 2))) {
+                resultsList.add(getResultItem(result));
+            } else {
+                Map<String, Object> resultItem = new HashMap<>();
+                resultItem.put(KEY, key);
+                if (!sentSnapshot.subList(2, 4).equals(snapshot.subList(2, 4))) {
+                    addObject(resultItem, DISTANCE, result.getDistanceInMeters());
+                    addObject(resultItem, RELEVANCE, result.getRelevanceScore());
+                }
+                resultsList.add(resultItem);
+            }
+        }
+        return resultsList;
+    }
+
+    /**
+     * Only a snapshot of each result that was sent is kept, rather than the result itself.
+     * Results are copied when they are normalized, so a metacard is only considered changed if
+     * it was modified, or if it was cached and no longer is. The snapshot holds those two values,
+     * followed by the distance and relevance of the result.
+     */
+    private List<Object> getResultSnapshot(Result result) {
+        Metacard metacard = result.getMetacard();
+        return Arrays.<Object>asList(metacard.getModifiedDate(),
+                getValue(metacard.getAttribute(CACHED)), result.getDistanceInMeters(),
+                result.getRelevanceScore());
+    }
+
+    private Object getValue(Attribute attribute) {
+        return attribute == null ? null : attribute.getValue();
+    }
+
+    private Map<String, List<Object>> getResultSnapshots(List<Result> results) {
+        Map<String, List<Object>> snapshots = new HashMap<>();
+        for (Result result : results) {
+            snapshots.put(getResultKey(result.getMetacard()), getResultSnapshot(result));
+        }
+        return snapshots;
+    }
+
+    private String getResultKey(Metacard metacard) {
+        return metacard.getSourceId() + ":" + metacard.getId();
+    }
+
+    private Map<String, List<Object>> getStatusSnapshots() {
+        Map<String, List<Object>> snapshots = new HashMap<>();
+        for (QueryStatus status : queryStatus.values()) {
+            snapshots.put(status.getSourceId(), Arrays.<Object>asList(status.getState(),
+                    status.getResultCount(), status.getHits(), status.getElapsed()));
+        }
+        return snapshots;
+    }
+
     private List<Map<String, Object>> getQueryStatus(Map<String, QueryStatus> queryStatus) {
         List<Map<String, Object>> statuses = new ArrayList<>();
 
@@ -296,6 +458,7 @@ private Map<String, Object> getResultItem(Result result) throws
             CatalogTransformerException {
         Map<String, Object> transformedResult = new HashMap<>();
 
+        addObject(transformedResult, KEY, getResultKey(result.getMetacard()));
         addObject(transformedResult, DISTANCE, result.getDistanceInMeters());
         addObject(transformedResult, RELEVANCE, result.getRelevanceScore());
 
@@ -32,6 +32,8 @@ public class SearchRequest {
 
     private final Query query;
 
+    private final boolean delta;
+
     /**
      * Creates a SearchRequest
      *
@@ -43,11 +45,29 @@ public class SearchRequest {
      *            - ID for this query
      */
     public SearchRequest(Set<String> sourceIds, Query query, String id) {
+        this(sourceIds, query, id, false);
+    }
+
+    /**
+     * Creates a SearchRequest
+     *
+     * @param sourceIds
+     *            - Source IDs to query
+     * @param query
+     *            - Query requests
+     * @param id
+     *            - ID for this query
+     * @param delta
+     *            - true if the client only wants the changes to the results after the first
+     *            response
+     */
+    public SearchRequest(Set<String> sourceIds, Query query, String id, boolean delta) {
         Validate.notEmpty(id, "Valid ID required.");
 
         this.sourceIds = Collections.unmodifiableSet(sourceIds);
         this.query = query;
         this.id = id;
+        this.delta = delta;
     }
 
     public String getId() {
@@ -62,6 +82,10 @@ public Set<String> getSourceIds() {
         return sourceIds;
     }
 
+    public boolean isDelta() {
+        return delta;
+    }
+
     public String toString() {
         return getId();
     }
@@ -0,0 +1,55 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.ui.searchui.query.relevance;
+
+/**
+ * A token of the text criteria of a query, and the attribute it is searched in.
+ */
+final class QueryTerm {
+
+    private final String field;
+
+    private final String token;
+
+    private final boolean prefix;
+
+    QueryTerm(String field, String token, boolean prefix) {
+        this.field = field;
+        this.token = token;
+        this.prefix = prefix;
+    }
+
+    /**
+     * @return the name of the attribute, or {@link ddf.catalog.data.Metacard#ANY_TEXT} to search
+     * all textual attributes
+     */
+    String getField() {
+        return field;
+    }
+
+    String getToken() {
+        return token;
+    }
+
+    /**
+     * @return true if the term matches every token starting with it
+     */
+    boolean isPrefix() {
+        return prefix;
+    }
+
+    boolean matches(String documentToken) {
+        return prefix ? documentToken.startsWith(token) : documentToken.equals(token);
+    }
+}
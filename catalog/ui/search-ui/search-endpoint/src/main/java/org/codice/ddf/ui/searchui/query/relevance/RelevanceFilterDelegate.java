@@ -0,0 +1,542 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.ui.searchui.query.relevance;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import ddf.catalog.data.Metacard;
+import ddf.catalog.filter.FilterDelegate;
+
+/**
+ * Extracts the terms of the textual criteria of a query, which are the only criteria that
+ * contribute to the relevance of a result. Negated criteria do not contribute, and all other
+ * criteria are ignored.
+ */
+class RelevanceFilterDelegate extends FilterDelegate<List<QueryTerm>> {
+
+    private static final char WILDCARD = '*';
+
+    private static final char SINGLE_WILDCARD = '?';
+
+    // textual operators
+
+    @Override
+    public List<QueryTerm> propertyIsEqualTo(String propertyName, String literal,
+            boolean isCaseSensitive) {
+        return getTerms(propertyName, literal);
+    }
+
+    @Override
+    public List<QueryTerm> propertyIsLike(String propertyName, String pattern,
+            boolean isCaseSensitive) {
+        return getTerms(propertyName, pattern);
+    }
+
+    @Override
+    public List<QueryTerm> propertyIsFuzzy(String propertyName, String literal) {
+        return getTerms(propertyName, literal);
+    }
+
+    @Override
+    public List<QueryTerm> xpathIsLike(String xpath, String pattern, boolean isCaseSensitive) {
+        return getTerms(Metacard.METADATA, pattern);
+    }
+
+    @Override
+    public List<QueryTerm> xpathIsFuzzy(String xpath, String literal) {
+        return getTerms(Metacard.METADATA, literal);
+    }
+
+    /**
+     * Tokenizes the text of a criterion the same way the results are. A word ending with a
+     * wildcard, and without any other wildcard, matches every token starting with it. Other
+     * wildcards separate tokens.
+     */
+    private List<QueryTerm> getTerms(String propertyName, String text) {
+        if (text == null) {
+            return Collections.emptyList();
+        }
+        List<QueryTerm> terms = new ArrayList<>();
+        for (String word : text.split("\\s+")) {
+            int wildcard = indexOfWildcard(word);
+            boolean prefix = wildcard == word.length() - 1 && word.charAt(wildcard) == WILDCARD;
+            List<String> tokens = RelevanceIndex.tokenize(word);
+            for (int i = 0; i < tokens.size(); i++) {
+                terms.add(new QueryTerm(propertyName, tokens.get(i),
+                        prefix && i == tokens.size() - 1));
+            }
+        }
+        return terms;
+    }
+
+    private int indexOfWildcard(String word) {
+        for (int i = 0; i < word.length(); i++) {
+            if (word.charAt(i) == WILDCARD || word.charAt(i) == SINGLE_WILDCARD) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // pass-through
+
+    @Override
+    public List<QueryTerm> and(List<List<QueryTerm>> operands) {
+        return concat(operands);
+    }
+
+    @Override
+    public List<QueryTerm> or(List<List<QueryTerm>> operands) {
+        return concat(operands);
+    }
+
+    private List<QueryTerm> concat(List<List<QueryTerm>> operands) {
+        List<QueryTerm> terms = new ArrayList<>();
+        for (List<QueryTerm> operand : operands) {
+            terms.addAll(operand);
+        }
+        return terms;
+    }
+
+    @Override
+    public List<QueryTerm> not(List<QueryTerm> operand) {
+        return Collections.emptyList();
+    }
+
+    // ignored
+
+    @Override
+    public List<QueryTerm> nearestNeighbor(String propertyName, String wkt) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> include() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> exclude() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> propertyIsEqualTo(String propertyName, Date literal) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> propertyIsEqualTo(String propertyName, Date startDate,
+            Date endDate) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> propertyIsEqualTo(String propertyName, int literal) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> propertyIsEqualTo(String propertyName, short literal) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> propertyIsEqualTo(String propertyName, long literal) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> propertyIsEqualTo(String propertyName, float literal) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> propertyIsEqualTo(String propertyName, double literal) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> propertyIsEqualTo(String propertyName, boolean literal) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> propertyIsEqualTo(String propertyName, byte[] literal) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> propertyIsEqualTo(String propertyName, Object literal) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> propertyIsNotEqualTo(String propertyName, String literal,
+            boolean isCaseSensitive) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> propertyIsNotEqualTo(String propertyName, Date literal) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> propertyIsNotEqualTo(String propertyName, Date startDate,
+            Date endDate) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> propertyIsNotEqualTo(String propertyName, int literal) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> propertyIsNotEqualTo(String propertyName, short literal) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> propertyIsNotEqualTo(String propertyName, long literal) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> propertyIsNotEqualTo(String propertyName, float literal) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> propertyIsNotEqualTo(String propertyName, double literal) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> propertyIsNotEqualTo(String propertyName, boolean literal) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> propertyIsNotEqualTo(String propertyName, byte[] literal) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> propertyIsNotEqualTo(String propertyName, Object literal) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> propertyIsGreaterThan(String propertyName, String literal) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> propertyIsGreaterThan(String propertyName, Date literal) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> propertyIsGreaterThan(String propertyName, int literal) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> propertyIsGreaterThan(String propertyName, short literal) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> propertyIsGreaterThan(String propertyName, long literal) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> propertyIsGreaterThan(String propertyName, float literal) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> propertyIsGreaterThan(String propertyName, double literal) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> propertyIsGreaterThan(String propertyName, Object literal) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> propertyIsGreaterThanOrEqualTo(String propertyName,
+            String literal) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> propertyIsGreaterThanOrEqualTo(String propertyName,
+            Date literal) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> propertyIsGreaterThanOrEqualTo(String propertyName,
+            int literal) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> propertyIsGreaterThanOrEqualTo(String propertyName,
+            short literal) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> propertyIsGreaterThanOrEqualTo(String propertyName,
+            long literal) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> propertyIsGreaterThanOrEqualTo(String propertyName,
+            float literal) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> propertyIsGreaterThanOrEqualTo(String propertyName,
+            double literal) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> propertyIsGreaterThanOrEqualTo(String propertyName,
+            Object literal) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> propertyIsLessThan(String propertyName, String literal) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> propertyIsLessThan(String propertyName, Date literal) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> propertyIsLessThan(String propertyName, int literal) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> propertyIsLessThan(String propertyName, short literal) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> propertyIsLessThan(String propertyName, long literal) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> propertyIsLessThan(String propertyName, float literal) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> propertyIsLessThan(String propertyName, double literal) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> propertyIsLessThan(String propertyName, Object literal) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> propertyIsLessThanOrEqualTo(String propertyName,
+            String literal) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> propertyIsLessThanOrEqualTo(String propertyName,
+            Date literal) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> propertyIsLessThanOrEqualTo(String propertyName, int literal) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> propertyIsLessThanOrEqualTo(String propertyName,
+            short literal) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> propertyIsLessThanOrEqualTo(String propertyName,
+            long literal) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> propertyIsLessThanOrEqualTo(String propertyName,
+            float literal) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> propertyIsLessThanOrEqualTo(String propertyName,
+            double literal) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> propertyIsLessThanOrEqualTo(String propertyName,
+            Object literal) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> propertyIsBetween(String propertyName, String lowerBoundary,
+            String upperBoundary) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> propertyIsBetween(String propertyName, Date lowerBoundary,
+            Date upperBoundary) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> propertyIsBetween(String propertyName, int lowerBoundary,
+            int upperBoundary) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> propertyIsBetween(String propertyName, short lowerBoundary,
+            short upperBoundary) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> propertyIsBetween(String propertyName, long lowerBoundary,
+            long upperBoundary) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> propertyIsBetween(String propertyName, float lowerBoundary,
+            float upperBoundary) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> propertyIsBetween(String propertyName, double lowerBoundary,
+            double upperBoundary) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> propertyIsBetween(String propertyName, Object lowerBoundary,
+            Object upperBoundary) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> propertyIsNull(String propertyName) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> xpathExists(String xpath) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> beyond(String propertyName, String wkt, double distance) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> contains(String propertyName, String wkt) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> crosses(String propertyName, String wkt) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> disjoint(String propertyName, String wkt) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> dwithin(String propertyName, String wkt, double distance) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> intersects(String propertyName, String wkt) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> overlaps(String propertyName, String wkt) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> touches(String propertyName, String wkt) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> within(String propertyName, String wkt) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> after(String propertyName, Date date) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> before(String propertyName, Date date) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> during(String propertyName, Date startDate, Date endDate) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryTerm> relative(String propertyName, long duration) {
+        return Collections.emptyList();
+    }
+}
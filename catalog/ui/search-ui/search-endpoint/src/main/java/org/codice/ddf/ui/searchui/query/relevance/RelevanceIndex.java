@@ -0,0 +1,236 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.ui.searchui.query.relevance;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import ddf.catalog.data.Attribute;
+import ddf.catalog.data.AttributeDescriptor;
+import ddf.catalog.data.AttributeType.AttributeFormat;
+import ddf.catalog.data.Metacard;
+import ddf.catalog.data.Result;
+import ddf.catalog.data.impl.ResultImpl;
+import ddf.catalog.filter.FilterAdapter;
+import ddf.catalog.operation.Query;
+import ddf.catalog.source.UnsupportedQueryException;
+
+/**
+ * Scores the results of a federated query against its textual criteria, so that the relevance of
+ * results from different sources can be compared.
+ * <p>
+ * The textual attributes of the results are tokenized and kept in memory, and the results are
+ * scored with BM25 using term statistics computed over all the results added so far. Only the
+ * results matching at least one term of the query are scored.
+ */
+public class RelevanceIndex {
+
+    private static final double K1 = 1.2;
+
+    private static final double B = 0.75;
+
+    private static final Pattern XML_TAG = Pattern.compile("<[^>]*>");
+
+    private static final Comparator<Result> BY_RELEVANCE = new Comparator<Result>() {
+        @Override
+        public int compare(Result result1, Result result2) {
+            return Double.compare(result2.getRelevanceScore(), result1.getRelevanceScore());
+        }
+    };
+
+    private final List<QueryTerm> terms;
+
+    private final Map<String, Document> documents = new LinkedHashMap<>();
+
+    public RelevanceIndex(FilterAdapter filterAdapter, Query query)
+            throws UnsupportedQueryException {
+        terms = filterAdapter.adapt(query, new RelevanceFilterDelegate());
+    }
+
+    /**
+     * Adds results to the index, replacing the results with the same source and ID.
+     */
+    public synchronized void add(List<Result> results) {
+        if (terms.isEmpty()) {
+            return;
+        }
+        for (Result result : results) {
+            if (result != null && result.getMetacard() != null) {
+                Metacard metacard = result.getMetacard();
+                documents.put(metacard.getSourceId() + ":" + metacard.getId(),
+                        new Document(metacard));
+            }
+        }
+    }
+
+    /**
+     * @return the results that match the textual criteria of the query, with their relevance
+     * score, most relevant first
+     */
+    public synchronized List<Result> query() {
+        if (terms.isEmpty() || documents.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        double[] scores = new double[documents.size()];
+        List<Document> indexed = new ArrayList<>(documents.values());
+        for (QueryTerm term : terms) {
+            score(term, indexed, scores);
+        }
+
+        List<Result> results = new ArrayList<>();
+        for (int i = 0; i < scores.length; i++) {
+            if (scores[i] > 0) {
+                ResultImpl result = new ResultImpl(indexed.get(i).metacard);
+                result.setRelevanceScore(scores[i]);
+                results.add(result);
+            }
+        }
+        Collections.sort(results, BY_RELEVANCE);
+        return results;
+    }
+
+    private void score(QueryTerm term, List<Document> indexed, double[] scores) {
+        int[] frequencies = new int[indexed.size()];
+        int documentFrequency = 0;
+        long totalLength = 0;
+        for (int i = 0; i < indexed.size(); i++) {
+            Field field = indexed.get(i).fields.get(term.getField());
+            if (field != null) {
+                totalLength += field.length;
+                frequencies[i] = field.frequency(term);
+                if (frequencies[i] > 0) {
+                    documentFrequency++;
+                }
+            }
+        }
+        if (documentFrequency == 0) {
+            return;
+        }
+
+        double idf = Math.log(1 + (indexed.size() - documentFrequency + 0.5) / (documentFrequency
+                + 0.5));
+        double averageLength = (double) totalLength / indexed.size();
+        for (int i = 0; i < indexed.size(); i++) {
+            if (frequencies[i] > 0) {
+                int length = indexed.get(i).fields.get(term.getField()).length;
+                scores[i] += idf * frequencies[i] * (K1 + 1) / (frequencies[i] + K1 * (1 - B
+                        + B * length / averageLength));
+            }
+        }
+    }
+
+    /**
+     * Lower cases the text and splits it into tokens of letters and digits.
+     */
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        String lowerCase = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lowerCase.length(); i++) {
+            boolean tokenChar = i < lowerCase.length() && Character
+                    .isLetterOrDigit(lowerCase.charAt(i));
+            if (tokenChar && start < 0) {
+                start = i;
+            } else if (!tokenChar && start >= 0) {
+                tokens.add(lowerCase.substring(start, i));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * The tokens of the textual attributes of a result. The tokens of all attributes are also
+     * kept together as {@link Metacard#ANY_TEXT}.
+     */
+    private static final class Document {
+
+        private final Metacard metacard;
+
+        private final Map<String, Field> fields = new HashMap<>();
+
+        Document(Metacard metacard) {
+            this.metacard = metacard;
+
+            Field anyText = new Field();
+            if (metacard.getMetacardType() == null) {
+                return;
+            }
+            for (AttributeDescriptor descriptor : metacard.getMetacardType()
+                    .getAttributeDescriptors()) {
+                AttributeFormat format = descriptor.getType().getAttributeFormat();
+                if (format != AttributeFormat.STRING && format != AttributeFormat.XML) {
+                    continue;
+                }
+                Attribute attribute = metacard.getAttribute(descriptor.getName());
+                if (attribute == null || attribute.getValues() == null) {
+                    continue;
+                }
+
+                Field field = new Field();
+                for (Serializable value : attribute.getValues()) {
+                    if (value != null) {
+                        String text = value.toString();
+                        if (format == AttributeFormat.XML) {
+                            text = XML_TAG.matcher(text).replaceAll(" ");
+                        }
+                        List<String> tokens = tokenize(text);
+                        field.add(tokens);
+                        anyText.add(tokens);
+                    }
+                }
+                fields.put(descriptor.getName(), field);
+            }
+            fields.put(Metacard.ANY_TEXT, anyText);
+        }
+    }
+
+    private static final class Field {
+
+        private final Map<String, Integer> frequencies = new HashMap<>();
+
+        private int length;
+
+        void add(List<String> tokens) {
+            for (String token : tokens) {
+                Integer frequency = frequencies.get(token);
+                frequencies.put(token, frequency == null ? 1 : frequency + 1);
+            }
+            length += tokens.size();
+        }
+
+        int frequency(QueryTerm term) {
+            if (!term.isPrefix()) {
+                Integer frequency = frequencies.get(term.getToken());
+                return frequency == null ? 0 : frequency;
+            }
+            int frequency = 0;
+            for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+                if (term.matches(entry.getKey())) {
+                    frequency += entry.getValue();
+                }
+            }
+            return frequency;
+        }
+    }
+}
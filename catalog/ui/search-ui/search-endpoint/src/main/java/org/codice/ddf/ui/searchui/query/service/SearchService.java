@@ -54,6 +54,7 @@
 import ddf.catalog.operation.impl.SourceInfoRequestEnterprise;
 import ddf.catalog.source.SourceDescriptor;
 import ddf.catalog.source.SourceUnavailableException;
+import ddf.catalog.transform.CatalogTransformerException;
 import ddf.security.SecurityConstants;
 import ddf.security.Subject;
 
@@ -81,6 +82,8 @@ public class SearchService {
 
     private static final String SORT = "sort";
 
+    private static final String DELTA = "delta";
+
     private static final String DEFAULT_SORT_ORDER = "desc";
 
     private static final long DEFAULT_TIMEOUT = 300000;
@@ -154,6 +157,40 @@ public void configureChannel(ConfigurableServerChannel channel) {
 
     }
 
+    /**
+     * Service method called by Cometd when a client missed an update of its search results and
+     * needs all of them again
+     *
+     * @param remote
+     *            - Client session
+     * @param message
+     *            - JSON message containing the ID of the search
+     */
+    @Listener("/service/query/sync")
+    public void processSync(final ServerSession remote, Message message) {
+
+        ServerMessage.Mutable reply = new ServerMessageImpl();
+
+        Map<String, Object> syncMessage = message.getDataAsMap();
+
+        if (syncMessage != null && syncMessage.containsKey(Search.ID)) {
+            boolean synced = false;
+            try {
+                synced = searchController
+                        .resyncResults(castObject(String.class, syncMessage.get(Search.ID)),
+                                serverSession);
+            } catch (CatalogTransformerException e) {
+                LOGGER.warn("Failed to transform search results", e);
+            }
+            reply.put(Search.SUCCESSFUL, synced);
+            remote.deliver(serverSession, reply);
+        } else {
+            reply.put(Search.SUCCESSFUL, false);
+            reply.put("status", "ERROR: unable to resync results, no id in sync request");
+            remote.deliver(serverSession, reply);
+        }
+    }
+
     @SuppressWarnings("unchecked")
     private <T> T castObject(Class<T> targetClass, Object o) {
         if (o != null) {
@@ -188,6 +225,7 @@ public void executeQuery(Map<String, Object> queryMessage, Subject subject) {
         String cql = castObject(String.class, queryMessage.get(CQL_FILTER));
         String sort = castObject(String.class, queryMessage.get(SORT));
         String id = castObject(String.class, queryMessage.get(ID));
+        boolean delta = Boolean.parseBoolean(castObject(String.class, queryMessage.get(DELTA)));
 
         Set<String> sourceIds = getSourceIds(sources);
 
@@ -200,7 +238,7 @@ public void executeQuery(Map<String, Object> queryMessage, Subject subject) {
         }
 
         Query query = createQuery(filter, startIndex, count, sort, maxTimeout);
-        SearchRequest searchRequest = new SearchRequest(sourceIds, query, id);
+        SearchRequest searchRequest = new SearchRequest(sourceIds, query, id, delta);
 
         try {
             // Hand off to the search controller for the actual query
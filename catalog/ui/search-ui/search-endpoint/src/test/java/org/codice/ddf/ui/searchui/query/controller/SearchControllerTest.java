@@ -58,6 +58,8 @@
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.opengis.filter.Filter;
 import org.opengis.filter.sort.SortOrder;
 import org.slf4j.Logger;
@@ -162,6 +164,124 @@ public void testMetacardTypeValuesCacheEnabled() throws Exception {
         assertReplies(replies);
     }
 
+    @Test
+    public void testDeltaResultsAndResync() throws Exception {
+
+        final String ID = "id";
+        Set<String> srcIds = new HashSet<>();
+        srcIds.add("source1");
+        srcIds.add("source2");
+
+        BayeuxServer bayeuxServer = mock(BayeuxServer.class);
+        ServerChannel channel = mock(ServerChannel.class);
+        ArgumentCaptor<ServerMessage.Mutable> reply = ArgumentCaptor
+                .forClass(ServerMessage.Mutable.class);
+
+        when(bayeuxServer.getChannel(any(String.class))).thenReturn(channel);
+        final List<Boolean> resynced = resyncBeforeLastSource(ID, channel, false);
+
+        SearchRequest request = new SearchRequest(srcIds, getQueryRequest("title LIKE 'Meta*'"),
+                ID, true);
+
+        searchController.setBayeuxServer(bayeuxServer);
+        searchController.setCacheDisabled(false);
+        searchController.executeQuery(request, mockServerSession, null);
+
+        verify(channel, timeout(1000).times(4))
+                .publish(any(ServerSession.class), reply.capture(), anyString());
+        List<Mutable> replies = reply.getAllValues();
+
+        // the cached results are sent in full, then only their keys once a source responds
+        assertThat(replies.get(0).get(Search.SEQUENCE), is((Object) 1L));
+        assertThat(replies.get(0).get(Search.DELTA), is((Object) false));
+        assertReplyResults(replies.get(0), true);
+        assertThat(replies.get(1).get(Search.SEQUENCE), is((Object) 2L));
+        assertThat(replies.get(1).get(Search.DELTA), is((Object) true));
+        assertReplyResults(replies.get(1), false);
+        assertThat(((Map<?, ?>) replies.get(1).get(Search.METACARD_TYPES)).isEmpty(), is(true));
+
+        // a resync before the last source responds sends all of the results again
+        assertThat(resynced, is(Collections.singletonList(true)));
+        assertThat(replies.get(2).get(Search.SEQUENCE), is((Object) 3L));
+        assertThat(replies.get(2).get(Search.DELTA), is((Object) false));
+        assertReplyResults(replies.get(2), true);
+        assertReplies(Collections.singletonList(replies.get(2)));
+
+        // the last push is full, after which the search is no longer kept
+        assertThat(replies.get(3).get(Search.SEQUENCE), is((Object) 4L));
+        assertThat(replies.get(3).get(Search.DELTA), is((Object) false));
+        assertReplyResults(replies.get(3), true);
+        assertThat(searchController.resyncResults(ID, mockServerSession), is(false));
+        assertThat(searchController.resyncResults("unknown", mockServerSession), is(false));
+    }
+
+    @Test
+    public void testCancelledSearchNotResynced() throws Exception {
+
+        final String ID = "id";
+        Set<String> srcIds = new HashSet<>();
+        srcIds.add("source1");
+        srcIds.add("source2");
+
+        BayeuxServer bayeuxServer = mock(BayeuxServer.class);
+        ServerChannel channel = mock(ServerChannel.class);
+
+        when(bayeuxServer.getChannel(any(String.class))).thenReturn(channel);
+        when(channel.getSubscribers()).thenReturn(Collections.<ServerSession>emptySet());
+        final List<Boolean> resynced = resyncBeforeLastSource(ID, channel, true);
+
+        SearchRequest request = new SearchRequest(srcIds, getQueryRequest("title LIKE 'Meta*'"),
+                ID, true);
+
+        searchController.setBayeuxServer(bayeuxServer);
+        searchController.setCacheDisabled(false);
+        searchController.executeQuery(request, mockServerSession, null);
+
+        assertThat(resynced, is(Collections.singletonList(false)));
+        verify(channel).removeListener(any(ServerChannel.ServerChannelListener.class));
+    }
+
+    /**
+     * Resyncs the search when the last of two sources is queried, after its client unsubscribed
+     * from the search channel if it cancels the search.
+     */
+    private List<Boolean> resyncBeforeLastSource(final String id, final ServerChannel channel,
+            final boolean cancel) throws Exception {
+        final List<Boolean> resynced = new ArrayList<>();
+        final QueryResponse response = framework.query(mock(QueryRequest.class));
+        when(framework.query(any(QueryRequest.class))).thenAnswer(new Answer<QueryResponse>() {
+            private int queries = 0;
+
+            @Override
+            public QueryResponse answer(InvocationOnMock invocation) throws Throwable {
+                // the cache is queried first, then each source
+                if (++queries == 3) {
+                    if (cancel) {
+                        ArgumentCaptor<ServerChannel.ServerChannelListener> listener =
+                                ArgumentCaptor.forClass(ServerChannel.ServerChannelListener.class);
+                        verify(channel).addListener(listener.capture());
+                        ((ServerChannel.SubscriptionListener) listener.getValue())
+                                .unsubscribed(mockServerSession, channel);
+                    }
+                    resynced.add(searchController.resyncResults(id, mockServerSession));
+                }
+                return response;
+            }
+        });
+        return resynced;
+    }
+
+    private void assertReplyResults(Mutable reply, boolean withMetacards) {
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> results = (List<Map<String, Object>>) reply.get(Search.RESULTS);
+
+        assertThat(results.size(), is(2));
+        for (Map<String, Object> result : results) {
+            assertThat(result.get(Search.KEY), is(not(nullValue())));
+            assertThat(result.containsKey(Search.METACARD), is(withMetacards));
+        }
+    }
+
     private Query getQueryRequest(String cql) throws CQLException {
         Filter filter = ECQL.toFilter(cql);
 
@@ -0,0 +1,181 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.ui.searchui.query.model;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.codice.ddf.ui.searchui.query.actions.ActionRegistryImpl;
+import org.junit.Before;
+import org.junit.Test;
+
+import ddf.action.ActionProvider;
+import ddf.catalog.data.Result;
+import ddf.catalog.data.impl.MetacardImpl;
+import ddf.catalog.data.impl.ResultImpl;
+import ddf.catalog.operation.Query;
+import ddf.catalog.operation.QueryRequest;
+import ddf.catalog.operation.QueryResponse;
+import ddf.catalog.operation.impl.QueryResponseImpl;
+
+public class SearchTest {
+
+    private static final String SEARCH_ID = "searchId";
+
+    private static final String SOURCE_1 = "source1";
+
+    private static final String SOURCE_2 = "source2";
+
+    private Search search;
+
+    @Before
+    public void setUp() {
+        SearchRequest request = new SearchRequest(
+                new HashSet<>(Arrays.asList(SOURCE_1, SOURCE_2)), mock(Query.class), SEARCH_ID,
+                true);
+        search = new Search(request,
+                new ActionRegistryImpl(Collections.<ActionProvider>emptyList()));
+    }
+
+    @Test
+    public void testFirstDeltaIsFull() throws Exception {
+        search.update(SOURCE_1, getResponse(getResult(getMetacard("1"), 1.0)));
+
+        Map<String, Object> delta = search.transformDelta(SEARCH_ID);
+
+        assertThat((Long) delta.get(Search.SEQUENCE), is(1L));
+        assertThat((Boolean) delta.get(Search.DELTA), is(false));
+        assertThat(getResults(delta).get(0).get(Search.KEY), is((Object) "source1:1"));
+        assertThat(getResults(delta).get(0).get(Search.METACARD), is(notNullValue()));
+        assertThat(getStatus(delta).size(), is(2));
+    }
+
+    @Test
+    public void testDeltaOnlyContainsChanges() throws Exception {
+        MetacardImpl metacard1 = getMetacard("1");
+        MetacardImpl metacard2 = getMetacard("2");
+        search.update(SOURCE_1,
+                getResponse(getResult(metacard1, 1.0), getResult(metacard2, 0.5)));
+        search.transformDelta(SEARCH_ID);
+
+        // 1 is rescored, 2 is dropped and 3 is new
+        search.update(SOURCE_2,
+                getResponse(getResult(getMetacard("3"), 2.0), getResult(metacard1, 0.8)));
+        Map<String, Object> delta = search.transformDelta(SEARCH_ID);
+
+        assertThat((Long) delta.get(Search.SEQUENCE), is(2L));
+        assertThat((Boolean) delta.get(Search.DELTA), is(true));
+        List<Map<String, Object>> results = getResults(delta);
+        assertThat(results.size(), is(2));
+        assertThat(results.get(0).get(Search.KEY), is((Object) "source1:3"));
+        assertThat(results.get(0).get(Search.METACARD), is(notNullValue()));
+        assertThat(results.get(1).get(Search.KEY), is((Object) "source1:1"));
+        assertThat(results.get(1).get(Search.METACARD), is(nullValue()));
+        assertThat(results.get(1).get(Search.RELEVANCE), is((Object) 0.8));
+
+        List<Map<String, Object>> status = getStatus(delta);
+        assertThat(status.size(), is(1));
+        assertThat(status.get(0).get(Search.ID), is((Object) SOURCE_2));
+        assertThat(((Map<?, ?>) delta.get(Search.METACARD_TYPES)).isEmpty(), is(true));
+    }
+
+    @Test
+    public void testDeltaOfUnchangedResults() throws Exception {
+        MetacardImpl metacard = getMetacard("1");
+        search.update(SOURCE_1, getResponse(getResult(metacard, 1.0)));
+        search.transformDelta(SEARCH_ID);
+
+        search.update(getResponse(getResult(new MetacardImpl(metacard), 1.0)));
+        Map<String, Object> delta = search.transformDelta(SEARCH_ID);
+
+        List<Map<String, Object>> results = getResults(delta);
+        assertThat(results.size(), is(1));
+        assertThat(results.get(0).size(), is(1));
+        assertThat(results.get(0).get(Search.KEY), is((Object) "source1:1"));
+        assertThat(getStatus(delta).isEmpty(), is(true));
+    }
+
+    @Test
+    public void testDeltaOfModifiedMetacard() throws Exception {
+        search.update(SOURCE_1, getResponse(getResult(getMetacard("1"), 1.0)));
+        search.transformDelta(SEARCH_ID);
+
+        MetacardImpl modified = getMetacard("1");
+        modified.setModifiedDate(new Date(1));
+        search.update(getResponse(getResult(modified, 1.0)));
+
+        assertThat(getResults(search.transformDelta(SEARCH_ID)).get(0).get(Search.METACARD),
+                is(notNullValue()));
+    }
+
+    @Test
+    public void testTransformAfterDelta() throws Exception {
+        MetacardImpl metacard = getMetacard("1");
+        search.update(SOURCE_1, getResponse(getResult(metacard, 1.0)));
+        search.transformDelta(SEARCH_ID);
+        search.update(SOURCE_2, getResponse(getResult(metacard, 1.0)));
+        search.transformDelta(SEARCH_ID);
+
+        Map<String, Object> full = search.transform(SEARCH_ID);
+
+        assertThat((Long) full.get(Search.SEQUENCE), is(3L));
+        assertThat((Boolean) full.get(Search.DELTA), is(false));
+        assertThat(getResults(full).get(0).get(Search.METACARD), is(notNullValue()));
+        assertThat(getStatus(full).size(), is(2));
+        assertThat(search.getSequence(), is(3L));
+    }
+
+    private MetacardImpl getMetacard(String id) {
+        MetacardImpl metacard = new MetacardImpl();
+        metacard.setId(id);
+        metacard.setSourceId(SOURCE_1);
+        metacard.setTitle("Metacard " + id);
+        metacard.setModifiedDate(new Date(0));
+        return metacard;
+    }
+
+    private Result getResult(MetacardImpl metacard, double relevance) {
+        ResultImpl result = new ResultImpl(metacard);
+        result.setRelevanceScore(relevance);
+        return result;
+    }
+
+    private QueryResponse getResponse(Result... results) {
+        QueryResponse response = new QueryResponseImpl(mock(QueryRequest.class),
+                new ArrayList<>(Arrays.asList(results)), results.length);
+        response.getProperties().put("elapsed", 10L);
+        return response;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Map<String, Object>> getResults(Map<String, Object> transformed) {
+        return (List<Map<String, Object>>) transformed.get(Search.RESULTS);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Map<String, Object>> getStatus(Map<String, Object> transformed) {
+        return (List<Map<String, Object>>) transformed.get(Search.STATUS);
+    }
+}
@@ -0,0 +1,137 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.ui.searchui.query.relevance;
+
+import static org.junit.Assume.assumeTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import org.codice.ddf.ui.searchui.query.solr.FilteringSolrIndex;
+import org.geotools.filter.text.ecql.ECQL;
+import org.junit.Before;
+import org.junit.Test;
+import org.opengis.filter.sort.SortOrder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ddf.catalog.data.Result;
+import ddf.catalog.data.impl.MetacardImpl;
+import ddf.catalog.data.impl.ResultImpl;
+import ddf.catalog.filter.FilterAdapter;
+import ddf.catalog.filter.impl.SortByImpl;
+import ddf.catalog.filter.proxy.adapter.GeotoolsFilterAdapterImpl;
+import ddf.catalog.operation.impl.QueryImpl;
+import ddf.catalog.operation.impl.QueryRequestImpl;
+
+/**
+ * Compares the time taken to normalize the relevance of federated results with the
+ * {@link RelevanceIndex} and with the per query Solr core it replaced. Only runs when the
+ * {@code benchmark} system property is set, e.g. {@code mvn test -Dbenchmark=true}.
+ */
+public class RelevanceIndexBenchmarkTest {
+
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(RelevanceIndexBenchmarkTest.class);
+
+    private static final int SEARCHES = 20;
+
+    private static final int SOURCES = 5;
+
+    private static final int RESULTS_PER_SOURCE = 100;
+
+    private static final String[] WORDS = {"alpha", "bravo", "charlie", "delta", "echo",
+            "foxtrot", "golf", "hotel", "india", "juliet", "kilo", "lima", "mike", "november"};
+
+    private final FilterAdapter filterAdapter = new GeotoolsFilterAdapterImpl();
+
+    private final List<List<Result>> sourceResults = new ArrayList<>();
+
+    private QueryImpl query;
+
+    @Before
+    public void setUp() throws Exception {
+        assumeTrue(Boolean.getBoolean("benchmark"));
+
+        Random random = new Random(0);
+        for (int source = 0; source < SOURCES; source++) {
+            List<Result> results = new ArrayList<>();
+            for (int i = 0; i < RESULTS_PER_SOURCE; i++) {
+                MetacardImpl metacard = new MetacardImpl();
+                metacard.setSourceId("source" + source);
+                metacard.setId(UUID.randomUUID().toString());
+                metacard.setTitle(getText(random, 5));
+                metacard.setMetadata("<metadata>" + getText(random, 200) + "</metadata>");
+                results.add(new ResultImpl(metacard));
+            }
+            sourceResults.add(results);
+        }
+
+        query = new QueryImpl(ECQL.toFilter("anyText ILIKE 'alpha' OR anyText ILIKE 'kilo'"));
+        query.setSortBy(new SortByImpl(Result.RELEVANCE, SortOrder.DESCENDING));
+        query.setPageSize(RESULTS_PER_SOURCE * SOURCES);
+    }
+
+    @Test
+    public void compareWithSolrIndex() throws Exception {
+        // Warm up both before measuring
+        runRelevanceIndex(2);
+        runSolrIndex(2);
+
+        long relevanceIndexMillis = runRelevanceIndex(SEARCHES);
+        long solrIndexMillis = runSolrIndex(SEARCHES);
+
+        LOGGER.info("Normalized {} searches of {} results: relevance index {} ms, Solr index {} ms",
+                SEARCHES, SOURCES * RESULTS_PER_SOURCE, relevanceIndexMillis, solrIndexMillis);
+    }
+
+    private long runRelevanceIndex(int searches) throws Exception {
+        long start = System.currentTimeMillis();
+        for (int search = 0; search < searches; search++) {
+            RelevanceIndex index = new RelevanceIndex(filterAdapter, query);
+            for (List<Result> results : sourceResults) {
+                index.add(results);
+                index.query();
+            }
+        }
+        return System.currentTimeMillis() - start;
+    }
+
+    private long runSolrIndex(int searches) throws Exception {
+        long start = System.currentTimeMillis();
+        for (int search = 0; search < searches; search++) {
+            FilteringSolrIndex index = new FilteringSolrIndex(UUID.randomUUID().toString(),
+                    filterAdapter, new QueryRequestImpl(query));
+            try {
+                for (List<Result> results : sourceResults) {
+                    index.add(results);
+                    index.query(new QueryRequestImpl(query));
+                }
+            } finally {
+                index.shutdown();
+            }
+        }
+        return System.currentTimeMillis() - start;
+    }
+
+    private String getText(Random random, int words) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            text.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,119 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.ui.searchui.query.relevance;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.geotools.filter.text.ecql.ECQL;
+import org.junit.Test;
+
+import ddf.catalog.data.Result;
+import ddf.catalog.data.impl.MetacardImpl;
+import ddf.catalog.data.impl.ResultImpl;
+import ddf.catalog.filter.proxy.adapter.GeotoolsFilterAdapterImpl;
+import ddf.catalog.operation.impl.QueryImpl;
+
+public class RelevanceIndexTest {
+
+    private final List<Result> results = Arrays
+            .asList(createResult("source1", "1", "alpha beta", "<doc>gamma</doc>"),
+                    createResult("source2", "1", "alpha", "<doc>delta</doc>"),
+                    createResult("source2", "2", "gamma", "<doc>alpha alpha</doc>"),
+                    createResult("source3", "1", "epsilon", null));
+
+    @Test
+    public void testScoresMatchingResults() throws Exception {
+        List<Result> scored = query("anyText ILIKE 'alpha'");
+
+        assertThat(getKeys(scored), contains("source2:2", "source2:1", "source1:1"));
+        assertThat(scored.get(0).getRelevanceScore(),
+                greaterThan(scored.get(1).getRelevanceScore()));
+    }
+
+    @Test
+    public void testScoresAttribute() throws Exception {
+        assertThat(getKeys(query("title ILIKE 'alpha'")), contains("source2:1", "source1:1"));
+    }
+
+    @Test
+    public void testIgnoresMarkup() throws Exception {
+        assertThat(query("anyText ILIKE 'doc'"), is(empty()));
+    }
+
+    @Test
+    public void testPrefix() throws Exception {
+        assertThat(getKeys(query("title ILIKE 'epsi*'")), contains("source3:1"));
+    }
+
+    @Test
+    public void testAnyCriterionMatches() throws Exception {
+        assertThat(getKeys(query("anyText ILIKE 'delta' OR anyText ILIKE 'beta'")),
+                contains("source2:1", "source1:1"));
+    }
+
+    @Test
+    public void testIgnoresNegatedCriteria() throws Exception {
+        assertThat(getKeys(query("anyText ILIKE 'epsilon' AND NOT anyText ILIKE 'alpha'")),
+                contains("source3:1"));
+    }
+
+    @Test
+    public void testNoTextCriteria() throws Exception {
+        assertThat(query("modified AFTER 2015-01-01T00:00:00Z"), is(empty()));
+    }
+
+    @Test
+    public void testReplacesResults() throws Exception {
+        RelevanceIndex index = new RelevanceIndex(new GeotoolsFilterAdapterImpl(),
+                new QueryImpl(ECQL.toFilter("anyText ILIKE 'alpha'")));
+        index.add(results);
+        index.add(results.subList(0, 1));
+
+        assertThat(index.query().size(), is(3));
+    }
+
+    private List<Result> query(String cql) throws Exception {
+        RelevanceIndex index = new RelevanceIndex(new GeotoolsFilterAdapterImpl(),
+                new QueryImpl(ECQL.toFilter(cql)));
+        index.add(results.subList(0, 2));
+        index.add(results.subList(2, results.size()));
+        return index.query();
+    }
+
+    private List<String> getKeys(List<Result> scored) {
+        List<String> keys = new ArrayList<>();
+        for (Result result : scored) {
+            keys.add(result.getMetacard().getSourceId() + ":" + result.getMetacard().getId());
+        }
+        return keys;
+    }
+
+    private static Result createResult(String sourceId, String id, String title,
+            String metadata) {
+        MetacardImpl metacard = new MetacardImpl();
+        metacard.setSourceId(sourceId);
+        metacard.setId(id);
+        metacard.setTitle(title);
+        metacard.setMetadata(metadata);
+        return new ResultImpl(metacard);
+    }
+}
@@ -15,9 +15,10 @@ define([
         'backbone',
         'underscore',
         'wreqr',
+        'cometdinit',
         'backboneassociations'
     ],
-    function (Backbone, _, wreqr) {
+    function (Backbone, _, wreqr, Cometd) {
         "use strict";
         var MetaCard = {};
 
@@ -246,12 +247,105 @@ define([
                 }
             ],
             url: "/service/query",
+            syncUrl: "/service/query/sync",
             parse: function (resp) {
                 if (resp.data) {
                     return resp.data;
                 }
                 return resp;
             },
+            /**
+             * Reads subscribe to the search's channel, and every response received is kept as the
+             * lastResponse before progress is reported. Deltas are merged into the last full
+             * response right there, so lastResponse always holds all of the results.
+             */
+            sync: function (method, model, options) {
+                if (method === 'read') {
+                    var progress = options.progress;
+                    options.progress = function () {
+                        model.mergeResponse();
+                        if (_.isFunction(progress)) {
+                            return progress.apply(this, arguments);
+                        }
+                    };
+                }
+                return Backbone.Model.prototype.sync.apply(this, arguments);
+            },
+            /**
+             * Merges a delta of the search results into the last full response. Deltas only
+             * contain the statuses and metacard types that changed, and list the results in order,
+             * where the results that were already received only have their key and possibly a new
+             * relevance and distance. If a delta is missed, all of the results are requested again
+             * and the deltas are ignored until they are received.
+             */
+            mergeResponse: function () {
+                var data = this.parse(this.lastResponse);
+                if (_.isUndefined(data.seq)) {
+                    return;
+                }
+                if (!data.delta) {
+                    this.merged = this.lastResponse;
+                    this.resyncing = false;
+                    return;
+                }
+
+                var merged = this.merged && this.parse(this.merged);
+                if (this.resyncing || !merged || data.seq !== merged.seq + 1) {
+                    this.resync();
+                    return;
+                }
+
+                var previous = {};
+                _.each(merged.results, function (result) {
+                    previous[result.key] = result;
+                });
+                var results = [];
+                var missing = _.some(data.results, function (result) {
+                    if (result.metacard) {
+                        results.push(result);
+                    } else if (previous[result.key]) {
+                        results.push(_.extend({}, previous[result.key], result));
+                    } else {
+                        return true;
+                    }
+                    return false;
+                });
+                if (missing) {
+                    this.resync();
+                    return;
+                }
+
+                var statuses = _.map(merged.status, function (status) {
+                    return _.find(data.status, {id: status.id}) || status;
+                });
+                _.each(data.status, function (status) {
+                    if (!_.find(statuses, {id: status.id})) {
+                        statuses.push(status);
+                    }
+                });
+                this.merged = _.extend({}, this.lastResponse, {
+                    data: _.extend({}, data, {
+                        results: results,
+                        status: statuses,
+                        'metacard-types': _.extend({}, merged['metacard-types'],
+                            data['metacard-types']),
+                        delta: false
+                    })
+                });
+                this.lastResponse = this.merged;
+            },
+            /**
+             * Keeps the last full response until all of the results are received again.
+             */
+            resync: function () {
+                if (this.merged) {
+                    this.lastResponse = this.merged;
+                }
+                if (!this.resyncing) {
+                    this.resyncing = true;
+                    Cometd.Comet.publish(this.syncUrl, {id: this.id});
+                }
+            },
             cancel: function() {
                 this.unsubscribe();
                 if(this.has('status')){
@@ -493,6 +493,9 @@ define([
 
                 data.sort = this.get('sortField') + ':' + this.get('sortOrder');
 
+                // only receive the changes to the results after the first response
+                data.delta = true;
+
                 return data;
             },
 
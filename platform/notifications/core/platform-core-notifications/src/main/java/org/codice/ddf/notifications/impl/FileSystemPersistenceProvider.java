@@ -14,24 +14,26 @@
 package org.codice.ddf.notifications.impl;
 
 import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInput;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
-import java.io.OutputStream;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 
 import org.apache.commons.io.IOUtils;
+import org.codice.ddf.platform.util.SegmentStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -41,7 +43,10 @@
 /**
  * Hazelcast persistence provider implementation of @MapLoader and @MapStore to serialize and
  * persist Java objects stored in Hazelcast cache to disk.
- *
+ * <p/>
+ * The serialized values are kept in an append-only @SegmentStore rather than in one file per
+ * key. Files from the previous one-file-per-key format are imported into the store the first
+ * time it is opened.
  */
 public class FileSystemPersistenceProvider
         implements MapLoader<String, Object>, MapStore<String, Object> {
@@ -57,6 +62,8 @@
 
     private FilenameFilter filter;
 
+    private SegmentStore segmentStore;
+
     public FileSystemPersistenceProvider() {
     }
 
@@ -92,41 +99,34 @@ String getMapStorePath() {
 
     @Override
     public void store(String key, Object value) {
-        OutputStream file = null;
-        ObjectOutputStream output = null;
-        try {
-            File dir = new File(getMapStorePath());
-            if (!dir.exists()) {
-                if (!dir.mkdir()) {
-                    LOGGER.warn("Unable to create directory: {}", dir.getAbsolutePath());
-                }
-            }
-            file = new FileOutputStream(getMapStorePath() + key + PERSISTED_FILE_SUFFIX);
-            OutputStream buffer = new BufferedOutputStream(file);
-            output = new ObjectOutputStream(buffer);
-            output.writeObject(value);
-        } catch (IOException e) {
-            LOGGER.info("IOException storing value in cache with key = " + key, e);
-        } finally {
-            IOUtils.closeQuietly(output);
-            IOUtils.closeQuietly(file);
-        }
+        storeAll(Collections.singletonMap(key, value));
     }
 
     @Override
     public void storeAll(Map<String, Object> keyValueMap) {
+        Map<String, byte[]> values = new LinkedHashMap<>(keyValueMap.size());
         for (Map.Entry<String, Object> entry : keyValueMap.entrySet()) {
-            store(entry.getKey(), entry.getValue());
+            try {
+                values.put(entry.getKey(), serialize(entry.getValue()));
+            } catch (IOException e) {
+                LOGGER.info("IOException storing value in cache with key = " + entry.getKey(),
+                        e);
+            }
+        }
+
+        try {
+            getSegmentStore().putAll(values);
+        } catch (IOException e) {
+            LOGGER.info("IOException storing values in cache with keys = " + values.keySet(), e);
         }
     }
 
     @Override
     public void delete(String key) {
-        File file = new File(getMapStorePath() + key + PERSISTED_FILE_SUFFIX);
-        if (file.exists()) {
-            if (!file.delete()) {
-                LOGGER.warn("File was unable to be deleted: {}", file.getAbsolutePath());
-            }
+        try {
+            getSegmentStore().delete(key);
+        } catch (IOException e) {
+            LOGGER.warn("Value was unable to be deleted: {}", key, e);
         }
     }
 
@@ -146,22 +146,17 @@ public Object load(String key) {
     }
 
     Object loadFromPersistence(String key) {
-        File file = new File(getMapStorePath() + key + PERSISTED_FILE_SUFFIX);
-        if (!file.exists()) {
-            return null;
-        }
-        InputStream inputStream = null;
         try {
-            inputStream = new FileInputStream(getMapStorePath() + key + PERSISTED_FILE_SUFFIX);
-            InputStream buffer = new BufferedInputStream(inputStream);
-            ObjectInput input = new ObjectInputStream(buffer);
-            return (Object) input.readObject();
+            byte[] value = getSegmentStore().get(key);
+            if (value == null) {
+                return null;
+            }
+            ObjectInput input = new ObjectInputStream(new ByteArrayInputStream(value));
+            return input.readObject();
         } catch (IOException e) {
             LOGGER.debug("IOException", e);
         } catch (ClassNotFoundException e) {
             LOGGER.debug("ClassNotFoundException", e);
-        } finally {
-            IOUtils.closeQuietly(inputStream);
         }
         return null;
     }
@@ -193,27 +188,68 @@ public boolean accept(File file, String name) {
 
     @Override
     public Set<String> loadAllKeys() {
-        Set<String> keys = new HashSet<String>();
+        try {
+            return getSegmentStore().keySet();
+        } catch (IOException e) {
+            LOGGER.info("IOException loading keys from " + getMapStorePath(), e);
+            return new HashSet<String>();
+        }
+    }
 
-        File[] files = new File(getMapStorePath()).listFiles(getFilenameFilter());
-        if (files == null) {
-            return keys;
+    public void clear() {
+        try {
+            getSegmentStore().clear();
+        } catch (IOException e) {
+            LOGGER.warn("Unable to clear {}", getMapStorePath(), e);
         }
+    }
 
-        for (File file : files) {
-            keys.add(file.getName().replaceFirst(PERSISTED_FILE_SUFFIX_REGEX, ""));
+    private synchronized SegmentStore getSegmentStore() throws IOException {
+        if (segmentStore == null) {
+            segmentStore = new SegmentStore(new File(getMapStorePath()));
+            importSerializedFiles();
         }
-        return keys;
+        return segmentStore;
     }
 
-    public void clear() {
+    /**
+     * Moves the values persisted one file per key by earlier versions into the segment store.
+     */
+    private void importSerializedFiles() throws IOException {
         File[] files = new File(getMapStorePath()).listFiles(getFilenameFilter());
-        if (files != null) {
-            for (File file : files) {
-                if (!file.delete()) {
-                    LOGGER.warn("File was unable to be deleted: {}", file.getAbsolutePath());
-                }
+        if (files == null || files.length == 0) {
+            return;
+        }
+
+        LOGGER.info("Importing {} persisted values from {}", files.length, getMapStorePath());
+        for (File file : files) {
+            InputStream inputStream = null;
+            boolean imported = false;
+            try {
+                inputStream = new FileInputStream(file);
+                ObjectInput input = new ObjectInputStream(new BufferedInputStream(inputStream));
+                Object value = input.readObject();
+                segmentStore.put(file.getName().replaceFirst(PERSISTED_FILE_SUFFIX_REGEX, ""),
+                        serialize(value));
+                imported = true;
+            } catch (IOException | ClassNotFoundException e) {
+                LOGGER.warn("Unable to import persisted value from {}, keeping the file",
+                        file.getAbsolutePath(), e);
+            } finally {
+                IOUtils.closeQuietly(inputStream);
+            }
+            // The file is only deleted once its value is safely in the store
+            if (imported && !file.delete()) {
+                LOGGER.warn("File was unable to be deleted: {}", file.getAbsolutePath());
             }
         }
     }
+
+    private byte[] serialize(Object value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream output = new ObjectOutputStream(bytes);
+        output.writeObject(value);
+        output.close();
+        return bytes.toByteArray();
+    }
 }
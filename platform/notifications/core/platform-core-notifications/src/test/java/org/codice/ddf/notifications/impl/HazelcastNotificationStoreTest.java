@@ -117,8 +117,7 @@ public void testCreateCacheWithMapStore() throws Exception {
             persistenceDir = new File(provider.getPersistencePath());
             File mapStoreDir = new File(provider.getMapStorePath());
             assertTrue(mapStoreDir.exists());
-            String[] persistedNotifications = mapStoreDir.list();
-            assertTrue(persistedNotifications.length == 1);
+            assertTrue(provider.loadAllKeys().size() == 1);
 
             MockNotification n = (MockNotification) provider
                     .loadFromPersistence(notification.getId());
@@ -187,8 +186,8 @@ public void testQueryCacheWithMultipleUsersNotifications() throws Exception {
             persistenceDir = new File(persistencePath);
             File mapStoreDir = new File(mapStorePath);
             assertTrue(mapStoreDir.exists());
-            String[] persistedNotifications = mapStoreDir.list();
-            assertTrue(persistedNotifications.length == (userIds.length * numNotificationsPerUser));
+            assertTrue(provider.loadAllKeys().size() == (userIds.length
+                    * numNotificationsPerUser));
 
             // Query for specific user's notifications and verify only they are returned
             List<Map<String, String>> notifications = store.getNotifications("user2");
@@ -0,0 +1,504 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.platform.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Log-structured store of byte values by key, kept in a directory of append-only segment files.
+ * <p/>
+ * Every put or delete appends a record to the active segment, which is replaced by a new one
+ * once it is full, and an in-memory index maps each key to the record holding its current value.
+ * Full segments are never written to again and are read with positional reads on their open
+ * channels. They are not memory-mapped, since a mapped file cannot be deleted on some platforms,
+ * e.g., Windows, before the mapping is garbage collected. Records that
+ * were overwritten or deleted are dropped by compacting the store, i.e., copying the live records
+ * to new segments, once they take up more than half of it.
+ * <p/>
+ * Each record is made of the key length, the value length (-1 for a delete), a CRC32 of the key
+ * and value, the key (UTF-8) and the value. On open, the segments are scanned in order to rebuild
+ * the index, and an incomplete record at the end of the last segment, e.g., from a crash in the
+ * middle of a write, is discarded.
+ * <p/>
+ * The store is opened on first use and is safe for use by several threads.
+ */
+public class SegmentStore {
+
+    public static final String SEGMENT_SUFFIX = ".log";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SegmentStore.class);
+
+    private static final String SEGMENT_PREFIX = "segment-";
+
+    private static final int HEADER_LENGTH = 4 + 4 + 8;
+
+    private static final int TOMBSTONE = -1;
+
+    private static final long DEFAULT_MAX_SEGMENT_BYTES = 16 * 1024 * 1024;
+
+    private static final long MIN_COMPACTION_BYTES = 1024 * 1024;
+
+    private static final long COMPACTION_BATCH_BYTES = 1024 * 1024;
+
+    private final File directory;
+
+    private final long maxSegmentBytes;
+
+    private final Map<String, RecordLocation> index = new HashMap<>();
+
+    /**
+     * Channels to read the full segments, by segment id
+     */
+    private final Map<Long, FileChannel> segmentChannels = new HashMap<>();
+
+    private final TreeMap<Long, File> segmentFiles = new TreeMap<>();
+
+    private FileChannel activeChannel;
+
+    private long activeSegmentId;
+
+    private long totalBytes;
+
+    private long liveBytes;
+
+    private boolean open;
+
+    /**
+     * @param directory the directory of the segment files, created on first use if needed
+     */
+    public SegmentStore(File directory) {
+        this(directory, DEFAULT_MAX_SEGMENT_BYTES);
+    }
+
+    /**
+     * @param directory       the directory of the segment files, created on first use if needed
+     * @param maxSegmentBytes the size above which a segment is full and a new one is started
+     */
+    public SegmentStore(File directory, long maxSegmentBytes) {
+        this.directory = directory;
+        this.maxSegmentBytes = maxSegmentBytes;
+    }
+
+    /**
+     * @return the value of the key, {@code null} if there is none
+     */
+    public synchronized byte[] get(String key) throws IOException {
+        ensureOpen();
+        RecordLocation location = index.get(key);
+        if (location == null) {
+            return null;
+        }
+
+        return readValue(location, segmentChannels);
+    }
+
+    /**
+     * @return a copy of the keys that have a value
+     */
+    public synchronized Set<String> keySet() throws IOException {
+        ensureOpen();
+        return new HashSet<>(index.keySet());
+    }
+
+    public synchronized void put(String key, byte[] value) throws IOException {
+        putAll(Collections.singletonMap(key, value));
+    }
+
+    /**
+     * Appends all the values at once, so that they take a single write.
+     */
+    public synchronized void putAll(Map<String, byte[]> values) throws IOException {
+        ensureOpen();
+        appendAll(values);
+        maybeCompact();
+    }
+
+    private void appendAll(Map<String, byte[]> values) throws IOException {
+        if (values.isEmpty()) {
+            return;
+        }
+
+        List<byte[]> keys = new ArrayList<>(values.size());
+        int length = 0;
+        for (Map.Entry<String, byte[]> entry : values.entrySet()) {
+            byte[] key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            keys.add(key);
+            length += HEADER_LENGTH + key.length + entry.getValue().length;
+        }
+
+        ByteBuffer records = ByteBuffer.allocate(length);
+        List<RecordLocation> locations = new ArrayList<>(values.size());
+        long offset = activeChannel.size();
+        int i = 0;
+        for (byte[] value : values.values()) {
+            int recordStart = records.position();
+            writeRecord(records, keys.get(i++), value);
+            locations.add(new RecordLocation(activeSegmentId,
+                    offset + records.position() - value.length, value.length,
+                    records.position() - recordStart));
+        }
+        records.flip();
+        append(records);
+
+        i = 0;
+        for (String key : values.keySet()) {
+            index(key, locations.get(i++));
+        }
+        maybeRollSegment();
+    }
+
+    public synchronized void delete(String key) throws IOException {
+        ensureOpen();
+        if (!index.containsKey(key)) {
+            return;
+        }
+
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = ByteBuffer.allocate(HEADER_LENGTH + keyBytes.length);
+        writeRecord(record, keyBytes, null);
+        record.flip();
+        append(record);
+
+        // The delete record is dead as soon as it is written, as is the value it deletes
+        totalBytes += record.capacity();
+        RecordLocation previous = index.remove(key);
+        liveBytes -= previous.recordLength;
+        maybeRollSegment();
+        maybeCompact();
+    }
+
+    /**
+     * Deletes all the values and segment files.
+     */
+    public synchronized void clear() throws IOException {
+        close();
+        File[] files = directory.listFiles(getSegmentFilter());
+        if (files != null) {
+            for (File file : files) {
+                if (!file.delete()) {
+                    LOGGER.warn("Could not delete segment file {}", file.getAbsolutePath());
+                }
+            }
+        }
+    }
+
+    /**
+     * Closes the segment files. The store is opened again on its next use.
+     */
+    public synchronized void close() {
+        closeQuietly(activeChannel);
+        activeChannel = null;
+        closeAll(segmentChannels.values());
+        segmentChannels.clear();
+        segmentFiles.clear();
+        index.clear();
+        totalBytes = 0;
+        liveBytes = 0;
+        open = false;
+    }
+
+    /**
+     * Copies the live records to new segments and deletes the old ones.
+     */
+    public synchronized void compact() throws IOException {
+        ensureOpen();
+        LOGGER.debug("Compacting {}: {} live bytes out of {}", directory, liveBytes, totalBytes);
+
+        // Keep reading the live records from the old segments while they are copied
+        Map<Long, FileChannel> oldSegmentChannels = new HashMap<>(segmentChannels);
+        oldSegmentChannels.put(activeSegmentId, activeChannel);
+        Map<String, RecordLocation> oldIndex = new HashMap<>(index);
+        List<File> oldSegments = new ArrayList<>(segmentFiles.values());
+        long nextSegmentId = activeSegmentId + 1;
+
+        segmentChannels.clear();
+        segmentFiles.clear();
+        index.clear();
+        totalBytes = 0;
+        liveBytes = 0;
+        openSegment(nextSegmentId);
+
+        Map<String, byte[]> batch = new HashMap<>();
+        long batchBytes = 0;
+        for (Map.Entry<String, RecordLocation> entry : oldIndex.entrySet()) {
+            byte[] value = readValue(entry.getValue(), oldSegmentChannels);
+            batch.put(entry.getKey(), value);
+            batchBytes += value.length;
+            if (batchBytes >= COMPACTION_BATCH_BYTES) {
+                appendAll(batch);
+                batch.clear();
+                batchBytes = 0;
+            }
+        }
+        appendAll(batch);
+
+        // The old segments are only deleted once the live records are safely in the new ones,
+        // and after their channels are closed
+        activeChannel.force(false);
+        closeAll(oldSegmentChannels.values());
+        for (File oldSegment : oldSegments) {
+            if (!oldSegment.delete()) {
+                LOGGER.warn("Could not delete segment file {}", oldSegment.getAbsolutePath());
+            }
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (open) {
+            return;
+        }
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Could not make directory: " + directory.getAbsolutePath());
+        }
+
+        File[] files = directory.listFiles(getSegmentFilter());
+        if (files != null) {
+            for (File file : files) {
+                segmentFiles.put(getSegmentId(file), file);
+            }
+        }
+
+        for (Map.Entry<Long, File> segment : segmentFiles.entrySet()) {
+            boolean last = segment.getKey().equals(segmentFiles.lastKey());
+            loadSegment(segment.getKey(), segment.getValue(), last);
+        }
+
+        if (segmentFiles.isEmpty()) {
+            openSegment(0);
+        } else {
+            activeSegmentId = segmentFiles.lastKey();
+            activeChannel = FileChannel
+                    .open(segmentFiles.lastEntry().getValue().toPath(), StandardOpenOption.READ,
+                            StandardOpenOption.WRITE);
+        }
+        open = true;
+        LOGGER.debug("Opened {} with {} keys in {} segments", directory, index.size(),
+                segmentFiles.size());
+    }
+
+    private void loadSegment(long segmentId, File file, boolean last) throws IOException {
+        FileChannel channel = FileChannel
+                .open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        boolean keepChannel = false;
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+            readFully(channel, buffer, 0);
+            buffer.flip();
+            while (buffer.remaining() >= HEADER_LENGTH) {
+                int recordStart = buffer.position();
+                int keyLength = buffer.getInt();
+                int valueLength = buffer.getInt();
+                long crc = buffer.getLong();
+                int dataLength = keyLength + Math.max(valueLength, 0);
+                if (keyLength < 0 || valueLength < TOMBSTONE || dataLength > buffer.remaining()) {
+                    buffer.position(recordStart);
+                    break;
+                }
+
+                byte[] key = new byte[keyLength];
+                buffer.get(key);
+                int valueOffset = buffer.position();
+                byte[] value = valueLength == TOMBSTONE ? null : new byte[valueLength];
+                if (value != null) {
+                    buffer.get(value);
+                }
+                if (crc != computeCrc(key, value)) {
+                    buffer.position(recordStart);
+                    break;
+                }
+
+                int recordLength = buffer.position() - recordStart;
+                String keyString = new String(key, StandardCharsets.UTF_8);
+                if (value == null) {
+                    totalBytes += recordLength;
+                    RecordLocation previous = index.remove(keyString);
+                    if (previous != null) {
+                        liveBytes -= previous.recordLength;
+                    }
+                } else {
+                    index(keyString, new RecordLocation(segmentId, valueOffset, valueLength,
+                            recordLength));
+                }
+            }
+
+            if (buffer.hasRemaining()) {
+                LOGGER.warn("Discarding {} bytes of incomplete records at the end of {}",
+                        buffer.remaining(), file.getAbsolutePath());
+                if (last) {
+                    channel.truncate(buffer.position());
+                }
+            }
+            if (!last) {
+                segmentChannels.put(segmentId, channel);
+                keepChannel = true;
+            }
+        } finally {
+            if (!keepChannel) {
+                closeQuietly(channel);
+            }
+        }
+    }
+
+    private void index(String key, RecordLocation location) {
+        RecordLocation previous = index.put(key, location);
+        if (previous != null) {
+            liveBytes -= previous.recordLength;
+        }
+        liveBytes += location.recordLength;
+        totalBytes += location.recordLength;
+    }
+
+    private byte[] readValue(RecordLocation location, Map<Long, FileChannel> segments)
+            throws IOException {
+        byte[] value = new byte[location.valueLength];
+        FileChannel channel = segments.get(location.segmentId);
+        readFully(channel != null ? channel : activeChannel, ByteBuffer.wrap(value),
+                location.valueOffset);
+        return value;
+    }
+
+    private void append(ByteBuffer records) throws IOException {
+        long position = activeChannel.size();
+        while (records.hasRemaining()) {
+            position += activeChannel.write(records, position);
+        }
+    }
+
+    private void maybeRollSegment() throws IOException {
+        if (activeChannel.size() < maxSegmentBytes) {
+            return;
+        }
+
+        // Keep the full segment's channel for reads and start a new one
+        segmentChannels.put(activeSegmentId, activeChannel);
+        openSegment(activeSegmentId + 1);
+    }
+
+    private void maybeCompact() throws IOException {
+        long deadBytes = totalBytes - liveBytes;
+        if (deadBytes > MIN_COMPACTION_BYTES && deadBytes > liveBytes) {
+            compact();
+        }
+    }
+
+    private void openSegment(long segmentId) throws IOException {
+        File file = new File(directory, String.format("%s%016d%s", SEGMENT_PREFIX, segmentId,
+                SEGMENT_SUFFIX));
+        activeChannel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        activeSegmentId = segmentId;
+        segmentFiles.put(segmentId, file);
+    }
+
+    private static void writeRecord(ByteBuffer buffer, byte[] key, byte[] value) {
+        buffer.putInt(key.length);
+        buffer.putInt(value == null ? TOMBSTONE : value.length);
+        buffer.putLong(computeCrc(key, value));
+        buffer.put(key);
+        if (value != null) {
+            buffer.put(value);
+        }
+    }
+
+    private static long computeCrc(byte[] key, byte[] value) {
+        CRC32 crc = new CRC32();
+        crc.update(key);
+        if (value != null) {
+            crc.update(value);
+        }
+        return crc.getValue();
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position)
+            throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position);
+            if (n < 0) {
+                throw new IOException("Unexpected end of segment file");
+            }
+            position += n;
+        }
+    }
+
+    private static void closeAll(Collection<FileChannel> channels) {
+        for (FileChannel channel : channels) {
+            closeQuietly(channel);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            LOGGER.debug("Could not close {}", closeable, e);
+        }
+    }
+
+    private static long getSegmentId(File file) {
+        String name = file.getName();
+        return Long.parseLong(
+                name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static FilenameFilter getSegmentFilter() {
+        return new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)
+                        && name.length() > SEGMENT_PREFIX.length() + SEGMENT_SUFFIX.length();
+            }
+        };
+    }
+
+    private static class RecordLocation {
+
+        private final long segmentId;
+
+        private final long valueOffset;
+
+        private final int valueLength;
+
+        private final int recordLength;
+
+        RecordLocation(long segmentId, long valueOffset, int valueLength, int recordLength) {
+            this.segmentId = segmentId;
+            this.valueOffset = valueOffset;
+            this.valueLength = valueLength;
+            this.recordLength = recordLength;
+        }
+    }
+}
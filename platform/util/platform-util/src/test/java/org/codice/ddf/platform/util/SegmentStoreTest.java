@@ -0,0 +1,163 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.platform.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SegmentStoreTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File directory;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = temporaryFolder.newFolder("store");
+    }
+
+    @Test
+    public void testPutGetDelete() throws Exception {
+        SegmentStore store = new SegmentStore(directory);
+
+        store.put("a", bytes("1"));
+        store.put("b", bytes("2"));
+        store.put("a", bytes("3"));
+        store.delete("b");
+
+        assertArrayEquals(bytes("3"), store.get("a"));
+        assertNull(store.get("b"));
+        assertEquals(new HashSet<>(Arrays.asList("a")), store.keySet());
+        store.close();
+    }
+
+    @Test
+    public void testReopen() throws Exception {
+        // Small segments so that the values are spread over several of them
+        SegmentStore store = new SegmentStore(directory, 64);
+        for (int i = 0; i < 20; i++) {
+            store.put("key" + i, bytes("value" + i));
+        }
+        store.delete("key5");
+        store.close();
+
+        SegmentStore reopened = new SegmentStore(directory, 64);
+
+        assertEquals(19, reopened.keySet().size());
+        assertNull(reopened.get("key5"));
+        for (int i = 6; i < 20; i++) {
+            assertArrayEquals(bytes("value" + i), reopened.get("key" + i));
+        }
+        reopened.close();
+    }
+
+    @Test
+    public void testCompact() throws Exception {
+        SegmentStore store = new SegmentStore(directory, 1024);
+        byte[] value = new byte[1000];
+        for (int i = 0; i < 5000; i++) {
+            value[0] = (byte) i;
+            store.put("key" + (i % 10), value);
+        }
+
+        // Without compaction, the 5000 values would take up over 5MB
+        assertTrue(getSegmentBytes() < 2 * 1024 * 1024);
+        assertEquals(10, store.keySet().size());
+        store.close();
+
+        SegmentStore reopened = new SegmentStore(directory, 1024);
+        assertEquals(10, reopened.keySet().size());
+        assertEquals((byte) 4999, reopened.get("key9")[0]);
+        reopened.close();
+    }
+
+    @Test
+    public void testSegmentFilesDeletedByCompactAndClear() throws Exception {
+        SegmentStore store = new SegmentStore(directory, 64);
+        for (int i = 0; i < 20; i++) {
+            store.put("key", bytes("value" + i));
+        }
+        File[] oldSegments = directory.listFiles(getSegmentFilter());
+
+        store.compact();
+
+        for (File oldSegment : oldSegments) {
+            assertFalse(oldSegment.exists());
+        }
+        assertArrayEquals(bytes("value19"), store.get("key"));
+
+        store.clear();
+
+        assertEquals(0, directory.listFiles(getSegmentFilter()).length);
+    }
+
+    @Test
+    public void testIncompleteRecordDiscarded() throws Exception {
+        SegmentStore store = new SegmentStore(directory);
+        store.put("a", bytes("1"));
+        store.put("b", bytes("2"));
+        store.close();
+
+        // Cut the last record short, as a crash in the middle of the write would
+        File segment = directory.listFiles(getSegmentFilter())[0];
+        RandomAccessFile file = new RandomAccessFile(segment, "rw");
+        file.setLength(file.length() - 1);
+        file.close();
+
+        SegmentStore reopened = new SegmentStore(directory);
+        assertArrayEquals(bytes("1"), reopened.get("a"));
+        assertNull(reopened.get("b"));
+
+        // New records are appended after the last complete one
+        reopened.put("c", bytes("3"));
+        reopened.close();
+        assertArrayEquals(bytes("3"), new SegmentStore(directory).get("c"));
+    }
+
+    private long getSegmentBytes() {
+        long bytes = 0;
+        for (File segment : directory.listFiles(getSegmentFilter())) {
+            bytes += segment.length();
+        }
+        return bytes;
+    }
+
+    private FilenameFilter getSegmentFilter() {
+        return new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(SegmentStore.SEGMENT_SUFFIX);
+            }
+        };
+    }
+
+    private byte[] bytes(String value) throws Exception {
+        return value.getBytes("UTF-8");
+    }
+}